@@ -0,0 +1,339 @@
+package simulizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import simulizer.assembler.Assembler;
+import simulizer.assembler.extractor.problem.Problem;
+import simulizer.assembler.extractor.problem.StoreProblemLogger;
+import simulizer.assembler.representation.Program;
+import simulizer.simulation.cpu.components.CPU;
+import simulizer.simulation.cpu.components.CPUPipeline;
+import simulizer.simulation.cpu.user_interaction.BufferIO;
+import simulizer.simulation.cpu.user_interaction.IOStream;
+import simulizer.simulation.messages.MessageType;
+import simulizer.simulation.messages.ProblemMessage;
+import simulizer.simulation.messages.SimulationListener;
+import simulizer.utils.FileUtils;
+import simulizer.utils.ThreadUtils;
+
+/**
+ * Runs many programs in one JVM (eg to mark a set of submissions) and writes a JSON report of the results.
+ *
+ * The programs are given as directories (every .s file inside), single .s files or manifests. Next to each program
+ * there can be an input file (the same name ending in .in) which is fed to the program and an expected output file
+ * (ending in .out) which the output is compared with. A manifest is a text file listing one program per line as
+ * "program.s [input [expected-output]]" with paths relative to the manifest ('#' starts a comment).
+ *
+ * The programs are run on a work stealing pool with one worker per core. Each worker thread keeps its own CPU and
+ * loads every program it is given into it, rather than setting up a new CPU for each one. A program which is listed
+ * more than once (eg with different inputs) is only assembled once, and when a worker runs it again straight after
+ * the CPU is reset (see CPU.reset) rather than loading the program again.
+ */
+class BatchMode {
+
+	/**
+	 * A program to run and the files that go with it
+	 */
+	static class Job {
+		final File program;
+		final File input; // may be null
+		final File expected; // may be null
+
+		Job(File program, File input, File expected) {
+			this.program = program;
+			this.input = input;
+			this.expected = expected;
+		}
+	}
+
+	/**
+	 * The outcome of running a program, serialised to the report
+	 */
+	@SuppressWarnings("unused")
+	static class Result {
+		enum Status {
+			passed, // the output matched the expected output
+			failed, // the output didn't match
+			ran, // ran to the end but there was no expected output to compare with
+			assembly_error, runtime_error, timeout
+		}
+
+		String program;
+		Status status;
+		long instructions;
+		double wallTimeMs;
+		String output;
+		String expectedOutput; // only given if the program failed
+		List<String> problems = new ArrayList<>();
+	}
+
+	/**
+	 * The whole report
+	 */
+	@SuppressWarnings("unused")
+	static class Report {
+		int programs;
+		int passed;
+		int failed;
+		int errors;
+		int threads;
+		double wallTimeMs;
+		List<Result> results;
+	}
+
+	/**
+	 * A CPU kept by a worker thread and reused for every program the thread runs
+	 */
+	private static class Worker extends SimulationListener {
+		final CPU cpu;
+		final BufferIO io = new BufferIO();
+		private List<String> problems;
+		private Result running; // the result of the program being run, so a late timeout can't stop the next one (guarded by the worker)
+
+		Worker(CommandLineArguments.BatchModeArgs args) {
+			cpu = args.pipelined ? new CPUPipeline(io) : new CPU(io);
+			cpu.setMemoryLimits(args.maxHeap * 1024 * 1024, args.maxStack * 1024 * 1024); // MiB
+			cpu.registerListener(this, MessageType.PROBLEM);
+		}
+
+		@Override
+		public void processProblemMessage(ProblemMessage m) {
+			problems.add(m.e.getMessage());
+		}
+	}
+
+	private static CommandLineArguments.BatchModeArgs args;
+	private static final List<Worker> workers = new ArrayList<>(); // every worker created, to shut down at the end
+	private static final ThreadLocal<Worker> worker = ThreadLocal.withInitial(BatchMode::newWorker);
+	private static ScheduledExecutorService timeouts;
+	// the programs which are run more than once, assembled the first time they are run
+	private static final Map<String, Program> assembled = new ConcurrentHashMap<>();
+	private static Set<String> repeated;
+
+	public static void start(CommandLineArguments parsedArgs) {
+		args = parsedArgs.batchMode;
+		assembled.clear();
+
+		List<Job> jobs = new ArrayList<>();
+		try {
+			for (String path : args.paths)
+				findJobs(FileUtils.getFile(path), jobs);
+		} catch (UncheckedIOException | IllegalArgumentException e) {
+			System.err.println("Could not read the programs to run: " + e.getMessage());
+			return;
+		}
+
+		Set<String> seen = new HashSet<>();
+		repeated = jobs.stream().map(j -> j.program.getAbsolutePath()).filter(p -> !seen.add(p)).collect(Collectors.toSet());
+
+		int threads = args.threads > 0 ? args.threads : Runtime.getRuntime().availableProcessors();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		timeouts = Executors.newSingleThreadScheduledExecutor(new ThreadUtils.NamedThreadFactory("Batch-Timeouts"));
+
+		long start = System.nanoTime();
+		List<ForkJoinTask<Result>> tasks = jobs.stream().map(j -> pool.submit(() -> run(j))).collect(Collectors.toList());
+		List<Result> results = tasks.stream().map(ForkJoinTask::join).collect(Collectors.toList());
+		double wallTimeMs = (System.nanoTime() - start) / 1e6;
+
+		pool.shutdown();
+		timeouts.shutdownNow();
+		synchronized (workers) {
+			workers.forEach(w -> w.cpu.shutdown());
+		}
+
+		Report report = new Report();
+		report.programs = results.size();
+		report.threads = threads;
+		report.wallTimeMs = wallTimeMs;
+		report.results = results;
+		for (Result r : results) {
+			if (r.status == Result.Status.passed)
+				report.passed++;
+			else if (r.status == Result.Status.failed)
+				report.failed++;
+			else if (r.status != Result.Status.ran)
+				report.errors++;
+		}
+
+		Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+		try (Writer w = FileUtils.getUTF8FileWriter(FileUtils.getFile(args.report))) {
+			gson.toJson(report, w);
+		} catch (IOException e) {
+			System.err.println("Could not write the report: " + e.getMessage());
+		}
+		System.out.println(String.format("%d programs: %d passed, %d failed, %d errors (%.1f seconds on %d threads). Report written to %s",
+				report.programs, report.passed, report.failed, report.errors, wallTimeMs / 1000, threads, args.report));
+	}
+
+	/**
+	 * @param path a directory, program or manifest
+	 * @param jobs the list to add the programs to
+	 */
+	private static void findJobs(File path, List<Job> jobs) {
+		if (path.isDirectory()) {
+			try (Stream<Path> files = Files.walk(path.toPath())) {
+				files.filter(p -> p.toString().endsWith(".s")).sorted().forEach(p -> jobs.add(jobWithSiblings(p.toFile())));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		} else if (!path.isFile()) {
+			throw new IllegalArgumentException(path + " does not exist");
+		} else if (path.getName().endsWith(".s")) {
+			jobs.add(jobWithSiblings(path));
+		} else {
+			File dir = path.getAbsoluteFile().getParentFile();
+			for (String line : FileUtils.splitIntoLines(FileUtils.getFileContent(path))) {
+				int comment = line.indexOf('#');
+				String[] parts = (comment == -1 ? line : line.substring(0, comment)).trim().split("\\s+");
+				if (parts[0].isEmpty())
+					continue;
+				jobs.add(new Job(existing(new File(dir, parts[0])),
+						parts.length > 1 ? existing(new File(dir, parts[1])) : null,
+						parts.length > 2 ? existing(new File(dir, parts[2])) : null));
+			}
+		}
+	}
+
+	/**
+	 * @param f a file listed in a manifest
+	 * @return the file
+	 * @throws IllegalArgumentException if the file doesn't exist
+	 */
+	private static File existing(File f) {
+		if (!f.isFile())
+			throw new IllegalArgumentException(f + " does not exist");
+		return f;
+	}
+
+	/**
+	 * @param program a program
+	 * @return the job for the program, with the .in and .out files next to it (if they exist)
+	 */
+	private static Job jobWithSiblings(File program) {
+		String base = program.getPath().substring(0, program.getPath().length() - ".s".length());
+		File input = new File(base + ".in"), expected = new File(base + ".out");
+		return new Job(program, input.isFile() ? input : null, expected.isFile() ? expected : null);
+	}
+
+	/**
+	 * @return a new CPU for the current thread
+	 */
+	private static Worker newWorker() {
+		Worker w = new Worker(args);
+		synchronized (workers) {
+			workers.add(w);
+		}
+		return w;
+	}
+
+	/**
+	 * Run a program on the CPU of the current thread
+	 *
+	 * @param job the program to run
+	 * @return the result of the program
+	 */
+	private static Result run(Job job) {
+		Result result = new Result();
+		result.program = job.program.getPath();
+		long start = System.nanoTime();
+
+		String path = job.program.getAbsolutePath();
+		StoreProblemLogger log = new StoreProblemLogger();
+		Program p = assembled.get(path);
+		if (p == null) {
+			p = Assembler.assemble(FileUtils.getFileContent(job.program), log, args.permissive);
+			if (p != null && repeated.contains(path)) {
+				assembled.putIfAbsent(path, p);
+			}
+		}
+		if (p == null) {
+			result.status = Result.Status.assembly_error;
+			for (Problem problem : log.getProblems())
+				result.problems.add(problem.lineNum == Problem.NO_LINE_NUM ? problem.message : "line " + problem.lineNum + ": " + problem.message);
+			result.wallTimeMs = (System.nanoTime() - start) / 1e6;
+			return result;
+		}
+
+		Worker w = worker.get();
+		w.problems = result.problems;
+		w.io.clearOutput();
+		w.io.feedInput(job.input == null ? "" : FileUtils.getFileContent(job.input));
+
+		AtomicBoolean timedOut = new AtomicBoolean(false);
+		synchronized (w) {
+			w.running = result;
+		}
+		// cancelling doesn't stop the timeout if it has already started, so it checks that this program is still running
+		ScheduledFuture<?> timeout = timeouts.schedule(() -> {
+			synchronized (w) {
+				if (w.running == result) {
+					timedOut.set(true);
+					w.cpu.stopRunning();
+				}
+			}
+		}, args.timeout, TimeUnit.SECONDS);
+		try {
+			if (w.cpu.getProgram() == p) {
+				w.cpu.reset();
+			} else {
+				w.cpu.loadProgram(p);
+			}
+			w.cpu.runProgram();
+		} catch (RuntimeException | Error e) {
+			// errors (eg running out of memory) are caught too, so that only this program fails rather than the batch.
+			// the CPU may have been left half way through the program, so don't use it again
+			result.problems.add(e.toString());
+			w.cpu.shutdown();
+			worker.remove();
+		} finally {
+			timeout.cancel(false);
+			synchronized (w) {
+				w.running = null;
+			}
+		}
+
+		result.wallTimeMs = (System.nanoTime() - start) / 1e6;
+		// a pipelined CPU counts the stalls and bubbles as cycles as well
+		result.instructions = w.cpu instanceof CPUPipeline ? ((CPUPipeline) w.cpu).getStatistics().instructions : w.cpu.getCycles();
+		result.output = w.io.getOutput(IOStream.STANDARD);
+		if (timedOut.get()) {
+			result.status = Result.Status.timeout;
+		} else if (!result.problems.isEmpty()) {
+			result.status = Result.Status.runtime_error;
+		} else if (job.expected == null) {
+			result.status = Result.Status.ran;
+		} else {
+			String expected = FileUtils.getFileContent(job.expected).replace("\r\n", "\n");
+			if (result.output.replace("\r\n", "\n").equals(expected)) {
+				result.status = Result.Status.passed;
+			} else {
+				result.status = Result.Status.failed;
+				result.expectedOutput = expected;
+			}
+		}
+		return result;
+	}
+}
@@ -6,7 +6,14 @@ import simulizer.assembler.extractor.problem.StoreProblemLogger;
 import simulizer.assembler.representation.Program;
 import simulizer.cmd.CmdIO;
 import simulizer.cmd.CmdSimulationListener;
+import simulizer.simulation.cpu.components.BranchPredictor;
 import simulizer.simulation.cpu.components.CPU;
+import simulizer.simulation.cpu.components.Cache;
+import simulizer.simulation.cpu.components.CacheStatistics;
+import simulizer.simulation.cpu.components.TimingModel;
+import simulizer.simulation.cpu.components.TimingStatistics;
+import simulizer.simulation.cpu.components.CPUPipeline;
+import simulizer.simulation.messages.MessageType;
 import simulizer.utils.FileUtils;
 
 /**
@@ -14,8 +21,6 @@ import simulizer.utils.FileUtils;
  * @author mbway
  */
 class CmdMode {
-	// TODO: make frequency specifiable (is this even useful?)
-
 	public static CommandLineArguments.CmdModeArgs args;
 
 	public static CmdIO io;
@@ -33,7 +38,14 @@ class CmdMode {
 
 		io = new CmdIO(args.showDebugStream);
 
-		cpu = new CPU(io); // not pipelined
+		if (args.pipelined) {
+			CPUPipeline pipeline = new CPUPipeline(io);
+			pipeline.setForwarding(args.forwardExToEx, args.forwardMemToEx);
+			pipeline.setBranchPredictor(BranchPredictor.Kind.fromName(args.branchPredictor));
+			cpu = pipeline;
+		} else {
+			cpu = new CPU(io);
+		}
 
 		AnnotationManager a = null;
 		if (args.runAnnotations) {
@@ -43,8 +55,15 @@ class CmdMode {
 
 		simListener = new CmdSimulationListener(a);
 
-		cpu.registerListener(simListener);
-		cpu.setCycleFreq(0); // Hz
+		cpu.registerListener(simListener, MessageType.ANNOTATION, MessageType.PROBLEM);
+		cpu.setCycleFreq(args.frequency); // Hz (0 is as fast as possible, which lets the CPU run headless)
+		cpu.setMemoryLimits(args.maxHeap * 1024 * 1024, args.maxStack * 1024 * 1024); // MiB
+		cpu.setFusion(!args.noFusion);
+		cpu.setCaches(args.instructionCache == null ? null : Cache.Config.parse(args.instructionCache),
+				args.dataCache == null ? null : Cache.Config.parse(args.dataCache));
+		if (args.timing || args.latencies != null) {
+			cpu.setTimingModel(TimingModel.parse(args.latencies));
+		}
 
 		String programText = FileUtils.getFileContent(args.files.get(0));
 		assembleAndRun(programText, args.permissive);
@@ -64,6 +83,23 @@ class CmdMode {
 			} catch (Exception e) {
 				System.err.println("Exception: " + e.getMessage());
 			}
+
+			if (args.stats) {
+				System.err.println("Clock statistics:\n" + cpu.getClockStatistics());
+				long cycles = cpu.getCycles();
+				System.err.println(String.format("Execution statistics:%ncycles: %d%nfused instruction pairs: %d (%.1f%% fewer dispatches)",
+						cycles, cpu.getFusedPairs(), cycles == 0 ? 0.0 : cpu.getFusedPairs() * 100.0 / cycles));
+				if (cpu instanceof CPUPipeline) {
+					System.err.println("Pipeline statistics:\n" + ((CPUPipeline) cpu).getStatistics());
+				}
+				for (CacheStatistics cache : cpu.getCacheStatistics()) {
+					System.err.println("Cache statistics:\n" + cache);
+				}
+				TimingStatistics timing = cpu.getTimingStatistics();
+				if (timing != null) {
+					System.err.println("Timing statistics:\n" + timing);
+				}
+			}
 		}
 	}
 }
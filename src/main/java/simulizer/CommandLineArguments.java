@@ -9,6 +9,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import simulizer.simulation.cpu.components.BranchPredictor;
+import simulizer.simulation.cpu.components.Cache;
+import simulizer.simulation.cpu.components.TimingModel;
+
 
 /**
  * Created by matthew on 06/09/16.
@@ -40,6 +44,45 @@ class CommandLineArguments {
         @Parameter(names = {"-a", "--run-annotations"}, description = "whether annotations should be run")
         boolean runAnnotations = false;
 
+        @Parameter(names = {"--frequency"}, description = "the number of cycles to run per second (0 runs as fast as possible)")
+        double frequency = 0;
+
+        @Parameter(names = {"--max-heap"}, description = "the size the heap can grow to with sbrk, in MiB (1 to 1024)")
+        int maxHeap = 64;
+
+        @Parameter(names = {"--max-stack"}, description = "the size the stack can grow to before a stack overflow, in MiB (1 to 1024)")
+        int maxStack = 64;
+
+        @Parameter(names = {"--pipelined"}, description = "run the program on the pipelined CPU (one cycle per tick)")
+        boolean pipelined = false;
+
+        @Parameter(names = {"--forward-ex-ex"}, description = "let the pipelined CPU forward arithmetic results to the next instruction instead of stalling")
+        boolean forwardExToEx = false;
+
+        @Parameter(names = {"--forward-mem-ex"}, description = "let the pipelined CPU forward loaded values to the next instruction instead of stalling")
+        boolean forwardMemToEx = false;
+
+        @Parameter(names = {"--branch-predictor"}, description = "how the pipelined CPU predicts branches: not-taken, backward-taken, 1-bit, 2-bit or gshare")
+        String branchPredictor = "not-taken";
+
+        @Parameter(names = {"--icache"}, description = "model an L1 instruction cache, written as size:line-size:associativity[:lru|fifo|random] (eg 4096:32:1)")
+        String instructionCache = null;
+
+        @Parameter(names = {"--dcache"}, description = "model an L1 data cache, written as size:line-size:associativity[:lru|fifo|random[:write-back|write-through]] (eg 4096:32:2:lru:write-back)")
+        String dataCache = null;
+
+        @Parameter(names = {"--timing"}, description = "count the cycles each instruction would take (eg 12 for a multiply, 35 for a divide) instead of one cycle per instruction")
+        boolean timing = false;
+
+        @Parameter(names = {"--latencies"}, description = "change the latencies of the timing model (implies --timing), written as name=cycles separated by commas (eg multiply=4,lw=3,cache-miss=20)")
+        String latencies = null;
+
+        @Parameter(names = {"--no-fusion"}, description = "don't fuse common pairs of instructions when running as fast as possible")
+        boolean noFusion = false;
+
+        @Parameter(names = {"--stats"}, description = "print statistics about the simulation once the program has finished")
+        boolean stats = false;
+
         //TODO: not implemented
         //@Parameter(names = {"--output-errors"}, description = "file to output encountered parse errors")
         //public String errorOutputPath;
@@ -49,6 +92,38 @@ class CommandLineArguments {
     }
 
 
+    @Parameters(separators = "=", commandDescription = "Run many programs in one JVM and write a JSON report of the results")
+    static class BatchModeArgs {
+
+        @Parameter(names = { "-h", "--help" }, description = "Display this message")
+        boolean help = false;
+
+        @Parameter(names = {"-p", "--permissive"}, description = "configures the assembler to permit harmless problems (eg assembler directive in the wrong place)")
+        boolean permissive = false;
+
+        @Parameter(names = {"--report"}, description = "the file to write the JSON report to")
+        String report = "report.json";
+
+        @Parameter(names = {"--threads"}, description = "the number of programs to run at once (0 for one per core)")
+        int threads = 0;
+
+        @Parameter(names = {"--timeout"}, description = "the number of seconds a program can run for before it is stopped")
+        int timeout = 10;
+
+        @Parameter(names = {"--max-heap"}, description = "the size the heap can grow to with sbrk, in MiB (1 to 1024)")
+        int maxHeap = 64;
+
+        @Parameter(names = {"--max-stack"}, description = "the size the stack can grow to before a stack overflow, in MiB (1 to 1024)")
+        int maxStack = 64;
+
+        @Parameter(names = {"--pipelined"}, description = "run the programs on the pipelined CPU (much slower)")
+        boolean pipelined = false;
+
+        @Parameter(description = "<directories of .s files (with optional .in input and .out expected output files), .s files or manifests listing 'program.s [input [expected-output]]' on each line>")
+        List<String> paths = new ArrayList<>();
+    }
+
+
     @Parameters(separators = "=", commandDescription = "Start Simulizer in GUI mode")
     public static class GuiModeArgs {
 
@@ -75,11 +150,13 @@ class CommandLineArguments {
     }
     enum Mode {
         CMD_MODE,
+        BATCH_MODE,
         GUI_MODE
     }
 
     Mode mode;
     CmdModeArgs cmdMode;
+    BatchModeArgs batchMode;
     GuiModeArgs guiMode;
 
 
@@ -92,6 +169,9 @@ class CommandLineArguments {
             main.cmdMode = new CmdModeArgs();
             jc.addCommand("cmd", main.cmdMode);
 
+            main.batchMode = new BatchModeArgs();
+            jc.addCommand("batch", main.batchMode);
+
             main.guiMode = new GuiModeArgs();
             jc.addCommand("gui", main.guiMode);
         } else {
@@ -112,6 +192,7 @@ class CommandLineArguments {
         // help cannot be placed directly in main in-case no mode is specified in which case
         // only the gui mode arguments are parsed
         if((main.cmdMode != null && main.cmdMode.help) ||
+           (main.batchMode != null && main.batchMode.help) ||
            (main.guiMode != null && main.guiMode.help)) {
             printUsage();
             return null;
@@ -132,6 +213,53 @@ class CommandLineArguments {
                 printUsage();
                 return null;
             }
+            if(!validMemoryLimit(main.cmdMode.maxHeap) || !validMemoryLimit(main.cmdMode.maxStack)) {
+                System.err.println("Invalid Arguments: the maximum heap and stack sizes must be between 1 and 1024 MiB\n");
+                printUsage();
+                return null;
+            }
+            if(BranchPredictor.Kind.fromName(main.cmdMode.branchPredictor) == null) {
+                System.err.println("Invalid Arguments: unknown branch predictor \"" + main.cmdMode.branchPredictor + "\"\n");
+                printUsage();
+                return null;
+            }
+            for(String cache : new String[]{main.cmdMode.instructionCache, main.cmdMode.dataCache}) {
+                if(cache != null) {
+                    try {
+                        Cache.Config.parse(cache);
+                    } catch(IllegalArgumentException e) {
+                        System.err.println("Invalid Arguments: invalid cache \"" + cache + "\": " + e.getMessage() + "\n");
+                        printUsage();
+                        return null;
+                    }
+                }
+            }
+            if(main.cmdMode.latencies != null) {
+                try {
+                    TimingModel.parse(main.cmdMode.latencies);
+                } catch(IllegalArgumentException e) {
+                    System.err.println("Invalid Arguments: invalid latencies \"" + main.cmdMode.latencies + "\": " + e.getMessage() + "\n");
+                    printUsage();
+                    return null;
+                }
+            }
+        } else if(command.equals("batch")) {
+            main.mode = Mode.BATCH_MODE;
+            if(main.batchMode.paths.isEmpty()) {
+                System.err.println("Invalid File Arguments: no programs specified\n");
+                printUsage();
+                return null;
+            }
+            if(!validMemoryLimit(main.batchMode.maxHeap) || !validMemoryLimit(main.batchMode.maxStack)) {
+                System.err.println("Invalid Arguments: the maximum heap and stack sizes must be between 1 and 1024 MiB\n");
+                printUsage();
+                return null;
+            }
+            if(main.batchMode.threads < 0 || main.batchMode.timeout <= 0) {
+                System.err.println("Invalid Arguments: the number of threads can't be negative and the timeout must be positive\n");
+                printUsage();
+                return null;
+            }
         } else {
             throw new RuntimeException("invalid commands");
         }
@@ -139,9 +267,13 @@ class CommandLineArguments {
         return main;
     }
 
+    private static boolean validMemoryLimit(int mebibytes) {
+        return 1 <= mebibytes && mebibytes <= 1024;
+    }
+
     private static boolean specifiesMode(String[] args) {
         for(String arg : args) {
-            if(arg.equals("gui") || arg.equals("cmd")) {
+            if(arg.equals("gui") || arg.equals("cmd") || arg.equals("batch")) {
                 return true;
             }
         }
@@ -156,11 +288,15 @@ class CommandLineArguments {
         args.cmdMode = new CmdModeArgs();
         jc.addCommand("cmd", args.cmdMode);
 
+        args.batchMode = new BatchModeArgs();
+        jc.addCommand("batch", args.batchMode);
+
         args.guiMode = new GuiModeArgs();
         jc.addCommand("gui", args.guiMode);
 
         jc.usage();
         jc.usage("cmd");
+        jc.usage("batch");
         jc.usage("gui");
     }
 
@@ -32,6 +32,8 @@ public class Simulizer {
 
 		if(parsedArgs.mode == CommandLineArguments.Mode.CMD_MODE) {
 			CmdMode.start(args, parsedArgs);
+		} else if(parsedArgs.mode == CommandLineArguments.Mode.BATCH_MODE) {
+			BatchMode.start(parsedArgs);
 		} else {
 		    GuiMode.start(args, parsedArgs);
 		}
@@ -49,7 +51,7 @@ public class Simulizer {
      * in UI-only areas of the code-base, just call UIUtils directly.
      */
     public static void handleException(Exception e) {
-		if(mode == null || mode == CommandLineArguments.Mode.CMD_MODE) {
+		if(mode == null || mode == CommandLineArguments.Mode.CMD_MODE || mode == CommandLineArguments.Mode.BATCH_MODE) {
 		    e.printStackTrace();
 		} else if(mode == CommandLineArguments.Mode.GUI_MODE) {
 			UIUtils.showExceptionDialog(e);
@@ -2,6 +2,8 @@ package simulizer.annotations;
 
 import simulizer.assembler.representation.Register;
 import simulizer.simulation.cpu.components.CPU;
+import simulizer.simulation.cpu.components.Cache;
+import simulizer.simulation.cpu.components.CacheStatistics;
 import simulizer.simulation.cpu.components.MainMemory;
 import simulizer.simulation.data.representation.DataConverter;
 import simulizer.simulation.data.representation.Word;
@@ -91,6 +93,26 @@ public class SimulationBridge {
 		return bools;
 	}
 	
+	/**
+	 * @return the hits and misses of each modelled cache since the program was started (empty if caches are turned off)
+	 */
+	public List<CacheStatistics> getCacheStatistics() {
+		return cpu.getCacheStatistics();
+	}
+
+	/**
+	 * @param line a line of the program, counted from 1 like the editor
+	 * @return the hits and misses of the data cache caused by the line so far (null if there is no data cache
+	 *         or the line hasn't accessed it)
+	 */
+	public CacheStatistics.Counts getDataCacheCounts(int line) {
+		for(CacheStatistics cache : cpu.getCacheStatistics()) {
+			if(cache.name.equals(Cache.dataCacheName))
+				return cache.byLine.get(line - 1);
+		}
+		return null;
+	}
+
 	public byte[] getLo() {
 		return cpu.getLo().getBytes();
 	}
@@ -2,8 +2,16 @@ package simulizer.cmd;
 
 import simulizer.simulation.cpu.user_interaction.IO;
 import simulizer.simulation.cpu.user_interaction.IOStream;
+import simulizer.simulation.cpu.user_interaction.Utf8Decoder;
 import simulizer.utils.StringUtils;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Scanner;
 
 /**
@@ -13,6 +21,10 @@ public class CmdIO implements IO {
 
     private Scanner scan;
     private final boolean printDebugStream;
+    private final Utf8Decoder decoder = new Utf8Decoder();
+    // strings from the simulated memory are decoded straight into these, which are flushed after every string
+    private final Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()));
+    private final Writer err = new BufferedWriter(new OutputStreamWriter(System.err, Charset.defaultCharset()));
 
     /**initialises the scanner
      *
@@ -37,6 +49,28 @@ public class CmdIO implements IO {
         }
     }
 
+    /**method prints UTF-8 text without creating a String for it
+     *
+     * @param utf8 the text to be printed
+     */
+    @Override
+    public void printBytes(IOStream stream, ByteBuffer utf8)
+    {
+        Writer w;
+        switch(stream) {
+            case STANDARD: w = out; break;
+            case ERROR: w = err; break;
+            case DEBUG: if(!printDebugStream) return; w = out; break;
+            default: return;
+        }
+        try {
+            decoder.decode(utf8, w);
+            w.flush();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e); // System.out/err don't throw
+        }
+    }
+
     /**method will print the integer passed to it
      *
      * @param num the number to be printed
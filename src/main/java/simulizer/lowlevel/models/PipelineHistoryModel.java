@@ -8,6 +8,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import simulizer.assembler.representation.Address;
+import simulizer.simulation.messages.CycleDeltaMessage;
 import simulizer.simulation.messages.PipelineHazardMessage;
 import simulizer.simulation.messages.PipelineStateMessage;
 
@@ -29,7 +30,8 @@ public class PipelineHistoryModel {
 	 * for accessing the fetch, decode, and execute addresses, as well as
 	 * lists of the addresses before (waiting) and after (complete) the
 	 * pipeline. There is also information about whether or not the stage
-	 * represents a jump instruction, and whether it has a hazard.
+	 * represents a jump instruction, whether it has a hazard and whether the
+	 * executed branch was mispredicted.
 	 *
 	 * @author Kelsey McKenna
 	 *
@@ -42,14 +44,16 @@ public class PipelineHistoryModel {
 		public final List<Address> after;
 		public final boolean isJump;
 		public final Optional<PipelineHazardMessage.Hazard> hazard;
+		public final boolean mispredicted;
 
-		PipelineState(List<Address> before, Address fetch, Address decode, Address execute, List<Address> after, boolean isJump) {
+		PipelineState(List<Address> before, Address fetch, Address decode, Address execute, List<Address> after, boolean isJump, boolean mispredicted) {
 			this.before = before;
 			this.fetched = fetch;
 			this.decoded = decode;
 			this.executed = execute;
 			this.after = after;
 			this.isJump = isJump;
+			this.mispredicted = mispredicted;
 
 			if (fetch == null || decode == null || execute == null) {
 				if (currentHazard == null) this.hazard = Optional.empty();
@@ -81,6 +85,18 @@ public class PipelineHistoryModel {
 	 *            the pipeline state message
 	 */
 	public void processPipelineStateMessage(final PipelineStateMessage m) {
+		addState(m, false);
+	}
+
+	/**
+	 * Adds the state of the pipeline to the history
+	 *
+	 * @param m
+	 *            the pipeline state message
+	 * @param mispredicted
+	 *            whether the branch executed in this state was mispredicted
+	 */
+	private void addState(final PipelineStateMessage m, boolean mispredicted) {
 		if (size() >= MAX_SIZE) return;
 
 		final Address fetched = m.getFetched();
@@ -125,11 +141,24 @@ public class PipelineHistoryModel {
 			}
 		}
 
-		PipelineState nextState = new PipelineState(before, fetched, decoded, executed, after, isJump);
+		PipelineState nextState = new PipelineState(before, fetched, decoded, executed, after, isJump, mispredicted);
 		history.add(nextState);
 		notifyObservers(nextState);
 	}
 
+	/**
+	 * Processes the summary of a cycle, which carries both the pipeline state and any hazard
+	 * that occurred during the cycle
+	 *
+	 * @param m
+	 *            the cycle delta message
+	 */
+	public void processCycleDeltaMessage(final CycleDeltaMessage m) {
+		if (m.getHazard() != null)
+			this.currentHazard = m.getHazard();
+		addState(m, m.isMispredicted());
+	}
+
 	/**
 	 * Processes the given hazard message and attaches it to the next pipeline state message
 	 *
@@ -108,7 +108,23 @@ public class Settings {
 		settings.add(new ObjectSetting("simulation", "CPU Simulation")
 						.add(new DoubleSetting("default-CPU-frequency", "Default CPU cycle frequency", "Default number of cycles (runs of fetch+decode+execute) per second (Hz)", 4, 0.05, 5000))
 						.add(new BooleanSetting("pipelined", "Use pipelined CPU?", "Should the mips program run on a pipelined cpu?", false))
+						.add(new ObjectSetting("forwarding", "Pipeline Forwarding")
+								.add(new BooleanSetting("ex-ex", "EX to EX forwarding", "Pass the result of an arithmetic instruction straight to the next instruction instead of stalling the pipeline", false))
+								.add(new BooleanSetting("mem-ex", "MEM to EX forwarding", "Pass the value read by a load straight to the next instruction instead of stalling the pipeline", false))
+							)
+						.add(new StringSetting("branch-predictor", "Branch predictor", "How the pipelined cpu guesses whether a branch will be taken. Supported: not-taken, backward-taken, 1-bit, 2-bit, gshare", "not-taken"))
+						.add(new ObjectSetting("cache", "L1 Caches")
+								.add(new BooleanSetting("enabled", "Model caches", "Count the hits and misses of an L1 instruction and data cache in front of the main memory (see the Cache Statistics window)", false))
+								.add(new StringSetting("instruction", "Instruction cache", "The L1 instruction cache, written as size:line-size:associativity[:replacement]. Supported replacement: lru, fifo, random", "4096:32:1:lru"))
+								.add(new StringSetting("data", "Data cache", "The L1 data cache, written as size:line-size:associativity[:replacement[:write-policy]]. Supported write policies: write-back, write-through", "4096:32:2:lru:write-back"))
+							)
+						.add(new ObjectSetting("timing", "Instruction Timing")
+								.add(new BooleanSetting("enabled", "Model instruction latency", "Count the cycles each instruction would take on a MIPS R2000 (eg 12 for a multiply, 35 for a divide and a penalty for each cache miss) instead of one cycle per instruction", false))
+								.add(new StringSetting("latencies", "Latencies", "Changes to the default latencies, written as name=cycles separated by commas where the name is alu, multiply, divide, load, store, branch, jump, syscall, other, an instruction or cache-miss. eg multiply=4,lw=3", ""))
+							)
 						.add(new BooleanSetting("annotations", "Run Annotations", "Enable/Disable executing javascript annotations", true))
+						.add(new IntegerSetting("max-heap-size", "Maximum heap size", "The size the heap can grow to with sbrk (MiB). Only the parts of memory which are used take up space", 64, 1, 1024))
+						.add(new IntegerSetting("max-stack-size", "Maximum stack size", "The size the stack can grow to before a stack overflow (MiB). Only the parts of memory which are used take up space", 64, 1, 1024))
 					);
 		
 		settings.add(new ObjectSetting("editor", "Editor")
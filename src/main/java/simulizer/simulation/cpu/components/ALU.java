@@ -1,5 +1,7 @@
 package simulizer.simulation.cpu.components;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
 
 import simulizer.assembler.representation.Instruction;
@@ -11,6 +13,8 @@ import simulizer.simulation.exceptions.InstructionException;
 /**this class represents the ALU in the CPU
  * all it is capable of doing is carrying out various operations
  * and then returning the result
+ * the operations work on 32 bit values held as ints, the operation for each instruction is
+ * looked up once (when the instruction is decoded) rather than every time it is executed
  * @author Charlie Street
  *
  */
@@ -18,306 +22,218 @@ public class ALU {
 
     public static final byte[] branchTrue = new byte[]{0b1,0b1,0b1,0b1};//if branch returns true
     public static final byte[] branchFalse = new byte[]{0b0,0b0,0b0,0b0};//if branch returns false
-    static boolean branchFlag = false;//flag to determine branching (true = successful branch has been executed)
 
-    /**this method uses a switch statement to execute some operation on two words
-     *
-     * @param instruction the precise instruction to execute
-     * @param firstWord the first word to work on
-     * @param secondWord the second word to work on
-     * @param cpu lets me access cpu lo and hi registers
-     * @return the result of the operation on the two words
-     * @throws InstructionException if unsupported instruction attempted
+    private static final long mask = 0xFFFFFFFFL;//to interpret an int as unsigned
+
+    /**an operation on two 32 bit values (the second is 0 for single operand instructions)
+     * the cpu is used by the instructions which write to hi and lo (it may be null)
      */
-    public static Word execute(Instruction instruction, Optional<Word> firstWord, Optional<Word> secondWord, Optional<CPU> cpu) throws InstructionException
-    {
-        byte[] firstValue;
-        byte[] secondValue;
+    interface Operation {
+        int apply(int a, int b, CPU cpu);
+    }
 
-        if(firstWord.isPresent())//if a value stored
-        {
-            firstValue = firstWord.get().getBytes();
-        }
-        else
-        {
-            throw new InstructionException("No operand given for alu operation", instruction);
-        }
+    /**the comparison made by a branch (the second value is 0 for comparisons with zero)
+     */
+    interface Comparison {
+        boolean test(int a, int b);
+    }
 
-        if(secondWord.isPresent())//if a value stored
-        {
-            secondValue = secondWord.get().getBytes();
-        }
-        else
-        {
-            secondValue = new byte[]{0x00,0x00,0x00,0x00};//this is probably the best workaround in case of something silly
-            //this will either end up returning the original value, or produce undefined behaviour
-        }
+    private static final Map<Instruction, Operation> operations = new EnumMap<>(Instruction.class);
+    private static final Map<Instruction, Comparison> comparisons = new EnumMap<>(Instruction.class);
+
+    static {
+        operations.put(Instruction.abs, (a, b, cpu) -> (int) Math.abs((long) a));
+        operations.put(Instruction.and, (a, b, cpu) -> a & b);
+        operations.put(Instruction.andi, (a, b, cpu) -> a & b);
+        operations.put(Instruction.add, (a, b, cpu) -> a + b);
+        operations.put(Instruction.addu, (a, b, cpu) -> a + b);
+        operations.put(Instruction.addi, (a, b, cpu) -> a + b);
+        operations.put(Instruction.addiu, (a, b, cpu) -> a + b);
+        operations.put(Instruction.sub, (a, b, cpu) -> a - b);
+        operations.put(Instruction.subu, (a, b, cpu) -> a - b);
+        operations.put(Instruction.subi, (a, b, cpu) -> a - b);
+        operations.put(Instruction.subiu, (a, b, cpu) -> a - b);
+        operations.put(Instruction.mul, ALU::multiply);
+        operations.put(Instruction.mult, ALU::multiply);
+        operations.put(Instruction.multi, ALU::multiply);
+        operations.put(Instruction.mulo, (a, b, cpu) -> {
+            long result = (long) a * (long) b;
+            assert !overflows(result);//might have to take more into account with overflow
+            return (int) result;
+        });
+        operations.put(Instruction.mulou, (a, b, cpu) -> a * b);//might have to take more into account with overflow
+        operations.put(Instruction.div, (a, b, cpu) -> {
+            int quotient = (int) ((long) a / (long) b);
+            if(cpu != null) {
+                cpu.setHiValue((int) ((long) a % (long) b));
+                cpu.setLoValue(quotient);
+            }
+            return quotient;
+        });
+        operations.put(Instruction.divu, (a, b, cpu) -> {
+            int quotient = Integer.divideUnsigned(a, b);
+            if(cpu != null) {
+                cpu.setHiValue(Integer.remainderUnsigned(a, b));
+                cpu.setLoValue(quotient);
+            }
+            return quotient;
+        });
+        operations.put(Instruction.rem, (a, b, cpu) -> (int) ((long) a % (long) b));
+        operations.put(Instruction.remu, (a, b, cpu) -> Integer.remainderUnsigned(a, b));
+        operations.put(Instruction.neg, (a, b, cpu) -> -a);
+        operations.put(Instruction.negu, (a, b, cpu) -> -a);
+        operations.put(Instruction.rol, (a, b, cpu) -> Integer.rotateLeft(a, b & 31));
+        operations.put(Instruction.ror, (a, b, cpu) -> Integer.rotateRight(a, b & 31));
+        // the fixed shifts work like shifting a 64 bit value, so shifting by 32 or more clears the value
+        operations.put(Instruction.sll, (a, b, cpu) -> (int) ((a & mask) << (b & mask)));
+        operations.put(Instruction.sllv, (a, b, cpu) -> a << (b & 31));
+        operations.put(Instruction.sra, (a, b, cpu) -> (int) ((long) a >> (b & mask)));//shift bits should always be positive really, otherwise use other instruction
+        operations.put(Instruction.srav, (a, b, cpu) -> a >> (b & 31));
+        operations.put(Instruction.srl, (a, b, cpu) -> (int) ((a & mask) >>> (b & mask)));
+        operations.put(Instruction.srlv, (a, b, cpu) -> a >>> (b & 31));
+        operations.put(Instruction.nor, (a, b, cpu) -> ~(a | b));
+        operations.put(Instruction.not, (a, b, cpu) -> ~a);
+        operations.put(Instruction.or, (a, b, cpu) -> a | b);
+        operations.put(Instruction.ori, (a, b, cpu) -> a | b);
+        operations.put(Instruction.xor, (a, b, cpu) -> a ^ b);
+        operations.put(Instruction.xori, (a, b, cpu) -> a ^ b);
+        operations.put(Instruction.move, (a, b, cpu) -> a);
+        operations.put(Instruction.seq, (a, b, cpu) -> a == b ? 1 : 0);
+        operations.put(Instruction.sne, (a, b, cpu) -> a != b ? 1 : 0);
+        operations.put(Instruction.sge, (a, b, cpu) -> a >= b ? 1 : 0);
+        operations.put(Instruction.sgeu, (a, b, cpu) -> Integer.compareUnsigned(a, b) >= 0 ? 1 : 0);
+        operations.put(Instruction.sgt, (a, b, cpu) -> a > b ? 1 : 0);
+        operations.put(Instruction.sgtu, (a, b, cpu) -> Integer.compareUnsigned(a, b) > 0 ? 1 : 0);
+        operations.put(Instruction.sle, (a, b, cpu) -> a <= b ? 1 : 0);
+        operations.put(Instruction.sleu, (a, b, cpu) -> Integer.compareUnsigned(a, b) <= 0 ? 1 : 0);
+        operations.put(Instruction.slt, (a, b, cpu) -> a < b ? 1 : 0);
+        operations.put(Instruction.slti, (a, b, cpu) -> a < b ? 1 : 0);
+        operations.put(Instruction.sltu, (a, b, cpu) -> Integer.compareUnsigned(a, b) < 0 ? 1 : 0);
+        operations.put(Instruction.sltiu, (a, b, cpu) -> Integer.compareUnsigned(a, b) < 0 ? 1 : 0);
+
+        comparisons.put(Instruction.b, (a, b) -> true);
+        comparisons.put(Instruction.beq, (a, b) -> a == b);
+        comparisons.put(Instruction.bne, (a, b) -> a != b);
+        comparisons.put(Instruction.bgez, (a, b) -> a >= 0);
+        comparisons.put(Instruction.bgtz, (a, b) -> a > 0);
+        comparisons.put(Instruction.blez, (a, b) -> a <= 0);
+        comparisons.put(Instruction.bltz, (a, b) -> a < 0);
+        comparisons.put(Instruction.beqz, (a, b) -> a == 0);
+        comparisons.put(Instruction.bge, (a, b) -> a >= b);
+        comparisons.put(Instruction.bgeu, (a, b) -> Integer.compareUnsigned(a, b) >= 0);
+        comparisons.put(Instruction.bgt, (a, b) -> a > b);
+        comparisons.put(Instruction.bgtu, (a, b) -> Integer.compareUnsigned(a, b) > 0);
+        comparisons.put(Instruction.ble, (a, b) -> a <= b);
+        comparisons.put(Instruction.bleu, (a, b) -> Integer.compareUnsigned(a, b) <= 0);
+        comparisons.put(Instruction.blt, (a, b) -> a < b);
+        comparisons.put(Instruction.bltu, (a, b) -> Integer.compareUnsigned(a, b) < 0);
+    }
 
-        switch(instruction) {//checking each possible instruction
-            case abs:
-                return encodeS(Math.abs(decodeS(firstValue)));
-            case and: case andi:
-                byte[] resultAnd = new byte[4];
-                for(int i = 0; i < resultAnd.length; i++) {
-                    resultAnd[i] = (byte) (firstValue[i] & secondValue[i]);
-                }
-                return new Word(resultAnd);
-            case add:
-                return encodeS(decodeS(firstValue) + decodeS(secondValue));
-            case addu:
-                return encodeU(decodeU(firstValue) + decodeU(secondValue));
-            case addi:
-                return encodeS(decodeS(firstValue) + decodeS(secondValue));
-            case addiu:
-                return encodeU(decodeU(firstValue) + decodeU(secondValue));
-            case sub:
-                return encodeS(decodeS(firstValue) - decodeS(secondValue));
-            case subu:
-                return encodeU(decodeU(firstValue) - decodeU(secondValue));
-            case subi:
-                return encodeS(decodeS(firstValue) - decodeS(secondValue));
-            case subiu:
-                return encodeU(decodeU(firstValue) - decodeU(secondValue));
-            case mul:
-            	if(cpu.isPresent()) {
-            		byte[] result = DataConverter.encodeAsUnsignedLong(decodeS(firstValue) * decodeS(secondValue));
-            		cpu.get().setHi(new Word(new byte[]{result[0],result[1],result[2],result[3]}));
-            		cpu.get().setLo(new Word(new byte[]{result[4],result[5],result[6],result[7]}));
-            		return cpu.get().getLo();
-            	}
-                return null;
-            case mult:
-            case multi:
-            	if(cpu.isPresent()) {
-            		byte[] result = DataConverter.encodeAsUnsignedLong(decodeS(firstValue) * decodeS(secondValue));
-            		cpu.get().setHi(new Word(new byte[]{result[0],result[1],result[2],result[3]}));
-            		cpu.get().setLo(new Word(new byte[]{result[4],result[5],result[6],result[7]}));
-            	}
-            	return null;
-            case mulo:
-                return encodeS(decodeS(firstValue) * decodeS(secondValue));//might have to take more into account with overflow
-            case mulou:
-                return encodeU(decodeU(firstValue) * decodeU(secondValue));//might have to take more into account with overflow
-            case div:
-            	Word quotient = encodeS(decodeS(firstValue) / decodeS(secondValue));
-            	if(cpu.isPresent()){
-            		Word rem = encodeU(decodeS(firstValue) % decodeS(secondValue));
-            		cpu.get().setHi(rem);
-            		cpu.get().setLo(quotient);
-            	}
-                return quotient;
-            case divu:
-            	Word quotientu = encodeU(decodeU(firstValue) / decodeU(secondValue));
-            	if(cpu.isPresent()){
-            		Word remu = encodeU(decodeU(firstValue) % decodeU(secondValue));
-            		cpu.get().setHi(remu);
-            		cpu.get().setLo(quotientu);
-            	}
-                return quotientu;
-            case rem:
-            	return encodeS(decodeS(firstValue) % decodeS(secondValue));
-            case remu:
-            	return encodeU(decodeU(firstValue) % decodeU(secondValue));
-            case neg:
-                return encodeS(decodeS(firstValue)*-1);
-            case negu:
-                return encodeU(decodeS(firstValue)*-1);
-            case rol:
-            	long shiftNoRol = decodeU(secondValue) % 32;
-            	long toShiftRol = decodeU(firstValue);
-            	return encodeU((toShiftRol << shiftNoRol) | (toShiftRol >> (32-shiftNoRol)));
-            case ror:
-            	long shiftNoRor = decodeU(secondValue) % 32;
-            	long toShiftRor = decodeU(firstValue);
-            	return encodeU((toShiftRor >>> shiftNoRor) | (toShiftRor << (32-shiftNoRor)));
-            case sll:
-            	return encodeU(decodeU(firstValue) << decodeU(secondValue));
-            case sllv:
-            	long shiftNoL = decodeU(secondValue) % 32;
-            	return encodeU(decodeU(firstValue) << shiftNoL);
-            case sra:
-            	return encodeS(decodeS(firstValue) >> decodeU(secondValue));//shift bits should always be positive really, otherwise use other instruction
-            case srav:
-            	long shiftNoRa = decodeU(secondValue) % 32;
-            	return encodeS(decodeS(firstValue) >> shiftNoRa);
-            case srl:
-            	return encodeU(decodeU(firstValue) >>> decodeU(secondValue));
-            case srlv:
-            	long shiftNoR = decodeU(secondValue) % 32;
-            	return encodeU(decodeU(firstValue) >>> shiftNoR);
-            case nor:
-                byte[] resultNor = new byte[4];
-                for(int i = 0; i < resultNor.length; i++) {
-                    resultNor[i] = (byte) ~(firstValue[i] | secondValue[i]);
-                }
-                return new Word(resultNor);
-            case not:
-                byte[] resultNot = new byte[4];
-                for(int i = 0; i < resultNot.length; i++) {
-                    resultNot[i] = (byte) ~(firstValue[i]);
-                }
-                return new Word(resultNot);
-            case or: case ori:
-                byte[] resultOr = new byte[4];
-                for(int i = 0; i < resultOr.length; i++) {
-                    resultOr[i] = (byte) (firstValue[i] | secondValue[i]);
-                }
-                return new Word(resultOr);
-            case xor: case xori:
-                byte[] resultXor = new byte[4];
-                for(int i = 0; i < resultXor.length; i++) {
-                    resultXor[i] = (byte) (firstValue[i] ^ secondValue[i]);
-                }
-                return new Word(resultXor);
-            case b:
-            	branchFlag = true;
-                return new Word(branchTrue);
-            case beq:
-                for(int i = 0; i < firstValue.length; i++) {
-                    if(firstValue[i] != secondValue[i]) {
-                    	branchFlag = false;
-                        return new Word(branchFalse);
-                    }
-                }
-                branchFlag = true;
-                return new Word(branchTrue);//if all bytes equal
-            case bne:
-                for(int i = 0; i < firstValue.length; i++) {
-                    if(firstValue[i] != secondValue[i]) {//if a difference found
-                    	branchFlag = true;
-                        return new Word(branchTrue);
-                    }
-                }
-                branchFlag = false;
-                return new Word(branchFalse);//if all bytes equal then false
-            case bgez:
-                if(decodeS(firstValue) >= 0) {branchFlag = true; return new Word(branchTrue);}
-                else {branchFlag = false; return new Word(branchFalse);}
-            case bgtz:
-                if(decodeS(firstValue) > 0) {branchFlag = true; return new Word(branchTrue);}
-                else {branchFlag = false; return new Word(branchFalse);}
-            case blez:
-                if(decodeS(firstValue) <= 0) {branchFlag = true; return new Word(branchTrue);}
-                else {branchFlag = false; return new Word(branchFalse);}
-            case bltz:
-                if(decodeS(firstValue) < 0) {branchFlag = true; return new Word(branchTrue);}
-                else {branchFlag = false; return new Word(branchFalse);}
-            case beqz:
-                if(decodeS(firstValue) == 0) {branchFlag = true; return new Word(branchTrue);}
-                else {branchFlag = false; return new Word(branchFalse);}
-            case bge:
-            	if(decodeS(firstValue) >= decodeS(secondValue)) {branchFlag = true; return new Word(branchTrue);}
-            	else {branchFlag = false; return new Word(branchFalse);}
-            case bgeu:
-            	if(decodeU(firstValue) >= decodeU(secondValue)) {branchFlag = true; return new Word(branchTrue);}
-            	else {branchFlag = false; return new Word(branchFalse);}
-            case bgt:
-            	if(decodeS(firstValue) > decodeS(secondValue)) {branchFlag = true; return new Word(branchTrue);}
-            	else {branchFlag = false; return new Word(branchFalse);}
-            case bgtu:
-            	if(decodeU(firstValue) > decodeU(secondValue)) {branchFlag = true; return new Word(branchTrue);}
-            	else {branchFlag = false; return new Word(branchFalse);}
-            case ble:
-            	if(decodeS(firstValue) <= decodeS(secondValue)) {branchFlag = true; return new Word(branchTrue);}
-            	else {branchFlag = false; return new Word(branchFalse);}
-            case bleu:
-            	if(decodeU(firstValue) <= decodeU(secondValue)) {branchFlag = true; return new Word(branchTrue);}
-            	else {branchFlag = false; return new Word(branchFalse);}
-            case blt:
-            	if(decodeS(firstValue) < decodeS(secondValue)) {branchFlag = true; return new Word(branchTrue);}
-            	else {branchFlag = false; return new Word(branchFalse);}
-            case bltu:
-            	if(decodeU(firstValue) < decodeU(secondValue)) {branchFlag = true; return new Word(branchTrue);}
-            	else {branchFlag = false; return new Word(branchFalse);}
-            case move:
-                return new Word(firstValue);
-            case seq:
-            	for(int i = 0; i < firstValue.length; i++) {
-                    if(firstValue[i] != secondValue[i]) {
-                        return encodeS(0);
-                    }
-                }
-            	return encodeS(1);
-            case sge:
-            	if(decodeS(firstValue) >= decodeS(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case sgeu:
-            	if(decodeU(firstValue) >= decodeU(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case sgt:
-            	if(decodeS(firstValue) > decodeS(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case sgtu:
-            	if(decodeU(firstValue) > decodeU(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case sle:
-            	if(decodeS(firstValue) <= decodeS(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case sleu:
-            	if(decodeU(firstValue) <= decodeU(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case slt:
-            	if(decodeS(firstValue) < decodeS(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case slti:
-            	if(decodeS(firstValue) < decodeS(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case sltu:
-            	if(decodeU(firstValue) < decodeU(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case sltiu:
-            	if(decodeU(firstValue) < decodeU(secondValue)) {return encodeS(1);}
-            	return encodeS(0);
-            case sne:
-            	for(int i = 0; i < firstValue.length; i++) {
-                    if(firstValue[i] != secondValue[i]) {
-                        return encodeS(1);
-                    }
-                }
-            	return encodeS(0);
-            default:
-                throw new InstructionException("Invalid/Unsupported Instruction.",instruction);
+    /**multiply two values, storing the 64 bit result in hi and lo
+     * @param a the first value
+     * @param b the second value
+     * @param cpu the cpu to store the result in (may be null)
+     * @return the lower 32 bits of the result
+     */
+    private static int multiply(int a, int b, CPU cpu) {
+        long result = (long) a * (long) b;
+        if(cpu != null) {
+            cpu.setHiValue((int) (result >>> 32));
+            cpu.setLoValue((int) result);
         }
+        return (int) result;
+    }
+
+    /**the same check as DataConverter.encodeAsSigned makes on signed results
+     * @param value a 64 bit result
+     * @return whether the top 32 bits aren't all the same, so the value can't be stored in a word
+     */
+    private static boolean overflows(long value) {
+        long msbs = value >>> 32;
+        return msbs != 0 && msbs != 0xFFFFFFFFL;
     }
 
     /**
-     * interpret a byte array as a 4 byte signed integer
-     *
-     * @param word the word to interpret
-     * @return the interpreted value
+     * @param instruction the instruction to look up
+     * @return the operation carried out for the instruction, null if the ALU doesn't support it
      */
-    private static long decodeS(byte[] word) {
-        return DataConverter.decodeAsSigned(word);
+    static Operation operation(Instruction instruction) {
+        return operations.get(instruction);
     }
 
     /**
-     * interpret a byte array as a 4 byte unsigned integer
+     * @param instruction the branch instruction to look up
+     * @return the comparison made by the branch, null if it isn't a supported branch
+     */
+    static Comparison comparison(Instruction instruction) {
+        return comparisons.get(instruction);
+    }
+
+    /**carry out an operation on two 32 bit values
      *
-     * @param word the word to interpret
-     * @return the interpreted value
+     * @param instruction the precise instruction to execute
+     * @param a the first value
+     * @param b the second value (0 for instructions with one operand)
+     * @param cpu the cpu to store hi and lo in (may be null)
+     * @return the result of the operation (the lower 32 bits of the result for mult)
+     * @throws InstructionException if unsupported instruction attempted
      */
-    private static long decodeU(byte[] word) {
-        return DataConverter.decodeAsUnsigned(word);
+    public static int compute(Instruction instruction, int a, int b, CPU cpu) throws InstructionException {
+        Operation operation = operations.get(instruction);
+        if(operation == null) {
+            throw new InstructionException("Invalid/Unsupported Instruction.",instruction);
+        }
+        return operation.apply(a, b, cpu);
     }
 
-    /**
-     * take a value interpreted as having a sign and encode it as a word
+    /**make the comparison of a branch instruction
      *
-     * @param value the signed value to encode
-     * @return the encoded value
+     * @param instruction the branch instruction
+     * @param a the first value
+     * @param b the second value (0 for comparisons with zero)
+     * @return whether the branch should be taken
+     * @throws InstructionException if the instruction isn't a supported branch
      */
-    private static Word encodeS(long value) {
-        return new Word(DataConverter.encodeAsSigned(value));
+    public static boolean compare(Instruction instruction, int a, int b) throws InstructionException {
+        Comparison comparison = comparisons.get(instruction);
+        if(comparison == null) {
+            throw new InstructionException("Invalid/Unsupported Instruction.",instruction);
+        }
+        return comparison.test(a, b);
     }
 
-    /**
-     * take a value interpreted as being unsigned and encode it as a word
+    /**this method carries out an operation on two words
+     * used where the operands are words, the simulation itself works on ints
      *
-     * @param value the unsigned value to encode
-     * @return the encoded value
+     * @param instruction the precise instruction to execute
+     * @param firstWord the first word to work on
+     * @param secondWord the second word to work on
+     * @param cpu lets me access cpu lo and hi registers
+     * @return the result of the operation on the two words
+     * @throws InstructionException if unsupported instruction attempted
      */
-    private static Word encodeU(long value) {
-        return new Word(DataConverter.encodeAsUnsigned(value));
+    public static Word execute(Instruction instruction, Optional<Word> firstWord, Optional<Word> secondWord, Optional<CPU> cpu) throws InstructionException
+    {
+        if(!firstWord.isPresent())
+        {
+            throw new InstructionException("No operand given for alu operation", instruction);
+        }
+        int a = (int) DataConverter.decodeAsSigned(firstWord.get().getBytes());
+        //if there is no second value, 0 is probably the best workaround in case of something silly
+        //this will either end up returning the original value, or produce undefined behaviour
+        int b = secondWord.isPresent() ? (int) DataConverter.decodeAsSigned(secondWord.get().getBytes()) : 0;
+
+        if(comparisons.containsKey(instruction)) {
+            return new Word(compare(instruction, a, b) ? branchTrue : branchFalse);
+        }
+        if(instruction == Instruction.mul && !cpu.isPresent()) {
+            return null;
+        }
+        int result = compute(instruction, a, b, cpu.orElse(null));
+        if(instruction == Instruction.mult || instruction == Instruction.multi) {
+            return null;//result only stored in hi and lo
+        }
+        return new Word(DataConverter.encodeAsSigned(result));
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,152 @@
+package simulizer.simulation.cpu.components;
+
+import simulizer.assembler.representation.Address;
+import simulizer.assembler.representation.Instruction;
+import simulizer.simulation.exceptions.ExecuteException;
+import simulizer.simulation.exceptions.HeapException;
+import simulizer.simulation.exceptions.InstructionException;
+import simulizer.simulation.exceptions.MemoryException;
+import simulizer.simulation.exceptions.StackException;
+import simulizer.simulation.instructions.AddressMode;
+
+/**a run of instructions from the text segment which is run as a whole by the headless engine,
+ * used for the parts of the program which are run many times (loops and frequently called functions).
+ * a block starts at the target of a jump/branch (or the instruction after one) and carries on
+ * until the next control transfer, which is included as the last instruction and works out the next
+ * value of the program counter. Syscalls, break instructions, annotated instructions and statements
+ * which failed to decode are never part of a block, so they are always run by the interpreter.
+ * running a block just calls the handler of each instruction in turn, without going back to the
+ * main loop to fetch, check for annotations and check for the end of the program in between.
+ * If fusion is enabled on the cpu, common pairs of instructions are given a single handler (see Executor.fuse)
+ * so that the pair only costs one call. The pair is still counted as two cycles.
+ * The instruction cache is told about the whole block once it has run (see Cache.fetch), and so is the timing model
+ */
+class BasicBlock {
+
+	/**the number of times a block leader has to be reached before its block is compiled
+	 */
+	static final int compileThreshold = 50;
+
+	/**the largest number of instructions in a block, long straight runs are split into several blocks
+	 */
+	static final int maxLength = 64;
+
+	final int start;//address of the first instruction
+	final int length;//number of instructions
+	private final InstructionHandler[] handlers;
+	private final DecodedInstruction[] instructions;//the instructions of the block, for the timing model
+	private final int[] ends;//the number of instructions completed once each handler has run
+	final int fusedPairs;//the number of handlers which run two instructions
+
+	private BasicBlock(int start, InstructionHandler[] handlers, DecodedInstruction[] instructions, int[] ends) {
+		this.start = start;
+		this.handlers = handlers;
+		this.instructions = instructions;
+		this.ends = ends;
+		this.length = ends[ends.length - 1];
+		this.fusedPairs = length - handlers.length;
+	}
+
+	/**run every instruction in the block and count them as cycles
+	 * if an instruction fails, the program counter and cycle count are left as the interpreter
+	 * would have left them and the exception is passed on
+	 * @param cpu the cpu to run the block on
+	 * @return the address of the next instruction to run
+	 */
+	int run(CPU cpu) throws MemoryException, HeapException, StackException, InstructionException, ExecuteException {
+		int pc = start;
+		int i = 0;
+		try {
+			// every instruction apart from the last continues to the next one
+			for (; i < handlers.length; i++) {
+				pc = handlers[i].execute(cpu, pc + 4);
+			}
+			cpu.fusedPairs += fusedPairs;
+			finished(cpu, length, length);
+			return pc;
+		} catch (MemoryException | HeapException | StackException | InstructionException | ExecuteException e) {
+			// the first instruction of a fused pair can't fail, so it was the last instruction of the handler
+			int failed = ends[i] - 1;
+			cpu.programCounter = start + 4 * failed + 4;
+			cpu.fusedPairs += i == 0 ? 0 : ends[i - 1] - i;
+			finished(cpu, failed + 1, failed);
+			throw e;
+		}
+	}
+
+	/**count the cycles taken by the start of the block
+	 * @param cpu the cpu which ran the block
+	 * @param fetched the number of instructions which were fetched
+	 * @param completed the number of instructions which completed
+	 */
+	private void finished(CPU cpu, int fetched, int completed) {
+		TimingModel timing = cpu.timing;
+		if (cpu.instructionCache != null) {
+			int missed = cpu.instructionCache.fetch(start, fetched);
+			if (timing != null) timing.missed(missed);
+		}
+		cpu.cycles += timing == null ? completed : timing.executed(instructions, completed);
+	}
+
+	/**whether the interpreter should treat the instruction after this one as the start of a block
+	 * @param instruction the instruction just run by the interpreter
+	 * @return whether the instruction can't be in the middle of a block
+	 */
+	static boolean endsBlock(DecodedInstruction instruction) {
+		return instruction.error != null || instruction.mode == AddressMode.ITYPE || instruction.mode == AddressMode.JTYPE
+				|| (instruction.mode == AddressMode.SPECIAL && instruction.instruction != Instruction.nop);
+	}
+
+	/**find the block starting at the given index of the text segment
+	 * @param cpu the cpu which will run the block
+	 * @param textSegment the pre-decoded text segment
+	 * @param textSegmentStart the address of textSegment[0]
+	 * @param index the index of the first instruction
+	 * @return the block, or null if the first instruction can't be part of a block
+	 */
+	static BasicBlock compile(CPU cpu, DecodedInstruction[] textSegment, int textSegmentStart, int index) {
+		InstructionHandler[] handlers = new InstructionHandler[maxLength];
+		int[] ends = new int[maxLength];
+		int count = 0;
+		int instructions = 0;
+		for (int i = index; i < textSegment.length && instructions < maxLength; i++) {
+			DecodedInstruction d = textSegment[i];
+			if (!canBeInBlock(cpu, d)) {
+				break;
+			}
+			InstructionHandler handler = d.handler;
+			if (cpu.fusion && d.mode != AddressMode.ITYPE && d.mode != AddressMode.JTYPE
+					&& i + 1 < textSegment.length && instructions + 2 <= maxLength && canBeInBlock(cpu, textSegment[i + 1])) {
+				InstructionHandler fused = Executor.fuse(d, textSegment[i + 1]);
+				if (fused != null) {
+					handler = fused;
+					d = textSegment[++i];
+					instructions++;
+				}
+			}
+			handlers[count] = handler;
+			ends[count++] = ++instructions;
+			if (d.mode == AddressMode.ITYPE || d.mode == AddressMode.JTYPE) {
+				break;
+			}
+		}
+		if (count == 0) {
+			return null;
+		}
+		InstructionHandler[] trimmedHandlers = new InstructionHandler[count];
+		System.arraycopy(handlers, 0, trimmedHandlers, 0, count);
+		int[] trimmedEnds = new int[count];
+		System.arraycopy(ends, 0, trimmedEnds, 0, count);
+		DecodedInstruction[] run = new DecodedInstruction[trimmedEnds[count - 1]];
+		System.arraycopy(textSegment, index, run, 0, run.length);
+		return new BasicBlock(textSegmentStart + 4 * index, trimmedHandlers, run, trimmedEnds);
+	}
+
+	/**
+	 * @return whether the instruction can be run as part of a block (rather than by the interpreter)
+	 */
+	private static boolean canBeInBlock(CPU cpu, DecodedInstruction d) {
+		return d != null && d.error == null && !cpu.annotations.containsKey(new Address(d.address))
+				&& (d.mode != AddressMode.SPECIAL || d.instruction == Instruction.nop);
+	}
+}
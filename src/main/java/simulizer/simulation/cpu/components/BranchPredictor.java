@@ -0,0 +1,187 @@
+package simulizer.simulation.cpu.components;
+
+import java.util.Arrays;
+
+/**guesses whether a conditional branch will be taken, so that the pipelined CPU can start fetching
+ * from the target straight away instead of waiting for the branch to be executed.
+ * The prediction is made when the branch is fetched and the predictor is told the real outcome once
+ * the branch has been executed, a wrong guess means the pipeline has to be flushed
+ */
+public abstract class BranchPredictor {
+
+	/**the predictors which can be chosen (eg in the settings)
+	 */
+	public enum Kind {
+		NOT_TAKEN("not-taken"),
+		BACKWARD_TAKEN("backward-taken"),
+		ONE_BIT("1-bit"),
+		TWO_BIT("2-bit"),
+		GSHARE("gshare");
+
+		private final String name;
+
+		Kind(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @return a new predictor of this kind, with nothing learnt yet
+		 */
+		public BranchPredictor create() {
+			switch (this) {
+				case BACKWARD_TAKEN: return new BackwardTaken();
+				case ONE_BIT: return new OneBit();
+				case TWO_BIT: return new TwoBit();
+				case GSHARE: return new GShare();
+				case NOT_TAKEN:
+				default: return new NotTaken();
+			}
+		}
+
+		/**
+		 * @param name the name of a predictor, eg "2-bit"
+		 * @return the kind of predictor with that name, or null if there isn't one
+		 */
+		public static Kind fromName(String name) {
+			for (Kind k : values()) {
+				if (k.name.equals(name)) {
+					return k;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	static final int tableBits = 10;//the dynamic predictors have 1024 entries
+	static final int tableMask = (1 << tableBits) - 1;
+
+	private final Kind kind;
+
+	BranchPredictor(Kind kind) {
+		this.kind = kind;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @param address the address of the branch
+	 * @param target the address the branch goes to if it is taken
+	 * @return whether the branch is expected to be taken
+	 */
+	abstract boolean predict(int address, int target);
+
+	/**learn from the outcome of a branch
+	 * @param address the address of the branch
+	 * @param taken whether the branch was taken
+	 */
+	abstract void update(int address, boolean taken);
+
+	/**
+	 * @param address the address of a branch
+	 * @return the entry of a table for the branch
+	 */
+	static int index(int address) {
+		return (address >>> 2) & tableMask;
+	}
+
+	/**always guesses that the branch carries on to the next instruction (what the pipeline did without a predictor)
+	 */
+	private static class NotTaken extends BranchPredictor {
+		NotTaken() {
+			super(Kind.NOT_TAKEN);
+		}
+		@Override boolean predict(int address, int target) {
+			return false;
+		}
+		@Override void update(int address, boolean taken) {
+		}
+	}
+
+	/**guesses that branches backwards (loops) are taken and branches forwards aren't
+	 */
+	private static class BackwardTaken extends BranchPredictor {
+		BackwardTaken() {
+			super(Kind.BACKWARD_TAKEN);
+		}
+		@Override boolean predict(int address, int target) {
+			return target <= address;
+		}
+		@Override void update(int address, boolean taken) {
+		}
+	}
+
+	/**guesses that each branch does the same as it did last time
+	 */
+	private static class OneBit extends BranchPredictor {
+		private final boolean[] lastTaken = new boolean[1 << tableBits];
+
+		OneBit() {
+			super(Kind.ONE_BIT);
+		}
+		@Override boolean predict(int address, int target) {
+			return lastTaken[index(address)];
+		}
+		@Override void update(int address, boolean taken) {
+			lastTaken[index(address)] = taken;
+		}
+	}
+
+	/**a saturating counter for each branch (0 and 1 predict not taken, 2 and 3 predict taken),
+	 * so a loop branch is only mispredicted once when the loop exits
+	 */
+	private static class TwoBit extends BranchPredictor {
+		private final byte[] counters;
+
+		TwoBit() {
+			this(Kind.TWO_BIT);
+		}
+		TwoBit(Kind kind) {
+			super(kind);
+			counters = new byte[1 << tableBits];
+			Arrays.fill(counters, (byte) 1);//weakly not taken
+		}
+		/**
+		 * @param address the address of the branch
+		 * @return the counter to use for the branch
+		 */
+		int counter(int address) {
+			return index(address);
+		}
+		@Override boolean predict(int address, int target) {
+			return counters[counter(address)] >= 2;
+		}
+		@Override void update(int address, boolean taken) {
+			int i = counter(address);
+			if (taken && counters[i] < 3) {
+				counters[i]++;
+			} else if (!taken && counters[i] > 0) {
+				counters[i]--;
+			}
+		}
+	}
+
+	/**2 bit counters chosen by the address of the branch xor the outcomes of the last few branches,
+	 * so that branches which depend on the branches before them can be predicted
+	 */
+	private static class GShare extends TwoBit {
+		private int history = 0;//bit n is the outcome of the branch n+1 branches ago
+
+		GShare() {
+			super(Kind.GSHARE);
+		}
+		@Override int counter(int address) {
+			return ((address >>> 2) ^ history) & tableMask;
+		}
+		@Override void update(int address, boolean taken) {
+			super.update(address, taken);
+			history = ((history << 1) | (taken ? 1 : 0)) & tableMask;
+		}
+	}
+}
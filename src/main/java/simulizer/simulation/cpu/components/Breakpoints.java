@@ -8,33 +8,45 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 /**
- * A class to hold breakpoints
+ * A class to hold the breakpoints of a CPU
+ * each CPU has its own breakpoints (see CPU.getBreakpoints) so that several simulations can run at once
+ * without stopping at each other's breakpoints. The UI shares one set between the CPUs it creates
+ * (see CPU.setBreakpoints) so that the breakpoints set in the editor survive switching CPU
  */
 public class Breakpoints {
-    private static final Set<Address> breakpointAddresses = new HashSet<>();
-    private static final List<Integer> breakpointLineNumbers = new ArrayList<>();
-    private static final NavigableMap<Integer, Address> lineNums = new TreeMap<>();
-    private static Program p = null;
+    private final Set<Address> breakpointAddresses = new HashSet<>();
+    private final List<Integer> breakpointLineNumbers = new ArrayList<>();
+    private final NavigableMap<Integer, Address> lineNums = new TreeMap<>();
+    private Program p = null;
 
-    public static synchronized void clearBreakpoints() {
+    public synchronized void clearBreakpoints() {
         breakpointAddresses.clear();
         breakpointLineNumbers.clear();
     }
-    public static synchronized void addBreakpointLine(int line) {
+    /**
+     * @return whether there are no breakpoints set
+     */
+    public synchronized boolean isEmpty() {
+        return breakpointLineNumbers.isEmpty() && breakpointAddresses.isEmpty();
+    }
+
+    public synchronized void addBreakpointLine(int line) {
         breakpointLineNumbers.add(line);
         if(p != null) { // has associated program
             breakpointAddresses.add(getAddressOfLine(line));
         }
     }
 
-    public static synchronized void removeBreakpointLine(int line) {
+    public synchronized void removeBreakpointLine(int line) {
         // be careful: ArrayList.remove(int) removes by index but ArrayList.remove(Object) removes by equality
         // so wrap in an Integer to get the desired effect
         breakpointLineNumbers.remove(Integer.valueOf(line));
 
         // note: if the program has changed since the breakpoint was added then the address will be different
         // and so probably won't be removed
-        breakpointAddresses.remove(getAddressOfLine(line));
+        if(p != null) {
+            breakpointAddresses.remove(getAddressOfLine(line));
+        }
     }
 
     /**
@@ -43,7 +55,7 @@ public class Breakpoints {
      * the next highest line that does
      * @param line the line number to query
      */
-    private static Address getAddressOfLine(int line) {
+    private Address getAddressOfLine(int line) {
         if(p == null)
             throw new IllegalStateException("must specify a program to get address of line number");
 
@@ -59,16 +71,16 @@ public class Breakpoints {
      * specify a null program to stop using the program to convert breakpoints
      * @param p the program to use to convert line numbers to addresses
      */
-    static synchronized void specifyProgram(Program p) {
+    synchronized void specifyProgram(Program p) {
         // object equality. if using the _exact_ same program then
         // keep the existing breakpoints. This should occur if no
         // changes are made in the editor due to caching of assembled programs
-        if(p != null && p == Breakpoints.p) {
+        if(p != null && p == this.p) {
             // program has not changed: keep existing breakpoints
             return;
         }
 
-        Breakpoints.p = p;
+        this.p = p;
         lineNums.clear();
 
         if(p == null)
@@ -92,10 +104,10 @@ public class Breakpoints {
 
         // convert all the buffered line numbers to actual addresses
         breakpointAddresses.addAll(breakpointLineNumbers.stream()
-                .map(Breakpoints::getAddressOfLine)
+                .map(this::getAddressOfLine)
                 .collect(Collectors.toList()));
     }
-    static synchronized boolean isBreakpoint(Address a) {
+    synchronized boolean isBreakpoint(Address a) {
         if(p == null)
             throw new IllegalStateException("cannot query Breakpoints without specifying a program first!");
 
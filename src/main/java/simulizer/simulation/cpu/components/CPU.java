@@ -20,9 +20,12 @@ import simulizer.simulation.data.representation.Word;
 import simulizer.simulation.exceptions.*;
 import simulizer.simulation.instructions.InstructionFormat;
 import simulizer.simulation.messages.AnnotationMessage;
+import simulizer.simulation.messages.CycleDeltaMessage;
 import simulizer.simulation.messages.DataMovementMessage;
 import simulizer.simulation.messages.Message;
 import simulizer.simulation.messages.MessageManager;
+import simulizer.simulation.messages.MessageType;
+import simulizer.simulation.messages.PipelineHazardMessage.Hazard;
 import simulizer.simulation.messages.PipelineStateMessage;
 import simulizer.simulation.messages.ProblemMessage;
 import simulizer.simulation.messages.RegisterChangedMessage;
@@ -35,11 +38,11 @@ import simulizer.simulation.messages.StageEnterMessage.Stage;
  * this is the central CPU class
  * this is how the following components fit into this class
  * - Control Unit - implicit in this class
- * - Program Counter - Address Object
- * - Instruction Register - Statement object
+ * - Program Counter - int (the address of the next instruction)
+ * - Instruction Register - DecodedInstruction object (decoded when the program is loaded)
  * - ALU - External object
  * - L/S Unit - Not required (will still be shown in visualisation)
- * - Registers - array of 4 byte words
+ * - Registers - array of 32 bit integers (Word objects are only created for the UI and annotations)
  * - Main Memory - External Memory Object
  * 
  * @author Charlie Street
@@ -49,8 +52,11 @@ public class CPU {
 
 	private MessageManager messageManager;
 
-	Address programCounter;
-	Statement instructionRegister;
+	int programCounter;
+	DecodedInstruction instructionRegister;
+	private boolean pendingInstruction;// whether instructionRegister has been fetched but not executed yet
+	private volatile boolean simulating;// whether runProgram is running (even if paused)
+	private long startCycles;// the cycle count to start from, set by loadSnapshot
 
 	final Clock clock;
 	long cycles;
@@ -61,26 +67,63 @@ public class CPU {
     private final Semaphore tickLock;
 	private long lastFXWait;
 
-	private Word[] registers;
+	private int[] registers;
 	private MainMemory memory;
 
 	private Decoder decoder;
 	private Executor executor;
 
 	private Program program;// all information on how to run the program
+	DecodedInstruction[] textSegment;// the statements of the program, decoded ahead of time
+	int textSegmentStart;// address of textSegment[0]
+	// used by the headless engine: the compiled block starting at each instruction (if any) and
+	// the number of times each instruction has been reached as the start of a block
+	private BasicBlock[] blocks;
+	private int[] blockCounts;
+	boolean fusion = true;// whether blocks fuse common pairs of instructions (see Executor.fuse)
+	long fusedPairs;// the number of fused pairs run since the program was started
 	public Map<String, Address> labels;
 	private Map<String, Label> labelMetaData;
 
 	protected Map<Address, Annotation> annotations;
 
 	volatile boolean isRunning;// for program status
-	Address lastAddress;// used to determine end of program
+	/**
+	 * whether the messages describing each stage of the cycle (stage enter, data movement,
+	 * register changed etc) are being sent. This is false while the program is run headless
+	 */
+	boolean cycleMessages;
+	int lastAddress;// used to determine end of program
 
 	private IO io;
 	
 	//LO/HI Registers
-	private Word lo;
-	private Word hi;
+	private int lo;
+	private int hi;
+
+	// what has changed since the last cycle delta message was sent (see sendPipelineState)
+	private int changedRegisters;// bit n is set if register n has been written to
+	private boolean hiChanged;
+	private boolean loChanged;
+	private int memoryWriteStart;
+	private int memoryWriteEnd;// equal to memoryWriteStart if nothing has been written
+	Hazard cycleHazard;// set by the pipeline when a hazard occurs
+	boolean cycleMispredicted;// set by the pipeline when a branch went the other way to the prediction
+	boolean branchTaken;// whether the last branch instruction executed was taken
+
+	private int maxHeapLength = MainMemory.defaultMaxHeapLength;
+	private int maxStackLength = MainMemory.defaultMaxStackLength;
+
+	// the caches in front of the main memory (null if not modelled), created when a program is loaded
+	private Cache.Config instructionCacheConfig;
+	private Cache.Config dataCacheConfig;
+	Cache instructionCache;
+	Cache dataCache;
+
+	// the latency of each instruction (null to count every instruction as one cycle)
+	TimingModel timing;
+
+	private Breakpoints breakpoints = new Breakpoints();
 
 	/**
 	 * the constructor will set all the components up
@@ -98,11 +141,12 @@ public class CPU {
         this.tickLock.tryAcquire();
 		this.lastFXWait = 0;
 		this.isRunning = false;
+		this.cycleMessages = true;
 		this.io = io;
 		this.decoder = new Decoder(this);
 		this.executor = new Executor(this);
-		this.lo = Word.ZERO;
-		this.hi = Word.ZERO;
+		this.lo = 0;
+		this.hi = 0;
 		
 	}
 
@@ -139,6 +183,84 @@ public class CPU {
 		return clock.getTickFrequency() / 3;
 	}
 
+	/**set the maximum sizes of the heap and stack, used from the next time a program is loaded
+	 *
+	 * @param maxHeapLength the number of bytes the heap is allowed to grow to
+	 * @param maxStackLength the number of bytes the stack is allowed to grow to
+	 */
+	public void setMemoryLimits(int maxHeapLength, int maxStackLength) {
+		if (maxHeapLength <= 0 || maxStackLength <= 0) {
+			throw new IllegalArgumentException("memory limits must be positive");
+		}
+		this.maxHeapLength = maxHeapLength;
+		this.maxStackLength = maxStackLength;
+	}
+
+	/**choose the caches to model in front of the main memory, used from the next time a program is loaded.
+	 * The caches only count hits and misses, they don't change the results of the program
+	 * (or its timing, unless a timing model is being used)
+	 *
+	 * @param instructionCache the shape of the L1 instruction cache (null for none)
+	 * @param dataCache the shape of the L1 data cache (null for none)
+	 */
+	public void setCaches(Cache.Config instructionCache, Cache.Config dataCache) {
+		this.instructionCacheConfig = instructionCache;
+		this.dataCacheConfig = dataCache;
+	}
+
+	/**
+	 * @return the hits and misses of each cache since the program was started (empty if there are no caches)
+	 */
+	public List<CacheStatistics> getCacheStatistics() {
+		List<CacheStatistics> stats = new ArrayList<>();
+		if (instructionCache != null) stats.add(instructionCache.getStatistics(program));
+		if (dataCache != null) stats.add(dataCache.getStatistics(program));
+		return stats;
+	}
+
+	/**choose how many cycles each instruction takes, used from the next time a program is run.
+	 * With a timing model the cycle count is the modelled time of the program (including the penalty of
+	 * each cache miss) rather than the number of instructions run
+	 *
+	 * @param timing the latencies of the instructions (null to count every instruction as one cycle)
+	 */
+	public void setTimingModel(TimingModel timing) {
+		this.timing = timing;
+	}
+
+	/**
+	 * @return where the modelled time went since the program was started (null if there is no timing model)
+	 */
+	public TimingStatistics getTimingStatistics() {
+		TimingModel t = timing;
+		return t == null ? null : t.getStatistics();
+	}
+
+	/**
+	 * @return the breakpoints of this cpu
+	 */
+	public Breakpoints getBreakpoints() {
+		return breakpoints;
+	}
+
+	/**use a different set of breakpoints, so that several cpus can share the same breakpoints
+	 * (eg the ones set in the editor). Applies from the next time a program is loaded
+	 *
+	 * @param breakpoints the breakpoints to use
+	 */
+	public void setBreakpoints(Breakpoints breakpoints) {
+		this.breakpoints = breakpoints;
+	}
+
+	/**tell the instruction cache about an instruction being fetched
+	 * @param address the address of the instruction
+	 */
+	void fetchThroughCache(int address) {
+		if (instructionCache != null && !instructionCache.access(address, false, address) && timing != null) {
+			timing.missed(1);
+		}
+	}
+
 	public Clock.Status getClockState() {
 		return clock.getStatus();
 	}
@@ -149,6 +271,38 @@ public class CPU {
 		return clock.getTicks();
 	}
 
+	/**
+	 * @return how accurately the clock has kept time during the current (or last) run
+	 */
+	public Clock.Statistics getClockStatistics() {
+		return clock.getStatistics();
+	}
+
+	/**
+	 * @return the number of cycles run since the program was started, the number of instructions run
+	 * unless a timing model is being used (see setTimingModel)
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return the number of pairs of instructions which were run by a single fused handler since the
+	 * program was started, each one saved a dispatch of the headless engine
+	 */
+	public long getFusedPairs() {
+		return fusedPairs;
+	}
+
+	/**
+	 * set whether the headless engine fuses common pairs of instructions (eg lui + ori) when compiling
+	 * blocks. The results and cycle counts are the same either way. Applies to the next program loaded
+	 * @param fusion whether to fuse instructions
+	 */
+	public void setFusion(boolean fusion) {
+		this.fusion = fusion;
+	}
+
 	/**return if the simulation is currently running
 	 * 
 	 * @return if the simulation is running
@@ -260,6 +414,18 @@ public class CPU {
 		this.messageManager.registerListener(l);
 	}
 
+	/**
+	 * Register a listener to receive only the given types of message
+	 *
+	 * @param l
+	 *            the listener to send messages to
+	 * @param types
+	 *            the types of message the listener is interested in
+	 */
+	public void registerListener(SimulationListener l, MessageType... types) {
+		this.messageManager.registerListener(l, types);
+	}
+
 	/**
 	 * Unregisters a listener from the list
 	 * wrapper for method in listener, things listen to the CPU
@@ -289,22 +455,36 @@ public class CPU {
 	 *            the program received from the assembler
 	 */
 	public void loadProgram(Program program) {
-		this.program = program;
-		this.instructionRegister = null;// nothing to put in yet so null
-
-		Breakpoints.specifyProgram(program);
-
-		this.clearRegisters();// reset the registers
+		setUpProgram(program);
 
 		// setting up memory
 		Address dataSegmentStart = this.program.dataSegmentStart;
 		Address dynamicSegmentStart = this.program.dynamicSegmentStart;
 		Address stackPointer = new Address((int) DataConverter.decodeAsSigned(this.program.initialSP.getBytes()));
-        // copy the static data segment because the program's initial state should be preserved in case the cached
-		// program is run again
-		byte[] staticDataSegment = Arrays.copyOf(this.program.dataSegment, this.program.dataSegment.length);
+		// the static data segment is copied into the memory, so the program's initial state is preserved in case the
+		// cached program is run again
 		Map<Address, Statement> textSegment = this.program.textSegment;
-		this.memory = new MainMemory(textSegment, staticDataSegment, dataSegmentStart, dynamicSegmentStart, stackPointer);
+		this.memory = new MainMemory(textSegment, this.program.dataSegment, dataSegmentStart, dynamicSegmentStart, stackPointer,
+				maxHeapLength, maxStackLength);
+
+		setInitialState();
+	}
+
+	/**
+	 * set up everything which only depends on the program (not on how far through it the cpu is)
+	 *
+	 * @param program
+	 *            the program received from the assembler
+	 */
+	private void setUpProgram(Program program) {
+		this.program = program;
+		this.instructionRegister = null;// nothing to put in yet so null
+		this.pendingInstruction = false;
+		this.startCycles = 0;
+
+		breakpoints.specifyProgram(program);
+
+		this.clearRegisters();// reset the registers
 
 		labels = new HashMap<>();
 		labelMetaData = new HashMap<>();
@@ -316,32 +496,189 @@ public class CPU {
 
 		annotations = program.annotations;
 
+		predecodeTextSegment();// labels must be set up first
+		instructionCache = instructionCacheConfig == null ? null
+				: new Cache(Cache.instructionCacheName, instructionCacheConfig, textSegmentStart, this.textSegment.length);
+		dataCache = dataCacheConfig == null ? null
+				: new Cache(Cache.dataCacheName, dataCacheConfig, textSegmentStart, this.textSegment.length);
+
+		this.lastAddress = program.textSegmentLast.getValue();
+	}
+
+	/**
+	 * capture the state of the cpu so that other cpus can carry on from this point (see fork).
+	 * only the registers are copied, the memory is shared until either cpu writes to it.
+	 * if the program is paused, this waits for the simulation thread to finish the instruction or stage it was
+	 * running when it was paused, and the simulation can't carry on until the snapshot has been taken
+	 *
+	 * @return the state of the cpu
+	 * @throws IllegalStateException if no program has been loaded, or the program is running and not paused
+	 */
+	public CPUSnapshot snapshot() {
+		if (program == null) {
+			throw new IllegalStateException("no program has been loaded");
+		}
+		if (!simulating) {
+			return takeSnapshot();
+		}
+		CPUSnapshot[] snapshot = new CPUSnapshot[1];
 		try {
-			this.programCounter = getEntryPoint();// set the program counter to the entry point to the program
+			if (clock.runWhileParked(() -> snapshot[0] = takeSnapshot())) {
+				return snapshot[0];
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		throw new IllegalStateException("the program must be paused or stopped to take a snapshot");
+	}
+
+	/**
+	 * @return the state of the cpu, which mustn't change until this has returned
+	 */
+	private CPUSnapshot takeSnapshot() {
+		return new CPUSnapshot(program, registers.clone(), lo, hi, resumeAddress(), memory.copy(), cycles);
+	}
+
+	/**
+	 * @return the address of the first instruction which hasn't been executed yet, where a cpu forked from
+	 * a snapshot carries on from
+	 */
+	protected int resumeAddress() {
+		// if paused part way through a cycle, the instruction which was fetched is run again by the forked cpus
+		return pendingInstruction ? instructionRegister.address : programCounter;
+	}
+
+	/**
+	 * set up the cpu to carry on from a snapshot of another cpu (instead of loading a program)
+	 * the memory limits of the snapshot are kept, the caches and timing model of this cpu are used.
+	 * the cycle count carries on from the snapshot, the cache, timing and pipeline statistics start from the snapshot
+	 *
+	 * @param snapshot the state to carry on from
+	 */
+	public void loadSnapshot(CPUSnapshot snapshot) {
+		setUpProgram(snapshot.program);
+		this.memory = snapshot.memory.copy();
+		System.arraycopy(snapshot.registers, 0, this.registers, 0, this.registers.length);
+		this.lo = snapshot.lo;
+		this.hi = snapshot.hi;
+		this.programCounter = snapshot.programCounter;
+		this.startCycles = snapshot.cycles;
+
+		if (shouldSend(MessageType.REGISTER_CHANGED)) {
+			for (Register r : Register.values()) {
+				sendMessage(new RegisterChangedMessage(r));
+			}
+		}
+		sendMessage(new SimulationMessage(SimulationMessage.Detail.PROGRAM_LOADED));
+	}
+
+	/**
+	 * create a cpu which carries on from a snapshot, independently of the cpu the snapshot was taken from
+	 *
+	 * @param snapshot the state to carry on from
+	 * @param io the io for the new cpu to use
+	 * @param pipelined whether the new cpu should be pipelined
+	 * @return the new cpu, ready to run
+	 */
+	public static CPU fork(CPUSnapshot snapshot, IO io, boolean pipelined) {
+		CPU cpu = pipelined ? new CPUPipeline(io) : new CPU(io);
+		cpu.loadSnapshot(snapshot);
+		return cpu;
+	}
+
+	/**
+	 * put the program which is loaded back to the state it was in when it was loaded, so that it can be run again
+	 * (eg with a different input) without setting everything up again. The registers are cleared in place, only the
+	 * pages of memory which the program wrote to are restored and the decoded text segment, labels and compiled
+	 * blocks are kept. Must not be called while the program is running
+	 *
+	 * @throws IllegalStateException if no program has been loaded
+	 */
+	public void reset() {
+		if (program == null) {
+			throw new IllegalStateException("no program has been loaded");
+		}
+		this.instructionRegister = null;
+		this.pendingInstruction = false;
+		this.startCycles = 0;
+		this.clearRegisters();
+		this.lo = 0;
+		this.hi = 0;
+		memory.reset();
+		setInitialState();
+	}
+
+	/**
+	 * set the registers which the program expects to start with (the program counter, global pointer and stack pointer)
+	 * and tell the listeners that the program is ready to run
+	 */
+	private void setInitialState() {
+		try {
+			this.programCounter = getEntryPoint().getValue();// set the program counter to the entry point to the program
 		} catch (Exception e) {// if entry point load fails
 			sendMessage(new ProblemMessage(e));
 		}
 
-		this.registers[Register.gp.getID()] = this.program.initialGP;// setting global pointer
-		sendMessage(new RegisterChangedMessage(Register.gp));
-		this.registers[Register.sp.getID()] = this.program.initialSP;// setting up stack pointer
-		sendMessage(new RegisterChangedMessage(Register.gp));
-
-		this.lastAddress = program.textSegmentLast;
+		this.registers[Register.gp.getID()] = (int) DataConverter.decodeAsSigned(this.program.initialGP.getBytes());// setting global pointer
+		if (shouldSend(MessageType.REGISTER_CHANGED)) sendMessage(new RegisterChangedMessage(Register.gp));
+		this.registers[Register.sp.getID()] = (int) DataConverter.decodeAsSigned(this.program.initialSP.getBytes());// setting up stack pointer
+		if (shouldSend(MessageType.REGISTER_CHANGED)) sendMessage(new RegisterChangedMessage(Register.sp));
 
 		sendMessage(new SimulationMessage(SimulationMessage.Detail.PROGRAM_LOADED));
 	}
 
+	/**
+	 * decode every statement in the text segment so that fetching and decoding an instruction
+	 * is just an array lookup. The statement at address a is stored at index (a - textSegmentStart) / 4
+	 */
+	private void predecodeTextSegment() {
+		this.textSegmentStart = program.textSegmentStart.getValue();
+		int length = 0;
+		if (!program.textSegment.isEmpty() && program.textSegmentLast != null) {
+			length = ((program.textSegmentLast.getValue() - textSegmentStart) >> 2) + 1;
+		}
+		this.textSegment = new DecodedInstruction[length];
+		this.blocks = new BasicBlock[length];
+		this.blockCounts = new int[length];
+		for (Map.Entry<Address, Statement> s : program.textSegment.entrySet()) {
+			int offset = s.getKey().getValue() - textSegmentStart;
+			if (offset >= 0 && (offset >> 2) < length && (offset & 3) == 0) {
+				textSegment[offset >> 2] = decoder.predecode(s.getValue(), s.getKey().getValue());
+			}
+		}
+	}
+
+	/**
+	 * look up the pre-decoded statement at an address in the text segment
+	 *
+	 * @param address the address of the statement
+	 * @return the decoded statement
+	 * @throws MemoryException if there is no statement at that address
+	 */
+	private DecodedInstruction readFromTextSegment(int address) throws MemoryException {
+		int offset = address - textSegmentStart;
+		int index = offset >> 2;
+		if ((offset & 3) == 0 && index >= 0 && index < textSegment.length && textSegment[index] != null) {
+			return textSegment[index];
+		} else {
+			throw new MemoryException("Reading from invalid area of memory", new Address(address));
+		}
+	}
+
 	/**
 	 * this method resets the registers in the memory
 	 * it then initialises them to some default value
 	 */
 	private void clearRegisters() {
-		this.registers = new Word[32];
+		if (this.registers == null) {
+			this.registers = new int[32];
+		} else {
+			Arrays.fill(this.registers, 0);
+		}
 		for (int i = 0; i < this.registers.length; i++) {
-			this.registers[i] = new Word(DataConverter.encodeAsUnsigned(0));
-			sendMessage(new RegisterChangedMessage(Register.fromID(i)));// firing to visualisation
+			if (shouldSend(MessageType.REGISTER_CHANGED)) sendMessage(new RegisterChangedMessage(Register.fromID(i)));// firing to visualisation
 		}
+		clearCycleDelta();
 	}
 
 	/**
@@ -368,10 +705,24 @@ public class CPU {
 	 *
 	 */
 	protected void fetch() throws MemoryException {
-		sendMessage(new StageEnterMessage(Stage.Fetch));// signal start of stage
-		this.instructionRegister = this.memory.readFromTextSegment(this.programCounter);
-		sendMessage(new DataMovementMessage(Optional.empty(), Optional.of(this.instructionRegister)));
-		this.programCounter = new Address(this.programCounter.getValue() + 4);// incrementing the program counter
+		if (shouldSend(MessageType.STAGE_ENTER)) sendMessage(new StageEnterMessage(Stage.Fetch));// signal start of stage
+		this.instructionRegister = readFromTextSegment(this.programCounter);
+		fetchThroughCache(programCounter);
+		if (shouldSend(MessageType.DATA_MOVEMENT)) sendMessage(new DataMovementMessage(Optional.empty(), Optional.of(this.instructionRegister.statement)));
+		this.programCounter += 4;// incrementing the program counter
+	}
+
+	/**
+	 * method decodes within the cpu
+	 * the statement was decoded when the program was loaded, so this only reports decode errors
+	 *
+	 * @param instruction
+	 *            the pre-decoded instruction
+	 * @throws DecodeException
+	 *             if the statement could not be decoded
+	 */
+	protected void decode(DecodedInstruction instruction) throws DecodeException {
+		this.decoder.decode(instruction);
 	}
 
 	/**
@@ -395,10 +746,10 @@ public class CPU {
 	 * wrapper for method in Executor, gives nice inheritance layout
 	 * 
 	 * @param instruction
-	 *            instruction set up with all necessary data
+	 *            the pre-decoded instruction
 	 */
-	protected void execute(InstructionFormat instruction) throws InstructionException, ExecuteException, MemoryException, HeapException, StackException {
-		this.programCounter = this.executor.execute(instruction, this.getProgramCounter());// will set the program counter if changed
+	protected void execute(DecodedInstruction instruction) throws InstructionException, ExecuteException, MemoryException, HeapException, StackException {
+		this.programCounter = this.executor.execute(instruction, this.programCounter);// will set the program counter if changed
 	}
 
 
@@ -423,46 +774,53 @@ public class CPU {
 
 		// PC holds next instruction and is advanced by fetch,
 		// messages should be sent about this instruction instead
-		Address thisInstruction = programCounter;
+		Address thisInstruction = new Address(programCounter);
 
 		// only hit the breakpoint once, then allow progress to continue
-		if(Breakpoints.isBreakpoint(thisInstruction)) {
+		if(breakpoints.isBreakpoint(thisInstruction)) {
             pause();
 		}
 
 		fetch();
-		sendMessage(new PipelineStateMessage(thisInstruction, null, null));
+		pendingInstruction = true;
+		sendPipelineState(thisInstruction, null, null);
 
 		waitForNextTick();
 
-		InstructionFormat instruction = decode(instructionRegister.getInstruction(), instructionRegister.getOperandList());
-		sendMessage(new PipelineStateMessage(null, thisInstruction, null));
+		DecodedInstruction instruction = instructionRegister;
+		decode(instruction);
+		sendPipelineState(null, thisInstruction, null);
 
 		waitForNextTick();
 
 		execute(instruction);
-		sendMessage(new PipelineStateMessage(null, null, thisInstruction));
+		pendingInstruction = false;
+		sendPipelineState(null, null, thisInstruction);
+		int latency = timing == null ? 1 : timing.executed(instruction.instruction);
 
 		if (annotations.containsKey(thisInstruction) && this.isRunning) {
 			sendMessage(new AnnotationMessage(annotations.get(thisInstruction), thisInstruction));
 		}
 
 		waitForNextTick();
+		for (int i = 1; i < latency; i++) {// the instruction is still executing
+			waitForNextTick();
+		}
 
 
-		if (programCounter.getValue() == lastAddress.getValue()+4 && isRunning) {// if end of program reached
+		if (programCounter == lastAddress+4 && isRunning) {// if end of program reached
 			// clean exit but representing in reality an error would be thrown
 			sendMessage(new ProblemMessage(
 					new MemoryException(
 							"Program tried to execute a program outside the text segment.\n" +
 							"  This could be because you forgot to exit cleanly.\n" +
-							"  To exit cleanly please call syscall with code 10.\n", programCounter)));
+							"  To exit cleanly please call syscall with code 10.\n", new Address(programCounter))));
 			stopRunning();
 			return;
 		}
 
 
-		cycles++;
+		cycles += latency;
 		if(breakAfterCycle) {
 			pause();
 		}
@@ -473,9 +831,25 @@ public class CPU {
 	 *
 	 */
 	public void runProgram() {
+		simulating = true;
+		try {
+			simulate();
+		} finally {
+			simulating = false;
+		}
+	}
+
+	/**
+	 * run the program (see runProgram)
+	 */
+	private void simulate() {
 		isRunning = true;
 		breakAfterCycle = false;
-		cycles = 0;
+		cycles = startCycles;
+		fusedPairs = 0;
+		if (instructionCache != null) instructionCache.reset();
+		if (dataCache != null) dataCache.reset();
+		if (timing != null) timing.reset();
 
 		messageManager.waitForAll();
 
@@ -497,22 +871,26 @@ public class CPU {
 
 		clock.start(); // restart the clock (was just started above) to correctly time the first tick
 
-		while (isRunning) {
-			//long cycleStart = System.nanoTime();
-
-			try {
-				this.runSingleCycle();// run one loop of Fetch,Decode,Execute
-			} catch(EndedException ignored) {
-			} catch (MemoryException | DecodeException | InstructionException
-					| ExecuteException | HeapException | StackException e) {
-				sendMessage(new ProblemMessage(e));
-				stopRunning();
+		if (canRunHeadless()) {
+			runHeadless();
+		} else {
+			while (isRunning) {
+				//long cycleStart = System.nanoTime();
+
+				try {
+					this.runSingleCycle();// run one loop of Fetch,Decode,Execute
+				} catch(EndedException ignored) {
+				} catch (MemoryException | DecodeException | InstructionException
+						| ExecuteException | HeapException | StackException e) {
+					sendMessage(new ProblemMessage(e));
+					stopRunning();
+				}
+
+				// doesn't have to be done every tick or anything, just enough not to starve
+				waitForFX(100/*ms between waiting*/);
+
+				//long cycleDuration = System.nanoTime() - cycleStart;
 			}
-
-			// doesn't have to be done every tick or anything, just enough not to starve
-			waitForFX(100/*ms between waiting*/);
-
-			//long cycleDuration = System.nanoTime() - cycleStart;
 		}
 
 		// clean up
@@ -525,43 +903,279 @@ public class CPU {
 		sendMessage(new SimulationMessage(SimulationMessage.Detail.SIMULATION_STOPPED));
 	}
 
+	/**
+	 * whether a message of the given type should be constructed and sent, messages which
+	 * no listener has subscribed to are never created
+	 *
+	 * @param type
+	 *            the type of the message
+	 * @return whether a listener is interested in the message
+	 */
+	boolean shouldSend(MessageType type) {
+		return cycleMessages && messageManager.isListening(type);
+	}
+
+	/**
+	 * whether the program can be run by the headless engine rather than one cycle at a time
+	 * this is the case when there is no GUI, the clock is set to run as fast as possible and
+	 * none of the listeners need the messages sent during each cycle, and there are no breakpoints
+	 *
+	 * @return whether runHeadless can be used
+	 */
+	protected boolean canRunHeadless() {
+		return !Simulizer.hasGUI() && clock.isMaxSpeed()
+				&& !messageManager.hasCycleListeners() && breakpoints.isEmpty();
+	}
+
+	/**
+	 * run the program in a tight fetch/execute loop without the clock, without waiting for
+	 * listeners and without sending the messages for each stage of the cycle.
+	 * Only annotations and problems are sent to the listeners, and each annotation is processed
+	 * before the next instruction runs. Breakpoints aren't checked, so a program with breakpoints
+	 * is never run headless (see canRunHeadless), but a break instruction still pauses the simulation.
+	 * Once the start of a block of instructions has been reached often enough, the block is compiled
+	 * (see BasicBlock) and run as a whole from then on
+	 */
+	private void runHeadless() {
+		cycleMessages = false;
+		boolean blockStart = true;// whether the next instruction could start a block
+		try {
+			while (isRunning) {
+				int thisInstruction = programCounter;
+				try {
+					if (clock.getStatus() != Clock.Status.RUNNING) {
+						waitForNextTick(); // paused by a break instruction or stopped
+					}
+
+					if (blockStart) {
+						BasicBlock block = findBlock(thisInstruction);
+						if (block != null) {
+							programCounter = block.run(this);
+							checkEndOfProgram();
+							continue;
+						}
+					}
+
+					DecodedInstruction instruction = readFromTextSegment(thisInstruction);
+					fetchThroughCache(thisInstruction);
+					programCounter += 4;
+					if (instruction.error != null) {
+						throw instruction.error;
+					}
+					execute(instruction);
+					blockStart = programCounter != thisInstruction + 4 || BasicBlock.endsBlock(instruction);
+
+					if (!annotations.isEmpty() && isRunning) {
+						Address address = new Address(thisInstruction);
+						Annotation annotation = annotations.get(address);
+						if (annotation != null) {
+							sendMessage(new AnnotationMessage(annotation, address));
+							messageManager.waitForAll();
+							blockStart = true;
+						}
+					}
+
+					if (checkEndOfProgram()) {
+						return;
+					}
+
+					cycles += timing == null ? 1 : timing.executed(instruction.instruction);
+				} catch (EndedException ignored) {
+				} catch (MemoryException | DecodeException | InstructionException
+						| ExecuteException | HeapException | StackException e) {
+					sendMessage(new ProblemMessage(e));
+					stopRunning();
+				}
+			}
+		} finally {
+			cycleMessages = true;
+		}
+	}
+
+	/**
+	 * count another visit to the start of a block, and compile the block once it is hot
+	 * @param address the address of an instruction which starts a block
+	 * @return the compiled block starting at the address (null if it isn't compiled)
+	 */
+	private BasicBlock findBlock(int address) {
+		int offset = address - textSegmentStart;
+		int index = offset >> 2;
+		if ((offset & 3) != 0 || index < 0 || index >= blocks.length) {
+			return null;
+		}
+		BasicBlock block = blocks[index];
+		if (block == null && ++blockCounts[index] == BasicBlock.compileThreshold) {
+			block = BasicBlock.compile(this, textSegment, textSegmentStart, index);
+			blocks[index] = block;
+		}
+		return block;
+	}
+
+	/**
+	 * stop the simulation with a problem if the program counter has run off the end of the text segment
+	 * @return whether the end of the program was reached
+	 */
+	private boolean checkEndOfProgram() {
+		if (programCounter == lastAddress + 4 && isRunning) {// if end of program reached
+			sendMessage(new ProblemMessage(
+					new MemoryException(
+							"Program tried to execute a program outside the text segment.\n" +
+							"  This could be because you forgot to exit cleanly.\n" +
+							"  To exit cleanly please call syscall with code 10.\n", new Address(programCounter))));
+			stopRunning();
+			return true;
+		}
+		return false;
+	}
+
 	// Standard get methods, don't do anything special
 
 	/**
-     * only use this method with the simulation bridge.
+	 * only use this method with the simulation bridge.
+	 * builds a snapshot of the register file, changes to the returned words are not reflected in the CPU
 	 */
 	public Word[] getRegisters() {
-		return registers;
+		Word[] words = new Word[registers.length];
+		for (int i = 0; i < registers.length; i++) {
+			words[i] = toWord(registers[i]);
+		}
+		return words;
 	}
+
+	/**
+	 * compatibility view for the UI and annotations, the simulation itself should use getRegisterValue
+	 */
 	public Word getRegister(Register r) {
-		return registers[r.getID()];
+		return toWord(registers[r.getID()]);
 	}
+	/**
+	 * compatibility view for the UI and annotations, the simulation itself should use setRegisterValue
+	 */
 	public void setRegister(Register r, Word w) {
-		registers[r.getID()] = w;
+		registers[r.getID()] = toInt(w);
+		changedRegisters |= 1 << r.getID();
+	}
+
+	/**
+	 * @param r the register to read
+	 * @return the contents of the register as a 32 bit (signed) integer
+	 */
+	public int getRegisterValue(Register r) {
+		return registers[r.getID()];
+	}
+	/**
+	 * @param id the ID of the register to read (see Register.getID())
+	 * @return the contents of the register as a 32 bit (signed) integer
+	 */
+	public int getRegisterValue(int id) {
+		return registers[id];
+	}
+	public void setRegisterValue(Register r, int value) {
+		registers[r.getID()] = value;
+		changedRegisters |= 1 << r.getID();
+	}
+	public void setRegisterValue(int id, int value) {
+		registers[id] = value;
+		changedRegisters |= 1 << id;
 	}
 
 	public MainMemory getMainMemory() {
 		return memory;
 	}
 
+	/**
+	 * @return the address of the next instruction to fetch (null if no program has been loaded)
+	 */
 	public Address getProgramCounter() {
+		return program == null ? null : new Address(programCounter);
+	}
+	public int getProgramCounterValue() {
 		return programCounter;
 	}
 	
 	public Word getLo() {
-		return this.lo;
+		return toWord(this.lo);
 	}
 	
 	public Word getHi() {
-		return this.hi;
+		return toWord(this.hi);
 	}
 	
 	public void setLo(Word lo) {
-		this.lo = lo;
+		this.lo = toInt(lo);
+		loChanged = true;
 	}
 	
 	public void setHi(Word hi) {
+		this.hi = toInt(hi);
+		hiChanged = true;
+	}
+
+	public int getLoValue() {
+		return lo;
+	}
+
+	public int getHiValue() {
+		return hi;
+	}
+
+	public void setLoValue(int lo) {
+		this.lo = lo;
+		loChanged = true;
+	}
+
+	public void setHiValue(int hi) {
 		this.hi = hi;
+		hiChanged = true;
+	}
+
+	/**records that memory has been written to, so that it can be included in the next cycle delta
+	 * @param address the first address written to
+	 * @param length the number of bytes written
+	 */
+	void memoryWritten(int address, int length) {
+		if (memoryWriteEnd == memoryWriteStart) {
+			memoryWriteStart = address;
+			memoryWriteEnd = address + length;
+		} else {
+			memoryWriteStart = Math.min(memoryWriteStart, address);
+			memoryWriteEnd = Math.max(memoryWriteEnd, address + length);
+		}
+	}
+
+	/**sends the state of the pipeline at the end of a tick, along with a summary of what changed
+	 * during the tick for the listeners which want a cycle delta instead of the individual messages
+	 * @param fetched the address of the instruction just fetched
+	 * @param decoded the address of the instruction just decoded
+	 * @param executed the address of the instruction just executed
+	 */
+	void sendPipelineState(Address fetched, Address decoded, Address executed) {
+		if (shouldSend(MessageType.PIPELINE_STATE)) sendMessage(new PipelineStateMessage(fetched, decoded, executed));
+		if (shouldSend(MessageType.CYCLE_DELTA)) {
+			sendMessage(new CycleDeltaMessage(changedRegisters, hiChanged, loChanged, memoryWriteStart, memoryWriteEnd,
+					cycleHazard, cycleMispredicted, fetched, decoded, executed));
+		}
+		clearCycleDelta();
+	}
+
+	/**forget the changes recorded since the last cycle delta
+	 */
+	private void clearCycleDelta() {
+		changedRegisters = 0;
+		hiChanged = false;
+		loChanged = false;
+		memoryWriteStart = 0;
+		memoryWriteEnd = 0;
+		cycleHazard = null;
+		cycleMispredicted = false;
+	}
+
+	private static Word toWord(int value) {
+		return new Word(DataConverter.encodeAsSigned(value));
+	}
+
+	private static int toInt(Word w) {
+		return (int) DataConverter.decodeAsSigned(w.getBytes());
 	}
 
 	public IO getIO() {
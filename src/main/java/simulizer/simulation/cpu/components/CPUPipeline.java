@@ -1,16 +1,14 @@
 package simulizer.simulation.cpu.components;
 
 import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
 import simulizer.assembler.representation.Address;
 import simulizer.assembler.representation.Instruction;
-import simulizer.assembler.representation.Register;
 import simulizer.assembler.representation.Statement;
-import simulizer.assembler.representation.operand.OperandFormat;
 import simulizer.simulation.cpu.user_interaction.IO;
-import simulizer.simulation.data.representation.DataConverter;
-import simulizer.simulation.data.representation.Word;
 import simulizer.simulation.exceptions.*;
 import simulizer.simulation.instructions.*;
 import simulizer.simulation.messages.*;
@@ -20,14 +18,24 @@ import simulizer.simulation.messages.PipelineHazardMessage.Hazard;
  * the difference is that the order of execution follows a very 
  * primitive pipeline. The features of this pipeline are as follows:
  * if in the decode, we find we need to read a register being written to in execute
- * then we will stall the pipeline for one cycle
- * if a successful branch is executed, the pipeline will be flushed
+ * then we will stall the pipeline for one cycle (found by comparing the register masks of the
+ * two instructions, see DecodedInstruction)
+ * conditional branches are predicted when they are fetched (see BranchPredictor), if a branch is predicted
+ * to be taken then the instructions after it are fetched from the target. If the prediction was wrong, or the
+ * instruction is a jump, the pipeline will be flushed once it has been executed
+ * optionally, results can be forwarded from the end of execute straight to the next instruction (EX->EX)
+ * for arithmetic, and from the memory access of a load (MEM->EX), so that the read after write hazard doesn't stall.
+ * There isn't a separate memory stage, loads access memory during execute, so without MEM->EX forwarding
+ * the instruction after a load has to wait for it
+ * if a timing model is being used (see CPU.setTimingModel), an instruction which takes more than one cycle
+ * (eg a multiply or divide, or a cache miss) keeps the execute stage busy and the whole pipeline stalls
+ * until it has finished, these are counted as structural hazards
  * @author Charlie Street
  */
 public class CPUPipeline extends CPU {
 
-	private Statement IF;//used for storing between fetch and decode
-	private InstructionFormat ID;//user for storing between decode and execute
+	private DecodedInstruction IF;//used for storing between fetch and decode
+	private DecodedInstruction ID;//user for storing between decode and execute
 	private boolean canFetch;//useful for pipeline stalling
 	/**
 	 * used to trigger the end of the program
@@ -38,8 +46,24 @@ public class CPUPipeline extends CPU {
 	 * once set to 1, each cycle the counter increases and at 3, the CPU terminates
 	 */
 	private int isFinished;//used for testing end of program
-	private int nopCount;//used to check for pipeline hazards when sending messages
-	private boolean rawOccured;//used to check if a raw hazard has just occured
+	private DecodedInstruction waiting;//fetched but not yet in IF because the pipeline stalled (or a bubble)
+	// whether the instruction in each stage was predicted to be a taken branch (so the instructions behind it are from the target)
+	private boolean IFPredictedTaken;
+	private boolean IDPredictedTaken;
+	private boolean waitingPredictedTaken;
+	private BranchPredictor predictor;
+	private int executeBusy;//the number of cycles the instruction in execute still needs
+	private DecodedInstruction busy;//the instruction in execute while it is busy
+	private static final DecodedInstruction bubble = createNopInstruction();//shared by every empty stage
+
+	private boolean forwardExToEx;//whether arithmetic results are forwarded to the next instruction
+	private boolean forwardMemToEx;//whether loaded values are forwarded to the next instruction
+
+	// the effect of the hazards on the pipeline, updated by the simulation thread and copied by getStatistics
+	private final Map<Hazard, PipelineStatistics.Counts> hazardCounts = new EnumMap<>(Hazard.class);
+	private PipelineStatistics.Counts[] instructionCounts;//indexed like the text segment (null if no hazards)
+	private int instructionCountsStart;//the address of the instruction counted by instructionCounts[0]
+	private long instructionsExecuted;
 	
 	/**constructor calls the super constructor
 	 * as well as initialising the new pipeline related fields
@@ -47,13 +71,87 @@ public class CPUPipeline extends CPU {
 	 */
 	public CPUPipeline(IO io) {
 		super(io);
-		this.IF = createNopStatement();
-		this.ID = createNopInstruction();
+		this.IF = bubble;
+		this.ID = bubble;
 		this.canFetch = true;
 		this.isFinished = 0;
-		this.nopCount = 2;//initially 2
-		this.rawOccured = false;//initially false
-		
+		this.waiting = bubble;
+		this.predictor = BranchPredictor.Kind.NOT_TAKEN.create();
+		this.forwardExToEx = false;
+		this.forwardMemToEx = false;
+		resetStatistics();
+	}
+
+	/**choose which forwarding paths the pipeline has, applies from the next cycle
+	 * @param exToEx whether the result of an arithmetic instruction can be used by the instruction straight after it
+	 * @param memToEx whether the value read by a load can be used by the instruction straight after it
+	 */
+	public void setForwarding(boolean exToEx, boolean memToEx) {
+		this.forwardExToEx = exToEx;
+		this.forwardMemToEx = memToEx;
+	}
+
+	/**choose how conditional branches are predicted, applies from the next time a program is run
+	 * @param kind the kind of branch predictor
+	 */
+	public void setBranchPredictor(BranchPredictor.Kind kind) {
+		this.predictor = kind.create();
+	}
+
+	/**
+	 * @return the number of stalls, flushes, bubbles, forwarded values and branch predictions since the program was started
+	 */
+	public PipelineStatistics getStatistics() {
+		Map<Hazard, PipelineStatistics.Counts> byHazard = new EnumMap<>(Hazard.class);
+		for (Map.Entry<Hazard, PipelineStatistics.Counts> e : hazardCounts.entrySet()) {
+			byHazard.put(e.getKey(), new PipelineStatistics.Counts(e.getValue()));
+		}
+		PipelineStatistics.Counts[] counts = instructionCounts;
+		Map<Integer, PipelineStatistics.Counts> byAddress = new HashMap<>();
+		for (int i = 0; i < counts.length; i++) {
+			PipelineStatistics.Counts c = counts[i];
+			if (c != null) {
+				byAddress.put(instructionCountsStart + 4 * i, new PipelineStatistics.Counts(c));
+			}
+		}
+		return new PipelineStatistics(predictor.getKind(), cycles, instructionsExecuted, byHazard, byAddress, getProgram());
+	}
+
+	/**clear the counts of the hazards
+	 */
+	private void resetStatistics() {
+		hazardCounts.put(Hazard.RAW, new PipelineStatistics.Counts());
+		hazardCounts.put(Hazard.CONTROL, new PipelineStatistics.Counts());
+		hazardCounts.put(Hazard.STRUCTURAL, new PipelineStatistics.Counts());
+		instructionCounts = new PipelineStatistics.Counts[textSegment == null ? 0 : textSegment.length];
+		instructionCountsStart = textSegmentStart;
+		instructionsExecuted = 0;
+	}
+
+	/**
+	 * @param instruction the instruction which caused a hazard
+	 * @return the counts to add to for the instruction
+	 */
+	private PipelineStatistics.Counts instructionCounts(DecodedInstruction instruction) {
+		int index = (instruction.address - instructionCountsStart) >> 2;
+		PipelineStatistics.Counts c = instructionCounts[index];
+		if (c == null) {
+			c = new PipelineStatistics.Counts();
+			instructionCounts[index] = c;
+		}
+		return c;
+	}
+
+	/**
+	 * @param producer the instruction writing to a register which the next instruction reads
+	 * @return whether the register can be forwarded to the next instruction rather than stalling
+	 */
+	private boolean canForward(DecodedInstruction producer) {
+		if(producer.mode == AddressMode.SPECIAL) {//syscall results aren't ready until the syscall has finished
+			return false;
+		}
+		boolean load = producer.mode == AddressMode.LSTYPE && producer.hasAddress && producer.instruction != Instruction.la;
+		return load ? forwardMemToEx : forwardExToEx;
 	}
 
 	/**override the setCycleFreq method in CPU
@@ -75,126 +173,37 @@ public class CPUPipeline extends CPU {
 		return clock.getTickFrequency();
 	}
 
-	/**method will go through a statement and extract the registers
-	 * that will be read by this instruction
-	 * @param statement the statement to be decoded and then executed
-	 * @return the list of registers to be read
-	 */
-	private List<Register> registersRead(Statement statement) {
-		ArrayList<Register> registers = new ArrayList<>();
-		
-		//now to get all registers read out from the statement
-		OperandFormat opForm = statement.getInstruction().getOperandFormat();
-		boolean readZero = opForm.equals(OperandFormat.register) || opForm.equals(OperandFormat.srcAddr) ||
-						   opForm.equals(OperandFormat.cmpCmpLabel) || opForm.equals(OperandFormat.cmpLabel);
-		
-		boolean readOne = opForm.equals(OperandFormat.destSrc) || opForm.equals(OperandFormat.destSrcImm) ||
-						  opForm.equals(OperandFormat.destSrcSrc) || opForm.equals(OperandFormat.cmpCmpLabel);
-		
-		boolean readTwo = opForm.equals(OperandFormat.destSrcSrc);
-		
-		boolean readRegAddress = opForm.equals(OperandFormat.destAddr) || opForm.equals(OperandFormat.srcAddr);
-		
-		
-		if(readZero) {//formats with a read in first operand
-			registers.add(statement.getOperandList().get(0).asRegisterOp().value);
-		}
-		if(readOne) {//formats with a read in second operand
-			registers.add(statement.getOperandList().get(1).asRegisterOp().value);
-		}
-		if(readTwo) {//formats with a read in third operand
-			registers.add(statement.getOperandList().get(2).asRegisterOp().value);
-		}
-		
-		if(readRegAddress) {//formats with an address represented as a base and offset
-			if(!statement.getOperandList().get(1).asAddressOp().labelOnly()) {//if base and offset 
-				registers.add(statement.getOperandList().get(1).asAddressOp().register.get());
-			}
-		}
-		return registers;
-	}
-	
-	
-	/**method will look at the instruction being executed and retrieving the names
-	 * of all instructions being written
-	 * for most of our current instructions, only a single register will be returned
-	 * however there may be a case with complicated instructions, multiple could be written
-	 * and so the return type is as it is
-	 * @param instruction the instruction being checked
-	 * @return the registers being written to due to this instruction
-	 */
-	private List<Register> registersBeingWritten(InstructionFormat instruction) {
-		ArrayList<Register> registers = new ArrayList<>();
-		switch(instruction.mode) {
-			case RTYPE://all rtype instructions have a destination register
-				Register destRegR = instruction.asRType().getDestReg();
-				if(destRegR != null) {//instructions using lo and hi set the dest register to null hence this check
-					registers.add(destRegR);
-				}
-				break;
-			case JTYPE://jal will write to the return address register
-				if(instruction.getInstruction().equals(Instruction.jal)
-						|| instruction.getInstruction().equals(Instruction.jalr))
-				{
-					registers.add(Register.ra);
-				}
-				break;
-			case LSTYPE://load instructions write to registers
-				Optional<Register> dest = instruction.asLSType().getRegisterName();
-				if(dest.isPresent()) {
-					registers.add(dest.get());
-				}
-				break;
-			case SPECIAL:
-				if(instruction.getInstruction().equals(Instruction.syscall)) {
-					long syscallCode = DataConverter.decodeAsSigned(getRegister(Register.v0).getBytes());
-					if(syscallCode == 5||syscallCode==8||syscallCode==9||syscallCode==12) {//these syscall codes write to v0
-						registers.add(Register.v0);
-					}
-				}
-				break;
-			default:
-				break;
-		}
-		
-		return registers;
-	}
-	
-	
-	/**method will take the registers being read and the registers being written
-	 * and determine whether or not any stalling needs to be done in the pipeline
-	 * @param <A> the type of list being read, need multiple times so generics is appropriate
-	 * @param reads the registers being read
-	 * @param writes the registers being written
-	 * @return whether or not there is a crossover between the two lists
-	 */
-	private <A> boolean needToBubble(List<A> reads, List<A> writes) {
-		for (A write : writes) {
-			for (A read : reads) {
-				if (write != null && write.equals(read)) {
-					return true;
-				}
-			}
-		}
-		return false;
-	}
-	
 	/**creates a dummy nop statement for the pipeline bubbling
 	 * 
 	 * @return the dummy nop statement
 	 */
-	private Statement createNopStatement() {
+	private static Statement createNopStatement() {
 		return new Statement(Instruction.nop,new ArrayList<>(),-1);
 	}
 	
-	/**method will create a dummy nop instruction for the ID register
+	/**method will create a dummy nop instruction for the pipeline registers
 	 * when using bubbling
 	 * @return the dummy nop instruction
 	 */
-	private SpecialInstruction createNopInstruction() {
-		return new SpecialInstruction(Instruction.nop);
+	private static DecodedInstruction createNopInstruction() {
+		return new DecodedInstruction(createNopStatement(), -1, AddressMode.SPECIAL, null, null, null, null, false, 0, null);
 	}
 	
+	/**guess whether the instruction just fetched will jump, and if so carry on fetching from the target
+	 * only conditional branches with a fixed target are predicted, jumps always flush the pipeline
+	 * @param instruction the instruction just fetched
+	 * @return whether the instruction was predicted to be a taken branch
+	 */
+	private boolean predict(DecodedInstruction instruction) {
+		if(instruction.mode != AddressMode.ITYPE || instruction.addressRegister != null
+				|| !predictor.predict(instruction.address, instruction.addressOffset)) {
+			return false;
+		}
+		programCounter = instruction.addressOffset;
+		isFinished = 0;//the branch may be the last instruction
+		return true;
+	}
+
 	/**method will overwrite the method in the CPU class for running a cycle
 	 * this method will mimic a primitive pipeline instead of a sequential execution
 	 */
@@ -202,17 +211,31 @@ public class CPUPipeline extends CPU {
 	protected void runSingleCycle() throws MemoryException, DecodeException, InstructionException,
 			ExecuteException, HeapException, StackException, EndedException {
 
-		Address fetchAddress   = programCounter;
-		Address decodeAddress  = new Address(programCounter.getValue()-4);
-		Address executeAddress = new Address(programCounter.getValue()-8);
-
-		// only hit the breakpoint once, then allow progress to continue
-		if(Breakpoints.isBreakpoint(fetchAddress)) {
-			pause();
+		if(executeBusy > 0) {//a multi-cycle instruction is still executing, nothing else can move
+			executeBusy--;
+			if (shouldSend(MessageType.PIPELINE_HAZARD)) sendMessage(new PipelineHazardMessage(Hazard.STRUCTURAL));
+			cycleHazard = Hazard.STRUCTURAL;
+			hazardCounts.get(Hazard.STRUCTURAL).stalls++;
+			instructionCounts(busy).stalls++;
+			sendPipelineState(IF == bubble ? null : new Address(IF.address), ID == bubble ? null : new Address(ID.address), new Address(busy.address));
+			waitForNextTick();
+			cycles++;
+			if(breakAfterCycle) {
+				pause();
+			}
+			return;
 		}
 
+		Address fetchAddress = new Address(programCounter);
+
+		boolean fetched = false;
 		if(canFetch && isFinished==0) {
+			// only hit the breakpoint once (when the instruction is fetched, not again if the pipeline stalls), then allow progress to continue
+			if(getBreakpoints().isBreakpoint(fetchAddress)) {
+				pause();
+			}
 			fetch();
+			fetched = true;
 		} else if (!canFetch) {
 			canFetch = true;
 		} else if(isFinished == 1 || isFinished == 2) {//getting closer to termination
@@ -228,69 +251,107 @@ public class CPUPipeline extends CPU {
 			return;
 		}
 		
-		if(fetchAddress.getValue() == lastAddress.getValue() && isFinished == 0) {//if end of program reached
-			isFinished = 1;//stop fetching essentially and begin to terminate program
-        }
+		if(fetched) {//waits here if the pipeline stalls this cycle
+			if(fetchAddress.getValue() == lastAddress) {//if end of program reached
+				isFinished = 1;//stop fetching essentially and begin to terminate program
+			}
+			waiting = instructionRegister;
+			waitingPredictedTaken = predict(waiting);
+		}
 		
-		boolean needToBubbleRAWReg = needToBubble(registersRead(IF), registersBeingWritten(ID));//detecting pipeline hazards
+		boolean needToBubbleRAWReg = false;
+		if((IF.readMask & ID.writeMask) != 0) {//detecting pipeline hazards
+			if(canForward(ID)) {
+				hazardCounts.get(Hazard.RAW).forwarded++;
+				instructionCounts(IF).forwarded++;
+			} else {
+				needToBubbleRAWReg = true;
+				PipelineStatistics.Counts h = hazardCounts.get(Hazard.RAW), i = instructionCounts(IF);
+				h.stalls++; h.bubbles++;
+				i.stalls++; i.bubbles++;
+			}
+		}
 		
-		InstructionFormat oldIDToExecute = ID;//storing old value of ID before overwritten, this is what I should be executing
+		DecodedInstruction oldIDToExecute = ID;//storing old value of ID before overwritten, this is what I should be executing
+		boolean executePredictedTaken = IDPredictedTaken;
 		if (needToBubbleRAWReg) { //if we need to stall to prevent incorrect reads
-			sendMessage(new PipelineHazardMessage(Hazard.RAW));
-			Statement nopBubble = createNopStatement();
-			ID = decode(nopBubble.getInstruction(),nopBubble.getOperandList());
+			if (shouldSend(MessageType.PIPELINE_HAZARD)) sendMessage(new PipelineHazardMessage(Hazard.RAW));
+			cycleHazard = Hazard.RAW;
+			ID = bubble;
+			IDPredictedTaken = false;
+			decode(ID);
 			this.canFetch = false;
 		} else {
-			ID = decode(IF.getInstruction(), IF.getOperandList());
-			IF = instructionRegister;//updating IF
+			decode(IF);
+			ID = IF;
+			IDPredictedTaken = IFPredictedTaken;
+			IF = waiting;//updating IF
+			IFPredictedTaken = waitingPredictedTaken;
+			waiting = bubble;
+			waitingPredictedTaken = false;
 		}
+
+		// the state of the pipeline during this cycle, before anything is flushed
+		Address fetchedAddress = IF == bubble ? null : new Address(IF.address);
+		Address decodedAddress = ID == bubble ? null : new Address(ID.address);
+		Address executedAddress = oldIDToExecute == bubble ? null : new Address(oldIDToExecute.address);
 		
+		if(oldIDToExecute != bubble) {
+			instructionsExecuted++;
+		}
+		int nextFetch = programCounter;
 		execute(oldIDToExecute);
-	    
-		//jumped checks if either an unconditional jump is made or, a branch returning true
-		boolean jumped = oldIDToExecute.mode.equals(AddressMode.JTYPE) ||
-				(oldIDToExecute.mode.equals(AddressMode.ITYPE) && ALU.branchFlag);
-		
-		if(jumped) {//flush pipeline and allow continuation of running
-			sendMessage(new PipelineHazardMessage(Hazard.CONTROL));
-			this.isFinished = 0;//considering edge case where jump on last instruction
-			this.isRunning = true;//keep the program running
-			IF = createNopStatement();
-			ID = createNopInstruction();
+		if(timing != null && oldIDToExecute != bubble) {
+			executeBusy = timing.executed(oldIDToExecute.instruction) - 1;
+			busy = oldIDToExecute;
 		}
 
-		if(annotations.containsKey(executeAddress) && nopCount==0 && this.isRunning) {//checking for annotations (not when a fake nop is executed)
-			sendMessage(new AnnotationMessage(annotations.get(executeAddress), executeAddress));
-		}
-		
-		//Dealing with pipeline state messages
-		if(needToBubbleRAWReg) {//got bubbling slightly wrong with RAW, need to add this to fix
-			decodeAddress = null;
-			this.rawOccured = true;//need to treat raws differently to jump flushes
-			fetchAddress = new Address(fetchAddress.getValue()-4);
+		//jumped checks if either an unconditional jump is made or, a branch went the other way to the prediction
+		boolean jumped = oldIDToExecute.mode == AddressMode.JTYPE;
+		boolean fellPastEnd = false;//a branch at the end of the program was wrongly predicted to be taken
+		if(oldIDToExecute.mode == AddressMode.ITYPE) {
+			predictor.update(oldIDToExecute.address, branchTaken);
+			PipelineStatistics.Counts h = hazardCounts.get(Hazard.CONTROL), i = instructionCounts(oldIDToExecute);
+			h.predictions++;
+			i.predictions++;
+			if(branchTaken) {
+				h.taken++;
+				i.taken++;
+			}
+			if(branchTaken != executePredictedTaken) {
+				h.mispredictions++;
+				i.mispredictions++;
+				cycleMispredicted = true;
+				jumped = true;
+				if(!branchTaken) {//go back to the instruction after the branch
+					programCounter = oldIDToExecute.nextAddress();
+				}
+				fellPastEnd = !branchTaken && oldIDToExecute.address == lastAddress;
+			} else {
+				programCounter = nextFetch;//already fetching from the right place
+			}
 		}
 		
-		if(nopCount == 2) {
-			decodeAddress = null;
-		} 
-		if(nopCount >= 1) {
-			executeAddress = null;
-			if(rawOccured) {//need to do some additional stuff if a raw has previously occurred
-				fetchAddress = new Address(fetchAddress.getValue()-4);
-				decodeAddress = new Address(fetchAddress.getValue()-4);
-				rawOccured = false;
-			}
+		if(jumped) {//flush pipeline and allow continuation of running
+			if (shouldSend(MessageType.PIPELINE_HAZARD)) sendMessage(new PipelineHazardMessage(Hazard.CONTROL));
+			cycleHazard = Hazard.CONTROL;
+			PipelineStatistics.Counts h = hazardCounts.get(Hazard.CONTROL), i = instructionCounts(oldIDToExecute);
+			h.flushes++; h.bubbles += 2;//the instructions in fetch and decode are thrown away
+			i.flushes++; i.bubbles += 2;
+			this.isFinished = fellPastEnd ? 1 : 0;//considering edge case where jump on last instruction
+			this.isRunning = true;//keep the program running
+			IF = bubble;
+			ID = bubble;
+			waiting = bubble;
+			IFPredictedTaken = IDPredictedTaken = waitingPredictedTaken = false;
+			canFetch = true;
 		}
-		sendMessage(new PipelineStateMessage(fetchAddress, decodeAddress, executeAddress));
 
-		// decrement until 0 but no further
-		nopCount = (nopCount <= 0) ? 0 : nopCount-1;
-		
-		if(needToBubbleRAWReg) {//if raw hazard has happened in this cycle
-			nopCount = 1;
-		} else if(jumped) {//if jump occurred in this cycle
-			nopCount = 2;
+		if(executedAddress != null && this.isRunning && annotations.containsKey(executedAddress)) {//checking for annotations (not when a fake nop is executed)
+			sendMessage(new AnnotationMessage(annotations.get(executedAddress), executedAddress));
 		}
+		
+		sendPipelineState(fetchedAddress, decodedAddress, executedAddress);
 
 		waitForNextTick();
 
@@ -308,30 +369,39 @@ public class CPUPipeline extends CPU {
 	{
 		this.canFetch = true;//resetting fields for new program
 		this.isFinished = 0;
-		this.nopCount = 2;//decode and execute bubbled initially
-		this.rawOccured = false;
-		this.IF = createNopStatement();
-		this.ID = createNopInstruction();
+		this.executeBusy = 0;
+		this.busy = null;
+		resetStatistics();
+		this.IF = bubble;
+		this.ID = bubble;
+		this.waiting = bubble;
+		this.IFPredictedTaken = this.IDPredictedTaken = this.waitingPredictedTaken = false;
+		this.predictor = predictor.getKind().create();//forget what was learnt from the last run
 		super.runProgram();//calling original run program
 	}
 
-	/**overwriting instruction for pipeline due to problem with jal instruction getting incorrect program counter value
-	 *
+	/**the instructions part way through the pipeline haven't changed anything yet, so a snapshot is taken
+	 * from the oldest of them (as if the pipeline had been flushed), and the forked cpus fetch them again
 	 */
 	@Override
-	protected void execute(InstructionFormat instruction) throws InstructionException, ExecuteException, MemoryException, HeapException, StackException {
-		if(instruction.getInstruction().equals(Instruction.jal)
-				|| instruction.getInstruction().equals(Instruction.jalr)) {//jal by default will take incorrect PC value, this needs to be dealt with
-			// regardless of whether a register or address is passed: will decode into a JType instruction
-            long newCurrentAddress = DataConverter.decodeAsUnsigned(instruction.asJType().getCurrentAddress().get().getBytes()) - 4;
-            Optional<Word> trueCurrent = Optional.of(new Word(DataConverter.encodeAsUnsigned(newCurrentAddress)));
-            instruction = new JTypeInstruction(instruction.getInstruction(),instruction.asJType().getJumpAddress(),trueCurrent);
+	protected int resumeAddress() {
+		// ID is executed next, then IF, then the instruction which was fetched while the pipeline stalled
+		for (DecodedInstruction stage : new DecodedInstruction[]{ID, IF, waiting}) {
+			if (stage != bubble) {
+				return stage.address;
+			}
 		}
-		
-		super.execute(instruction);
+		return programCounter;
+	}
+
+	/**the pipeline is modelled cycle by cycle, so is never run headless
+	 *
+	 */
+	@Override
+	protected boolean canRunHeadless() {
+		return false;
 	}
 
-	
 	/**override isPipelined in CPU
 	 * 
 	 */
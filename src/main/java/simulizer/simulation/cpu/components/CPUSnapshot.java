@@ -0,0 +1,51 @@
+package simulizer.simulation.cpu.components;
+
+import simulizer.assembler.representation.Program;
+
+/**the state of a cpu part way through running a program (see CPU.snapshot), which can be used to start any
+ * number of independent cpus from that point (see CPU.fork). The memory is shared with the cpu it was taken
+ * from and the cpus forked from it until one of them writes to a page (see PageTable.copy), so taking a
+ * snapshot and forking from it only costs as much as the pages which are written to afterwards.
+ * a snapshot is never changed, so cpus can be forked from it on different threads at once
+ */
+public class CPUSnapshot {
+
+	final Program program;
+	final int[] registers;
+	final int lo;
+	final int hi;
+	final int programCounter;//the address of the next instruction to run
+	final MainMemory memory;//not used directly, only copied
+	final long cycles;
+
+	CPUSnapshot(Program program, int[] registers, int lo, int hi, int programCounter, MainMemory memory, long cycles) {
+		this.program = program;
+		this.registers = registers;
+		this.lo = lo;
+		this.hi = hi;
+		this.programCounter = programCounter;
+		this.memory = memory;
+		this.cycles = cycles;
+	}
+
+	/**
+	 * @return the program the cpu was running
+	 */
+	public Program getProgram() {
+		return program;
+	}
+
+	/**
+	 * @return the address of the next instruction to run
+	 */
+	public int getProgramCounter() {
+		return programCounter;
+	}
+
+	/**
+	 * @return the number of cycles the cpu had run when the snapshot was taken
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+}
@@ -0,0 +1,344 @@
+package simulizer.simulation.cpu.components;
+
+import java.util.Arrays;
+
+import simulizer.assembler.representation.Program;
+
+/**a model of a set associative cache which sits in front of the main memory, used to count how many
+ * of the accesses made by a program would have hit in a real cache. Only the addresses are tracked (the
+ * data always comes from MainMemory) so the model doesn't change the results of the program.
+ * The hits, misses and evictions are counted for the whole cache and for the instruction which made each
+ * access, so that they can be given to the lines of the program (see CacheStatistics).
+ * Everything is stored in flat arrays so that the model is cheap enough to leave on while running at full speed
+ */
+public class Cache {
+
+	/**how the line to replace is chosen when a set is full
+	 */
+	public enum Replacement {
+		LRU("lru"),//the line used least recently
+		FIFO("fifo"),//the line brought in first
+		RANDOM("random");//any line (chosen by a seeded generator so runs are repeatable)
+
+		private final String name;
+
+		Replacement(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @param name the name of a policy, eg "lru"
+		 * @return the policy with that name, or null if there isn't one
+		 */
+		public static Replacement fromName(String name) {
+			for (Replacement r : values()) {
+				if (r.name.equals(name)) {
+					return r;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**what happens when a line is written to
+	 */
+	public enum WritePolicy {
+		WRITE_BACK("write-back"),//the line is marked as dirty and written to memory when evicted, a write miss brings the line in
+		WRITE_THROUGH("write-through");//every write goes straight to memory, a write miss doesn't bring the line in
+
+		private final String name;
+
+		WritePolicy(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @param name the name of a policy, eg "write-back"
+		 * @return the policy with that name, or null if there isn't one
+		 */
+		public static WritePolicy fromName(String name) {
+			for (WritePolicy w : values()) {
+				if (w.name.equals(name)) {
+					return w;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**the shape of a cache, written as size:line-size:associativity[:replacement[:write-policy]]
+	 * eg "4096:32:2:lru:write-back" for a 4 KiB, 2 way set associative cache with 32 byte lines
+	 */
+	public static class Config {
+		public final int size;//bytes of data the cache can hold
+		public final int lineSize;//bytes in each line
+		public final int associativity;//lines in each set
+		public final Replacement replacement;
+		public final WritePolicy writePolicy;
+
+		/**
+		 * @param size the number of bytes the cache can hold (a power of 2)
+		 * @param lineSize the number of bytes in a line (a power of 2, at least 4)
+		 * @param associativity the number of lines in each set (the size must be a multiple of lineSize*associativity)
+		 * @param replacement how to choose the line to evict
+		 * @param writePolicy what happens on a write
+		 * @throws IllegalArgumentException if the cache can't be built
+		 */
+		public Config(int size, int lineSize, int associativity, Replacement replacement, WritePolicy writePolicy) {
+			if (lineSize < 4 || Integer.bitCount(lineSize) != 1) {
+				throw new IllegalArgumentException("the line size must be a power of 2 (at least 4 bytes)");
+			} else if (size <= 0 || Integer.bitCount(size) != 1) {
+				throw new IllegalArgumentException("the cache size must be a power of 2");
+			} else if (associativity <= 0 || size % (lineSize * associativity) != 0) {
+				throw new IllegalArgumentException("the cache size must be a multiple of the line size times the associativity");
+			} else if (replacement == null || writePolicy == null) {
+				throw new IllegalArgumentException("unknown replacement or write policy");
+			}
+			this.size = size;
+			this.lineSize = lineSize;
+			this.associativity = associativity;
+			this.replacement = replacement;
+			this.writePolicy = writePolicy;
+		}
+
+		/**
+		 * @param spec the cache written as size:line-size:associativity[:replacement[:write-policy]],
+		 *             the replacement defaults to lru and the write policy to write-back
+		 * @return the configuration
+		 * @throws IllegalArgumentException if the specification isn't valid
+		 */
+		public static Config parse(String spec) {
+			String[] parts = spec.trim().split(":");
+			if (parts.length < 3 || parts.length > 5) {
+				throw new IllegalArgumentException("a cache is written as size:line-size:associativity[:replacement[:write-policy]]");
+			}
+			try {
+				return new Config(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+						parts.length > 3 ? Replacement.fromName(parts[3]) : Replacement.LRU,
+						parts.length > 4 ? WritePolicy.fromName(parts[4]) : WritePolicy.WRITE_BACK);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("the size, line size and associativity of a cache must be numbers");
+			}
+		}
+
+		/**
+		 * @return the number of sets in the cache
+		 */
+		public int getSets() {
+			return size / (lineSize * associativity);
+		}
+
+		@Override
+		public String toString() {
+			return size + ":" + lineSize + ":" + associativity + ":" + replacement + ":" + writePolicy;
+		}
+	}
+
+	/**the names of the caches modelled by the cpu
+	 */
+	public static final String instructionCacheName = "L1 instruction";
+	public static final String dataCacheName = "L1 data";
+
+	private final String name;
+	private final Config config;
+	private final int lineShift;//log2(line size)
+	private final int setMask;//sets - 1
+	private final int ways;
+	private final boolean lru;//whether hits update the stamps
+	private final boolean writeBack;
+
+	// the lines of set s are at [s*ways, (s+1)*ways)
+	private final int[] tags;//address >>> lineShift of each line (-1 if the line is empty)
+	private final long[] stamps;//when each line was last used (LRU) or brought in (FIFO)
+	private final boolean[] dirty;
+	private long time;
+	private int random;//state of the xorshift generator for random replacement
+
+	private long hits, misses, evictions, writeBacks;
+
+	// the counts for each instruction of the text segment which accessed the cache
+	private final int textSegmentStart;
+	private final long[] sourceHits, sourceMisses, sourceEvictions;
+
+	/**
+	 * @param name the name of the cache, eg "L1 data"
+	 * @param config the shape of the cache
+	 * @param textSegmentStart the address of the first instruction of the program
+	 * @param textSegmentLength the number of instructions in the program (0 to only keep the totals)
+	 */
+	public Cache(String name, Config config, int textSegmentStart, int textSegmentLength) {
+		this.name = name;
+		this.config = config;
+		this.lineShift = Integer.numberOfTrailingZeros(config.lineSize);
+		this.setMask = config.getSets() - 1;
+		this.ways = config.associativity;
+		this.lru = config.replacement == Replacement.LRU;
+		this.writeBack = config.writePolicy == WritePolicy.WRITE_BACK;
+		int lines = config.getSets() * ways;
+		this.tags = new int[lines];
+		this.stamps = new long[lines];
+		this.dirty = new boolean[lines];
+		this.textSegmentStart = textSegmentStart;
+		this.sourceHits = new long[textSegmentLength];
+		this.sourceMisses = new long[textSegmentLength];
+		this.sourceEvictions = new long[textSegmentLength];
+		reset();
+	}
+
+	/**empty the cache and clear the counts
+	 */
+	public void reset() {
+		Arrays.fill(tags, -1);
+		Arrays.fill(stamps, 0);
+		Arrays.fill(dirty, false);
+		time = 0;
+		random = 0x2545F491;
+		hits = misses = evictions = writeBacks = 0;
+		Arrays.fill(sourceHits, 0);
+		Arrays.fill(sourceMisses, 0);
+		Arrays.fill(sourceEvictions, 0);
+	}
+
+	/**
+	 * @param source the address of an instruction
+	 * @return the index of the instruction in the per instruction counts (-1 if it isn't counted)
+	 */
+	private int sourceIndex(int source) {
+		int index = (source - textSegmentStart) >> 2;
+		return index >= 0 && index < sourceHits.length ? index : -1;
+	}
+
+	/**look up an address, bringing its line into the cache if it isn't there (unless it is a write miss
+	 * on a write through cache)
+	 * @param address the address being read or written
+	 * @param write whether the access is a write
+	 * @param source the address of the instruction making the access
+	 * @return whether the access hit
+	 */
+	public boolean access(int address, boolean write, int source) {
+		int line = address >>> lineShift;
+		int first = (line & setMask) * ways;
+		int end = first + ways;
+		for (int i = first; i < end; i++) {
+			if (tags[i] == line) {
+				if (lru) {
+					stamps[i] = ++time;
+				}
+				if (write && writeBack) {
+					dirty[i] = true;
+				}
+				hits++;
+				int s = sourceIndex(source);
+				if (s != -1) sourceHits[s]++;
+				return true;
+			}
+		}
+
+		misses++;
+		int s = sourceIndex(source);
+		if (s != -1) sourceMisses[s]++;
+		if (write && !writeBack) {
+			return false;//no write allocate
+		}
+
+		int victim = victim(first, end);
+		if (tags[victim] != -1) {
+			evictions++;
+			if (s != -1) sourceEvictions[s]++;
+			if (dirty[victim]) {
+				writeBacks++;
+			}
+		}
+		tags[victim] = line;
+		stamps[victim] = ++time;
+		dirty[victim] = write;//only write back caches allocate on a write
+		return false;
+	}
+
+	/**
+	 * @param first the first line of the set
+	 * @param end the line after the last line of the set
+	 * @return the line of the set to replace
+	 */
+	private int victim(int first, int end) {
+		for (int i = first; i < end; i++) {
+			if (tags[i] == -1) {
+				return i;
+			}
+		}
+		if (config.replacement == Replacement.RANDOM) {
+			random ^= random << 13;
+			random ^= random >>> 17;
+			random ^= random << 5;
+			return first + Integer.remainderUnsigned(random, ways);
+		}
+		int oldest = first;//LRU and FIFO both replace the smallest stamp
+		for (int i = first + 1; i < end; i++) {
+			if (stamps[i] < stamps[oldest]) {
+				oldest = i;
+			}
+		}
+		return oldest;
+	}
+
+	/**fetch a straight run of instructions, the same as reading each one in turn but only
+	 * looking up each line once (the other instructions in the line are hits)
+	 * @param start the address of the first instruction
+	 * @param count the number of instructions
+	 * @return the number of fetches which missed
+	 */
+	public int fetch(int start, int count) {
+		int end = start + 4 * count;
+		int address = start;
+		int missed = 0;
+		while (address < end) {
+			int lineEnd = Math.min(((address >>> lineShift) + 1) << lineShift, end);
+			if (!access(address, false, address)) {
+				missed++;
+			}
+			int rest = ((lineEnd - address) >> 2) - 1;
+			hits += rest;
+			int s = sourceIndex(address);
+			if (s != -1) {
+				for (int i = 1; i <= rest && s + i < sourceHits.length; i++) {
+					sourceHits[s + i]++;
+				}
+			}
+			address = lineEnd;
+		}
+		return missed;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Config getConfig() {
+		return config;
+	}
+
+	/**
+	 * @param program the program being run (to find the line numbers, may be null)
+	 * @return a copy of the counts
+	 */
+	public CacheStatistics getStatistics(Program program) {
+		CacheStatistics.Counts total = new CacheStatistics.Counts(hits, misses, evictions);
+		CacheStatistics.Counts[] bySource = new CacheStatistics.Counts[sourceHits.length];
+		for (int i = 0; i < bySource.length; i++) {
+			if (sourceHits[i] != 0 || sourceMisses[i] != 0) {
+				bySource[i] = new CacheStatistics.Counts(sourceHits[i], sourceMisses[i], sourceEvictions[i]);
+			}
+		}
+		return new CacheStatistics(name, config, total, writeBacks, bySource, textSegmentStart, program);
+	}
+}
@@ -0,0 +1,112 @@
+package simulizer.simulation.cpu.components;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import simulizer.assembler.representation.Address;
+import simulizer.assembler.representation.Program;
+
+/**a snapshot of how well a cache did during a run (see Cache.getStatistics), counted for the whole cache
+ * and by the line of the program which made the accesses
+ */
+public class CacheStatistics {
+
+	/**the number of accesses which hit and missed, and the number of lines thrown out to make room
+	 */
+	public static class Counts {
+		long hits;
+		long misses;
+		long evictions;
+
+		Counts(long hits, long misses, long evictions) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+		}
+
+		private void add(Counts c) {
+			hits += c.hits;
+			misses += c.misses;
+			evictions += c.evictions;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+		public long getMisses() {
+			return misses;
+		}
+		public long getEvictions() {
+			return evictions;
+		}
+		public long getAccesses() {
+			return hits + misses;
+		}
+
+		/**
+		 * @return the fraction of accesses which hit (0 if there weren't any)
+		 */
+		public double getHitRate() {
+			return getAccesses() == 0 ? 0 : hits / (double) getAccesses();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d accesses, %d hits, %d misses, %d evictions (%.1f%% hit rate)",
+					getAccesses(), hits, misses, evictions, getHitRate() * 100);
+		}
+	}
+
+	/** the name of the cache, eg "L1 data" */
+	public final String name;
+	/** the shape of the cache */
+	public final Cache.Config config;
+	/** the counts for every access */
+	public final Counts total;
+	/** the number of dirty lines which were written back to memory when they were evicted */
+	public final long writeBacks;
+	/** the counts for each line of the program which accessed the cache. Lines are counted from 0 like Program.lineNumbers */
+	public final SortedMap<Integer, Counts> byLine;
+
+	/**
+	 * @param name the name of the cache
+	 * @param config the shape of the cache
+	 * @param total the counts for every access
+	 * @param writeBacks the number of lines written back
+	 * @param bySource the counts for each instruction of the text segment (null if it didn't access the cache)
+	 * @param textSegmentStart the address of bySource[0]
+	 * @param program the program being run (to find the line numbers, may be null)
+	 */
+	CacheStatistics(String name, Cache.Config config, Counts total, long writeBacks, Counts[] bySource, int textSegmentStart, Program program) {
+		this.name = name;
+		this.config = config;
+		this.total = total;
+		this.writeBacks = writeBacks;
+
+		SortedMap<Integer, Counts> lines = new TreeMap<>();
+		if (program != null) {
+			for (int i = 0; i < bySource.length; i++) {
+				if (bySource[i] != null) {
+					Integer line = program.lineNumbers.get(new Address(textSegmentStart + 4 * i));
+					if (line != null) {
+						lines.computeIfAbsent(line, l -> new Counts(0, 0, 0)).add(bySource[i]);
+					}
+				}
+			}
+		}
+		this.byLine = Collections.unmodifiableSortedMap(lines);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(String.format("%s (%s): %s, %d write backs", name, config, total, writeBacks));
+		for (Map.Entry<Integer, Counts> e : byLine.entrySet()) {
+			if (e.getValue().misses != 0) {//only the lines which missed, most lines of a program hit the instruction cache
+				sb.append(String.format("%n  line %d: %s", e.getKey() + 1, e.getValue()));
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -1,7 +1,16 @@
 package simulizer.simulation.cpu.components;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Created by matthew on 13/09/16.
+ *
+ * Ticks are scheduled against deadlines (the previous deadline + the tick period) so that
+ * the error in each tick doesn't accumulate. The simulation thread parks until shortly
+ * before the deadline and then spins for the remainder, because parkNanos can wake up
+ * late by tens of microseconds. Pausing parks the thread until it is unparked by resume/stop.
  */
 public class Clock {
     public enum Status {
@@ -9,11 +18,43 @@ public class Clock {
         RUNNING,
         PAUSED
     }
-    private long tickPeriod; // in ns (10^-9 seconds)
+
+    /**
+     * the final part of the wait before a deadline is spent spinning rather than parked,
+     * because parkNanos oversleeps (typically by ~50 microseconds on Linux because of timer slack).
+     * The amount is adjusted to a little more than the average oversleep measured, within these limits
+     */
+    private static final long minSpinThreshold = 5_000; // ns
+    private static final long maxSpinThreshold = 200_000; // ns
+    /**
+     * if the simulation falls further behind than this, the clock is rescheduled from the current
+     * time rather than catching up with a burst of ticks (unless the tick period is longer)
+     */
+    private static final long maxCatchUp = 20_000_000; // ns
+
+    private volatile long tickPeriod; // in ns (10^-9 seconds)
     private volatile Status status;
 
-    private long lastTickns;
-    private long ticks;
+    private long lastTickns; // the deadline of the last tick
+    private volatile long ticks;
+
+    private volatile Thread waiting; // the thread waiting for the next tick (to be unparked)
+    private final Object pauseLock = new Object();
+    private boolean parked; // whether the simulation thread is parked because the clock is paused (guarded by pauseLock)
+    private long parkOversleep = 50_000; // moving average of how late parkNanos wakes up (ns)
+
+    // statistics (written by the simulation thread only)
+    private volatile long startns;
+    private volatile long spinns; // total time spent spinning
+    private volatile long parkedns; // total time spent parked (not counting while paused)
+    private volatile long pausedns; // total time spent paused
+    private volatile long totalLateness; // total time between the deadlines and the ticks
+    private volatile long maxLateness;
+    private volatile long timedTicks; // ticks which were waited for (not at max speed)
+    private volatile long cpuTimeAtStart;
+    private volatile long stopns; // 0 while running
+    private volatile long cpuTimeAtStop;
+    private volatile Thread simulationThread;
 
     Clock() {
         tickPeriod = 0;
@@ -29,42 +70,110 @@ public class Clock {
         } else {
             tickPeriod = (long) (1e9 / freq);
         }
+        // the deadline has changed so the waiting thread needs to recalculate it
+        LockSupport.unpark(waiting);
     }
 
     double getTickFrequency() {
         return 1e9 / tickPeriod;
     }
 
+    /**
+     * @return whether the clock is set to run as fast as possible
+     */
+    boolean isMaxSpeed() {
+        return tickPeriod == 0;
+    }
+
     long getTicks() {
         return ticks;
     }
 
     void waitForNextTick() throws InterruptedException {
-        while(status != Status.RUNNING) {
-            if(status == Status.STOPPED)
+        final Thread current = Thread.currentThread();
+        boolean wasPaused = false;
+
+        for (; ; ) {
+            Status s = status;
+            if (s == Status.STOPPED) {
                 return;
-            else if(status == Status.PAUSED) {
-                // doesn't matter if resuming isn't absolutely instant and not using notify/wait simplifies the logic
-                Thread.sleep(10);
+            } else if (s == Status.PAUSED) {
+                long pauseStart = System.nanoTime();
+                waiting = current;
+                synchronized (pauseLock) {
+                    parked = true;
+                    pauseLock.notifyAll();
+                }
+                try {
+                    // resume() and stop() unpark this thread
+                    while (status == Status.PAUSED) {
+                        LockSupport.park(this);
+                        if (Thread.interrupted())
+                            throw new InterruptedException();
+                    }
+                } finally {
+                    // waits for runWhileParked to finish
+                    synchronized (pauseLock) {
+                        parked = false;
+                    }
+                }
+                waiting = null;
+                pausedns += System.nanoTime() - pauseStart;
+                wasPaused = true;
+                continue;
             }
-        }
 
-        if (tickPeriod == 0) {
-            ++ticks;
-            return;
-        }
-
-        long tickDuration;
-        for (; ; ) {
-            tickDuration = System.nanoTime() - lastTickns;
+            long period = tickPeriod;
+            if (period == 0) {
+                ++ticks;
+                return;
+            }
 
-            if (tickDuration >= tickPeriod || status == Status.STOPPED)
+            long now = System.nanoTime();
+            long remaining = lastTickns + period - now;
+            if (remaining <= 0 || wasPaused) {
                 break;
-            else if (tickPeriod - tickDuration > 10000) // >10ms left to wait
-                Thread.sleep(8);
+            }
+
+            long spinThreshold = Math.min(maxSpinThreshold, Math.max(minSpinThreshold, parkOversleep + parkOversleep / 4));
+            if (remaining > spinThreshold) {
+                long parkTime = remaining - spinThreshold;
+                waiting = current;
+                LockSupport.parkNanos(this, parkTime);
+                waiting = null;
+                long parked = System.nanoTime() - now;
+                parkedns += parked;
+                if (parked > parkTime) { // otherwise unparked early
+                    long oversleep = Math.min(maxSpinThreshold, parked - parkTime); // ignore the occasional very late wake up
+                    parkOversleep += (oversleep - parkOversleep) / 8;
+                }
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            } else {
+                // spin until the deadline, checking for pause/stop/frequency changes
+                long deadline = now + remaining;
+                while (System.nanoTime() < deadline && status == Status.RUNNING && tickPeriod == period) {
+                    Thread.yield();
+                }
+                spinns += System.nanoTime() - now;
+            }
         }
 
-        lastTickns = System.nanoTime();
+        long now = System.nanoTime();
+        long period = tickPeriod;
+        long deadline = lastTickns + period;
+        if (wasPaused || now - deadline > Math.max(period, maxCatchUp)) {
+            // the simulation has fallen far behind (or was paused), so schedule from now rather
+            // than trying to catch up with a burst of ticks
+            lastTickns = now;
+        } else {
+            long lateness = Math.max(0, now - deadline);
+            totalLateness += lateness;
+            if (lateness > maxLateness)
+                maxLateness = lateness;
+            timedTicks++;
+            lastTickns = deadline;
+        }
         ++ticks;
     }
 
@@ -72,24 +181,140 @@ public class Clock {
     void pause() {
         status = Status.PAUSED;
     }
+
+    /**
+     * run an action while the simulation thread is parked because the clock is paused, first waiting for the
+     * thread to finish what it was doing when the clock was paused. Everything the simulation thread did before
+     * parking is visible to the action, and the thread can't carry on until the action has finished
+     * (even if the clock is resumed in the meantime)
+     *
+     * @param action the action to run
+     * @return whether the action was run (false if the clock was resumed or stopped before the thread parked)
+     */
+    boolean runWhileParked(Runnable action) throws InterruptedException {
+        synchronized (pauseLock) {
+            while (!parked) {
+                if (status != Status.PAUSED)
+                    return false;
+                pauseLock.wait(1); // resume and stop don't notify, so check the status every so often
+            }
+            action.run();
+            return true;
+        }
+    }
     void resume() {
         if(status == Status.STOPPED)
             throw new IllegalStateException("cannot resume stopped clock");
         status = Status.RUNNING;
+        LockSupport.unpark(waiting);
     }
 
     void stop() {
         // OK to call even if already stopped
+        if (status != Status.STOPPED) {
+            stopns = System.nanoTime();
+            cpuTimeAtStop = threadCpuTime(simulationThread);
+        }
         status = Status.STOPPED;
+        LockSupport.unpark(waiting);
     }
 
     void start() {
         lastTickns = System.nanoTime();
         ticks = 0;
+        startns = lastTickns;
+        spinns = 0;
+        parkedns = 0;
+        pausedns = 0;
+        totalLateness = 0;
+        maxLateness = 0;
+        timedTicks = 0;
+        stopns = 0;
+        simulationThread = Thread.currentThread();
+        cpuTimeAtStart = threadCpuTime(simulationThread);
         status = Status.RUNNING;
     }
 
     Status getStatus() {
         return status;
     }
+
+    /**
+     * @param t the thread to measure
+     * @return the CPU time used by the thread in ns, or -1 if it can't be measured
+     */
+    private static long threadCpuTime(Thread t) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (t == null || !bean.isThreadCpuTimeSupported() || !bean.isThreadCpuTimeEnabled()) {
+            return -1;
+        }
+        return bean.getThreadCpuTime(t.getId());
+    }
+
+    /**
+     * @return the statistics of the clock since it was last started (until it was stopped)
+     */
+    Statistics getStatistics() {
+        return new Statistics(this);
+    }
+
+    /**
+     * A snapshot of how accurately the clock has been keeping time since it was started,
+     * and how much of the simulation thread's time was spent waiting for ticks
+     */
+    public static class Statistics {
+        /** the number of ticks since the clock was started */
+        public final long ticks;
+        /** the time since the clock was started, not counting time spent paused (seconds) */
+        public final double elapsedSeconds;
+        /** the frequency the clock is set to (Hz), infinite at max speed */
+        public final double targetFrequency;
+        /** the average number of ticks per second which were actually achieved */
+        public final double achievedFrequency;
+        /** the average time between a deadline and the tick actually happening (microseconds) */
+        public final double meanLatenessMicros;
+        /** the largest time between a deadline and the tick actually happening (microseconds) */
+        public final double maxLatenessMicros;
+        /** the fraction of the elapsed time the simulation thread spent spinning while waiting for ticks */
+        public final double spinFraction;
+        /** the fraction of the elapsed time the simulation thread spent parked while waiting for ticks */
+        public final double parkedFraction;
+        /** the CPU time used by the simulation thread as a fraction of the elapsed time (-1 if unavailable) */
+        public final double cpuUsage;
+
+        private Statistics(Clock c) {
+            long stopped = c.stopns;
+            long end = stopped == 0 ? System.nanoTime() : stopped;
+            long elapsed = Math.max(1, end - c.startns - c.pausedns);
+            ticks = c.ticks;
+            elapsedSeconds = elapsed / 1e9;
+            targetFrequency = c.tickPeriod == 0 ? Double.POSITIVE_INFINITY : 1e9 / c.tickPeriod;
+            achievedFrequency = ticks / elapsedSeconds;
+            long timed = c.timedTicks;
+            meanLatenessMicros = timed == 0 ? 0 : c.totalLateness / (timed * 1e3);
+            maxLatenessMicros = c.maxLateness / 1e3;
+            spinFraction = c.spinns / (double) elapsed;
+            parkedFraction = c.parkedns / (double) elapsed;
+
+            long cpuTime = stopped == 0 ? threadCpuTime(c.simulationThread) : c.cpuTimeAtStop;
+            if (cpuTime < 0 || c.cpuTimeAtStart < 0) {
+                cpuUsage = -1;
+            } else {
+                cpuUsage = (cpuTime - c.cpuTimeAtStart) / (double) elapsed;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ticks: %d in %.3f seconds%n" +
+                    "frequency: %.1f Hz (target %.1f Hz)%n" +
+                    "lateness: mean %.1f us, max %.1f us%n" +
+                    "waiting: %.1f%% parked, %.1f%% spinning%n" +
+                    "simulation thread CPU usage: %s",
+                    ticks, elapsedSeconds, achievedFrequency, targetFrequency,
+                    meanLatenessMicros, maxLatenessMicros,
+                    parkedFraction * 100, spinFraction * 100,
+                    cpuUsage < 0 ? "unavailable" : String.format("%.1f%%", cpuUsage * 100));
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package simulizer.simulation.cpu.components;
+
+import simulizer.assembler.representation.Instruction;
+import simulizer.assembler.representation.Register;
+import simulizer.assembler.representation.Statement;
+import simulizer.simulation.data.representation.Word;
+import simulizer.simulation.exceptions.DecodeException;
+import simulizer.simulation.instructions.AddressMode;
+
+/**a statement from the text segment which has been decoded ahead of time
+ * (when the program is loaded) so that the fetch and decode stages
+ * do not have to look at the operand list on every cycle.
+ * everything which can be worked out statically is resolved here (register names,
+ * immediates, label addresses), the values stored in registers are read when the
+ * instruction is executed
+ */
+class DecodedInstruction {
+
+	final Statement statement;//the original statement (used for messages and the pipeline)
+	final Instruction instruction;
+	final AddressMode mode;//the instruction format to build at execute time
+	final int address;//address of this instruction in the text segment
+
+	final Register dest;//register written to (null if none)
+	final Register src1;//first register read (null if none)
+	final Register src2;//second register read (null if none)
+	final Word immediate;//immediate operand (null if none)
+
+	final boolean hasAddress;//whether there is an address operand (base/offset or label)
+	final int addressOffset;//label address + constant of the address operand
+	final Register addressRegister;//base register of the address operand (null if none)
+
+	// bit n is set if register n is read/written by the instruction, used to detect hazards in the pipeline
+	final int readMask;
+	final int writeMask;
+
+	/**
+	 * if the statement could not be decoded, the exception is stored so that it can be
+	 * thrown when the statement reaches the decode stage (like it would have been before)
+	 */
+	final DecodeException error;
+
+	/**
+	 * carries out the instruction (null if the statement could not be decoded)
+	 */
+	final InstructionHandler handler;
+
+	/**constructor for a successfully decoded statement
+	 * @param statement the statement which was decoded
+	 * @param address the address of the statement in the text segment
+	 * @param mode the instruction format to use
+	 * @param dest the register being written to (null if none)
+	 * @param src1 the first register being read (null if none)
+	 * @param src2 the second register being read (null if none)
+	 * @param immediate the immediate operand (null if none)
+	 * @param hasAddress whether the statement has an address operand
+	 * @param addressOffset the static part of the address operand
+	 * @param addressRegister the base register of the address operand (null if none)
+	 */
+	DecodedInstruction(Statement statement, int address, AddressMode mode, Register dest, Register src1, Register src2,
+					   Word immediate, boolean hasAddress, int addressOffset, Register addressRegister) {
+		this.statement = statement;
+		this.instruction = statement.getInstruction();
+		this.mode = mode;
+		this.address = address;
+		this.dest = dest;
+		this.src1 = src1;
+		this.src2 = src2;
+		this.immediate = immediate;
+		this.hasAddress = hasAddress;
+		this.addressOffset = addressOffset;
+		this.addressRegister = addressRegister;
+		this.readMask = bit(src1) | bit(src2) | bit(addressRegister);
+		this.writeMask = writes(mode, instruction, dest);
+		this.error = null;
+		this.handler = Executor.createHandler(this);
+	}
+
+	/**constructor for a statement which failed to decode
+	 * @param statement the statement which was decoded
+	 * @param address the address of the statement in the text segment
+	 * @param error the reason the statement could not be decoded
+	 */
+	DecodedInstruction(Statement statement, int address, DecodeException error) {
+		this.statement = statement;
+		this.instruction = statement.getInstruction();
+		this.mode = null;
+		this.address = address;
+		this.dest = null;
+		this.src1 = null;
+		this.src2 = null;
+		this.immediate = null;
+		this.hasAddress = false;
+		this.addressOffset = 0;
+		this.addressRegister = null;
+		this.readMask = 0;
+		this.writeMask = 0;
+		this.error = error;
+		this.handler = null;
+	}
+
+	/**
+	 * @param r a register (or null)
+	 * @return the register as a bit mask (0 for null)
+	 */
+	private static int bit(Register r) {
+		return r == null ? 0 : 1 << r.getID();
+	}
+
+	/**
+	 * @param mode the instruction format
+	 * @param instruction the instruction
+	 * @param dest the destination register (null if none)
+	 * @return the mask of the registers written by the instruction
+	 */
+	private static int writes(AddressMode mode, Instruction instruction, Register dest) {
+		switch(mode) {
+			case RTYPE://instructions using lo and hi have no destination register
+			case LSTYPE:
+				return bit(dest);
+			case JTYPE:
+				return instruction == Instruction.jal || instruction == Instruction.jalr ? bit(Register.ra) : 0;
+			case SPECIAL://some syscalls return a value in $v0, which one isn't known until $v0 is read
+				return instruction == Instruction.syscall ? bit(Register.v0) : 0;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * @return the address of the instruction after this one (stored in $ra by jal)
+	 */
+	int nextAddress() {
+		return address + 4;
+	}
+
+	@Override public String toString() {
+		return "DecodedInstruction(address=" + address + ", statement=" + statement + ")";
+	}
+}
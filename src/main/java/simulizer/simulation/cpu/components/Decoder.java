@@ -6,15 +6,16 @@ import java.util.Optional;
 import simulizer.assembler.representation.Address;
 import simulizer.assembler.representation.Instruction;
 import simulizer.assembler.representation.Register;
+import simulizer.assembler.representation.Statement;
 import simulizer.assembler.representation.operand.AddressOperand;
 import simulizer.assembler.representation.operand.IntegerOperand;
 import simulizer.assembler.representation.operand.Operand;
 import simulizer.assembler.representation.operand.OperandFormat;
-import simulizer.assembler.representation.operand.RegisterOperand;
 import simulizer.assembler.representation.operand.OperandFormat.OperandType;
 import simulizer.simulation.data.representation.DataConverter;
 import simulizer.simulation.data.representation.Word;
 import simulizer.simulation.exceptions.DecodeException;
+import simulizer.simulation.instructions.AddressMode;
 import simulizer.simulation.instructions.ITypeInstruction;
 import simulizer.simulation.instructions.InstructionFormat;
 import simulizer.simulation.instructions.JTypeInstruction;
@@ -22,6 +23,7 @@ import simulizer.simulation.instructions.LSInstruction;
 import simulizer.simulation.instructions.RTypeInstruction;
 import simulizer.simulation.instructions.SpecialInstruction;
 import simulizer.simulation.messages.DataMovementMessage;
+import simulizer.simulation.messages.MessageType;
 import simulizer.simulation.messages.StageEnterMessage;
 import simulizer.simulation.messages.StageEnterMessage.Stage;
 
@@ -43,8 +45,22 @@ class Decoder {
 		this.cpu = cpu;
 	}
 	
+	/**this method carries out the decode of the FDE cycle for a statement which
+	 * was decoded when the program was loaded. Nothing needs to be done apart
+	 * from reporting any problem found when the statement was decoded
+	 * @param instruction the pre-decoded instruction
+	 * @throws DecodeException if the statement could not be decoded
+	 */
+	void decode(DecodedInstruction instruction) throws DecodeException {
+		if(cpu.shouldSend(MessageType.STAGE_ENTER)) cpu.sendMessage(new StageEnterMessage(Stage.Decode));//signal start of decode
+		if(instruction.error != null) {
+			throw instruction.error;
+		}
+	}
+
 	/**this method carries out the decode of the FDE cycle, it will
      * look through the statement object and take the instruction and decode the operands
+     * the statement is assumed to have just been fetched, so the program counter has already moved past it
      * @param instruction the instruction format to decode
      * @param operandList the list of operands to be decoded
      * @return InstructionFormat the instruction ready for execution
@@ -52,7 +68,39 @@ class Decoder {
      */
     protected InstructionFormat decode(Instruction instruction, List<Operand> operandList) throws DecodeException {
 
-    	cpu.sendMessage(new StageEnterMessage(Stage.Decode));//signal start of decode
+    	if(cpu.shouldSend(MessageType.STAGE_ENTER)) cpu.sendMessage(new StageEnterMessage(Stage.Decode));//signal start of decode
+    	DecodedInstruction decoded = predecode(new Statement(instruction, operandList, -1), cpu.getProgramCounterValue() - 4);
+    	if(decoded.error != null) {
+    		throw decoded.error;
+    	}
+    	return bindOperands(decoded);
+    }
+
+	/**this method decodes everything about a statement which does not depend on the state of
+	 * the registers, it is called once for every statement when a program is loaded
+	 * if the statement is invalid then the exception is stored in the result rather than thrown
+	 * @param statement the statement to decode
+	 * @param address the address of the statement in the text segment
+	 * @return the decoded statement
+	 */
+	DecodedInstruction predecode(Statement statement, int address) {
+		try {
+			return predecodeOrThrow(statement, address);
+		} catch (DecodeException e) {
+			return new DecodedInstruction(statement, address, e);
+		}
+	}
+
+	/**decodes the operands of a statement which don't depend on the state of the registers
+	 * @param statement the statement to decode
+	 * @param address the address of the statement in the text segment
+	 * @return the decoded statement
+	 * @throws DecodeException if something goes wrong during decode
+	 */
+	private DecodedInstruction predecodeOrThrow(Statement statement, int address) throws DecodeException {
+		Instruction instruction = statement.getInstruction();
+		List<Operand> operandList = statement.getOperandList();
+
         Operand op1 = null;
         OperandType op1Type = null;
         Operand op2 = null;
@@ -84,123 +132,181 @@ class Decoder {
             // R-type instruction: 2 src, 1 dest
             assert (op1 != null) && (op2 != null) && (op3 != null);
 
-            Register destinationRegister = op1.asRegisterOp().value;//store destination register
-            Optional<Word> src1 = Optional.of(decodeRegister(op2.asRegisterOp()));
-            cpu.sendMessage(new DataMovementMessage(src1,Optional.empty()));
-            Optional<Word> src2 = Optional.of(decodeRegister(op3.asRegisterOp()));
-            cpu.sendMessage(new DataMovementMessage(src2,Optional.empty()));
-            return new RTypeInstruction(instruction, Optional.empty(), destinationRegister, src1, src2);
+            return new DecodedInstruction(statement, address, AddressMode.RTYPE, op1.asRegisterOp().value,
+                    op2.asRegisterOp().value, op3.asRegisterOp().value, null, false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.destSrcImm) { //immediate arithmetic operations (signed or unsigned)
             assert (op1 != null) && (op2 != null) && (op3 != null);
 
-            Register destinationRegister = op1.asRegisterOp().value;
-            Optional<Word> srcRegister = Optional.of(this.decodeRegister(op2.asRegisterOp()));
-            cpu.sendMessage(new DataMovementMessage(srcRegister,Optional.empty()));
-            Optional<Word> immValue = Optional.of(this.decodeIntegerOperand(op3.asIntegerOp()));
-            return new RTypeInstruction(instruction, Optional.empty(), destinationRegister, srcRegister, immValue);
+            return new DecodedInstruction(statement, address, AddressMode.RTYPE, op1.asRegisterOp().value,
+                    op2.asRegisterOp().value, null, decodeIntegerOperand(op3.asIntegerOp()), false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.destSrc) {//single register ops like neg or abs (or move)
             assert (op1 != null) && (op2 != null) && (op3 == null);
 
-            Register destinationRegister = op1.asRegisterOp().value;
-            Optional<Word> srcRegister = Optional.of(this.decodeRegister(op2.asRegisterOp()));
-            cpu.sendMessage(new DataMovementMessage(srcRegister,Optional.empty()));
-            return new RTypeInstruction(instruction, Optional.empty(), destinationRegister, srcRegister, Optional.empty());
+            return new DecodedInstruction(statement, address, AddressMode.RTYPE, op1.asRegisterOp().value,
+                    op2.asRegisterOp().value, null, null, false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.destImm) {//instructions such as li
             assert (op1 != null) && (op2 != null) && (op3 == null);
 
-            Optional<Register> destinationRegister = Optional.of(op1.asRegisterOp().value);
-            Optional<Address> memAddress = Optional.empty();
-            Optional<Word> immValue = Optional.of(this.decodeIntegerOperand(op2.asIntegerOp()));
-            return new LSInstruction(instruction,Optional.empty(),destinationRegister,memAddress,immValue);
+            return new DecodedInstruction(statement, address, AddressMode.LSTYPE, op1.asRegisterOp().value,
+                    null, null, decodeIntegerOperand(op2.asIntegerOp()), false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.noArguments||instruction.equals(Instruction.BREAK)) {//syscall, nop, break
-            return new SpecialInstruction(instruction);
+            return new DecodedInstruction(statement, address, AddressMode.SPECIAL, null, null, null, null, false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.label
                 || (instruction.getOperandFormat() == OperandFormat.labelOrReg && op1 != null && op1.asAddressOp() != null)) {//branch, jal, j
             assert (op1 != null) && (op2 == null) && (op3 == null);
 
-            Optional<Address> goToAddress = Optional.of(this.decodeAddressOperand(op1.asAddressOp()));//where to jump
-            Optional<Word> currentAddress = Optional.of(new Word(DataConverter.encodeAsSigned((long)this.cpu.getProgramCounter().getValue())));
-            return new JTypeInstruction(instruction,goToAddress,currentAddress);
+            AddressOperand goToAddress = op1.asAddressOp();//where to jump
+            return new DecodedInstruction(statement, address, AddressMode.JTYPE, null, null, null, null,
+                    true, decodeAddressOffset(goToAddress), goToAddress.register.orElse(null));
         }
         else if(instruction.getOperandFormat() == OperandFormat.register
                 || (instruction.getOperandFormat() == OperandFormat.labelOrReg && op1 != null && op1.asRegisterOp() != null)) {//for jr or j
             assert (op1 != null) && (op2 == null) && (op3 == null);
 
-            Word registerContents = this.decodeRegister(op1.asRegisterOp());//getting register contents
-            cpu.sendMessage(new DataMovementMessage(Optional.of(registerContents),Optional.empty()));
-            Optional<Address> registerAddress = Optional.of(new Address((int)DataConverter.decodeAsUnsigned(registerContents.getBytes())));//put into correct format
-            Optional<Word> currentAddress = Optional.of(new Word(DataConverter.encodeAsSigned((long)this.cpu.getProgramCounter().getValue())));
-            return new JTypeInstruction(instruction,registerAddress,currentAddress);
+            return new DecodedInstruction(statement, address, AddressMode.JTYPE, null,
+                    op1.asRegisterOp().value, null, null, false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.cmpCmpLabel) {//for branch equal etc.
             assert (op1 != null) && (op2 != null) && (op3 != null);
 
-            Optional<Word> cmp1 = Optional.of(this.decodeRegister(op1.asRegisterOp()));//first comparison value
-            cpu.sendMessage(new DataMovementMessage(cmp1,Optional.empty()));
-            Optional<Word> cmp2 = Optional.of(this.decodeRegister(op2.asRegisterOp()));//second comparison value
-            cpu.sendMessage(new DataMovementMessage(cmp2,Optional.empty()));
-            Optional<Address> branchAddr = Optional.of(this.decodeAddressOperand(op3.asAddressOp()));//where to branch to if comparison returns true
-            return new ITypeInstruction(instruction,cmp1,cmp2,branchAddr);
+            AddressOperand branchAddr = op3.asAddressOp();//where to branch to if comparison returns true
+            return new DecodedInstruction(statement, address, AddressMode.ITYPE, null,
+                    op1.asRegisterOp().value, op2.asRegisterOp().value, null,
+                    true, decodeAddressOffset(branchAddr), branchAddr.register.orElse(null));
         }
         else if(instruction.getOperandFormat() == OperandFormat.cmpLabel) {//for bltz etc
             assert (op1 != null) && (op2 != null) && (op3 == null);
 
-            Optional<Word> cmp = Optional.of(this.decodeRegister(op1.asRegisterOp()));//value to compare
-            cpu.sendMessage(new DataMovementMessage(cmp,Optional.empty()));
-            Optional<Address> branchAddr = Optional.of(this.decodeAddressOperand(op2.asAddressOp()));//branch address
-            return new ITypeInstruction(instruction,cmp,Optional.empty(),branchAddr);
+            AddressOperand branchAddr = op2.asAddressOp();//branch address
+            return new DecodedInstruction(statement, address, AddressMode.ITYPE, null,
+                    op1.asRegisterOp().value, null, null,
+                    true, decodeAddressOffset(branchAddr), branchAddr.register.orElse(null));
         }
         else if(instruction.getOperandFormat() == OperandFormat.srcAddr) {//for store instructions
             assert (op1 != null) && (op2 != null) && (op3 == null);
 
-            Optional<Word> src = Optional.of(this.decodeRegister(op1.asRegisterOp()));//word to store
-            cpu.sendMessage(new DataMovementMessage(src,Optional.empty()));
-            Optional<Address> toStore = Optional.of(this.decodeAddressOperand(op2.asAddressOp()));
-            return new LSInstruction(instruction,src,Optional.empty(),toStore,Optional.empty());
+            AddressOperand toStore = op2.asAddressOp();
+            return new DecodedInstruction(statement, address, AddressMode.LSTYPE, null,
+                    op1.asRegisterOp().value, null, null,
+                    true, decodeAddressOffset(toStore), toStore.register.orElse(null));
         }
         else if(instruction.getOperandFormat() == OperandFormat.destAddr) {//for load stuff
             assert (op1 != null) && (op2 != null) && (op3 == null);
 
-            Optional<Register> loadInto = Optional.of(op1.asRegisterOp().value);//register to store
-            Optional<Address> toRetrieve = Optional.of(this.decodeAddressOperand(op2.asAddressOp()));
-            return new LSInstruction(instruction,Optional.empty(),loadInto,toRetrieve,Optional.empty());
+            AddressOperand toRetrieve = op2.asAddressOp();
+            return new DecodedInstruction(statement, address, AddressMode.LSTYPE, op1.asRegisterOp().value,
+                    null, null, null,
+                    true, decodeAddressOffset(toRetrieve), toRetrieve.register.orElse(null));
         }
         else if(instruction.getOperandFormat() == OperandFormat.srcSrc) {
         	assert (op1 != null) && (op2 != null) && (op3 == null);
-        	
-        	Optional<Word> srcOne = Optional.of(this.decodeRegister(op1.asRegisterOp()));
-        	Optional<Word> srcTwo = Optional.of(this.decodeRegister(op2.asRegisterOp()));
-        	return new RTypeInstruction(instruction,Optional.empty(),null,srcOne,srcTwo);
 
+        	return new DecodedInstruction(statement, address, AddressMode.RTYPE, null,
+        			op1.asRegisterOp().value, op2.asRegisterOp().value, null, false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.dest) {
         	assert (op1 != null) && (op2 == null) && (op3 == null);
-        	
-        	return new LSInstruction(instruction,Optional.empty(),Optional.of(op1.asRegisterOp().value),Optional.empty(),Optional.empty());
+
+        	return new DecodedInstruction(statement, address, AddressMode.LSTYPE, op1.asRegisterOp().value,
+        			null, null, null, false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.src) {
         	assert (op1 != null) && (op2 == null) && (op3 == null);
-        	
-        	return new LSInstruction(instruction,Optional.of(this.decodeRegister(op1.asRegisterOp())),Optional.empty(),Optional.empty(),Optional.empty());
+
+        	return new DecodedInstruction(statement, address, AddressMode.LSTYPE, null,
+        			op1.asRegisterOp().value, null, null, false, 0, null);
         }
         else if(instruction.getOperandFormat() == OperandFormat.srcImm) {
         	assert (op1 != null) && (op2 != null) && (op3 == null);
-        	
-        	Optional<Word> src = Optional.of(this.decodeRegister(op1.asRegisterOp()));
-        	Optional<Word> imm = Optional.of(this.decodeIntegerOperand(op2.asIntegerOp()));
-        	return new RTypeInstruction(instruction,Optional.empty(),null,src,imm);
+
+        	return new DecodedInstruction(statement, address, AddressMode.RTYPE, null,
+        			op1.asRegisterOp().value, null, decodeIntegerOperand(op2.asIntegerOp()), false, 0, null);
         }
         else {
             //invalid instruction format
             throw new DecodeException("Invalid instruction format.", op1);
         }
-    }
-	
+	}
+
+	/**reads the registers used by a pre-decoded instruction and builds the instruction format
+	 * ready for execution
+	 * @param decoded the pre-decoded instruction
+	 * @return the instruction ready for execution
+	 */
+	InstructionFormat bindOperands(DecodedInstruction decoded) {
+		Instruction instruction = decoded.instruction;
+		switch(decoded.mode) {
+			case RTYPE: {
+				Optional<Word> src1 = readRegister(decoded.src1);
+				Optional<Word> src2 = decoded.src2 != null ? readRegister(decoded.src2) : Optional.ofNullable(decoded.immediate);
+				if(decoded.dest != null) {//the hi/lo instructions don't send the values they read
+					if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(src1, Optional.empty()));
+					if(decoded.src2 != null) {
+						if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(src2, Optional.empty()));
+					}
+				}
+				return new RTypeInstruction(instruction, Optional.empty(), decoded.dest, src1, src2);
+			}
+			case ITYPE: {
+				Optional<Word> cmp1 = readRegister(decoded.src1);
+				if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(cmp1, Optional.empty()));
+				Optional<Word> cmp2 = Optional.empty();
+				if(decoded.src2 != null) {
+					cmp2 = readRegister(decoded.src2);
+					if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(cmp2, Optional.empty()));
+				}
+				return new ITypeInstruction(instruction, cmp1, cmp2, Optional.of(resolveAddress(decoded)));
+			}
+			case JTYPE: {
+				Optional<Word> currentAddress = Optional.of(new Word(DataConverter.encodeAsSigned((long) decoded.nextAddress())));
+				if(decoded.hasAddress) {
+					return new JTypeInstruction(instruction, Optional.of(resolveAddress(decoded)), currentAddress);
+				} else {
+					Optional<Word> registerContents = readRegister(decoded.src1);//getting register contents
+					if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(registerContents, Optional.empty()));
+					return new JTypeInstruction(instruction, Optional.of(new Address(cpu.getRegisterValue(decoded.src1))), currentAddress);
+				}
+			}
+			case LSTYPE: {
+				Optional<Word> src = Optional.empty();
+				if(decoded.src1 != null) {
+					src = readRegister(decoded.src1);
+					if(decoded.hasAddress) {//only stores announce the value they read
+						if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(src, Optional.empty()));
+					}
+				}
+				Optional<Address> memAddress = decoded.hasAddress ? Optional.of(resolveAddress(decoded)) : Optional.empty();
+				return new LSInstruction(instruction, src, Optional.ofNullable(decoded.dest), memAddress, Optional.ofNullable(decoded.immediate));
+			}
+			case SPECIAL:
+			default:
+				return new SpecialInstruction(instruction);
+		}
+	}
+
+	/**read the value of a register as a word for an instruction format
+	 * @param r the register to read
+	 * @return the contents of the register
+	 */
+	private Optional<Word> readRegister(Register r) {
+		int value = cpu.getRegisterValue(r);
+		return Optional.of(value == 0 ? Word.ZERO : new Word(DataConverter.encodeAsSigned(value)));
+	}
+
+	/**calculate the address of the address operand with the current simulation state
+	 * @param decoded the pre-decoded instruction
+	 * @return the calculated address
+	 */
+	private Address resolveAddress(DecodedInstruction decoded) {
+		int registerAddress = decoded.addressRegister == null ? 0 : cpu.getRegisterValue(decoded.addressRegister);
+		return new Address(decoded.addressOffset + registerAddress);
+	}
+
 	/**this method will decode an integer operand into a 4 byte word
     *
     * @param operand the operand to decode
@@ -220,15 +326,14 @@ class Decoder {
    }
 
    /**
-    * calculate the address for an operand with the current simulation state
+    * calculate the part of the address of an operand which doesn't depend on the registers
     *
     * @param operand the operand to decode
-    * @return the calculated address
+    * @return the label address plus the constant offset
     */
-   private Address decodeAddressOperand(AddressOperand operand) throws DecodeException {
+   private int decodeAddressOffset(AddressOperand operand) {
        int labelAddress    = 0;
        int constantAddress = 0;
-       int registerAddress = 0;
 
        if(operand.labelName.isPresent()) {
            labelAddress = cpu.labels.getOrDefault(operand.labelName.get(), Address.NULL).getValue();
@@ -236,39 +341,7 @@ class Decoder {
        if(operand.constant.isPresent()) {
            constantAddress = operand.constant.get();
        }
-       if(operand.register.isPresent()) {
-           Register r = operand.register.get();
-           registerAddress = (int) DataConverter.decodeAsUnsigned(cpu.getRegister(r).getBytes());
-       }
-       return new Address(labelAddress + constantAddress + registerAddress);
-   }
-
-   /**this method will decode a register operand
-    * if it is not a destination register then the data will be retrieved, otherwise
-    * a null Word will be returned
-    * @param operand the operand to decode
-    * @return the word of data from the register
-    * @throws DecodeException if something goes wrong during decode
-    */
-   private Word decodeRegister(RegisterOperand operand) throws DecodeException {
-       if(operand == null) {
-           return Word.ZERO;
-       }
-       else if(operand.getOperandFormatType().equals(OperandFormat.OperandType.DEST_REGISTER)) {
-           return Word.ZERO;
-       }
-       else if(operand.getOperandFormatType().equals(OperandFormat.OperandType.SRC_REGISTER)) {
-           return cpu.getRegister(operand.value);//return the word stored at that register
-       }
-       else if(operand.getOperandFormatType().equals(OperandFormat.OperandType.TARGET_REGISTER)) {
-           return this.cpu.getRegister(operand.value);//this is probably wrong for now
-       }
-       else if(operand.getOperandFormatType().equals(OperandFormat.OperandType.REGISTER)) {//standard register
-           return this.cpu.getRegister(operand.value);//return the word stored at that register
-       }
-       else {
-           throw new DecodeException("Error decoding Register.", operand);
-       }
+       return labelAddress + constantAddress;
    }
 	
 }
@@ -3,8 +3,6 @@ package simulizer.simulation.cpu.components;
 import simulizer.assembler.representation.Address;
 import simulizer.simulation.exceptions.HeapException;
 
-import java.util.Arrays;
-
 /**this class represents the dynamic heap section of the memory 
  * for our simulated Mips processor
  * @author Charlie Street
@@ -16,17 +14,45 @@ public class DynamicDataSegment
 	private Address heapBaseAddress;
 	private int heapBreak; // index of one-past the highest element, relative to the base of the heap
 	private int maxLength;
-	private byte[] heap;
+	private final PageTable pages; // the heap is stored at its actual addresses, so growing it never copies anything
 
 
 	public DynamicDataSegment(Address heapBaseAddress, int maxLength)
+	{
+		this(heapBaseAddress, maxLength, new PageTable());
+	}
+
+	/**
+	 * @param heapBaseAddress the address of the bottom of the heap
+	 * @param maxLength the maximum number of bytes the heap is allowed to grow to
+	 * @param pages the memory the heap is stored in (shared with the rest of the segments)
+	 */
+	DynamicDataSegment(Address heapBaseAddress, int maxLength, PageTable pages)
 	{
 		this.heapBaseAddress = heapBaseAddress;
 		this.heapBreak = 0;
 		this.maxLength = maxLength;
-        heap = new byte[]{};
+		this.pages = pages;
 	}
 	
+	/**
+	 * @param pages the memory the copy is stored in (a copy of the memory this heap is stored in)
+	 * @return a heap with the same break, stored in the given pages
+	 */
+	DynamicDataSegment copy(PageTable pages)
+	{
+		DynamicDataSegment copy = new DynamicDataSegment(heapBaseAddress, maxLength, pages);
+		copy.heapBreak = heapBreak;
+		return copy;
+	}
+
+	/**empty the heap (the contents are cleared by the owner of the pages)
+	 */
+	void reset()
+	{
+		this.heapBreak = 0;
+	}
+
 	/**this method will add bytes new bytes onto the heap
 	 * and return the pointer to the start of that block
 	 * in the negative argument case, it will return the break
@@ -36,10 +62,10 @@ public class DynamicDataSegment
 	public Address sbrk(int additionalBytes) throws HeapException
 	{
 		if(additionalBytes % 4 != 0) {//spim only allows sbrk to be called with multiples of 4
-			throw new HeapException("Sbrk needs to be called with multiples of 4 bytes.", heapBreak, heap.length);
+			throw new HeapException("Sbrk needs to be called with multiples of 4 bytes.", heapBreak, maxLength);
 
-		}else if(additionalBytes < -heap.length) { // shrink below 0 length
-			throw new HeapException("sbrk requested shrink below the start of the heap.",heapBreak,heap.length);
+		}else if(additionalBytes < -heapBreak) { // shrink below 0 length
+			throw new HeapException("sbrk requested shrink below the start of the heap.",heapBreak,maxLength);
 
 		} if(additionalBytes < 0) {// shrink the heap
             heapBreak += additionalBytes; // additional bytes is negative
@@ -50,65 +76,97 @@ public class DynamicDataSegment
 
 		} else { // grow the heap
 
-            if(heap.length + additionalBytes > maxLength) {
-                throw new HeapException("sbrk requested extends past maximum heap length.",heapBreak,heap.length);
+            if(additionalBytes > maxLength - heapBreak) {
+                throw new HeapException("sbrk requested extends past maximum heap length.",heapBreak,maxLength);
             }
 
-            // at least a growth factor of 1.5. definitely enough to accommodate the additional requested bytes
-            // but no longer than the maximum length (if the growth factor extends past it)
-            int newLength = Math.min(Math.max((int) (heap.length * 1.5), heap.length+additionalBytes), maxLength);
-            byte[] newHeap = new byte[newLength];
-            // the old heap is placed at the start of the new heap
-            System.arraycopy(heap, 0, newHeap, 0, heap.length);
-            heap = newHeap;
-
+            // the pages are allocated when they are first written to, so there is nothing to do apart from moving the break
 			Address oldBreak = new Address(heapBaseAddress.getValue() + heapBreak);
 			heapBreak += additionalBytes;
 			return oldBreak;
 		}
 	}
 
-	/**method will get n bytes from the heap
-	 *
-	 * @param relativeAddress address relative to the base of the heap to place the MSB of the data
-	 * @param length the number of bytes to retrieve, starting at the given address
-	 * @return the bytes in an array
+	/**check that a range of the heap can be read from
+	 * @param relativeAddress address relative to the base of the heap of the first byte
+	 * @param length the number of bytes to be read
+	 * @throws HeapException if the range isn't between the bottom of the heap and the break
 	 */
-	public byte[] getBytes(int relativeAddress, int length) throws HeapException
+	void checkRead(int relativeAddress, int length) throws HeapException
 	{
 		if(length <= 0) {
-			throw new HeapException("Invalid read on heap. (non-positive length)", heapBreak, heap.length);
+			throw new HeapException("Invalid read on heap. (non-positive length)", heapBreak, maxLength);
 		} else if(relativeAddress + length > heapBreak) {
 			throw new HeapException("Invalid read on heap. (attempt to read above the break from " +
-					relativeAddress + " up to " + (relativeAddress+length-1) + ")", heapBreak, heap.length);
+					relativeAddress + " up to " + (relativeAddress+length-1) + ")", heapBreak, maxLength);
 
 		} else if(relativeAddress < 0) {
 			throw new HeapException("Invalid read on heap. (attempt to read below the heap from " +
-					relativeAddress + " up to " + (relativeAddress+length-1) + ")", heapBreak, heap.length);
+					relativeAddress + " up to " + (relativeAddress+length-1) + ")", heapBreak, maxLength);
+		}
+	}
+
+	/**check that a range of the heap can be written to
+	 * @param relativeAddress address relative to the base of the heap of the first byte
+	 * @param length the number of bytes to be written
+	 * @throws HeapException if the range isn't between the bottom of the heap and the break
+	 */
+	void checkWrite(int relativeAddress, int length) throws HeapException
+	{
+        if(length <= 0) {
+            throw new HeapException("Invalid write on heap. (non-positive length)", heapBreak, maxLength);
+        } else if(relativeAddress + length > heapBreak) {
+			throw new HeapException("Invalid write on heap. (attempt to write above the break)", heapBreak, maxLength);
+		} else if(relativeAddress < 0) {
+			throw new HeapException("Invalid write on heap. (attempt to write below the heap)", heapBreak, maxLength);
 		}
+	}
 
-		return Arrays.copyOfRange(heap, relativeAddress, relativeAddress+length);
+	/**method will get n bytes from the heap
+	 *
+	 * @param relativeAddress address relative to the base of the heap to place the MSB of the data
+	 * @param length the number of bytes to retrieve, starting at the given address
+	 * @return the bytes in an array
+	 */
+	public byte[] getBytes(int relativeAddress, int length) throws HeapException
+	{
+		checkRead(relativeAddress, length);
+		byte[] result = new byte[length];
+		pages.read(heapBaseAddress.getValue() + relativeAddress, result, 0, length);
+		return result;
 	}
 
 
+	/**find the end of a null terminated string on the heap
+	 *
+	 * @param relativeAddress the relative address to begin scanning at
+	 * @return the relative address of the null character
+	 * @throws HeapException if the break is reached while scanning for a null character
+	 */
+	int findNull(int relativeAddress) throws HeapException {
+		int i = relativeAddress;
+		if(0 <= i && i < heapBreak) {
+			int base = heapBaseAddress.getValue();
+			i = pages.findNull(base + relativeAddress, base + heapBreak) - base;
+			if(i < heapBreak) {
+				return i;
+			}
+		}
+		throw new HeapException("Reading from invalid area of memory (scanning for a null character)", relativeAddress, i);
+	}
+
 	/**
 	 * read bytes until a null character is read. Use this to extract strings from memory.
-	 * An exception is thrown if the end of the stack is reached while scanning for a null character
+	 * An exception is thrown if the break is reached while scanning for a null character
 	 *
 	 * @param relativeAddress the relative address to begin scanning at
 	 * @return the bytes up to but _not_ including the null character
 	 * @throws HeapException
 	 */
 	public byte[] readUntilNull(int relativeAddress) throws HeapException {
-		int i = relativeAddress;
-		if(0 <= i && i < heap.length) {
-			for(; i < heap.length; ++i) {
-				if(heap[i] == '\0') {
-					return Arrays.copyOfRange(heap, relativeAddress, i); // exclusive so null is excluded
-				}
-			}
-		}
-		throw new HeapException("Reading from invalid area of memory (scanning for a null character)", relativeAddress, i);
+		byte[] result = new byte[findNull(relativeAddress) - relativeAddress]; // null is excluded
+		pages.read(heapBaseAddress.getValue() + relativeAddress, result, 0, result.length);
+		return result;
 	}
 
 	/**allows to set multiple bytes in one go on the heap
@@ -118,16 +176,8 @@ public class DynamicDataSegment
 	 */
 	public void setBytes(int relativeAddress, byte[] toWrite) throws HeapException
 	{
-        if(toWrite.length <= 0) {
-            throw new HeapException("Invalid write on heap. (non-positive length)", heapBreak, heap.length);
-        } else if(relativeAddress + toWrite.length > heapBreak) {
-			throw new HeapException("Invalid write on heap. (attempt to write above the break)", heapBreak, heap.length);
-		} else if(relativeAddress < 0) {
-			throw new HeapException("Invalid write on heap. (attempt to write below the heap)", heapBreak, heap.length);
-		}
-
-		// src, srcPos, dest, destPos, length
-		System.arraycopy(toWrite, 0, heap, relativeAddress, toWrite.length);
+		checkWrite(relativeAddress, toWrite.length);
+		pages.write(heapBaseAddress.getValue() + relativeAddress, toWrite, 0, toWrite.length);
 	}
 	
 }
@@ -1,14 +1,15 @@
 package simulizer.simulation.cpu.components;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.Optional;
 
 import simulizer.assembler.representation.Address;
 import simulizer.assembler.representation.Instruction;
 import simulizer.assembler.representation.Register;
-import simulizer.assembler.representation.operand.OperandFormat;
 import simulizer.simulation.cpu.user_interaction.IOStream;
+import simulizer.simulation.cpu.user_interaction.Utf8Decoder;
 import simulizer.simulation.data.representation.DataConverter;
 import simulizer.simulation.data.representation.Word;
 import simulizer.simulation.exceptions.ExecuteException;
@@ -17,10 +18,11 @@ import simulizer.simulation.exceptions.InstructionException;
 import simulizer.simulation.exceptions.MemoryException;
 import simulizer.simulation.exceptions.StackException;
 import simulizer.simulation.instructions.AddressMode;
-import simulizer.simulation.instructions.InstructionFormat;
+import simulizer.simulation.instructions.SpecialInstruction;
 import simulizer.simulation.messages.DataMovementMessage;
 import simulizer.simulation.messages.HiLoChangeMessage;
 import simulizer.simulation.messages.InstructionTypeMessage;
+import simulizer.simulation.messages.MessageType;
 import simulizer.simulation.messages.RegisterChangedMessage;
 import simulizer.simulation.messages.StageEnterMessage;
 import simulizer.simulation.messages.StageEnterMessage.Stage;
@@ -29,6 +31,8 @@ import simulizer.utils.UIUtils;
 /**class is used for executing instructions (including syscall)
  * it is separate from the main CPU model due to it's size
  * since the cpu is the main model, it will be wrapped up in the cpu class
+ * every statement is given a handler when the program is loaded (see createHandler) which carries out
+ * the instruction on the int registers, so nothing has to be looked up or converted while executing
  * @author Charlie Street
  *
  */
@@ -45,232 +49,518 @@ class Executor {
 	
 	 /**this method will execute the instruction given to it
      * wrapper for method in Executor, gives nice inheritance layout
-     * @param instruction instruction set up with all necessary data
+     * @param instruction the pre-decoded instruction
      * @param programCounter the current program counter value
+     * @return the new program counter value
      * @throws InstructionException if problem during execution
      * @throws ExecuteException if problem during execution
      * @throws HeapException if problem accessing heap
      * @throws MemoryException if problem accessing memory
      * @throws StackException if problem accessing the stack
      */
-    public Address execute(InstructionFormat instruction, Address programCounter) throws InstructionException, ExecuteException, MemoryException, HeapException, StackException {
-        Address toReturn = programCounter;
-    	cpu.sendMessage(new StageEnterMessage(Stage.Execute));//signal start of execution
-    	switch(instruction.mode) {//switch based on instruction format
-            case RTYPE:
-            	cpu.sendMessage(new InstructionTypeMessage(AddressMode.RTYPE));//send message giving idea of datapath selected
-                Word result = ALU.execute(instruction.getInstruction(), instruction.asRType().getSrc1(), instruction.asRType().getSrc2(),Optional.of(cpu));
-                cpu.sendMessage(new DataMovementMessage(instruction.asRType().getSrc1(),Optional.empty()));//moved into alu
-                cpu.sendMessage(new DataMovementMessage(instruction.asRType().getSrc2(),Optional.empty()));
-                
-                if(instruction.asRType().getDestReg() == null) {//mult, multi etc.
-                	cpu.sendMessage(new HiLoChangeMessage());
-                } else {
-	                Register dest = instruction.asRType().getDestReg();
-	                cpu.setRegister(dest, result);
-	                cpu.sendMessage(new DataMovementMessage(Optional.of(result),Optional.empty()));
-	                cpu.sendMessage(new RegisterChangedMessage(instruction.asRType().getDestReg()));
-	                
-	                if(instruction.asRType().getInstruction().equals(Instruction.mul) ||
-	                	instruction.asRType().getInstruction().equals(Instruction.mult) ||
-	                	instruction.asRType().getInstruction().equals(Instruction.multi) ||
-	                	instruction.asRType().getInstruction().equals(Instruction.div) ||
-	                	instruction.asRType().getInstruction().equals(Instruction.divu)) {
-	                	cpu.sendMessage(new HiLoChangeMessage());
-	                }
-                }
-                break;
-            case ITYPE:
-            	cpu.sendMessage(new InstructionTypeMessage(AddressMode.ITYPE));
-            	cpu.sendMessage(new DataMovementMessage(instruction.asIType().getCmp1(),Optional.empty()));
-            	cpu.sendMessage(new DataMovementMessage(instruction.asIType().getCmp2(),Optional.empty()));
-                Word branchTest = ALU.execute(instruction.getInstruction(), instruction.asIType().getCmp1(), instruction.asIType().getCmp2(),Optional.of(cpu));//carrying out comparison
-                if(Arrays.equals(branchTest.getBytes(), ALU.branchTrue)) {
-                    toReturn = instruction.asIType().getBranchAddress().get();//set the program counter
-                    cpu.sendMessage(new DataMovementMessage(Optional.of(encodeU((long)toReturn.getValue())),Optional.empty()));
-                }
-                break;
-            case SPECIAL:
-            	cpu.sendMessage(new InstructionTypeMessage(AddressMode.SPECIAL));
-                if(instruction.getInstruction().equals(Instruction.syscall)) {//syscall
-                    int v0 = (int)DataConverter.decodeAsSigned(cpu.getRegister(Register.v0).getBytes());//getting code for syscall
-                    syscall(v0);//carry out specified syscall op
-                }
-                else if(instruction.getInstruction().equals(Instruction.BREAK)) {
-					cpu.pause();
-                }
-                else if(!instruction.getInstruction().equals(Instruction.nop)) {
-                    throw new ExecuteException("Error with zero argument instruction", instruction);
-                }
-                break;
-            case JTYPE:
-            	cpu.sendMessage(new InstructionTypeMessage(AddressMode.JTYPE));
-                if(instruction.getInstruction().equals(Instruction.jal)
-						|| instruction.getInstruction().equals(Instruction.jalr)) {//making sure i put current address in ra
-					Word retAddress = instruction.asJType().getCurrentAddress().get();
-                    cpu.setRegister(Register.ra, retAddress);
-                    cpu.sendMessage(new DataMovementMessage(Optional.of(retAddress),Optional.empty()));
-                    cpu.sendMessage(new RegisterChangedMessage(Register.ra));
-                }
+    int execute(DecodedInstruction instruction, int programCounter) throws InstructionException, ExecuteException, MemoryException, HeapException, StackException {
+    	if(!cpu.cycleMessages) {
+    		return instruction.handler.execute(cpu, programCounter);
+    	}
+
+    	if(cpu.shouldSend(MessageType.STAGE_ENTER)) cpu.sendMessage(new StageEnterMessage(Stage.Execute));//signal start of execution
+    	if(cpu.shouldSend(MessageType.INSTRUCTION_TYPE)) cpu.sendMessage(new InstructionTypeMessage(instruction.mode));//send message giving idea of datapath selected
+    	if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) {//the values read by the instruction
+    		if(instruction.src1 != null) cpu.sendMessage(new DataMovementMessage(Optional.of(cpu.getRegister(instruction.src1)), Optional.empty()));
+    		if(instruction.src2 != null) cpu.sendMessage(new DataMovementMessage(Optional.of(cpu.getRegister(instruction.src2)), Optional.empty()));
+    	}
+
+    	int newProgramCounter = instruction.handler.execute(cpu, programCounter);
+
+    	Instruction i = instruction.instruction;
+    	switch(instruction.mode) {//the results of the instruction
+    		case RTYPE:
+    		case LSTYPE:
+    			if(instruction.dest != null) {
+    				if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(cpu.getRegister(instruction.dest)),Optional.empty()));
+    				if(cpu.shouldSend(MessageType.REGISTER_CHANGED)) cpu.sendMessage(new RegisterChangedMessage(instruction.dest));
+    			}
+    			if(i == Instruction.mul || i == Instruction.mult || i == Instruction.multi || i == Instruction.div
+    					|| i == Instruction.divu || i == Instruction.mtlo || i == Instruction.mthi) {
+    				if(cpu.shouldSend(MessageType.REGISTER_CHANGED)) cpu.sendMessage(new HiLoChangeMessage());
+    			}
+    			break;
+    		case JTYPE:
+    			if(i == Instruction.jal || i == Instruction.jalr) {
+    				if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(cpu.getRegister(Register.ra)),Optional.empty()));
+    				if(cpu.shouldSend(MessageType.REGISTER_CHANGED)) cpu.sendMessage(new RegisterChangedMessage(Register.ra));
+    			}
+    			if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(encodeU(newProgramCounter)),Optional.empty()));
+    			break;
+    		case ITYPE:
+    			if(cpu.branchTaken) {
+    				if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(encodeU(newProgramCounter)),Optional.empty()));
+    			}
+    			break;
+    		default:
+    			break;
+    	}
+    	return newProgramCounter;
+    }
+
+    /**creates the handler which carries out a pre-decoded instruction
+     * the common instructions have their own handler so that the work done is as small as possible,
+     * the rest use the operation or comparison looked up from the ALU
+     * @param d the pre-decoded instruction
+     * @return the handler for the instruction
+     */
+    static InstructionHandler createHandler(DecodedInstruction d) {
+    	switch(d.mode) {
+    		case RTYPE:
+    			return arithmeticHandler(d);
+    		case ITYPE:
+    			return branchHandler(d);
+    		case JTYPE:
+    			return jumpHandler(d);
+    		case LSTYPE:
+    			return loadStoreHandler(d);
+    		case SPECIAL:
+    		default:
+    			return specialHandler(d);
+    	}
+    }
 
-                toReturn = instruction.asJType().getJumpAddress().get();//loading new address into the PC
-                cpu.sendMessage(new DataMovementMessage(Optional.of(encodeU((long)toReturn.getValue())),Optional.empty()));
-                break;
-            case LSTYPE:
-            	cpu.sendMessage(new InstructionTypeMessage(AddressMode.LSTYPE));
-                if(instruction.getInstruction().getOperandFormat().equals(OperandFormat.destImm)) {//li
-                	if(instruction.getInstruction().equals(Instruction.li)) {
-                		  cpu.setRegister(instruction.asLSType().getRegisterName().get(), instruction.asLSType().getImmediate().get());
-                	} else if(instruction.getInstruction().equals(Instruction.lui)) {
-                		byte[] immediate = instruction.asLSType().getImmediate().get().getBytes();
-                		immediate = new byte[]{immediate[2],immediate[3],0x00,0x00};//lower half of immediate as upper half
-                		cpu.setRegister(instruction.asLSType().getRegisterName().get(), new Word(immediate));
-                	}
-                  
-                    cpu.sendMessage(new DataMovementMessage(Optional.of(cpu.getRegister(instruction.asLSType().getRegisterName().get())),Optional.empty()));
-                    cpu.sendMessage(new RegisterChangedMessage(instruction.asLSType().getRegisterName().get()));
-                    
-                } else if(instruction.getInstruction().getOperandFormat().equals(OperandFormat.dest)) {//mflo and mfhi
-                	cpu.sendMessage(new InstructionTypeMessage(AddressMode.LSTYPE));
-                	if(instruction.getInstruction().equals(Instruction.mflo)) {
-                		cpu.setRegister(instruction.asLSType().getRegisterName().get(),cpu.getLo());
-                	} else if(instruction.getInstruction().equals(Instruction.mfhi)) {
-                		cpu.setRegister(instruction.asLSType().getRegisterName().get(), cpu.getHi());
-                	}
-                	cpu.sendMessage(new DataMovementMessage(Optional.of(cpu.getRegister(instruction.asLSType().getRegisterName().get())),Optional.empty()));
-                	cpu.sendMessage(new RegisterChangedMessage(instruction.asLSType().getRegisterName().get()));
-                
-                } else if(instruction.getInstruction().getOperandFormat().equals(OperandFormat.src)) {
-                	cpu.sendMessage(new InstructionTypeMessage(AddressMode.LSTYPE));
-                	if(instruction.getInstruction().equals(Instruction.mtlo)) {
-                		cpu.setLo(instruction.asLSType().getRegister().get());
-                	} else if(instruction.getInstruction().equals(Instruction.mthi)) {
-                		cpu.setHi(instruction.asLSType().getRegister().get());
-                	}
-                	cpu.sendMessage(new HiLoChangeMessage());
-                	
-                } else if(instruction.getInstruction().getOperandFormat().equals(OperandFormat.destAddr)) {//load
-                    int retrieveAddress = instruction.asLSType().getMemAddress().get().getValue();
+    /**creates a single handler which carries out a pair of instructions that often appear together
+     * (used by BasicBlock). The pairs recognised are:
+     *   lui + ori/addiu of the same register (loading a 32 bit constant or address, eg %hi/%lo from gcc)
+     *   slt/slti/sltu/sltiu + beq/bne comparing the result with $zero (eg blt, bgt etc.)
+     *   addi/addiu + sw using the result as the base (eg pushing onto the stack)
+     * the fused handler leaves the registers, memory and branchTaken exactly as running the two handlers would.
+     * the first instruction of every pair can't fail, so if the fused handler throws an exception
+     * it is always the second instruction which failed
+     * @param first the first instruction
+     * @param second the instruction straight after it
+     * @return the handler for both instructions, or null if they can't be fused
+     */
+    static InstructionHandler fuse(DecodedInstruction first, DecodedInstruction second) {
+    	if(first.error != null || second.error != null || first.dest == null || first.dest.getID() == 0) {
+    		return null;
+    	}
+    	final int dest = first.dest.getID();
+    	final Instruction i = first.instruction;
+
+    	if(i == Instruction.lui && first.immediate != null
+    			&& (second.instruction == Instruction.ori || second.instruction == Instruction.addiu)
+    			&& second.mode == AddressMode.RTYPE && second.dest != null && second.src2 == null
+    			&& second.immediate != null && second.src1.getID() == dest) {
+    		final int upper = immediate(first) << 16;//lower half of immediate as upper half
+    		final int dest2 = second.dest.getID();
+    		final int value = second.instruction == Instruction.ori ? upper | immediate(second) : upper + immediate(second);
+    		return (c, pc) -> {
+    			c.setRegisterValue(dest, upper);
+    			c.setRegisterValue(dest2, value);
+    			return pc + 4;
+    		};
+    	}
 
-                    if(instruction.getInstruction().equals(Instruction.la)) {//have to be careful with la
-                    	Word address = new Word(DataConverter.encodeAsSigned((long)retrieveAddress));
-                    	cpu.setRegister(instruction.asLSType().getRegisterName().get(), address);
-                	}
-                	else {
-	                    int length = 0;//length to read
-	                    byte[] read;
+    	if(first.mode != AddressMode.RTYPE) {
+    		return null;
+    	}
+    	final int s = first.src1.getID();
+    	final boolean hasImmediate = first.src2 == null;
+    	final int imm = first.immediate == null ? 0 : immediate(first);
+
+    	if((i == Instruction.slt || i == Instruction.sltu || i == Instruction.slti || i == Instruction.sltiu)
+    			&& (second.instruction == Instruction.beq || second.instruction == Instruction.bne)
+    			&& second.addressRegister == null && second.src2 != null
+    			&& second.src1.getID() == dest && second.src2.getID() == Register.zero.getID()) {
+    		final int t = hasImmediate ? 0 : first.src2.getID();
+    		final boolean unsigned = i == Instruction.sltu || i == Instruction.sltiu;
+    		final boolean takenIfLess = second.instruction == Instruction.bne;//bne jumps if the result is 1, beq if it is 0
+    		final int offset = second.addressOffset;
+    		return (c, pc) -> {
+    			int a = c.getRegisterValue(s);
+    			int b = hasImmediate ? imm : c.getRegisterValue(t);
+    			boolean less = unsigned ? Integer.compareUnsigned(a, b) < 0 : a < b;
+    			c.setRegisterValue(dest, less ? 1 : 0);
+    			return (c.branchTaken = less == takenIfLess) ? offset : pc + 4;
+    		};
+    	}
 
-	                    if(instruction.getInstruction().equals(Instruction.lw)) {//checking length to read
-	                    	length = 4;
-	                    } else if(instruction.getInstruction().equals(Instruction.lb)||instruction.getInstruction().equals(Instruction.lbu)) {
-	                    	length = 1;
-	                    } else if(instruction.getInstruction().equals(Instruction.lh)||instruction.getInstruction().equals(Instruction.lhu)) {
-	                    	length = 2;
-	                    }
-	                    read = cpu.getMainMemory().readFromMem(retrieveAddress, length);//read bytes from memory
-	                    cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(read)),Optional.empty()));
-	                    
-	                    if(instruction.getInstruction().equals(Instruction.lb)||instruction.getInstruction().equals(Instruction.lh)) {//unsigned vs signed
-	                    	long val = DataConverter.decodeAsSigned(read);
-	                    	read = DataConverter.encodeAsSigned(val);
-	                    } else if(instruction.getInstruction().equals(Instruction.lbu)||instruction.getInstruction().equals(Instruction.lhu)) {
-	                    	long val = DataConverter.decodeAsUnsigned(read);
-	                    	read = DataConverter.encodeAsUnsigned(val);
-	                    }
-	                    
-	                    cpu.setRegister(instruction.asLSType().getRegisterName().get(), new Word(read));
-                	}
-                    cpu.sendMessage(new DataMovementMessage(Optional.of(cpu.getRegister(instruction.asLSType().getRegisterName().get())),Optional.empty()));
-                	cpu.sendMessage(new RegisterChangedMessage(instruction.asLSType().getRegisterName().get()));
-                }
-                else if(instruction.getInstruction().getOperandFormat().equals(OperandFormat.srcAddr)) {//store
-                	byte[] toStore;//where to store the data to be put in memory
-                	
-                	if(instruction.getInstruction().equals(Instruction.sb)) {
-                		toStore = new byte[]{instruction.asLSType().getRegister().get().getBytes()[3]};//lowest byte
-                	} else if(instruction.getInstruction().equals(Instruction.sh)) {
-                		toStore = instruction.asLSType().getRegister().get().getBytes();
-                		toStore = new byte[]{toStore[2],toStore[3]};
-                	} else {//sw
-	                    toStore = instruction.asLSType().getRegister().get().getBytes();//all 4 bytes
-                	}
-                	
-                	int storeAddress = instruction.asLSType().getMemAddress().get().getValue();
-	                cpu.getMainMemory().writeToMem(storeAddress, toStore);
-	                cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(toStore)),Optional.empty()));
-                }
-                else {
-                    throw new ExecuteException("Error executing load/store instruction.", instruction);
-                }
-                break;
-            default:
-                throw new ExecuteException("Error during Execution", instruction);
-        }
-    	return toReturn;
+    	if((i == Instruction.addi || i == Instruction.addiu) && hasImmediate
+    			&& second.instruction == Instruction.sw && second.hasAddress && second.dest == null
+    			&& second.addressRegister != null && second.addressRegister.getID() == dest) {
+    		final int offset = second.addressOffset;
+    		final int src = second.src1.getID();
+    		final int source = second.address;
+    		return (c, pc) -> {
+    			int base = c.getRegisterValue(s) + imm;
+    			c.setRegisterValue(dest, base);
+    			int address = offset + base;
+    			c.getMainMemory().storeWord(address, c.getRegisterValue(src));
+    			c.memoryWritten(address, 4);
+    			cacheAccess(c, address, true, source);
+    			return pc + 4;
+    		};
+    	}
+    	return null;
+    }
+
+    /**tell the data cache about a load or store (if the cpu has a data cache), a miss stalls the timing model
+     * syscalls which read or write strings are treated like a device copying straight to memory, so don't use the cache
+     * @param c the cpu running the instruction
+     * @param address the address accessed
+     * @param write whether the access was a store
+     * @param source the address of the instruction
+     */
+    private static void cacheAccess(CPU c, int address, boolean write, int source) {
+    	Cache cache = c.dataCache;
+    	if(cache != null && !cache.access(address, write, source) && c.timing != null) {
+    		c.timing.missed(1);
+    	}
+    }
+
+    /**
+     * @param d the instruction
+     * @return a handler which throws an exception for an instruction which can't be executed
+     */
+    private static InstructionHandler unsupported(DecodedInstruction d) {
+    	final Instruction instruction = d.instruction;
+    	return (c, pc) -> {
+    		throw new InstructionException("Invalid/Unsupported Instruction.", instruction);
+    	};
+    }
+
+    /**
+     * @param d an RTYPE instruction
+     * @return the handler for the instruction
+     */
+    private static InstructionHandler arithmeticHandler(DecodedInstruction d) {
+    	final int s = d.src1.getID();
+    	final boolean hasImmediate = d.src2 == null;
+    	final int t = hasImmediate ? 0 : d.src2.getID();
+    	final int imm = d.immediate == null ? 0 : immediate(d);//0 if there is no second operand
+
+    	if(d.dest == null) {//mult, multi etc. only write to hi and lo
+    		if(d.instruction == Instruction.mult && !hasImmediate) {
+    			return (c, pc) -> {
+    				long result = (long) c.getRegisterValue(s) * (long) c.getRegisterValue(t);
+    				c.setHiValue((int) (result >>> 32));
+    				c.setLoValue((int) result);
+    				return pc;
+    			};
+    		}
+    		final ALU.Operation op = ALU.operation(d.instruction);
+    		if(op == null) {
+    			return unsupported(d);
+    		}
+    		return hasImmediate
+    				? (c, pc) -> { op.apply(c.getRegisterValue(s), imm, c); return pc; }
+    				: (c, pc) -> { op.apply(c.getRegisterValue(s), c.getRegisterValue(t), c); return pc; };
+    	}
+
+    	final int dest = d.dest.getID();
+    	if(hasImmediate) {
+    		// the fixed shifts work like shifting a 64 bit value, so shifting by 32 or more clears the value
+    		final long shift = imm & 0xFFFFFFFFL;
+    		switch(d.instruction) {
+    			case move: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s)); return pc; };
+    			case addi: case addiu: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) + imm); return pc; };
+    			case subi: case subiu: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) - imm); return pc; };
+    			case andi: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) & imm); return pc; };
+    			case ori: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) | imm); return pc; };
+    			case xori: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) ^ imm); return pc; };
+    			case slti: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) < imm ? 1 : 0); return pc; };
+    			case sltiu: return (c, pc) -> { c.setRegisterValue(dest, Integer.compareUnsigned(c.getRegisterValue(s), imm) < 0 ? 1 : 0); return pc; };
+    			case sll: return (c, pc) -> { c.setRegisterValue(dest, (int) ((c.getRegisterValue(s) & 0xFFFFFFFFL) << shift)); return pc; };
+    			case srl: return (c, pc) -> { c.setRegisterValue(dest, (int) ((c.getRegisterValue(s) & 0xFFFFFFFFL) >>> shift)); return pc; };
+    			case sra: return (c, pc) -> { c.setRegisterValue(dest, (int) ((long) c.getRegisterValue(s) >> shift)); return pc; };
+    			default: break;
+    		}
+    		final ALU.Operation op = ALU.operation(d.instruction);
+    		if(op == null) {
+    			return unsupported(d);
+    		}
+    		return (c, pc) -> { c.setRegisterValue(dest, op.apply(c.getRegisterValue(s), imm, c)); return pc; };
+    	} else {
+    		switch(d.instruction) {
+    			case add: case addu: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) + c.getRegisterValue(t)); return pc; };
+    			case sub: case subu: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) - c.getRegisterValue(t)); return pc; };
+    			case and: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) & c.getRegisterValue(t)); return pc; };
+    			case or: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) | c.getRegisterValue(t)); return pc; };
+    			case xor: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) ^ c.getRegisterValue(t)); return pc; };
+    			case nor: return (c, pc) -> { c.setRegisterValue(dest, ~(c.getRegisterValue(s) | c.getRegisterValue(t))); return pc; };
+    			case slt: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) < c.getRegisterValue(t) ? 1 : 0); return pc; };
+    			case sltu: return (c, pc) -> { c.setRegisterValue(dest, Integer.compareUnsigned(c.getRegisterValue(s), c.getRegisterValue(t)) < 0 ? 1 : 0); return pc; };
+    			case sllv: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) << (c.getRegisterValue(t) & 31)); return pc; };
+    			case srlv: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) >>> (c.getRegisterValue(t) & 31)); return pc; };
+    			case srav: return (c, pc) -> { c.setRegisterValue(dest, c.getRegisterValue(s) >> (c.getRegisterValue(t) & 31)); return pc; };
+    			default: break;
+    		}
+    		final ALU.Operation op = ALU.operation(d.instruction);
+    		if(op == null) {
+    			return unsupported(d);
+    		}
+    		return (c, pc) -> { c.setRegisterValue(dest, op.apply(c.getRegisterValue(s), c.getRegisterValue(t), c)); return pc; };
+    	}
+    }
+
+    /**
+     * @param d an ITYPE instruction
+     * @return the handler for the branch
+     */
+    private static InstructionHandler branchHandler(DecodedInstruction d) {
+    	final int s = d.src1.getID();
+    	final boolean compareWithZero = d.src2 == null;
+    	final int t = compareWithZero ? 0 : d.src2.getID();
+    	final int offset = d.addressOffset;
+    	final boolean hasBase = d.addressRegister != null;
+    	final int base = hasBase ? d.addressRegister.getID() : 0;
+
+    	final ALU.Comparison comparison = ALU.comparison(d.instruction);
+    	if(comparison == null) {
+    		return unsupported(d);
+    	}
+    	if(!hasBase && !compareWithZero) {
+    		switch(d.instruction) {//the most common branches
+    			case beq: return (c, pc) -> (c.branchTaken = c.getRegisterValue(s) == c.getRegisterValue(t)) ? offset : pc;
+    			case bne: return (c, pc) -> (c.branchTaken = c.getRegisterValue(s) != c.getRegisterValue(t)) ? offset : pc;
+    			case blt: return (c, pc) -> (c.branchTaken = c.getRegisterValue(s) < c.getRegisterValue(t)) ? offset : pc;
+    			case bge: return (c, pc) -> (c.branchTaken = c.getRegisterValue(s) >= c.getRegisterValue(t)) ? offset : pc;
+    			default: break;
+    		}
+    	}
+    	return (c, pc) -> {
+    		c.branchTaken = comparison.test(c.getRegisterValue(s), compareWithZero ? 0 : c.getRegisterValue(t));
+    		return c.branchTaken ? offset + (hasBase ? c.getRegisterValue(base) : 0) : pc;
+    	};
+    }
+
+    /**
+     * @param d a JTYPE instruction
+     * @return the handler for the jump
+     */
+    private static InstructionHandler jumpHandler(DecodedInstruction d) {
+    	final int returnAddress = d.nextAddress();
+    	final int ra = Register.ra.getID();
+    	final boolean link = d.instruction == Instruction.jal || d.instruction == Instruction.jalr;//making sure i put current address in ra
+    	if(d.hasAddress) {
+    		final int offset = d.addressOffset;
+    		if(d.addressRegister == null) {
+    			return link ? (c, pc) -> { c.setRegisterValue(ra, returnAddress); return offset; } : (c, pc) -> offset;
+    		}
+    		final int base = d.addressRegister.getID();
+    		return (c, pc) -> {
+    			int target = offset + c.getRegisterValue(base);//read before $ra is written
+    			if(link) c.setRegisterValue(ra, returnAddress);
+    			return target;
+    		};
+    	} else {
+    		final int src = d.src1.getID();
+    		return (c, pc) -> {
+    			int target = c.getRegisterValue(src);//read before $ra is written
+    			if(link) c.setRegisterValue(ra, returnAddress);
+    			return target;
+    		};
+    	}
+    }
+
+    /**
+     * @param d an LSTYPE instruction
+     * @return the handler for the instruction
+     */
+    private static InstructionHandler loadStoreHandler(DecodedInstruction d) {
+    	if(d.hasAddress) {
+    		final int offset = d.addressOffset;
+    		final boolean hasBase = d.addressRegister != null;
+    		final int base = hasBase ? d.addressRegister.getID() : 0;
+    		final int source = d.address;
+    		if(d.dest != null) {//load
+    			final int dest = d.dest.getID();
+    			switch(d.instruction) {
+    				case la://have to be careful with la
+    					return (c, pc) -> { c.setRegisterValue(dest, offset + (hasBase ? c.getRegisterValue(base) : 0)); return pc; };
+    				case lw: return (c, pc) -> {
+    					int address = offset + (hasBase ? c.getRegisterValue(base) : 0);
+    					c.setRegisterValue(dest, c.getMainMemory().loadWord(address));
+    					cacheAccess(c, address, false, source);
+    					return pc;
+    				};
+    				case lh: return (c, pc) -> {
+    					int address = offset + (hasBase ? c.getRegisterValue(base) : 0);
+    					c.setRegisterValue(dest, c.getMainMemory().loadHalf(address));
+    					cacheAccess(c, address, false, source);
+    					return pc;
+    				};
+    				case lhu: return (c, pc) -> {
+    					int address = offset + (hasBase ? c.getRegisterValue(base) : 0);
+    					c.setRegisterValue(dest, c.getMainMemory().loadHalf(address) & 0xFFFF);
+    					cacheAccess(c, address, false, source);
+    					return pc;
+    				};
+    				case lb: return (c, pc) -> {
+    					int address = offset + (hasBase ? c.getRegisterValue(base) : 0);
+    					c.setRegisterValue(dest, c.getMainMemory().loadByte(address));
+    					cacheAccess(c, address, false, source);
+    					return pc;
+    				};
+    				case lbu: return (c, pc) -> {
+    					int address = offset + (hasBase ? c.getRegisterValue(base) : 0);
+    					c.setRegisterValue(dest, c.getMainMemory().loadByte(address) & 0xFF);
+    					cacheAccess(c, address, false, source);
+    					return pc;
+    				};
+    				default: break;
+    			}
+    		} else {//store
+    			final int src = d.src1.getID();
+    			switch(d.instruction) {
+    				case sw: return (c, pc) -> {
+    					int address = offset + (hasBase ? c.getRegisterValue(base) : 0);
+    					c.getMainMemory().storeWord(address, c.getRegisterValue(src));
+    					c.memoryWritten(address, 4);
+    					cacheAccess(c, address, true, source);
+    					return pc;
+    				};
+    				case sh: return (c, pc) -> {
+    					int address = offset + (hasBase ? c.getRegisterValue(base) : 0);
+    					c.getMainMemory().storeHalf(address, c.getRegisterValue(src));
+    					c.memoryWritten(address, 2);
+    					cacheAccess(c, address, true, source);
+    					return pc;
+    				};
+    				case sb: return (c, pc) -> {//lowest byte
+    					int address = offset + (hasBase ? c.getRegisterValue(base) : 0);
+    					c.getMainMemory().storeByte(address, c.getRegisterValue(src));
+    					c.memoryWritten(address, 1);
+    					cacheAccess(c, address, true, source);
+    					return pc;
+    				};
+    				default: break;
+    			}
+    		}
+    	} else if(d.dest != null) {
+    		final int dest = d.dest.getID();
+    		switch(d.instruction) {
+    			case li: {
+    				final int imm = immediate(d);
+    				return (c, pc) -> { c.setRegisterValue(dest, imm); return pc; };
+    			}
+    			case lui: {
+    				final int imm = immediate(d) << 16;//lower half of immediate as upper half
+    				return (c, pc) -> { c.setRegisterValue(dest, imm); return pc; };
+    			}
+    			case mflo: return (c, pc) -> { c.setRegisterValue(dest, c.getLoValue()); return pc; };
+    			case mfhi: return (c, pc) -> { c.setRegisterValue(dest, c.getHiValue()); return pc; };
+    			default: break;
+    		}
+    	} else if(d.src1 != null) {
+    		final int src = d.src1.getID();
+    		switch(d.instruction) {
+    			case mtlo: return (c, pc) -> { c.setLoValue(c.getRegisterValue(src)); return pc; };
+    			case mthi: return (c, pc) -> { c.setHiValue(c.getRegisterValue(src)); return pc; };
+    			default: break;
+    		}
+    	}
+
+    	final SpecialInstruction instruction = new SpecialInstruction(d.instruction);
+    	return (c, pc) -> {
+    		throw new ExecuteException("Error executing load/store instruction.", instruction);
+    	};
+    }
+
+    /**
+     * @param d a SPECIAL instruction
+     * @return the handler for the instruction
+     */
+    private static InstructionHandler specialHandler(DecodedInstruction d) {
+    	switch(d.instruction) {
+    		case syscall: return (c, pc) -> {
+    			syscall(c, c.getRegisterValue(Register.v0));//carry out specified syscall op
+    			return pc;
+    		};
+    		case BREAK: return (c, pc) -> {
+    			c.pause();
+    			return pc;
+    		};
+    		case nop: return (c, pc) -> pc;
+    		default: {
+    			final SpecialInstruction instruction = new SpecialInstruction(d.instruction);
+    			return (c, pc) -> {
+    				throw new ExecuteException("Error with zero argument instruction", instruction);
+    			};
+    		}
+    	}
+    }
+
+    /**
+     * @param d an instruction with an immediate operand
+     * @return the immediate as a 32 bit value
+     */
+    private static int immediate(DecodedInstruction d) {
+    	return (int) DataConverter.decodeAsSigned(d.immediate.getBytes());
     }
 
     /**will use IO to enable the use of system calls with the user
      * 
+     * @param cpu the cpu making the system call
      * @param v0 the syscall code retrieved from the v0 register
      * @throws InstructionException if invalid syscall code
      * @throws HeapException if problem using sbrk like a0 not multiple of 4
      * @throws MemoryException if problem reading from memory for read string
      * @throws StackException if problem accessing the stack
      */
-    private void syscall(int v0) throws InstructionException, HeapException, MemoryException, StackException {
-    	int a0 = (int)DataConverter.decodeAsSigned(cpu.getRegister(Register.a0).getBytes());//getting main argument register
+    private static void syscall(CPU cpu, int v0) throws InstructionException, HeapException, MemoryException, StackException {
+    	int a0 = cpu.getRegisterValue(Register.a0);//getting main argument register
     	switch(v0) {
     		case 1://print int
     			cpu.getIO().printInt(IOStream.STANDARD, a0);//printing to console
     			break;
     		case 4: {//print string
-				byte[] stringData = cpu.getMainMemory().readUntilNull(a0);
-				String str = new String(stringData, StandardCharsets.UTF_8);
+				// passed to the IO as a view of the memory rather than being copied and decoded here
+				ByteBuffer stringData = cpu.getMainMemory().viewUntilNull(a0);
 
-				cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(new byte[4])), Optional.empty()));
-				cpu.getIO().printString(IOStream.STANDARD, str);
+				if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(new byte[4])), Optional.empty()));
+				cpu.getIO().printBytes(IOStream.STANDARD, stringData);
 			} break;
     		case 5: {//read int
     			int read = cpu.getIO().readInt(IOStream.STANDARD);//reading in from console
-    			Word readAsWord = new Word(DataConverter.encodeAsSigned((long)read));
-    			cpu.setRegister(Register.v0, readAsWord);//storing in v0
-    			cpu.sendMessage(new DataMovementMessage(Optional.of(readAsWord),Optional.empty()));
-    			cpu.sendMessage(new RegisterChangedMessage(Register.v0));
+    			cpu.setRegisterValue(Register.v0, read);//storing in v0
+    			if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(DataConverter.encodeAsSigned((long)read))),Optional.empty()));
+    			if(cpu.shouldSend(MessageType.REGISTER_CHANGED)) cpu.sendMessage(new RegisterChangedMessage(Register.v0));
     		} break;
     		case 8: {//read string
-				String readInString = cpu.getIO().readString(IOStream.STANDARD);//this string will be cut to maxChars -1 i.e last one will be null terminator
-				int a1 = (int) DataConverter.decodeAsUnsigned(cpu.getRegister(Register.a1).getBytes());//max chars stored here
-				if (readInString.length() + 1 > a1) {//truncating string (+1 to include null terminator)
-                    // exclusive, so substring has length a1-1 (leaving room for the null terminator)
-					readInString = readInString.substring(0, a1 - 1);
-				}
-				readInString += '\0';
-				byte[] stringData = readInString.getBytes(StandardCharsets.UTF_8);
+				int a1 = cpu.getRegisterValue(Register.a1);//max chars stored here (including the null terminator)
+				String readInString = cpu.getIO().readString(IOStream.STANDARD);
+				// sized by the line rather than by a1, which can be anything (a char is at most 3 bytes in UTF-8)
+				int maxLength = Math.min(Math.max(a1 - 1, 0), 3 * readInString.length());
+				ByteBuffer stringData = ByteBuffer.allocate(maxLength + 1);
+				Buffer b = stringData;
+				b.limit(maxLength);//leave room for the null terminator
+				Utf8Decoder.encode(readInString, stringData);//cut short if it doesn't fit
+				b.limit(b.capacity());
+				stringData.put((byte) '\0');
+				b.flip();
+				int length = stringData.remaining();
 				cpu.getMainMemory().writeToMem(a0, stringData);
-				cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(new byte[4])), Optional.empty())); // send a word of nulls
+				cpu.memoryWritten(a0, length);
+				if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(new byte[4])), Optional.empty())); // send a word of nulls
 			} break;
     		case 9: {//sbrk
 				Address oldBreak = cpu.getMainMemory().getHeap().sbrk(a0);
-				Word oldBreakWord = new Word(DataConverter.encodeAsSigned(oldBreak.getValue()));
-				cpu.setRegister(Register.v0, oldBreakWord);
-				cpu.sendMessage(new DataMovementMessage(Optional.of(oldBreakWord), Optional.empty()));
-				cpu.sendMessage(new RegisterChangedMessage(Register.v0));
+				cpu.setRegisterValue(Register.v0, oldBreak.getValue());
+				if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(DataConverter.encodeAsSigned(oldBreak.getValue()))), Optional.empty()));
+				if(cpu.shouldSend(MessageType.REGISTER_CHANGED)) cpu.sendMessage(new RegisterChangedMessage(Register.v0));
 			} break;
     		case 10://exit program
     			cpu.stopRunning();
     			break;
     		case 11: {//print char
-				char toPrintChar = new String(new byte[]{DataConverter.encodeAsUnsigned(a0)[3]}, StandardCharsets.UTF_8).charAt(0);//int directly to char
+				char toPrintChar = new String(new byte[]{(byte) a0}, StandardCharsets.UTF_8).charAt(0);//int directly to char
 				cpu.getIO().printChar(IOStream.STANDARD, toPrintChar);
 			} break;
     		case 12: {//read char
 				String readChar = cpu.getIO().readChar(IOStream.STANDARD) + "";//from console
 				byte[] asBytes = readChar.getBytes(StandardCharsets.UTF_8);
-				long asLong = DataConverter.decodeAsSigned(asBytes);
-				Word charAsWord = new Word(DataConverter.encodeAsSigned(asLong));//format for register storage
-				cpu.setRegister(Register.v0, charAsWord);
-				cpu.sendMessage(new DataMovementMessage(Optional.of(charAsWord), Optional.empty()));
-				cpu.sendMessage(new RegisterChangedMessage(Register.v0));
+				int asInt = (int) DataConverter.decodeAsSigned(asBytes);
+				cpu.setRegisterValue(Register.v0, asInt);
+				if(cpu.shouldSend(MessageType.DATA_MOVEMENT)) cpu.sendMessage(new DataMovementMessage(Optional.of(new Word(DataConverter.encodeAsSigned(asInt))), Optional.empty()));
+				if(cpu.shouldSend(MessageType.REGISTER_CHANGED)) cpu.sendMessage(new RegisterChangedMessage(Register.v0));
 			} break;
     		case 67697865://AND HIS NAME IS...
 				UIUtils.openURL("https://www.youtube.com/watch?v=5LitDGyxFh4");
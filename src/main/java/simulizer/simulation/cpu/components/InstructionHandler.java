@@ -0,0 +1,27 @@
+package simulizer.simulation.cpu.components;
+
+import simulizer.simulation.exceptions.ExecuteException;
+import simulizer.simulation.exceptions.HeapException;
+import simulizer.simulation.exceptions.InstructionException;
+import simulizer.simulation.exceptions.MemoryException;
+import simulizer.simulation.exceptions.StackException;
+
+/**carries out a single pre-decoded instruction
+ * a handler is created for every statement when the program is loaded (see Executor.createHandler)
+ * with the registers and immediates it uses already worked out, so executing the instruction
+ * doesn't need to look at the instruction or its operands again
+ */
+interface InstructionHandler {
+
+	/**execute the instruction
+	 * @param cpu the cpu to execute the instruction on
+	 * @param programCounter the address of the next instruction (the program counter has already been advanced)
+	 * @return the new value of the program counter
+	 * @throws InstructionException if the instruction isn't supported
+	 * @throws ExecuteException if problem during execution
+	 * @throws MemoryException if problem accessing memory
+	 * @throws HeapException if problem accessing heap
+	 * @throws StackException if problem accessing the stack
+	 */
+	int execute(CPU cpu, int programCounter) throws InstructionException, ExecuteException, MemoryException, HeapException, StackException;
+}
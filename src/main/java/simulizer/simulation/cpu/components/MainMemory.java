@@ -1,6 +1,6 @@
 package simulizer.simulation.cpu.components;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import simulizer.assembler.representation.Address;
 import simulizer.assembler.representation.Statement;
@@ -9,10 +9,10 @@ import simulizer.simulation.exceptions.MemoryException;
 import simulizer.simulation.exceptions.StackException;
 
 /**
- * this class represents the RAM of our simulator it is represented via a large
- * Word array, which will be partitioned this memory has the absence of OS
- * reserved data (which we don't need) the stack is also represented in a
- * different data structure
+ * this class represents the RAM of our simulator. The static data, heap and stack
+ * are all stored in one sparse page table (see PageTable) at their actual addresses,
+ * this class checks which segment an access is in and that it is allowed by that segment.
+ * this memory has the absence of OS reserved data (which we don't need)
  * 
  * @author Charlie Street
  * @author mbway
@@ -25,10 +25,19 @@ public class MainMemory {
 	private Address topOfStack;
 	private final Address endOfMemory; //TODO: why is this not used?
 	private static final int mebibyte = 1024*1024;
+	/**the default maximum sizes of the heap and stack. Only the pages which are used take up any space so these can be generous
+	 */
+	static final int defaultMaxHeapLength = 64*mebibyte;
+	static final int defaultMaxStackLength = 64*mebibyte;
 
+	// the bounds of the segments (start inclusive, end exclusive)
+	private final int staticStart, staticEnd;
+	private final int heapStart, heapEnd;
+	private final int stackStart, stackEnd;
 
 	private Map<Address,Statement> textSegment;
-	private byte[] staticDataSegment;
+	private final byte[] staticDataSegment;//the initial contents of the static data segment (not modified)
+	private final PageTable pages;
 	private DynamicDataSegment heap;
 	private StackSegment stack;
 
@@ -37,8 +46,12 @@ public class MainMemory {
 	 * this constructor just initialises the memory and then initialises all
 	 * partitions in it
 	 *
+	 * @param staticDataSegment the initial contents of the static data segment (copied into the memory)
+	 * @param maxHeapLength the number of bytes the heap is allowed to grow to
+	 * @param maxStackLength the number of bytes the stack is allowed to grow to (limited to the space between the heap and the top of the stack)
 	 */
-	MainMemory(Map<Address,Statement> textSegment, byte[] staticDataSegment, Address startOfStaticData, Address bottomOfDynamicData, Address stackPointer) {
+	MainMemory(Map<Address,Statement> textSegment, byte[] staticDataSegment, Address startOfStaticData, Address bottomOfDynamicData, Address stackPointer,
+			   int maxHeapLength, int maxStackLength) {
 		this.startOfStaticData = startOfStaticData;
 		this.bottomOfDynamicData = bottomOfDynamicData;
 		this.topOfStack = stackPointer;
@@ -46,34 +59,73 @@ public class MainMemory {
 
 		this.textSegment = textSegment;
 		this.staticDataSegment = staticDataSegment;
-		this.heap = new DynamicDataSegment(bottomOfDynamicData, mebibyte);
-		int topOfHeap = bottomOfDynamicData.getValue() + mebibyte;
-		int maxStackSize = topOfStack.getValue() - topOfHeap;
-		this.stack = new StackSegment(maxStackSize);
+		this.pages = new PageTable();
+		pages.write(startOfStaticData.getValue(), staticDataSegment, 0, staticDataSegment.length);
+		pages.markClean();
+		this.heap = new DynamicDataSegment(bottomOfDynamicData, maxHeapLength, pages);
+		int topOfHeap = bottomOfDynamicData.getValue() + maxHeapLength;
+		int maxStackSize = Math.min(maxStackLength, topOfStack.getValue() - topOfHeap);
+		this.stack = new StackSegment(topOfStack.getValue(), maxStackSize, pages);
+
+		staticStart = startOfStaticData.getValue();
+		staticEnd = staticStart + staticDataSegment.length;
+		heapStart = bottomOfDynamicData.getValue();
+		heapEnd = topOfHeap;
+		stackStart = topOfHeap;
+		stackEnd = topOfStack.getValue();
+	}
+
+	/**copy a memory, sharing the pages until either memory writes to them (see PageTable.copy)
+	 * @param m the memory to copy (which mustn't be written to while it is being copied)
+	 */
+	private MainMemory(MainMemory m) {
+		this.startOfStaticData = m.startOfStaticData;
+		this.bottomOfDynamicData = m.bottomOfDynamicData;
+		this.topOfStack = m.topOfStack;
+		this.endOfMemory = m.endOfMemory;
+
+		this.textSegment = m.textSegment;
+		this.staticDataSegment = m.staticDataSegment;
+		this.pages = m.pages.copy();
+		this.heap = m.heap.copy(pages);
+		this.stack = m.stack.copy(pages);
+
+		staticStart = m.staticStart;
+		staticEnd = m.staticEnd;
+		heapStart = m.heapStart;
+		heapEnd = m.heapEnd;
+		stackStart = m.stackStart;
+		stackEnd = m.stackEnd;
+	}
+
+	/**@return an independent copy of the memory, which only takes time and space for the pages either memory
+	 * writes to afterwards
+	 */
+	MainMemory copy()
+	{
+		return new MainMemory(this);
 	}
 
 	// definition of being 'in' a segment: if you write 1 byte at that location, that byte would be inside the segment
 	// eg the top of the stack is not inside the stack because it points past the highest element
 
 	private boolean inDynamicSegment(int address) {
-		return address >= bottomOfDynamicData.getValue()
-				  && address < bottomOfDynamicData.getValue() + mebibyte;
+		return address >= heapStart && address < heapEnd;
 	}
 	private boolean inDynamicSegment(int address, int length) {
 		return inDynamicSegment(address) && inDynamicSegment(address + length - 1);
 	}
 
 	private boolean inStaticSegment(int address) {
-		return address >= startOfStaticData.getValue()
-				&& address < startOfStaticData.getValue() + staticDataSegment.length;
+		return address >= staticStart && address < staticEnd;
 	}
 	private boolean inStaticSegment(int address, int length) {
 		return inStaticSegment(address) && inStaticSegment(address + length - 1);
 	}
 
 	private boolean inStack(int address) {
-		return address < topOfStack.getValue() // top of stack is not inside the stack
-				&& address >= bottomOfDynamicData.getValue() + mebibyte;
+		return address < stackEnd // top of stack is not inside the stack
+				&& address >= stackStart;
 	}
 	private boolean inStack(int address, int length) {
 		return inStack(address) && inStack(address + length - 1);
@@ -87,6 +139,147 @@ public class MainMemory {
 	{
 		return this.heap;
 	}
+
+	/**
+	 * @return the stack segment
+	 */
+	public StackSegment getStack()
+	{
+		return this.stack;
+	}
+
+	/**put the memory back to how it was when it was created: the static data segment holds its initial
+	 * contents again and the heap and stack are empty. Only the pages which have been written to are touched
+	 */
+	public void reset()
+	{
+		pages.restore(staticStart, staticDataSegment);
+		heap.reset();
+		stack.reset();
+	}
+
+	/**@return the number of 4 KiB pages of memory the program has used
+	 */
+	public int getAllocatedPages()
+	{
+		return pages.getAllocatedPages();
+	}
+
+	/**check that the given range can be read from, throwing the exception for the segment it is in if not
+	 * @param address the start address to read from
+	 * @param length the number of bytes to read
+	 */
+	private void checkRead(int address, int length) throws MemoryException, HeapException, StackException
+	{
+		if(inStaticSegment(address, length)) {
+			return;
+		} else if(inDynamicSegment(address, length)) {
+			heap.checkRead(address - heapStart, length);
+		} else if(inStack(address, length)) {
+			stack.checkRead(address - stackEnd, length); // relative address will be negative
+		} else {
+			throw new MemoryException("Reading from invalid area of memory", new Address(address));
+		}
+	}
+
+	/**check that the given range can be written to, throwing the exception for the segment it is in if not
+	 * @param address the start address to write to
+	 * @param length the number of bytes to write
+	 */
+	private void checkWrite(int address, int length) throws MemoryException, HeapException, StackException
+	{
+		if(inStaticSegment(address, length)) {
+			return;
+		} else if(inDynamicSegment(address, length)) {
+			heap.checkWrite(address - heapStart, length);
+		} else if(inStack(address, length)) {
+			stack.checkWrite(address - stackEnd, length); // relative address will be negative
+		} else {
+			throw new MemoryException("Writing to an invalid area of memory", new Address(address));
+		}
+	}
+
+	/**read a word from memory
+	 * @param address the address of the most significant byte
+	 * @return the word
+	 */
+	public int loadWord(int address) throws MemoryException, HeapException, StackException
+	{
+		if(inStack(address, 4)) {
+			return stack.loadWord(address - stackEnd);
+		}
+		checkRead(address, 4);
+		return pages.loadWord(address);
+	}
+
+	/**read a half word from memory
+	 * @param address the address of the most significant byte
+	 * @return the sign extended half word
+	 */
+	public int loadHalf(int address) throws MemoryException, HeapException, StackException
+	{
+		if(inStack(address, 2)) {
+			return stack.loadHalf(address - stackEnd);
+		}
+		checkRead(address, 2);
+		return pages.loadHalf(address);
+	}
+
+	/**read a byte from memory
+	 * @param address the address of the byte
+	 * @return the sign extended byte
+	 */
+	public int loadByte(int address) throws MemoryException, HeapException, StackException
+	{
+		if(inStack(address, 1)) {
+			return stack.loadByte(address - stackEnd);
+		}
+		checkRead(address, 1);
+		return pages.loadByte(address);
+	}
+
+	/**write a word into memory
+	 * @param address the address of the most significant byte
+	 * @param value the word to write
+	 */
+	public void storeWord(int address, int value) throws MemoryException, HeapException, StackException
+	{
+		if(inStack(address, 4)) {
+			stack.storeWord(address - stackEnd, value);
+			return;
+		}
+		checkWrite(address, 4);
+		pages.storeWord(address, value);
+	}
+
+	/**write a half word into memory
+	 * @param address the address of the most significant byte
+	 * @param value the half word to write (the lower 16 bits)
+	 */
+	public void storeHalf(int address, int value) throws MemoryException, HeapException, StackException
+	{
+		if(inStack(address, 2)) {
+			stack.storeHalf(address - stackEnd, value);
+			return;
+		}
+		checkWrite(address, 2);
+		pages.storeHalf(address, value);
+	}
+
+	/**write a byte into memory
+	 * @param address the address to write to
+	 * @param value the byte to write (the lowest 8 bits)
+	 */
+	public void storeByte(int address, int value) throws MemoryException, HeapException, StackException
+	{
+		if(inStack(address, 1)) {
+			stack.storeByte(address - stackEnd, value);
+			return;
+		}
+		checkWrite(address, 1);
+		pages.storeByte(address, value);
+	}
+
 	/**this method will read from memory, in the places it is allowed to
 	 * 
 	 * @param address the start address to read from
@@ -96,20 +289,34 @@ public class MainMemory {
 	 */
 	public byte[] readFromMem(int address, int length) throws MemoryException, HeapException, StackException
 	{
-        if(inStaticSegment(address, length)) {
-            int relativeAddress = address - startOfStaticData.getValue();
-			return Arrays.copyOfRange(staticDataSegment, relativeAddress, relativeAddress+length);
+		checkRead(address, length);
+		byte[] result = new byte[length];
+		pages.read(address, result, 0, length);
+		return result;
+	}
 
-		} else if(inDynamicSegment(address, length)) {
-			int relativeAddress = address - bottomOfDynamicData.getValue();
-			return heap.getBytes(relativeAddress, length);
+	/**find the end of a null terminated string.
+	 * An exception is thrown if the end of a segment is reached while scanning for a null character
+	 *
+	 * @param address the address to begin scanning at
+	 * @return the address of the null character
+	 */
+	private int findNull(int address) throws MemoryException, HeapException, StackException {
+		if(inStaticSegment(address)) {
+			int end = pages.findNull(address, staticEnd);
+			if(end < staticEnd) {
+				return end;
+			}
+			throw new MemoryException("Reading from invalid area of memory (scanning for a null character)", new Address(address));
 
-		} else if(inStack(address, length)) {
-			int relativeAddress = address - topOfStack.getValue(); // will be negative
-			return stack.getBytes(relativeAddress, length);
+		} else if(inDynamicSegment(address)) {
+			return heapStart + heap.findNull(address - heapStart);
+
+		} else if(inStack(address)) {
+			return stackEnd + stack.findNull(address - stackEnd); // relative address will be negative
 
 		} else {
-			throw new MemoryException("Reading from invalid area of memory", new Address(address));
+			throw new MemoryException("Reading from invalid area of memory (scanning for a null character)", new Address(address));
 		}
 	}
 
@@ -123,26 +330,21 @@ public class MainMemory {
 	 * @throws StackException
 	 */
 	public byte[] readUntilNull(int address) throws MemoryException, HeapException, StackException {
-		if(inStaticSegment(address)) {
-			int relativeAddress = address - startOfStaticData.getValue();
-            for(int i = relativeAddress; i < staticDataSegment.length; ++i) {
-                if(staticDataSegment[i] == '\0') {
-					return Arrays.copyOfRange(staticDataSegment, relativeAddress, i); // exclusive so null not included
-				}
-			}
-			throw new MemoryException("Reading from invalid area of memory (scanning for a null character)", new Address(address));
-
-		} else if(inDynamicSegment(address)) {
-			int relativeAddress = address - bottomOfDynamicData.getValue();
-			return heap.readUntilNull(relativeAddress);
-
-		} else if(inStack(address)) {
-			int relativeAddress = address - topOfStack.getValue(); // will be negative
-			return stack.readUntilNull(relativeAddress);
+		byte[] result = new byte[findNull(address) - address]; // null not included
+		pages.read(address, result, 0, result.length);
+		return result;
+	}
 
-		} else {
-			throw new MemoryException("Reading from invalid area of memory (scanning for a null character)", new Address(address));
-		}
+	/**
+	 * like readUntilNull, but gives a read-only view of the bytes rather than a copy when the string is
+	 * inside a single page (which is almost always the case). Use this to pass strings straight to the IO.
+	 * the view is only valid until the memory is next written to
+	 *
+	 * @param address the address to begin scanning at
+	 * @return the bytes up to but _not_ including the null character
+	 */
+	public ByteBuffer viewUntilNull(int address) throws MemoryException, HeapException, StackException {
+		return pages.view(address, findNull(address) - address);
 	}
 
 	/**this method will write into memory
@@ -155,21 +357,18 @@ public class MainMemory {
 	 */
 	public void writeToMem(int address, byte[] toWrite) throws MemoryException, HeapException, StackException
 	{
-		if(inStaticSegment(address, toWrite.length)) {
-		    int relativeAddress = address - startOfStaticData.getValue();
-			System.arraycopy(toWrite, 0, staticDataSegment, relativeAddress, toWrite.length);
-
-		} else if(inDynamicSegment(address, toWrite.length)) {
-		    int relativeAddress = address - bottomOfDynamicData.getValue();
-            heap.setBytes(relativeAddress, toWrite);
-
-		} else if(inStack(address, toWrite.length)) {
-		    int relativeAddress = address - topOfStack.getValue(); // will be negative
-			stack.setBytes(relativeAddress, toWrite);
+		checkWrite(address, toWrite.length);
+		pages.write(address, toWrite, 0, toWrite.length);
+	}
 
-		} else {
-			throw new MemoryException("Writing to an invalid area of memory", new Address(address));
-		}
+	/**this method will write the remaining bytes of a buffer into memory
+	 * @param address the address to start writing to
+	 * @param toWrite the bytes to write (from its position to its limit, the position is moved to the limit)
+	 */
+	public void writeToMem(int address, ByteBuffer toWrite) throws MemoryException, HeapException, StackException
+	{
+		checkWrite(address, toWrite.remaining());
+		pages.write(address, toWrite);
 	}
 	
 	/**separate method for reading from the text segment of the memory
@@ -0,0 +1,359 @@
+package simulizer.simulation.cpu.components;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**the storage behind the static data, heap and stack of the simulated memory
+ * the 32 bit address space is split into 4 KiB pages which are only allocated the first time they are written to,
+ * so a program only costs as much memory as it actually touches and nothing needs to be copied as the heap or stack grows.
+ * pages are found through a two level table (1024 directories of 1024 pages) to keep an empty table small.
+ * reading from a page which hasn't been written to gives zeroes without allocating it.
+ * values are stored in big endian format (MSB in the lowest address) and accesses don't need to be aligned
+ *
+ * the pages are slices of direct (off-heap) buffers, which are allocated a chunk of pages at a time,
+ * so the simulated memory doesn't add to the size of the java heap or the work done by the garbage collector
+ *
+ * the pages written to since the table was last marked clean are remembered, so that the memory can be put back to
+ * its initial state (see restore) by only touching the pages the program wrote to. pages which are given back are
+ * zeroed and kept to be handed out again, rather than taking more direct memory
+ *
+ * a table can be copied without copying the pages (see copy): afterwards both tables share the pages which existed
+ * and neither owns them, so the first write to a shared page by either table gives that table its own copy of it.
+ * a shared page is never written to, so tables which share pages can be used from different threads
+ *
+ * this class doesn't know anything about segments, the bounds checking is done by MainMemory
+ */
+class PageTable {
+
+	static final int pageBits = 12;
+	static final int pageSize = 1 << pageBits;//4 KiB
+	private static final int offsetMask = pageSize - 1;
+	private static final int directoryBits = 10;
+	private static final int directorySize = 1 << directoryBits;
+
+	private static final int pagesPerChunk = 64;//256 KiB of direct memory is reserved at a time
+
+	private final ByteBuffer[][] directories = new ByteBuffer[directorySize][];
+	// the state of each page: whether it is in dirtyPages and whether it is owned by this table (not shared with a copy)
+	private static final byte dirty = 1, owned = 2;
+	private final byte[][] states = new byte[directorySize][];
+	private int[] dirtyPages = new int[64];//the page numbers (address >>> pageBits) written to since markClean
+	private int dirtyCount = 0;
+	private ByteBuffer chunk = null;//the direct buffer new pages are taken from
+	private final ArrayDeque<ByteBuffer> freePages = new ArrayDeque<>();//zeroed pages given back by restore
+	private int allocatedPages = 0;
+
+	/**@return the number of pages which have been allocated
+	 */
+	int getAllocatedPages() {
+		return allocatedPages;
+	}
+
+	/**@param address any address in the page
+	 * @return the page, or null if it has never been written to
+	 */
+	private ByteBuffer pageIfPresent(int address) {
+		ByteBuffer[] directory = directories[address >>> (pageBits + directoryBits)];
+		return directory == null ? null : directory[(address >>> pageBits) & (directorySize - 1)];
+	}
+
+	/**@param address any address in the page
+	 * @return the page to write to, allocating it if it has never been written to
+	 */
+	private ByteBuffer page(int address) {
+		int d = address >>> (pageBits + directoryBits);
+		ByteBuffer[] directory = directories[d];
+		if(directory == null) {
+			directory = new ByteBuffer[directorySize];
+			directories[d] = directory;
+			states[d] = new byte[directorySize];
+		}
+		int p = (address >>> pageBits) & (directorySize - 1);
+		byte[] state = states[d];
+		if(state[p] != (dirty | owned)) {
+			claim(directory, state, p, address >>> pageBits);
+		}
+		return directory[p];
+	}
+
+	/**get a page ready to be written to for the first time since it was marked clean or copied:
+	 * allocate it if it doesn't exist, copy it if it is shared, and remember that it has been written to
+	 * @param directory the directory of the page
+	 * @param state the states of the pages in the directory
+	 * @param p the index of the page in the directory
+	 * @param n the page number (address >>> pageBits)
+	 */
+	private void claim(ByteBuffer[] directory, byte[] state, int p, int n) {
+		if(directory[p] == null) {
+			directory[p] = newPage();
+		} else if((state[p] & owned) == 0) {
+			ByteBuffer copy = newPage();
+			copy.duplicate().put(directory[p].duplicate());
+			directory[p] = copy;
+		}
+		if((state[p] & dirty) == 0) {
+			if(dirtyCount == dirtyPages.length) {
+				dirtyPages = Arrays.copyOf(dirtyPages, dirtyCount * 2);
+			}
+			dirtyPages[dirtyCount++] = n;
+		}
+		state[p] = dirty | owned;
+	}
+
+	/**@return a page of zeroes taken from the free pages or the current chunk of direct memory (big endian)
+	 */
+	private ByteBuffer newPage() {
+		allocatedPages++;
+		if(!freePages.isEmpty()) {
+			return freePages.pop();
+		}
+		if(chunk == null || !chunk.hasRemaining()) {
+			chunk = ByteBuffer.allocateDirect(pagesPerChunk * pageSize);
+		}
+		ByteBuffer page = chunk.slice();
+		// the position/limit are set through Buffer so that the methods which also exist in java 8 are called
+		Buffer b = page;
+		b.limit(pageSize);
+		b = chunk;
+		b.position(b.position() + pageSize);
+		return page;
+	}
+
+	/**forget which pages have been written to, so that restore puts the memory back to how it is now.
+	 * used once the initial contents have been written
+	 */
+	void markClean() {
+		for(int i = 0; i < dirtyCount; i++) {
+			int n = dirtyPages[i];
+			states[n >>> directoryBits][n & (directorySize - 1)] &= ~dirty;
+		}
+		dirtyCount = 0;
+	}
+
+	/**copy the table without copying any of the pages, they are shared between the two tables until written to.
+	 * this table mustn't be written to while it is being copied
+	 * @return a table with the same contents (which remembers the same pages as having been written to)
+	 */
+	PageTable copy() {
+		PageTable copy = new PageTable();
+		for(int d = 0; d < directorySize; d++) {
+			if(directories[d] != null) {
+				copy.directories[d] = directories[d].clone();
+				byte[] state = states[d];
+				byte[] copyState = new byte[directorySize];
+				for(int p = 0; p < directorySize; p++) {
+					if((state[p] & owned) != 0) {
+						state[p] &= ~owned;
+					}
+					copyState[p] = (byte) (state[p] & ~owned);
+				}
+				copy.states[d] = copyState;
+			}
+		}
+		copy.dirtyPages = Arrays.copyOf(dirtyPages, dirtyPages.length);
+		copy.dirtyCount = dirtyCount;
+		copy.allocatedPages = allocatedPages;
+		return copy;
+	}
+
+	/**put the memory back to its initial contents, only touching the pages written to since markClean.
+	 * the written pages which hold part of the initial contents are rewritten, the others are zeroed and given back
+	 * (pages shared with a copy of the table are replaced or dropped rather than changed)
+	 * @param start the address of the initial contents (eg the static data segment)
+	 * @param initial the bytes which were in the memory when it was marked clean, everything else was zero
+	 */
+	void restore(int start, byte[] initial) {
+		int end = start + initial.length;
+		for(int i = 0; i < dirtyCount; i++) {
+			int n = dirtyPages[i];
+			int d = n >>> directoryBits, p = n & (directorySize - 1);
+			ByteBuffer page = directories[d][p];
+			boolean shared = (states[d][p] & owned) == 0;
+			if(!shared) {
+				for(int offset = 0; offset < pageSize; offset += 8) {
+					page.putLong(offset, 0);
+				}
+			}
+
+			int pageStart = n << pageBits;
+			int from = Math.max(pageStart, start), to = Math.min(pageStart + pageSize, end);
+			if(from < to) {
+				if(shared) {
+					allocatedPages--;//replaced rather than added
+					page = newPage();
+					directories[d][p] = page;
+				}
+				viewFrom(page, from - pageStart).put(initial, from - start, to - from);
+				states[d][p] = owned;
+			} else {
+				directories[d][p] = null;
+				states[d][p] = 0;
+				if(!shared) {
+					freePages.push(page);
+				}
+				allocatedPages--;
+			}
+		}
+		dirtyCount = 0;
+	}
+
+	/**@return a view of the page starting at the given offset, for bulk reads/writes
+	 */
+	private static ByteBuffer viewFrom(ByteBuffer page, int offset) {
+		ByteBuffer view = page.duplicate();
+		Buffer b = view;
+		b.position(offset);
+		return view;
+	}
+
+	int loadByte(int address) {
+		ByteBuffer page = pageIfPresent(address);
+		return page == null ? 0 : page.get(address & offsetMask);
+	}
+
+	int loadHalf(int address) {
+		int offset = address & offsetMask;
+		if(offset <= pageSize - 2) {
+			ByteBuffer page = pageIfPresent(address);
+			return page == null ? 0 : page.getShort(offset);
+		}
+		return (short) ((loadByte(address) << 8) | (loadByte(address + 1) & 0xFF));//spans two pages
+	}
+
+	int loadWord(int address) {
+		int offset = address & offsetMask;
+		if(offset <= pageSize - 4) {
+			ByteBuffer page = pageIfPresent(address);
+			return page == null ? 0 : page.getInt(offset);
+		}
+		return (loadByte(address) << 24) | ((loadByte(address + 1) & 0xFF) << 16)
+				| ((loadByte(address + 2) & 0xFF) << 8) | (loadByte(address + 3) & 0xFF);//spans two pages
+	}
+
+	void storeByte(int address, int value) {
+		page(address).put(address & offsetMask, (byte) value);
+	}
+
+	void storeHalf(int address, int value) {
+		int offset = address & offsetMask;
+		if(offset <= pageSize - 2) {
+			page(address).putShort(offset, (short) value);
+		} else {//spans two pages
+			storeByte(address, value >>> 8);
+			storeByte(address + 1, value);
+		}
+	}
+
+	void storeWord(int address, int value) {
+		int offset = address & offsetMask;
+		if(offset <= pageSize - 4) {
+			page(address).putInt(offset, value);
+		} else {//spans two pages
+			storeByte(address, value >>> 24);
+			storeByte(address + 1, value >>> 16);
+			storeByte(address + 2, value >>> 8);
+			storeByte(address + 3, value);
+		}
+	}
+
+	/**copy bytes out of memory
+	 * @param address the address of the first byte
+	 * @param dest the array to copy into
+	 * @param destPos the index in dest of the first byte
+	 * @param length the number of bytes to copy
+	 */
+	void read(int address, byte[] dest, int destPos, int length) {
+		while(length > 0) {
+			int offset = address & offsetMask;
+			int n = Math.min(length, pageSize - offset);
+			ByteBuffer page = pageIfPresent(address);
+			if(page == null) {
+				Arrays.fill(dest, destPos, destPos + n, (byte) 0);
+			} else {
+				viewFrom(page, offset).get(dest, destPos, n);
+			}
+			address += n;
+			destPos += n;
+			length -= n;
+		}
+	}
+
+	/**copy bytes into memory
+	 * @param address the address to write the first byte to
+	 * @param src the array to copy from
+	 * @param srcPos the index in src of the first byte
+	 * @param length the number of bytes to copy
+	 */
+	void write(int address, byte[] src, int srcPos, int length) {
+		while(length > 0) {
+			int offset = address & offsetMask;
+			int n = Math.min(length, pageSize - offset);
+			viewFrom(page(address), offset).put(src, srcPos, n);
+			address += n;
+			srcPos += n;
+			length -= n;
+		}
+	}
+
+	/**copy the remaining bytes of a buffer into memory
+	 * @param address the address to write the first byte to
+	 * @param src the buffer to copy from (from its position to its limit, the position is moved to the limit)
+	 */
+	void write(int address, ByteBuffer src) {
+		Buffer b = src;
+		int end = b.limit();
+		while(b.hasRemaining()) {
+			int offset = address & offsetMask;
+			int n = Math.min(b.remaining(), pageSize - offset);
+			b.limit(b.position() + n);
+			viewFrom(page(address), offset).put(src);
+			b.limit(end);
+			address += n;
+		}
+	}
+
+	/**get a range of memory as a read-only buffer.
+	 * if the range is inside a page, the buffer is a view of the page rather than a copy
+	 * @param address the address of the first byte
+	 * @param length the number of bytes
+	 * @return a buffer with the bytes between its position and limit
+	 */
+	ByteBuffer view(int address, int length) {
+		int offset = address & offsetMask;
+		ByteBuffer page = pageIfPresent(address);
+		if(page != null && offset + length <= pageSize) {
+			ByteBuffer view = viewFrom(page, offset);
+			Buffer b = view;
+			b.limit(offset + length);
+			return view.asReadOnlyBuffer();
+		}
+		byte[] copy = new byte[length];//spans pages (or is all zeroes)
+		read(address, copy, 0, length);
+		return ByteBuffer.wrap(copy).asReadOnlyBuffer();
+	}
+
+	/**find the first null byte in a range of memory
+	 * @param address the address to start scanning from
+	 * @param end the address to stop scanning at (exclusive)
+	 * @return the address of the first null byte, or end if there isn't one
+	 */
+	int findNull(int address, int end) {
+		while(address < end) {
+			int offset = address & offsetMask;
+			int n = Math.min(end - address, pageSize - offset);
+			ByteBuffer page = pageIfPresent(address);
+			if(page == null) {
+				return address;//untouched memory is all zeroes
+			}
+			for(int i = 0; i < n; i++) {
+				if(page.get(offset + i) == '\0') {
+					return address + i;
+				}
+			}
+			address += n;
+		}
+		return end;
+	}
+}
@@ -0,0 +1,166 @@
+package simulizer.simulation.cpu.components;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import simulizer.assembler.representation.Address;
+import simulizer.assembler.representation.Program;
+import simulizer.simulation.messages.PipelineHazardMessage.Hazard;
+
+/**a snapshot of how the hazards of a run on the pipelined CPU affected it (see CPUPipeline.getStatistics),
+ * counted by kind of hazard and by the line of the program which caused them.
+ * A read after write hazard stalls the pipeline for a cycle (one bubble) unless the value can be forwarded,
+ * a jump, or a branch which goes the other way to the one the branch predictor guessed, flushes the two instructions
+ * behind it (two bubbles). Branch predictions are counted under control hazards
+ */
+public class PipelineStatistics {
+
+	/**the number of times the pipeline was affected in each way
+	 */
+	public static class Counts {
+		long stalls;//cycles where fetching was held back
+		long bubbles;//nops put into the pipeline
+		long flushes;//times the instructions behind a jump were thrown away
+		long forwarded;//hazards which were avoided by forwarding
+		long predictions;//conditional branches which were predicted
+		long taken;//predicted branches which were taken
+		long mispredictions;//predicted branches which went the other way
+
+		Counts() {
+		}
+
+		Counts(Counts c) {
+			add(c);
+		}
+
+		private void add(Counts c) {
+			stalls += c.stalls;
+			bubbles += c.bubbles;
+			flushes += c.flushes;
+			forwarded += c.forwarded;
+			predictions += c.predictions;
+			taken += c.taken;
+			mispredictions += c.mispredictions;
+		}
+
+		public long getStalls() {
+			return stalls;
+		}
+		public long getBubbles() {
+			return bubbles;
+		}
+		public long getFlushes() {
+			return flushes;
+		}
+		public long getForwarded() {
+			return forwarded;
+		}
+		public long getPredictions() {
+			return predictions;
+		}
+		public long getTaken() {
+			return taken;
+		}
+		public long getMispredictions() {
+			return mispredictions;
+		}
+
+		/**
+		 * @return the fraction of branches which were predicted correctly (1 if there weren't any)
+		 */
+		public double getPredictionAccuracy() {
+			return predictions == 0 ? 1 : (predictions - mispredictions) / (double) predictions;
+		}
+
+		@Override
+		public String toString() {
+			String s = String.format("%d stalls, %d flushes, %d bubbles, %d forwarded", stalls, flushes, bubbles, forwarded);
+			if (predictions > 0) {
+				s += String.format(", %d/%d branches predicted (%.1f%%)",
+						predictions - mispredictions, predictions, getPredictionAccuracy() * 100);
+			}
+			return s;
+		}
+	}
+
+	/** the branch predictor used */
+	public final BranchPredictor.Kind predictor;
+	/** the number of cycles run */
+	public final long cycles;
+	/** the number of instructions which reached the execute stage (not counting bubbles) */
+	public final long instructions;
+	/** the counts for each kind of hazard */
+	public final Map<Hazard, Counts> byHazard;
+	/** the counts for each line of the program which caused a hazard (the line of the instruction which had to
+	 * wait for a read after write, or the line of the jump for a flush). Lines are counted from 0 like Program.lineNumbers */
+	public final SortedMap<Integer, Counts> byLine;
+
+	/**
+	 * @param predictor the branch predictor used
+	 * @param cycles the number of cycles run
+	 * @param instructions the number of instructions executed
+	 * @param byHazard the counts for each kind of hazard (a copy which is kept by the statistics)
+	 * @param byAddress the counts for each instruction which caused a hazard (a copy, which is only read)
+	 * @param program the program being run (to find the line numbers, may be null)
+	 */
+	PipelineStatistics(BranchPredictor.Kind predictor, long cycles, long instructions, Map<Hazard, Counts> byHazard, Map<Integer, Counts> byAddress, Program program) {
+		this.predictor = predictor;
+		this.cycles = cycles;
+		this.instructions = instructions;
+
+		this.byHazard = Collections.unmodifiableMap(byHazard);
+
+		SortedMap<Integer, Counts> lines = new TreeMap<>();
+		if (program != null) {
+			for (Map.Entry<Integer, Counts> e : byAddress.entrySet()) {
+				Integer line = program.lineNumbers.get(new Address(e.getKey()));
+				if (line != null) {
+					lines.computeIfAbsent(line, l -> new Counts()).add(e.getValue());
+				}
+			}
+		}
+		this.byLine = Collections.unmodifiableSortedMap(lines);
+	}
+
+	/**
+	 * @return the average number of cycles per instruction (0 if no instructions have been run)
+	 */
+	public double getCPI() {
+		return instructions == 0 ? 0 : cycles / (double) instructions;
+	}
+
+	/**
+	 * @return the number of cycles the branch predictor saved compared with always predicting that branches
+	 * aren't taken (negative if it was worse), each branch which isn't flushed saves two cycles
+	 */
+	public long getCyclesSaved() {
+		Counts control = byHazard.get(Hazard.CONTROL);
+		return control == null ? 0 : 2 * (control.taken - control.mispredictions);
+	}
+
+	/**
+	 * @return the total counts over every kind of hazard
+	 */
+	public Counts getTotal() {
+		Counts total = new Counts();
+		for (Counts c : byHazard.values()) {
+			total.add(c);
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(String.format("cycles: %d, instructions: %d, CPI: %.3f%n", cycles, instructions, getCPI()));
+		sb.append(String.format("branch predictor: %s, %d cycles saved compared with not-taken", predictor, getCyclesSaved()));
+		for (Map.Entry<Hazard, Counts> e : byHazard.entrySet()) {
+			sb.append(String.format("%n%s: %s", e.getKey(), e.getValue()));
+		}
+		for (Map.Entry<Integer, Counts> e : byLine.entrySet()) {
+			sb.append(String.format("%n  line %d: %s", e.getKey() + 1, e.getValue()));
+		}
+		return sb.toString();
+	}
+}
@@ -1,77 +1,35 @@
 package simulizer.simulation.cpu.components;
 
-import java.util.Arrays;
-
 import simulizer.simulation.exceptions.StackException;
 
 
 /** Stack memory segment for the CPU
- *
- * //TODO: potential optimisation: replace getBytes with getBytes(int address, byte[] array) so the buffer being written to can be re-used rather than reallocated each time bytes are read
  *
  * @author mbway
  *
  * memory access is performed 'upwards' towards the top of the stack, with the address passed to the accessing methods
  * being the lowest address (MSB) to access and length referring to a length 'above' and including the first address.
  *
- * since the stack grows downwards and values are stored in big Endian format (MSB in lowest address),
- * it is most efficient to store the bytes in an array with the top of the past the end of the array
- * and $sp be element 0 of the array
- *
- * topOfStack     is out of bounds
- * topOfStack - 1 is the last element of the array
- * $sp + 1        is the second element of the array (stack[1])
- * $sp            is the first element of the array (stack[0])
+ * the contents of the stack are stored in 4 KiB pages (shared with the rest of the memory) at their actual addresses.
+ * a page is allocated the first time the stack grows into it, so growing the stack is O(1) for every page and
+ * never copies what has already been pushed. anywhere in the stack which hasn't been written to yet reads as zeroes.
+ * the word/half/byte accessors check and access the stack without creating any arrays (used for push and pop with lw/sw)
  *
  * example:
  *
- * index  0     1     2     3     4
- *       $sp                      topOfStack
- *      [ 0xAA  0xBB  0xCC  0xDD ]
- *              MSB         LSB
+ *  relative address  -4    -3    -2    -1    0
+ *                    $sp                     topOfStack
+ *                  [ 0xAA  0xBB  0xCC  0xDD ]
+ *                    MSB               LSB
  *
  *   addresses are passed relative to topOfStack. ie highest element of the stack at relative address -1
  */
 public class StackSegment {
 
+	private int topOfStack;
 	private int maxLength;
-    private byte[] stack;
-
-    private class ArrayRange {
-        int MSBIndex;
-        int LSBIndex;
-
-        /**
-         * construct an array range given an address relative to the top of the stack and a length
-         * @param MSBAddress address of the MSB of the range, relative to the top of the stack (should be negative)
-         * @param length the length of the array range
-         */
-        ArrayRange(int MSBAddress, int length) {
-            // MSB => lowest address => lower index in array
-            // index from the end of the array (top of stack)
-            MSBIndex = stack.length + MSBAddress; // MSBAddress should be negative
-
-            // LSB => highest address => higher index in array
-            // -1 because want to be inclusive
-            LSBIndex = MSBIndex + length - 1;
-        }
-
-        /**
-         * @return whether the range includes elements above the top of the stack (invalid)
-         */
-        boolean spansAboveStack() {
-            return LSBIndex >= stack.length;
-        }
-
-        /**
-         * @return whether the range includes elements below the 'stack pointer'
-         *          (the lowest address written to up to this point, not to be confused
-         *           with the actual stack pointer of the CPU)
-         */
-        boolean spansBelowSp() {
-            return MSBIndex < 0;
-        }
-    }
+	private int lowestWritten = 0;//the lowest relative address written to so far
+	private final PageTable pages;
 
 	/**initialise stack to difference between stack pointer and lowest address
 	 *
@@ -79,9 +37,43 @@ public class StackSegment {
 	 */
 	public StackSegment(int maxLength)
 	{
+		this(0, maxLength, new PageTable());
+	}
+
+	/**
+	 * @param topOfStack the address one past the highest element of the stack
+	 * @param maxLength the maximum number of bytes the stack is allowed to grow to
+	 * @param pages the memory the stack is stored in (shared with the rest of the segments)
+	 */
+	StackSegment(int topOfStack, int maxLength, PageTable pages)
+	{
+		this.topOfStack = topOfStack;
 		this.maxLength = maxLength;
-        int initialLength = Math.min(100, maxLength); // either 100 or the maximum length if max length <100
-		stack = new byte[initialLength]; // a small starting stack
+		this.pages = pages;
+	}
+
+	/**
+	 * @param pages the memory the copy is stored in (a copy of the memory this stack is stored in)
+	 * @return a stack with the same contents and depth, stored in the given pages
+	 */
+	StackSegment copy(PageTable pages) {
+		StackSegment copy = new StackSegment(topOfStack, maxLength, pages);
+		copy.lowestWritten = lowestWritten;
+		return copy;
+	}
+
+	/**
+	 * empty the stack (the contents are cleared by the owner of the pages)
+	 */
+	void reset() {
+		lowestWritten = 0;
+	}
+
+	/**
+	 * @return the largest number of bytes the stack has been grown to by writing to it
+	 */
+	public int getMaxDepth() {
+		return -lowestWritten;
 	}
 
     /**
@@ -91,6 +83,109 @@ public class StackSegment {
 	    return -maxLength <= MSBAddress && MSBAddress < 0;
     }
 
+	/**check that a range of the stack can be read from
+	 * @param MSBAddress the address of the most significant byte relative to the top of the stack (should be negative)
+	 * @param length the number of bytes to be read
+	 * @throws StackException if the range isn't inside the stack
+	 */
+	void checkRead(int MSBAddress, int length) throws StackException
+	{
+		int LSBAddress = MSBAddress + length - 1;
+
+        if(length <= 0) {
+            throw new StackException("Invalid read on stack. (non-positive length)", MSBAddress, LSBAddress);
+
+        } else if(LSBAddress >= 0) {
+			throw new StackException("Invalid read on stack. (attempt to read above the top)", MSBAddress, LSBAddress);
+
+		} else if(!insideStackSegment(MSBAddress)) {
+			throw new StackException("Stack Overflow. (attempt to read from the stack beyond its maximum length)", MSBAddress, LSBAddress);
+		}
+	}
+
+	/**check that a range of the stack can be written to
+	 * @param MSBAddress the address of the most significant byte relative to the top of the stack (should be negative)
+	 * @param length the number of bytes to be written
+	 * @throws StackException if the range isn't inside the stack
+	 */
+	void checkWrite(int MSBAddress, int length) throws StackException
+	{
+		int LSBAddress = MSBAddress + length - 1;
+
+        if(length <= 0) {
+            throw new StackException("Invalid write on stack. (non-positive length)", MSBAddress, LSBAddress);
+
+        } else if(LSBAddress >= 0) {
+			throw new StackException("Invalid write to stack. (attempt to write above the top)", MSBAddress, LSBAddress);
+
+		} else if(!insideStackSegment(MSBAddress)) {
+			throw new StackException("Stack Overflow. (attempt to write to the stack beyond its maximum length)", MSBAddress, LSBAddress);
+		}
+		if(MSBAddress < lowestWritten) {
+			lowestWritten = MSBAddress;
+		}
+	}
+
+	/**
+	 * @param MSBAddress the address of the most significant byte relative to the top of the stack (should be negative)
+	 * @return the word at the address
+	 * @throws StackException if the word isn't inside the stack
+	 */
+	int loadWord(int MSBAddress) throws StackException {
+		checkRead(MSBAddress, 4);
+		return pages.loadWord(topOfStack + MSBAddress);
+	}
+
+	/**
+	 * @param MSBAddress the address of the most significant byte relative to the top of the stack (should be negative)
+	 * @return the sign extended half word at the address
+	 * @throws StackException if the half word isn't inside the stack
+	 */
+	int loadHalf(int MSBAddress) throws StackException {
+		checkRead(MSBAddress, 2);
+		return pages.loadHalf(topOfStack + MSBAddress);
+	}
+
+	/**
+	 * @param address the address relative to the top of the stack (should be negative)
+	 * @return the sign extended byte at the address
+	 * @throws StackException if the byte isn't inside the stack
+	 */
+	int loadByte(int address) throws StackException {
+		checkRead(address, 1);
+		return pages.loadByte(topOfStack + address);
+	}
+
+	/**
+	 * @param MSBAddress the address of the most significant byte relative to the top of the stack (should be negative)
+	 * @param value the word to write
+	 * @throws StackException if the word isn't inside the stack
+	 */
+	void storeWord(int MSBAddress, int value) throws StackException {
+		checkWrite(MSBAddress, 4);
+		pages.storeWord(topOfStack + MSBAddress, value);
+	}
+
+	/**
+	 * @param MSBAddress the address of the most significant byte relative to the top of the stack (should be negative)
+	 * @param value the half word to write (the lower 16 bits)
+	 * @throws StackException if the half word isn't inside the stack
+	 */
+	void storeHalf(int MSBAddress, int value) throws StackException {
+		checkWrite(MSBAddress, 2);
+		pages.storeHalf(topOfStack + MSBAddress, value);
+	}
+
+	/**
+	 * @param address the address relative to the top of the stack (should be negative)
+	 * @param value the byte to write (the lowest 8 bits)
+	 * @throws StackException if the byte isn't inside the stack
+	 */
+	void storeByte(int address, int value) throws StackException {
+		checkWrite(address, 1);
+		pages.storeByte(topOfStack + address, value);
+	}
+
 	/** method reads a number of bytes from the stack.
 	 *
 	 * Reads from 'address' to 'address'+'length'-1 inclusive
@@ -102,34 +197,28 @@ public class StackSegment {
 	 */
 	public byte[] getBytes(int MSBAddress, int length) throws StackException
 	{
-	    ArrayRange r = new ArrayRange(MSBAddress, length);
+		checkRead(MSBAddress, length);
+		byte[] result = new byte[length];
+		pages.read(topOfStack + MSBAddress, result, 0, length);
+		return result;
+	}
 
-        if(length <= 0) {
-            throw new StackException("Invalid read on stack. (non-positive length)", r.MSBIndex, r.LSBIndex);
-        }
-
-		if(r.spansAboveStack()) {
-			throw new StackException("Invalid read on stack. (attempt to read above the top)", r.MSBIndex, r.LSBIndex);
-
-		} else if(r.spansBelowSp()) { // at least part of the requested range is below the allocated range
-
-            // range still within valid stack memory (because if MSB is and range doesn't span above the stack then LSB is too)
-            if(insideStackSegment(MSBAddress)) {
-                // below the current stack pointer is only zeroes until written to
-                byte[] result = new byte[length];
-                for (int i = 0; i < length; ++i) {
-                    int index = r.MSBIndex + i;
-                    result[i] = index < 0 ? 0 : stack[index];
-                }
-                return result;
-            } else {
-                throw new StackException("Stack Overflow. (attempt to read from the stack beyond its maximum length)", r.MSBIndex, r.LSBIndex);
-            }
-
-		} else {
-			// copyFrom, from (inclusive), to (exclusive)
-		    return Arrays.copyOfRange(stack, r.MSBIndex, r.LSBIndex+1); // +1 because exclusive
+	/**find the end of a null terminated string on the stack
+	 *
+	 * @param MSBAddress the relative address to begin scanning at
+	 * @return the relative address of the null character
+	 * @throws StackException if the top of the stack is reached while scanning for a null character
+	 */
+	int findNull(int MSBAddress) throws StackException {
+		int i = MSBAddress;
+
+		if(insideStackSegment(MSBAddress)) {
+			i = pages.findNull(topOfStack + MSBAddress, topOfStack) - topOfStack;
+			if(i < 0) {
+				return i;
+			}
 		}
+		throw new StackException("Reading from invalid area of memory (scanning for a null character)", MSBAddress, i);
 	}
 
 	/**
@@ -141,17 +230,9 @@ public class StackSegment {
 	 * @throws StackException
 	 */
 	public byte[] readUntilNull(int MSBAddress) throws StackException {
-		ArrayRange r = new ArrayRange(MSBAddress, 1);
-		int i = r.MSBIndex;
-
-		if(insideStackSegment(MSBAddress)) {
-			for (; i < stack.length; ++i) {
-				if (stack[i] == '\0') {
-					return Arrays.copyOfRange(stack, r.MSBIndex, i); // exclusive so null is excluded
-				}
-			}
-		}
-		throw new StackException("Reading from invalid area of memory (scanning for a null character)", r.MSBIndex, i);
+		byte[] result = new byte[findNull(MSBAddress) - MSBAddress]; // null is excluded
+		pages.read(topOfStack + MSBAddress, result, 0, result.length);
+		return result;
 	}
 	
 	/**goes about writing onto the stack
@@ -162,37 +243,7 @@ public class StackSegment {
 	 */
 	public void setBytes(int MSBAddress, byte[] toWrite) throws StackException
 	{
-	    ArrayRange r = new ArrayRange(MSBAddress, toWrite.length);
-
-        if(toWrite.length <= 0) {
-            throw new StackException("Invalid write on stack. (non-positive length)", r.MSBIndex, r.LSBIndex);
-
-        } else if(r.spansAboveStack()) {
-			throw new StackException("Invalid write to stack. (attempt to write above the top)", r.MSBIndex, r.LSBIndex);
-
-		} else if(r.spansBelowSp()) { // must grow stack to at least the whole span is in range
-
-            // range still within valid stack memory (because if MSB is and range doesn't span above the stack then LSB is too)
-            if(!insideStackSegment(MSBAddress)) {
-                throw new StackException("Stack Overflow. (attempt to write to the stack beyond its maximum length)", r.MSBIndex, r.LSBIndex);
-            }
-
-			// at least a growth factor of 1.5. definitely enough to accommodate the range being written to
-            // but no longer than the maximum length (if the growth factor extends past it)
-			int newLength = Math.min(Math.max((int) (stack.length * 1.5), Math.abs(MSBAddress)), maxLength);
-			byte[] newStack = new byte[newLength];
-            // the old stack is placed at the end of the new stack
-			System.arraycopy(stack, 0, newStack, newLength-stack.length, stack.length);
-			stack = newStack;
-
-            // re-calculate indices
-            r = new ArrayRange(MSBAddress, toWrite.length);
-			if(r.spansBelowSp() || r.spansAboveStack()) {
-				throw new StackException("Invalid write (this shouldn't happen).", r.MSBIndex, r.LSBIndex);
-            }
-		}
-
-        // src, srcPos, dest, destPos, length
-        System.arraycopy(toWrite, 0, stack, r.MSBIndex, toWrite.length);
+		checkWrite(MSBAddress, toWrite.length);
+		pages.write(topOfStack + MSBAddress, toWrite, 0, toWrite.length);
 	}
 }
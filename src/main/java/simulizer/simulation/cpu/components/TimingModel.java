@@ -0,0 +1,257 @@
+package simulizer.simulation.cpu.components;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import simulizer.assembler.representation.Instruction;
+
+/**gives each instruction a latency (the number of cycles it spends in the execute stage) so that the cycle
+ * count of a program reflects how long it would take rather than how many instructions it ran.
+ * The latencies are set for classes of instruction and can be overridden for single instructions,
+ * the defaults follow the MIPS R2000 described in Hennessy and Patterson (the processor SPIM simulates):
+ * a multiply takes 12 cycles, a divide 35 and a load has to wait an extra cycle for the memory.
+ * If caches are being modelled (see Cache) each miss costs a further penalty.
+ * The cycles are counted for each class of instruction so that the time can be broken down at the end of a run
+ */
+public class TimingModel {
+
+	/**groups of instructions which use the same unit of the cpu
+	 */
+	public enum InstructionClass {
+		ALU("alu", 1),
+		MULTIPLY("multiply", 12),
+		DIVIDE("divide", 35),
+		LOAD("load", 2),
+		STORE("store", 1),
+		BRANCH("branch", 1),
+		JUMP("jump", 1),
+		SYSCALL("syscall", 1),
+		OTHER("other", 1);//nop and break
+
+		private final String name;
+		final int defaultLatency;
+
+		InstructionClass(String name, int defaultLatency) {
+			this.name = name;
+			this.defaultLatency = defaultLatency;
+		}
+
+		/**
+		 * @param i an instruction
+		 * @return the class the instruction belongs to
+		 */
+		public static InstructionClass of(Instruction i) {
+			switch (i) {
+				case mul: case mulo: case mulou: case mult: case multi:
+					return MULTIPLY;
+				case div: case divu: case rem: case remu:
+					return DIVIDE;
+				case lb: case lbu: case lh: case lhu: case lw:
+					return LOAD;
+				case sb: case sh: case sw:
+					return STORE;
+				case b: case beq: case bne: case bgez: case bgtz: case blez: case bltz: case beqz:
+				case bge: case bgeu: case bgt: case bgtu: case ble: case bleu: case blt: case bltu:
+					return BRANCH;
+				case j: case jr: case jal: case jalr:
+					return JUMP;
+				case syscall:
+					return SYSCALL;
+				case nop: case BREAK:
+					return OTHER;
+				default:
+					return ALU;
+			}
+		}
+
+		/**
+		 * @param name the name of a class, eg "multiply"
+		 * @return the class with that name, or null if there isn't one
+		 */
+		public static InstructionClass fromName(String name) {
+			for (InstructionClass c : values()) {
+				if (c.name.equals(name)) {
+					return c;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static final Instruction[] instructions = Instruction.values();
+	private static final InstructionClass[] classes = InstructionClass.values();
+	private static final int defaultMissPenalty = 10;
+
+	private final int[] latencies = new int[instructions.length];//indexed by Instruction.ordinal()
+	private final int[] classOf = new int[instructions.length];//the ordinal of the class of each instruction
+	private int missPenalty = defaultMissPenalty;
+
+	// the counts since the program was started
+	private final long[] classInstructions = new long[classes.length];
+	private final long[] classCycles = new long[classes.length];
+	private long memoryStallCycles;
+	private int pendingStall;//cache misses not yet charged to an instruction
+
+	/**a timing model with the default latencies
+	 */
+	public TimingModel() {
+		for (Instruction i : instructions) {
+			InstructionClass c = InstructionClass.of(i);
+			classOf[i.ordinal()] = c.ordinal();
+			latencies[i.ordinal()] = c.defaultLatency;
+		}
+	}
+
+	/**
+	 * @param spec latencies written as name=cycles separated by commas, where the name is a class of instruction
+	 *             (eg multiply), a single instruction (eg lw) or cache-miss for the penalty of a cache miss.
+	 *             Classes are applied before single instructions. Empty for the defaults
+	 * @return the timing model
+	 * @throws IllegalArgumentException if the specification isn't valid
+	 */
+	public static TimingModel parse(String spec) {
+		TimingModel model = new TimingModel();
+		if (spec == null || spec.trim().isEmpty()) {
+			return model;
+		}
+		String[] entries = spec.split(",");
+		for (boolean classesPass : new boolean[]{true, false}) {
+			for (String entry : entries) {
+				String[] parts = entry.trim().split("=");
+				if (parts.length != 2) {
+					throw new IllegalArgumentException("a latency is written as name=cycles, not \"" + entry.trim() + "\"");
+				}
+				String name = parts[0].trim();
+				int cycles;
+				try {
+					cycles = Integer.parseInt(parts[1].trim());
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("the latency of " + name + " must be a number");
+				}
+				InstructionClass c = InstructionClass.fromName(name);
+				if (classesPass) {
+					if (c != null) {
+						model.setLatency(c, cycles);
+					} else if (name.equals("cache-miss")) {
+						model.setMissPenalty(cycles);
+					}
+				} else if (c == null && !name.equals("cache-miss")) {
+					try {
+						model.setLatency(Instruction.fromString(name), cycles);
+					} catch (NoSuchElementException e) {
+						throw new IllegalArgumentException("unknown instruction or class of instruction: " + name);
+					}
+				}
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * @param c a class of instruction
+	 * @param cycles the number of cycles every instruction of the class takes (at least 1)
+	 */
+	public void setLatency(InstructionClass c, int cycles) {
+		checkLatency(cycles, 1);
+		for (Instruction i : instructions) {
+			if (classOf[i.ordinal()] == c.ordinal()) {
+				latencies[i.ordinal()] = cycles;
+			}
+		}
+	}
+
+	/**
+	 * @param i an instruction
+	 * @param cycles the number of cycles the instruction takes (at least 1)
+	 */
+	public void setLatency(Instruction i, int cycles) {
+		checkLatency(cycles, 1);
+		latencies[i.ordinal()] = cycles;
+	}
+
+	/**
+	 * @param cycles the number of extra cycles an access which misses the cache takes (at least 0)
+	 */
+	public void setMissPenalty(int cycles) {
+		checkLatency(cycles, 0);
+		missPenalty = cycles;
+	}
+
+	private static void checkLatency(int cycles, int min) {
+		if (cycles < min) {
+			throw new IllegalArgumentException("latencies must be at least " + min);
+		}
+	}
+
+	/**
+	 * @param i an instruction
+	 * @return the number of cycles the instruction takes
+	 */
+	public int getLatency(Instruction i) {
+		return latencies[i.ordinal()];
+	}
+
+	public int getMissPenalty() {
+		return missPenalty;
+	}
+
+	/**clear the counts
+	 */
+	void reset() {
+		Arrays.fill(classInstructions, 0);
+		Arrays.fill(classCycles, 0);
+		memoryStallCycles = 0;
+		pendingStall = 0;
+	}
+
+	/**record cache misses, they are charged to the next instruction to finish
+	 * @param misses the number of accesses which missed
+	 */
+	void missed(int misses) {
+		pendingStall += misses * missPenalty;
+	}
+
+	/**count an instruction which has been executed
+	 * @param i the instruction
+	 * @return the number of cycles the instruction took (including any cache misses)
+	 */
+	int executed(Instruction i) {
+		int ordinal = i.ordinal();
+		int c = classOf[ordinal];
+		int latency = latencies[ordinal];
+		classInstructions[c]++;
+		classCycles[c] += latency;
+		if (pendingStall == 0) {
+			return latency;
+		}
+		int stall = pendingStall;
+		memoryStallCycles += stall;
+		pendingStall = 0;
+		return latency + stall;
+	}
+
+	/**count a run of instructions which have been executed
+	 * @param run the instructions
+	 * @param count the number of instructions from the start of the run which were executed
+	 * @return the number of cycles the instructions took
+	 */
+	int executed(DecodedInstruction[] run, int count) {
+		int cycles = 0;
+		for (int i = 0; i < count; i++) {
+			cycles += executed(run[i].instruction);
+		}
+		return cycles;
+	}
+
+	/**
+	 * @return a copy of the counts
+	 */
+	public TimingStatistics getStatistics() {
+		return new TimingStatistics(classInstructions, classCycles, memoryStallCycles);
+	}
+}
@@ -0,0 +1,102 @@
+package simulizer.simulation.cpu.components;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import simulizer.simulation.cpu.components.TimingModel.InstructionClass;
+
+/**a snapshot of where the modelled time of a run went (see TimingModel.getStatistics),
+ * broken down by class of instruction
+ */
+public class TimingStatistics {
+
+	/**the number of instructions of a class which were run and the cycles they took
+	 */
+	public static class Counts {
+		final long instructions;
+		final long cycles;
+
+		Counts(long instructions, long cycles) {
+			this.instructions = instructions;
+			this.cycles = cycles;
+		}
+
+		public long getInstructions() {
+			return instructions;
+		}
+		public long getCycles() {
+			return cycles;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d instructions, %d cycles", instructions, cycles);
+		}
+	}
+
+	/** the counts for each class of instruction which was run */
+	public final Map<InstructionClass, Counts> byClass;
+	/** the cycles spent waiting for cache misses */
+	public final long memoryStallCycles;
+
+	/**
+	 * @param classInstructions the number of instructions of each class (indexed by ordinal)
+	 * @param classCycles the cycles taken by each class (indexed by ordinal)
+	 * @param memoryStallCycles the cycles spent waiting for cache misses
+	 */
+	TimingStatistics(long[] classInstructions, long[] classCycles, long memoryStallCycles) {
+		Map<InstructionClass, Counts> classes = new EnumMap<>(InstructionClass.class);
+		for (InstructionClass c : InstructionClass.values()) {
+			if (classInstructions[c.ordinal()] != 0) {
+				classes.put(c, new Counts(classInstructions[c.ordinal()], classCycles[c.ordinal()]));
+			}
+		}
+		this.byClass = Collections.unmodifiableMap(classes);
+		this.memoryStallCycles = memoryStallCycles;
+	}
+
+	/**
+	 * @return the number of instructions run
+	 */
+	public long getInstructions() {
+		long total = 0;
+		for (Counts c : byClass.values()) {
+			total += c.instructions;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the modelled number of cycles the instructions took, including waiting for cache misses
+	 * (the pipelined cpu overlaps instructions so takes fewer cycles than this)
+	 */
+	public long getCycles() {
+		long total = memoryStallCycles;
+		for (Counts c : byClass.values()) {
+			total += c.cycles;
+		}
+		return total;
+	}
+
+	/**
+	 * @return the average number of cycles per instruction (0 if no instructions have been run)
+	 */
+	public double getCPI() {
+		long instructions = getInstructions();
+		return instructions == 0 ? 0 : getCycles() / (double) instructions;
+	}
+
+	@Override
+	public String toString() {
+		long cycles = getCycles();
+		StringBuilder sb = new StringBuilder(String.format("modelled cycles: %d, instructions: %d, CPI: %.3f", cycles, getInstructions(), getCPI()));
+		for (Map.Entry<InstructionClass, Counts> e : byClass.entrySet()) {
+			sb.append(String.format("%n%s: %s (%.1f%%)", e.getKey(), e.getValue(), cycles == 0 ? 0.0 : e.getValue().cycles * 100.0 / cycles));
+		}
+		if (memoryStallCycles != 0) {
+			sb.append(String.format("%ncache misses: %d cycles (%.1f%%)", memoryStallCycles, memoryStallCycles * 100.0 / cycles));
+		}
+		return sb.toString();
+	}
+}
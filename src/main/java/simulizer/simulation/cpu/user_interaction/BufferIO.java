@@ -2,8 +2,11 @@ package simulizer.simulation.cpu.user_interaction;
 
 import simulizer.utils.StringUtils;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -20,6 +23,7 @@ public class BufferIO implements IO {
 
 	public Scanner input;
 	private Map<IOStream, StringWriter> outputs;
+	private final Utf8Decoder decoder = new Utf8Decoder();
 
 	public BufferIO() {
 		input = null;
@@ -35,6 +39,13 @@ public class BufferIO implements IO {
 		this.input = new Scanner(new StringReader(input));
 	}
 
+	/**
+	 * throw away everything written so far, so that the object can be reused for another run
+	 */
+	public void clearOutput() {
+		outputs.clear();
+	}
+
 	public String getOutput(IOStream stream) {
 		if(outputs.containsKey(stream)) {
 			return outputs.get(stream).toString();
@@ -55,13 +66,19 @@ public class BufferIO implements IO {
 		return StringUtils.nextChar(input);
 	}
 
+	private StringWriter output(IOStream stream) {
+		return outputs.computeIfAbsent(stream, s -> new StringWriter());
+	}
+
 	@Override public void printString(IOStream stream, String str) {
-		if(outputs.containsKey(stream)) {
-			outputs.get(stream).write(str);
-		} else {
-			StringWriter out = new StringWriter();
-			outputs.put(stream, out);
-			out.write(str);
+		output(stream).write(str);
+	}
+
+	@Override public void printBytes(IOStream stream, ByteBuffer utf8) {
+		try {
+			decoder.decode(utf8, output(stream));
+		} catch(IOException e) {
+			throw new UncheckedIOException(e); // StringWriter doesn't throw
 		}
 	}
 
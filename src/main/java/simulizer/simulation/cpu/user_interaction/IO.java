@@ -1,5 +1,8 @@
 package simulizer.simulation.cpu.user_interaction;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**interface for io operations
  * @author Charlie Street
  *
@@ -12,4 +15,14 @@ public interface IO {
 	void printInt(IOStream stream, int num);
 	void printChar(IOStream stream, char letter);
 	void cancelRead();
+
+	/**print UTF-8 encoded text, used to print strings straight from the simulated memory.
+	 * the default implementation decodes the bytes into a String for printString,
+	 * implementations which write to a stream can decode directly into it instead
+	 * @param stream the stream to print to
+	 * @param utf8 the text to print (from its position to its limit), only valid until the method returns
+	 */
+	default void printBytes(IOStream stream, ByteBuffer utf8) {
+		printString(stream, StandardCharsets.UTF_8.decode(utf8).toString());
+	}
 }
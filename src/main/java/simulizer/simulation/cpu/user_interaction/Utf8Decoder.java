@@ -0,0 +1,56 @@
+package simulizer.simulation.cpu.user_interaction;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * decodes UTF-8 text from a buffer of bytes (eg a view of the simulated memory) straight into a Writer,
+ * a block of characters at a time, without creating a String for the whole text.
+ * Invalid bytes are replaced in the same way as new String(bytes, UTF_8) would.
+ *
+ * An instance re-uses its buffers so it is not thread safe, each IO should have its own
+ */
+public class Utf8Decoder {
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final CharBuffer chars = CharBuffer.allocate(1024);
+
+	/**
+	 * @param utf8 the text to decode (from its position to its limit, the position is moved to the limit)
+	 * @param out where to write the decoded characters
+	 */
+	public void decode(ByteBuffer utf8, Writer out) throws IOException {
+		decoder.reset();
+		for (;;) {
+			CoderResult result = decoder.decode(utf8, chars, true);
+			if (result.isUnderflow()) {
+				result = decoder.flush(chars);
+			}
+			out.write(chars.array(), 0, chars.position());
+			chars.clear();
+			if (result.isUnderflow()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * encode a line of text into a buffer, stopping before the first character which doesn't fit
+	 * (so only whole characters are written)
+	 * @param text the text to encode
+	 * @param dest the buffer to write to (from its position)
+	 */
+	public static void encode(String text, ByteBuffer dest) {
+		StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE)
+				.encode(CharBuffer.wrap(text), dest, true);
+	}
+}
@@ -15,4 +15,9 @@ public class AnnotationMessage extends Message {
 		this.annotation = annotation;
 		this.boundAddress = boundAddress;
 	}
+
+	@Override
+	public MessageType getType() {
+		return MessageType.ANNOTATION;
+	}
 }
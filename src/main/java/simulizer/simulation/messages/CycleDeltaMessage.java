@@ -0,0 +1,109 @@
+package simulizer.simulation.messages;
+
+import simulizer.assembler.representation.Address;
+import simulizer.assembler.representation.Register;
+import simulizer.simulation.messages.PipelineHazardMessage.Hazard;
+
+/**a single message summarising everything that changed during a tick of the clock:
+ * which registers were written, the range of memory written to, any pipeline hazard
+ * and the state of the pipeline at the end of the tick.
+ * listeners which only need to know what to redraw can register for this message instead
+ * of the individual register changed, pipeline state and pipeline hazard messages
+ */
+public class CycleDeltaMessage extends PipelineStateMessage {
+
+	private final int changedRegisters;
+	private final boolean hiChanged;
+	private final boolean loChanged;
+	private final int memoryWriteStart;
+	private final int memoryWriteEnd;
+	private final Hazard hazard;
+	private final boolean mispredicted;
+
+	/**
+	 * @param changedRegisters bitmask of the registers written to, bit n is set if the register with ID n changed
+	 * @param hiChanged whether the hi register was written to
+	 * @param loChanged whether the lo register was written to
+	 * @param memoryWriteStart the lowest address written to
+	 * @param memoryWriteEnd one past the highest address written to (equal to memoryWriteStart if nothing was written)
+	 * @param hazard the pipeline hazard which occurred during the tick (null if none)
+	 * @param mispredicted whether the branch executed during the tick went the other way to the prediction
+	 * @param fetched the address of the instruction just fetched
+	 * @param decoded the address of the instruction just decoded
+	 * @param executed the address of the instruction just executed
+	 */
+	public CycleDeltaMessage(int changedRegisters, boolean hiChanged, boolean loChanged, int memoryWriteStart,
+							 int memoryWriteEnd, Hazard hazard, boolean mispredicted, Address fetched, Address decoded, Address executed) {
+		super(fetched, decoded, executed);
+		this.changedRegisters = changedRegisters;
+		this.hiChanged = hiChanged;
+		this.loChanged = loChanged;
+		this.memoryWriteStart = memoryWriteStart;
+		this.memoryWriteEnd = memoryWriteEnd;
+		this.hazard = hazard;
+		this.mispredicted = mispredicted;
+	}
+
+	/**
+	 * @return bitmask of the registers written to, bit n is set if the register with ID n changed
+	 */
+	public int getChangedRegisters() {
+		return changedRegisters;
+	}
+
+	/**
+	 * @param r the register to check
+	 * @return whether the register was written to
+	 */
+	public boolean registerChanged(Register r) {
+		return (changedRegisters & (1 << r.getID())) != 0;
+	}
+
+	public boolean hiChanged() {
+		return hiChanged;
+	}
+
+	public boolean loChanged() {
+		return loChanged;
+	}
+
+	/**
+	 * @return whether any memory was written to
+	 */
+	public boolean memoryChanged() {
+		return memoryWriteEnd > memoryWriteStart;
+	}
+
+	/**
+	 * @return the lowest address written to
+	 */
+	public int getMemoryWriteStart() {
+		return memoryWriteStart;
+	}
+
+	/**
+	 * @return one past the highest address written to
+	 */
+	public int getMemoryWriteEnd() {
+		return memoryWriteEnd;
+	}
+
+	/**
+	 * @return the pipeline hazard which occurred during the tick (null if none)
+	 */
+	public Hazard getHazard() {
+		return hazard;
+	}
+
+	/**
+	 * @return whether the branch executed during the tick went the other way to the prediction
+	 */
+	public boolean isMispredicted() {
+		return mispredicted;
+	}
+
+	@Override
+	public MessageType getType() {
+		return MessageType.CYCLE_DELTA;
+	}
+}
@@ -38,4 +38,9 @@ public class DataMovementMessage extends Message {
 	public Optional<Statement> getInstruction() {
 		return this.instruction;
 	}
+
+	@Override
+	public MessageType getType() {
+		return MessageType.DATA_MOVEMENT;
+	}
 }
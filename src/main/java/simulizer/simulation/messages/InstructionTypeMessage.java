@@ -25,4 +25,9 @@ public class InstructionTypeMessage extends Message{
 	public AddressMode getMode() {
 		return this.mode;
 	}
+
+	@Override
+	public MessageType getType() {
+		return MessageType.INSTRUCTION_TYPE;
+	}
 }
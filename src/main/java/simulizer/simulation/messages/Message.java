@@ -4,6 +4,10 @@ package simulizer.simulation.messages;
  * A message about the internal workings of the simulator
  * @author mbway
  */
-public class Message {
+public abstract class Message {
 
+	/**
+	 * @return the type of this message (used to decide which listeners receive it)
+	 */
+	public abstract MessageType getType();
 }
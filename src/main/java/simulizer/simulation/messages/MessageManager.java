@@ -1,25 +1,34 @@
 package simulizer.simulation.messages;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 import simulizer.Simulizer;
 import simulizer.simulation.cpu.user_interaction.IO;
 import simulizer.simulation.cpu.user_interaction.IOStream;
-import simulizer.utils.ThreadUtils;
 
 /**
- * Manages a thread which processes messages sent from the simulation
+ * Delivers the messages sent from the simulation to the registered listeners.
+ *
+ * Messages are published into a fixed size ring of slots which is allocated once. Every listener
+ * has its own consumer which follows the ring in order and records the sequence number
+ * of the last message it has processed, so each listener receives the messages in exactly the
+ * order that they were sent and a slow listener doesn't hold up the others.
+ * A slot is only reused once every consumer has moved past it, and waitForAll simply waits
+ * until every consumer has caught up with the last published sequence number.
+ *
+ * The consumers don't have threads of their own. They are lanes on a pool shared by every MessageManager
+ * in the process: publishing a message schedules each consumer which isn't already scheduled, and a
+ * scheduled consumer delivers a batch of messages then gives up its thread. A consumer is never scheduled
+ * twice at once, so its messages are still delivered one at a time in order. Creating a CPU therefore
+ * doesn't start any threads, and many CPUs running at once share a thread per core.
+ *
  * @author Charlie Street
  * @author mbway
  */
@@ -27,175 +36,392 @@ public class MessageManager {
 
 	private final static long allowedProcessingTime = 1000; // milliseconds
 
-	private final CopyOnWriteArrayList<SimulationListener> listeners;
-	private final ThreadPoolExecutor executor;
-	private final ThreadUtils.NamedTaggedThreadFactory threadFactory;
-	private final BlockingQueue<Message> messages;
-	private final AtomicBoolean noWaitingMessages; // all messages submitted
-	private final List<MessageTask> tasks;
-	private final static int maxTasks = 5; // >> numCores is useless because the switching becomes significant
+	private final static int bufferSize = 4096; // must be a power of 2
+	private final static int indexMask = bufferSize - 1;
 
-	private final IO io;
+	// wait strategy used while waiting for the consumers: busy spin, then yield, then park
+	private final static int spinTries = 200;
+	private final static int yieldTries = 100;
+	private final static long parkTime = TimeUnit.MICROSECONDS.toNanos(50);
 
-	public MessageManager(IO io) {
-		listeners = new CopyOnWriteArrayList<>();
-		threadFactory = new ThreadUtils.NamedTaggedThreadFactory("Message-Manager");
-		executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(maxTasks+1, threadFactory);
+	/**
+	 * the number of messages a consumer delivers before letting the other consumers have the thread
+	 */
+	private final static int batchSize = 256;
 
+	/**
+	 * the pool shared by the consumers of every MessageManager (at least 2 threads so that a listener which
+	 * blocks, eg waiting for the JavaFX thread, doesn't stop the other listeners on a single core machine)
+	 */
+	private final static ForkJoinPool lanes = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+			pool -> {
+				ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				t.setName("Message-Manager-" + t.getPoolIndex());
+				return t;
+			}, null, true/*FIFO*/);
 
-		// one of the threads is dedicated to dispatching to the others
-		messages = new LinkedBlockingQueue<>();
-		noWaitingMessages = new AtomicBoolean(true);
-		executor.submit(this::processMessageQueue);
+	/**
+	 * the consumer being run by the current thread (null if the thread isn't delivering a message)
+	 */
+	private final static ThreadLocal<Consumer> currentConsumer = new ThreadLocal<>();
 
-		// if the executor runs out of threads, the calling thread to submit the tasks has to run them
-		// this essentially means the list of waiting messages can grow indefinitely, as the dispatching
-		// thread will have to process some of the messages itsself
-		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+	/**
+	 * the slots of the ring. The message with sequence number s is stored in ring[s & indexMask]
+	 */
+	private final Message[] ring;
+	/**
+	 * the sequence number of the last message to be published, the write to this field makes
+	 * the contents of the slot visible to the consumers
+	 */
+	private volatile long cursor;
+	/**
+	 * the messages are usually sent by the CPU thread, but pausing/resuming and changing the speed
+	 * sends messages from other threads, so claiming and filling a slot is done under this lock
+	 * (which is uncontended almost all of the time)
+	 */
+	private final Object publishLock;
+	private long gatingSequence; // cached minimum of the consumer sequences (guarded by publishLock)
 
-		tasks = new ArrayList<>(maxTasks);
+	private final CopyOnWriteArrayList<Consumer> consumers;
+	/**
+	 * listening[t.ordinal()] is true when at least one listener wants messages of type t
+	 * replaced rather than modified so that reads don't need locking
+	 */
+	private volatile boolean[] listening;
+	private volatile boolean shutdown;
+
+	private final IO io;
+
+	public MessageManager(IO io) {
+		ring = new Message[bufferSize];
+		cursor = -1;
+		gatingSequence = -1;
+		publishLock = new Object();
+		consumers = new CopyOnWriteArrayList<>();
+		listening = new boolean[MessageType.values().length];
+		shutdown = false;
 		this.io = io;
 	}
 
 	public void shutdown() {
-		synchronized (this) {
-			threadFactory.killThreads();
-			messages.clear();
-			synchronized (tasks) {
-				tasks.clear();
+		shutdown = true;
+		synchronized (consumers) {
+			for (Consumer c : consumers) {
+				c.stop();
+			}
+			consumers.clear();
+			updateListening();
+		}
+	}
+
+	/**
+	 * a listener and the types of message it wants to receive, run on the shared pool whenever there
+	 * are messages it hasn't seen yet
+	 */
+	private class Consumer implements Runnable {
+		final SimulationListener listener;
+		final EnumSet<MessageType> types;
+
+		/**
+		 * the sequence number of the last message this consumer has finished with
+		 */
+		volatile long sequence;
+		volatile boolean running;
+		/**
+		 * true from when the consumer is submitted to the pool until it has finished delivering
+		 */
+		private final AtomicBoolean scheduled;
+
+		Consumer(SimulationListener listener, EnumSet<MessageType> types) {
+			this.listener = listener;
+			this.types = types;
+			this.sequence = -1;
+			this.running = true;
+			this.scheduled = new AtomicBoolean(false);
+		}
+
+		void stop() {
+			running = false;
+		}
+
+		/**
+		 * make sure the consumer will run after a message has been published
+		 */
+		void schedule() {
+			if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+				lanes.execute(this);
 			}
+		}
 
-			executor.shutdown();
+		@Override
+		public void run() {
+			Consumer previous = currentConsumer.get();
+			currentConsumer.set(this);
 			try {
-				executor.awaitTermination(allowedProcessingTime, TimeUnit.MILLISECONDS);
-			} catch (InterruptedException e) {
-				executor.shutdownNow();
+				deliver();
+			} finally {
+				currentConsumer.set(previous);
+			}
+
+			if (running && cursor > sequence) {
+				lanes.execute(this); // still scheduled, but let the other consumers have a turn first
+				return;
+			}
+			scheduled.set(false);
+			// a message published after the check above but before clearing the flag would not have scheduled this consumer
+			if (running && cursor > sequence && scheduled.compareAndSet(false, true)) {
+				lanes.execute(this);
+			}
+		}
+
+		/**
+		 * deliver (up to a batch of) the messages which have been published, in order
+		 */
+		private void deliver() {
+			long next = sequence + 1;
+			long last = Math.min(cursor, next + batchSize - 1);
+			for (; next <= last && running; next++) {
+				Message m = ring[(int) next & indexMask];
+				if (types.contains(m.getType())) {
+					try {
+						listener.delegateMessage(m);
+					} catch (Exception e) {
+						Simulizer.handleException(e);
+					}
+				}
+				sequence = next;
 			}
 		}
 	}
 
 	/**
-     * Register a listener to receive messages
+     * Register a listener to receive every type of message
      * @param l the listener to send messages to
      */
     public void registerListener(SimulationListener l) {
-		listeners.add(l);
+		registerListener(l, MessageType.values());
     }
 
+	/**
+	 * Register a listener to receive only the given types of message
+	 * the listener will receive the messages sent after it was registered
+	 * @param l the listener to send messages to
+	 * @param types the types of message the listener handles
+	 */
+	public void registerListener(SimulationListener l, MessageType... types) {
+		EnumSet<MessageType> set = EnumSet.noneOf(MessageType.class);
+		Collections.addAll(set, types);
+		synchronized (consumers) {
+			if (shutdown) {
+				return;
+			}
+			Consumer c = new Consumer(l, set);
+			synchronized (publishLock) {
+				// start from the current position, the slots after it can't be reused until
+				// the new consumer has finished with them
+				c.sequence = cursor;
+				consumers.add(c);
+			}
+			updateListening();
+		}
+	}
+
     /**
      * Unregisters a listener from the list
+	 * may be called by the listener while it is processing a message
      * @param l the listener to be removed
      */
     public void unregisterListener(SimulationListener l){
-		listeners.remove(l);
+		synchronized (consumers) {
+			for (Consumer c : consumers) {
+				if (c.listener == l) {
+					consumers.remove(c);
+					c.stop();
+				}
+			}
+			updateListening();
+		}
     }
 
-	public void sendMessage(Message m) {
-		try {
-			noWaitingMessages.set(false);
-			messages.put(m);
-		} catch (InterruptedException ignored) {
+	/**
+	 * recalculate which message types have listeners
+	 */
+	private void updateListening() {
+		boolean[] newListening = new boolean[MessageType.values().length];
+		for (Consumer c : consumers) {
+			for (MessageType t : c.types) {
+				newListening[t.ordinal()] = true;
+			}
 		}
+		listening = newListening;
 	}
 
-	private class MessageTask implements Runnable {
-		public Message m;
-		Future<?> future;
-
-		MessageTask(Message m) {
-			this.m = m;
-		}
-
+	/**
+	 * cheap enough to call before building every message
+	 * @param type the type of message
+	 * @return whether any registered listener wants messages of this type
+	 */
+	public boolean isListening(MessageType type) {
+		return listening[type.ordinal()];
+	}
 
-		@Override
-		public void run() {
-			try {
-				for (SimulationListener l : listeners) {
-					l.delegateMessage(m);
-				}
-			} catch (Exception e) {
-				Simulizer.handleException(e);
+	/**
+	 * @return whether any of the registered listeners want the messages sent every cycle
+	 */
+	public boolean hasCycleListeners() {
+		for (MessageType t : MessageType.values()) {
+			if (t.perCycle && isListening(t)) {
+				return true;
 			}
 		}
+		return false;
 	}
 
 	/**
-	 * send messages to all of the registered listeners
+	 * publish a message to the listeners
+	 * if the ring is full this waits for the slowest listener to free a slot
+	 * @param m the message to send
 	 */
-	private void processMessageQueue() {
-		for(;;) {
+	public void sendMessage(Message m) {
+		if (shutdown) {
+			return;
+		}
 
-			Message m;
-			try {
-				m = messages.poll(10, TimeUnit.MILLISECONDS); // wait until one becomes available
-				if(executor.isShutdown())
+		synchronized (publishLock) {
+			long next = cursor + 1;
+			long wrapPoint = next - bufferSize;
+
+			if (wrapPoint > gatingSequence) {
+				gatingSequence = minimumSequence(cursor);
+				if (wrapPoint > gatingSequence && !waitForSlot(wrapPoint, m)) {
 					return;
-				if(m == null)
-					continue;
-				synchronized (messages) {
-					messages.notifyAll();
 				}
-			} catch (InterruptedException ignored) {
-				return;
 			}
 
-			synchronized (this) {
-				// make sure not to add tasks after shutdown
-				// to avoid java.util.concurrent.RejectedExecutionException
-				if (executor.isShutdown())
-					return;
-				synchronized (tasks) {
-					MessageTask t = new MessageTask(m);
-					t.future = executor.submit(t);
-					tasks.add(t);
-
-					if(messages.isEmpty()) {
-						synchronized (noWaitingMessages) {
-							noWaitingMessages.set(true);
-							noWaitingMessages.notifyAll();
-						}
-					}
+			ring[(int) next & indexMask] = m;
+			cursor = next;
+		}
 
-					if(tasks.size() > 50) {
-						tasks.removeIf((task) -> task.future.isDone());
-					}
+		for (Consumer c : consumers) {
+			c.schedule();
+		}
+	}
+
+	/**
+	 * wait for every consumer to move past the given sequence number so that its slot can be reused
+	 * @param wrapPoint the sequence number of the message being overwritten
+	 * @param m the message waiting to be published
+	 * @return false if the message had to be dropped
+	 */
+	private boolean waitForSlot(long wrapPoint, Message m) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(allowedProcessingTime);
+		int tries = 0;
+		while (wrapPoint > gatingSequence) {
+			if (shutdown || System.nanoTime() > deadline) {
+				if (!shutdown) {
+					io.printString(IOStream.ERROR, "" +
+							"The simulation messages are not being processed quickly enough.\n" +
+							"  The simulation will continue without sending this message.\n" +
+							"  Detail: " + m + "\n"
+					);
 				}
+				return false;
 			}
+			tries = backOff(tries);
+			gatingSequence = minimumSequence(cursor);
+		}
+		return true;
+	}
+
+	/**
+	 * @param minimum the value to return if there are no consumers
+	 * @return the sequence number of the slowest consumer
+	 */
+	private long minimumSequence(long minimum) {
+		for (Consumer c : consumers) {
+			minimum = Math.min(minimum, c.sequence);
 		}
+		return minimum;
 	}
 
+	/**
+	 * one step of the wait strategy used while waiting for the consumers
+	 * @param tries how many times the caller has already waited
+	 * @return the new value of tries
+	 */
+	private static int backOff(int tries) {
+		if (tries >= spinTries + yieldTries) {
+			LockSupport.parkNanos(parkTime);
+		} else if (tries >= spinTries) {
+			Thread.yield();
+		} // otherwise busy spin
+		return tries + 1;
+	}
+
+	/**
+	 * wait until every listener has processed every message which has been sent
+	 * (a listener calling this while handling a message does not wait for itself)
+	 */
 	public void waitForAll() {
 		waitForAll(allowedProcessingTime);
 	}
 	private void waitForAll(long timeoutTime) {
+		final long target = cursor;
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutTime);
+		final Consumer self = currentConsumer.get();
+
+		if (self == null) {
+			waitForConsumers(target, deadline, null);
+			return;
+		}
+		// a listener is waiting on one of the threads of the pool, so let the pool
+		// start another thread in the meantime to run the consumers being waited for
 		try {
-			synchronized (noWaitingMessages) {
-				while (!noWaitingMessages.get()) {
-					noWaitingMessages.wait(timeoutTime);
+			ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+				@Override
+				public boolean block() {
+					waitForConsumers(target, deadline, self);
+					return true;
 				}
-			}
-		} catch (InterruptedException ignored) {
-			return;
+
+				@Override
+				public boolean isReleasable() {
+					return false;
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
+	}
 
-		synchronized (tasks) {
-			for (MessageTask t : tasks) {
-				try {
-					if(!t.future.isDone()) {
-						t.future.get(timeoutTime, TimeUnit.MILLISECONDS);
-					}
-				} catch (InterruptedException e) {
+	/**
+	 * @param target the sequence number every consumer has to reach
+	 * @param deadline when to give up waiting (System.nanoTime)
+	 * @param self the consumer which is waiting (not waited for), may be null
+	 */
+	private void waitForConsumers(long target, long deadline, Consumer self) {
+		final Thread current = Thread.currentThread();
+
+		for (Consumer c : consumers) {
+			if (c == self) {
+				continue;
+			}
+
+			int tries = 0;
+			while (c.sequence < target && c.running) {
+				if (current.isInterrupted()) {
 					return;
-				} catch (ExecutionException | TimeoutException e) {
+				}
+				if (System.nanoTime() > deadline) {
 					io.printString(IOStream.ERROR, "" +
 							"A simulation message is taking too long to process.\n" +
 							"  The simulation will continue without waiting.\n" +
-							"  Detail: " + t.m + "\n"
+							"  Detail: " + ring[(int) (c.sequence + 1) & indexMask] + "\n"
 					);
+					break;
 				}
+				tries = backOff(tries);
 			}
-
-			tasks.clear();
 		}
 	}
 
@@ -0,0 +1,28 @@
+package simulizer.simulation.messages;
+
+/**
+ * The kinds of message sent by the simulation. Listeners declare which types they
+ * want when they register, so that the CPU can avoid building messages nobody receives
+ */
+public enum MessageType {
+	ANNOTATION       (false),
+	CYCLE_DELTA      (true),
+	DATA_MOVEMENT    (true),
+	INSTRUCTION_TYPE (true),
+	PIPELINE_HAZARD  (true),
+	PIPELINE_STATE   (true),
+	PROBLEM          (false),
+	REGISTER_CHANGED (true),
+	SIMULATION       (false),
+	STAGE_ENTER      (true);
+
+	/**
+	 * whether messages of this type are sent during every cycle of the simulation
+	 * (as opposed to occasionally, eg when the simulation starts or a problem occurs)
+	 */
+	public final boolean perCycle;
+
+	MessageType(boolean perCycle) {
+		this.perCycle = perCycle;
+	}
+}
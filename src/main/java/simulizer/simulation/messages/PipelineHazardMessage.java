@@ -15,7 +15,7 @@ public class PipelineHazardMessage extends Message {
 	 *
 	 */
 	public enum Hazard {
-		RAW, WAW, CONTROL;
+		RAW, WAW, CONTROL, STRUCTURAL;
 
 		@Override
 		public String toString() {
@@ -26,6 +26,8 @@ public class PipelineHazardMessage extends Message {
 					return "Write After Write";
 				case CONTROL:
 					return "Control";
+				case STRUCTURAL:
+					return "Structural";
 				default:
 					return "UNKNOWN";
 			}
@@ -53,4 +55,8 @@ public class PipelineHazardMessage extends Message {
 		return this.hazard;
 	}
 
+	@Override
+	public MessageType getType() {
+		return MessageType.PIPELINE_HAZARD;
+	}
 }
@@ -50,4 +50,8 @@ public class PipelineStateMessage extends Message{
 		return this.executed;
 	}
 
+	@Override
+	public MessageType getType() {
+		return MessageType.PIPELINE_STATE;
+	}
 }
@@ -10,4 +10,9 @@ public class ProblemMessage extends Message {
     public ProblemMessage(Exception e) {
         this.e = e;
     }
+
+    @Override
+    public MessageType getType() {
+        return MessageType.PROBLEM;
+    }
 }
@@ -19,4 +19,9 @@ public class RegisterChangedMessage extends Message {
 	{
 		this.registerChanged = register;
 	}
+
+	@Override
+	public MessageType getType() {
+		return MessageType.REGISTER_CHANGED;
+	}
 }
@@ -9,24 +9,37 @@ public abstract class SimulationListener {
     void delegateMessage(Message m) {
         processMessage(m);
 
-        if (m instanceof AnnotationMessage) {
-            processAnnotationMessage((AnnotationMessage) m);
-        } else if (m instanceof DataMovementMessage) {
-            processDataMovementMessage((DataMovementMessage) m);
-        } else if (m instanceof InstructionTypeMessage) {
-            processInstructionTypeMessage((InstructionTypeMessage) m);
-        } else if (m instanceof PipelineHazardMessage) {
-            processPipelineHazardMessage((PipelineHazardMessage) m);
-        } else if (m instanceof PipelineStateMessage) {
-            processPipelineStateMessage((PipelineStateMessage) m);
-        } else if (m instanceof ProblemMessage) {
-            processProblemMessage((ProblemMessage) m);
-        } else if (m instanceof RegisterChangedMessage) {
-            processRegisterChangedMessage((RegisterChangedMessage) m);
-        } else if (m instanceof SimulationMessage) {
-            processSimulationMessage((SimulationMessage) m);
-        } else if (m instanceof StageEnterMessage) {
-            processStageEnterMessage((StageEnterMessage) m);
+        switch (m.getType()) {
+            case ANNOTATION:
+                processAnnotationMessage((AnnotationMessage) m);
+                break;
+            case CYCLE_DELTA:
+                processCycleDeltaMessage((CycleDeltaMessage) m);
+                break;
+            case DATA_MOVEMENT:
+                processDataMovementMessage((DataMovementMessage) m);
+                break;
+            case INSTRUCTION_TYPE:
+                processInstructionTypeMessage((InstructionTypeMessage) m);
+                break;
+            case PIPELINE_HAZARD:
+                processPipelineHazardMessage((PipelineHazardMessage) m);
+                break;
+            case PIPELINE_STATE:
+                processPipelineStateMessage((PipelineStateMessage) m);
+                break;
+            case PROBLEM:
+                processProblemMessage((ProblemMessage) m);
+                break;
+            case REGISTER_CHANGED:
+                processRegisterChangedMessage((RegisterChangedMessage) m);
+                break;
+            case SIMULATION:
+                processSimulationMessage((SimulationMessage) m);
+                break;
+            case STAGE_ENTER:
+                processStageEnterMessage((StageEnterMessage) m);
+                break;
         }
     }
 
@@ -36,6 +49,7 @@ public abstract class SimulationListener {
     public void processMessage(Message m) {}
 
     public void processAnnotationMessage(AnnotationMessage m) {}
+    public void processCycleDeltaMessage(CycleDeltaMessage m) {}
     public void processDataMovementMessage(DataMovementMessage m) {}
     public void processInstructionTypeMessage(InstructionTypeMessage m) {}
     public void processPipelineHazardMessage(PipelineHazardMessage m) {}
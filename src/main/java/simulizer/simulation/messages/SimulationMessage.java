@@ -23,4 +23,9 @@ public class SimulationMessage extends Message {
 	public SimulationMessage(Detail detail) {
 		this.detail = detail;
 	}
+
+	@Override
+	public MessageType getType() {
+		return MessageType.SIMULATION;
+	}
 }
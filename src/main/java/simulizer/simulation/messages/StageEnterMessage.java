@@ -18,4 +18,9 @@ public class StageEnterMessage extends Message {
     public StageEnterMessage(Stage stage) {
         this.stage = stage;
     }
+
+	@Override
+	public MessageType getType() {
+		return MessageType.STAGE_ENTER;
+	}
 }
@@ -24,8 +24,13 @@ import simulizer.highlevel.models.HLVisualManager;
 import simulizer.settings.Settings;
 import simulizer.simulation.cpu.CPUChangedListener;
 import simulizer.simulation.cpu.components.CPU;
+import simulizer.simulation.cpu.components.BranchPredictor;
+import simulizer.simulation.cpu.components.Breakpoints;
 import simulizer.simulation.cpu.components.CPUPipeline;
+import simulizer.simulation.cpu.components.Cache;
+import simulizer.simulation.cpu.components.TimingModel;
 import simulizer.simulation.cpu.user_interaction.LoggerIO;
+import simulizer.simulation.messages.MessageType;
 import simulizer.ui.components.AssemblingDialog;
 import simulizer.ui.components.CurrentFile;
 import simulizer.ui.components.MainMenuBar;
@@ -55,6 +60,7 @@ public class WindowManager extends GridPane {
 
 	private Set<CPUChangedListener> cpuChangedListeners = new HashSet<>();
 	private CPU cpu = null;
+	private final Breakpoints breakpoints = new Breakpoints(); // shared by every CPU so they survive switching CPU
 	private final LoggerIO io;
 	private Thread cpuThread = null;
 	private UISimulationListener simListener = new UISimulationListener(this);
@@ -316,6 +322,13 @@ public class WindowManager extends GridPane {
 		return cpu;
 	}
 
+	/**
+	 * @return the breakpoints set in the editor, used by whichever CPU is running
+	 */
+	public Breakpoints getBreakpoints() {
+		return breakpoints;
+	}
+
 	/**
 	 * @return the workspace
 	 */
@@ -358,11 +371,29 @@ public class WindowManager extends GridPane {
 		}
 
 		if (pipelined) {
-			cpu = new CPUPipeline(io);
+			CPUPipeline pipeline = new CPUPipeline(io);
+			pipeline.setForwarding((boolean) settings.get("simulation.forwarding.ex-ex"),
+					(boolean) settings.get("simulation.forwarding.mem-ex"));
+			BranchPredictor.Kind predictor = BranchPredictor.Kind.fromName((String) settings.get("simulation.branch-predictor"));
+			if (predictor != null)
+				pipeline.setBranchPredictor(predictor);
+			cpu = pipeline;
 		} else {
 			cpu = new CPU(io);
 		}
-		cpu.registerListener(simListener);
+		cpu.setBreakpoints(breakpoints);
+		int mebibyte = 1024 * 1024;
+		cpu.setMemoryLimits((int) settings.get("simulation.max-heap-size") * mebibyte,
+				(int) settings.get("simulation.max-stack-size") * mebibyte);
+		if ((boolean) settings.get("simulation.cache.enabled")) {
+			cpu.setCaches(parseCache((String) settings.get("simulation.cache.instruction")),
+					parseCache((String) settings.get("simulation.cache.data")));
+		}
+		if ((boolean) settings.get("simulation.timing.enabled")) {
+			cpu.setTimingModel(parseTiming((String) settings.get("simulation.timing.latencies")));
+		}
+		cpu.registerListener(simListener, MessageType.SIMULATION, MessageType.ANNOTATION, MessageType.CYCLE_DELTA,
+				MessageType.PROBLEM);
 		if (oldCycleFreq < 0) {
 			cpu.setCycleFreq((Double) settings.get("simulation.default-CPU-frequency"));
 		} else {
@@ -374,6 +405,36 @@ public class WindowManager extends GridPane {
 		}
 	}
 
+	/**
+	 * @param spec
+	 *            a cache from the settings, written as size:line-size:associativity[:replacement[:write-policy]]
+	 * @return the cache configuration, or null (no cache) if the setting is empty or invalid
+	 */
+	private static Cache.Config parseCache(String spec) {
+		if (spec == null || spec.trim().isEmpty())
+			return null;
+		try {
+			return Cache.Config.parse(spec);
+		} catch (IllegalArgumentException e) {
+			UIUtils.showErrorDialog("Invalid Cache", "The cache \"" + spec + "\" in the settings is invalid", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param spec
+	 *            changes to the default latencies from the settings, written as name=cycles separated by commas
+	 * @return the timing model, with the default latencies if the setting is invalid
+	 */
+	private static TimingModel parseTiming(String spec) {
+		try {
+			return TimingModel.parse(spec);
+		} catch (IllegalArgumentException e) {
+			UIUtils.showErrorDialog("Invalid Latencies", "The latencies \"" + spec + "\" in the settings are invalid", e.getMessage());
+			return new TimingModel();
+		}
+	}
+
 	/**
 	 * Adds a CPU changed listener
 	 * 
@@ -8,6 +8,7 @@ import java.util.concurrent.TimeUnit;
 import javafx.application.Platform;
 import javafx.scene.Cursor;
 import javafx.scene.control.Alert;
+import simulizer.simulation.messages.MessageType;
 import simulizer.simulation.messages.SimulationListener;
 import simulizer.simulation.messages.SimulationMessage;
 import simulizer.ui.WindowManager;
@@ -70,7 +71,7 @@ public class AssemblingDialog extends Alert {
 			getDialogPane().setCursor(Cursor.WAIT);
 		});
 
-		wm.getCPU().registerListener(new AssemblingFinishedListener());
+		wm.getCPU().registerListener(new AssemblingFinishedListener(), MessageType.SIMULATION);
 
 		executor = Executors.newSingleThreadScheduledExecutor(new ThreadUtils.NamedThreadFactory("Assembling-Dialog"));
 		updateTask = executor.scheduleAtFixedRate(() -> Platform.runLater(() -> setContentText(getNext(getContentText()))), 0, 500,
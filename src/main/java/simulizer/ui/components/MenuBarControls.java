@@ -8,6 +8,7 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import simulizer.simulation.cpu.CPUChangedListener;
 import simulizer.simulation.cpu.components.Clock;
+import simulizer.simulation.messages.MessageType;
 import simulizer.simulation.messages.SimulationListener;
 import simulizer.simulation.messages.SimulationMessage;
 import simulizer.ui.WindowManager;
@@ -39,7 +40,7 @@ class MenuBarControls {
 	private class ButtonCPUChangedListener implements CPUChangedListener {
 		@Override public void cpuChanged(simulizer.simulation.cpu.components.CPU newCPU) {
 			cpu = newCPU;
-			cpu.registerListener(listener);
+			cpu.registerListener(listener, MessageType.SIMULATION);
 		}
 	}
 
@@ -78,7 +79,7 @@ class MenuBarControls {
 		listener = new ButtonCPUListener();
 		ButtonCPUChangedListener changedListener = new ButtonCPUChangedListener();
 		wm.addCPUChangedListener(changedListener);
-		cpu.registerListener(listener);
+		cpu.registerListener(listener, MessageType.SIMULATION);
 
 		invisible = new ImageView(new Image(FileUtils.getResourcePath("/img/invisible.png")));
 
@@ -7,10 +7,10 @@ import simulizer.BuildInfo;
 import simulizer.assembler.representation.Address;
 import simulizer.assembler.representation.Program;
 import simulizer.simulation.cpu.components.CPU;
+import simulizer.simulation.cpu.components.TimingStatistics;
 import simulizer.simulation.cpu.user_interaction.IOStream;
 import simulizer.simulation.messages.AnnotationMessage;
-import simulizer.simulation.messages.PipelineHazardMessage;
-import simulizer.simulation.messages.PipelineStateMessage;
+import simulizer.simulation.messages.CycleDeltaMessage;
 import simulizer.simulation.messages.ProblemMessage;
 import simulizer.simulation.messages.SimulationListener;
 import simulizer.simulation.messages.SimulationMessage;
@@ -87,6 +87,10 @@ public class UISimulationListener extends SimulationListener {
 				if (ticks != 0) { // this is actually possible (.text;main:nop)
 					System.out.println("Average time per tick: " + (duration / ticks) + " ms");
 				}
+				TimingStatistics timing = wm.getCPU().getTimingStatistics();
+				if (timing != null) {
+					System.out.println("Timing: " + timing);
+				}
 
 				final Editor editor = Editor.getEditor();
 				if(editor != null) {
@@ -130,11 +134,11 @@ public class UISimulationListener extends SimulationListener {
 	}
 
 	@Override
-	public void processPipelineStateMessage(PipelineStateMessage m) {
+	public void processCycleDeltaMessage(CycleDeltaMessage m) {
 		highlightAddresses(m.getFetched(), m.getDecoded(), m.getExecuted());
 
 		// Update the pipeline model
-		PipelineView.model.processPipelineStateMessage(m);
+		PipelineView.model.processCycleDeltaMessage(m);
 	}
 
 	@Override
@@ -142,8 +146,4 @@ public class UISimulationListener extends SimulationListener {
 		wm.getIO().printString(IOStream.ERROR, "Simulation Problem:\n  " + m.e + "\n");
 	}
 
-	@Override
-	public void processPipelineHazardMessage(PipelineHazardMessage m) {
-		PipelineView.model.processHazardStateMessage(m);
-	}
 }
@@ -3,6 +3,7 @@ package simulizer.ui.windows;
 import javafx.scene.CacheHint;
 import javafx.scene.Node;
 import javafx.scene.layout.Pane;
+import simulizer.simulation.messages.MessageType;
 import simulizer.ui.components.CPU;
 import simulizer.ui.components.cpu.listeners.CPUChangedListener;
 import simulizer.ui.components.cpu.listeners.CPUListener;
@@ -190,6 +191,6 @@ public class CPUVisualisation extends InternalWindow {
 	public void attachCPU(simulizer.simulation.cpu.components.CPU simCpu) {
 		cpuListener = new CPUListener(cpu, simCpu, cpu.animationProcessor);
 		cpu.animationProcessor.setCpuListener(cpuListener);
-		simCpu.registerListener(cpuListener);
+		simCpu.registerListener(cpuListener, MessageType.DATA_MOVEMENT, MessageType.STAGE_ENTER);
 	}
 }
\ No newline at end of file
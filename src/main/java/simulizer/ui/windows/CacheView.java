@@ -0,0 +1,154 @@
+package simulizer.ui.windows;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Cursor;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.BorderPane;
+import simulizer.simulation.cpu.components.CPU;
+import simulizer.simulation.cpu.components.CacheStatistics;
+import simulizer.ui.interfaces.InternalWindow;
+import simulizer.utils.ThreadUtils;
+
+/**
+ * Shows the hits and misses of the modelled L1 caches, for the whole cache and for each line of the program which
+ * missed. The statistics are polled from the CPU so they can be watched while the program runs at full speed.
+ */
+public class CacheView extends InternalWindow {
+	private final TableView<Row> table = new TableView<>();
+	private final ScheduledExecutorService polling;
+
+	public CacheView() {
+		// Jump to the line on click
+		table.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+			Row row = table.getSelectionModel().getSelectedItem();
+			if (row != null && row.line > 0) {
+				Editor editor = Editor.getEditor();
+				if (editor != null)
+					Platform.runLater(() -> editor.gotoLine(row.line - 1));
+			}
+		});
+
+		table.setCursor(Cursor.DEFAULT);
+		table.setPlaceholder(new Label("No caches are being modelled.\nTurn them on in Options > CPU Simulation > L1 Caches"));
+
+		polling = Executors.newSingleThreadScheduledExecutor(new ThreadUtils.NamedThreadFactory("Cache-Statistics-Polling"));
+		polling.scheduleAtFixedRate(this::refreshData, 0, 500, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void close() {
+		polling.shutdownNow();
+		super.close();
+	}
+
+	@Override
+	public void setToDefaultDimensions() {
+		setNormalisedDimentions(0.5, 0.5, 0.5, 0.5);
+	}
+
+	/**
+	 * Refreshes the data in the table
+	 */
+	private void refreshData() {
+		if (getWindowManager() == null)
+			return;
+		CPU cpu = getWindowManager().getCPU();
+		if (cpu == null)
+			return;
+
+		List<CacheStatistics> caches = cpu.getCacheStatistics();
+		ObservableList<Row> rows = FXCollections.observableArrayList();
+		for (CacheStatistics cache : caches) {
+			rows.add(new Row(cache.name, 0, cache.total));
+			for (Map.Entry<Integer, CacheStatistics.Counts> e : cache.byLine.entrySet()) {
+				if (e.getValue().getMisses() != 0)
+					rows.add(new Row(cache.name, e.getKey() + 1, e.getValue()));
+			}
+		}
+		Platform.runLater(() -> table.setItems(rows));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void ready() {
+		TableColumn<Row, String> cache = new TableColumn<>("Cache");
+		cache.setCellValueFactory(new PropertyValueFactory<>("cache"));
+
+		TableColumn<Row, String> line = new TableColumn<>("Line");
+		line.setCellValueFactory(new PropertyValueFactory<>("lineName"));
+
+		TableColumn<Row, Long> hits = new TableColumn<>("Hits");
+		hits.setCellValueFactory(new PropertyValueFactory<>("hits"));
+
+		TableColumn<Row, Long> misses = new TableColumn<>("Misses");
+		misses.setCellValueFactory(new PropertyValueFactory<>("misses"));
+
+		TableColumn<Row, Long> evictions = new TableColumn<>("Evictions");
+		evictions.setCellValueFactory(new PropertyValueFactory<>("evictions"));
+
+		TableColumn<Row, String> hitRate = new TableColumn<>("Hit Rate");
+		hitRate.setCellValueFactory(new PropertyValueFactory<>("hitRate"));
+
+		table.getColumns().addAll(cache, line, hits, misses, evictions, hitRate);
+		table.setEditable(false);
+		table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY); // columns auto-fit
+
+		BorderPane pane = new BorderPane();
+		setContentPane(pane);
+		pane.setCenter(table);
+		pane.setCursor(Cursor.DEFAULT);
+		super.ready();
+	}
+
+	/**
+	 * A row of the table: the counts of a cache for a line of the program (or the whole program)
+	 */
+	@SuppressWarnings({ "WeakerAccess", "unused" })
+	public static class Row {
+		private final String cache;
+		private final int line; // counted from 1, 0 for the whole program
+		private final CacheStatistics.Counts counts;
+
+		Row(String cache, int line, CacheStatistics.Counts counts) {
+			this.cache = cache;
+			this.line = line;
+			this.counts = counts;
+		}
+
+		public String getCache() {
+			return cache;
+		}
+
+		public String getLineName() {
+			return line == 0 ? "all" : "" + line;
+		}
+
+		public Long getHits() {
+			return counts.getHits();
+		}
+
+		public Long getMisses() {
+			return counts.getMisses();
+		}
+
+		public Long getEvictions() {
+			return counts.getEvictions();
+		}
+
+		public String getHitRate() {
+			return String.format("%.1f%%", counts.getHitRate() * 100);
+		}
+	}
+}
@@ -39,7 +39,6 @@ import simulizer.assembler.extractor.problem.Problem;
 import simulizer.assembler.representation.Instruction;
 import simulizer.assembler.representation.Register;
 import simulizer.settings.Settings;
-import simulizer.simulation.cpu.components.Breakpoints;
 import simulizer.ui.WindowManager;
 import simulizer.ui.components.CurrentFile;
 import simulizer.ui.interfaces.InternalWindow;
@@ -120,10 +119,10 @@ public class Editor extends InternalWindow {
 		}
 		public void onBreakpoint(int line, boolean set) {
             if(set) {
-				Breakpoints.addBreakpointLine(line);
+				editor.getWindowManager().getBreakpoints().addBreakpointLine(line);
                 hasBreakpointsSinceLastEdit = true;
 			} else {
-				Breakpoints.removeBreakpointLine(line);
+				editor.getWindowManager().getBreakpoints().removeBreakpointLine(line);
 			}
 		}
 	}
@@ -533,7 +532,7 @@ public class Editor extends InternalWindow {
 	 */
 	private void clearBreakpoints() {
 		jsSession.call("clearBreakpoints");
-		Breakpoints.clearBreakpoints();
+		getWindowManager().getBreakpoints().clearBreakpoints();
 	}
 
 	/**
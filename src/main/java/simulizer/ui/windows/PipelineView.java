@@ -36,6 +36,8 @@ import simulizer.assembler.representation.Address;
 import simulizer.assembler.representation.Statement;
 import simulizer.lowlevel.models.PipelineHistoryModel;
 import simulizer.simulation.cpu.components.CPU;
+import simulizer.simulation.cpu.components.CPUPipeline;
+import simulizer.simulation.cpu.components.PipelineStatistics;
 import simulizer.simulation.messages.PipelineHazardMessage;
 import simulizer.ui.components.NumberTextField;
 import simulizer.ui.interfaces.InternalWindow;
@@ -70,6 +72,7 @@ public class PipelineView extends InternalWindow implements Observer, Repaintabl
 
 	private final String DEFAULT_INSTR = "\n\n\n\n";
 	private Label instructionInfoLabel = new Label(DEFAULT_INSTR);
+	private Label statisticsLabel = new Label();
 
 	private String selectedAddress;
 
@@ -182,6 +185,8 @@ public class PipelineView extends InternalWindow implements Observer, Repaintabl
 
 		instructionInfoLabel.setStyle("-fx-font-family: monospace");
 		instructionInfoLabel.setPadding(new Insets(20, 0, 15, 20));
+		statisticsLabel.setStyle("-fx-font-family: monospace");
+		statisticsLabel.setPadding(new Insets(20, 0, 15, 20));
 
 		canvasPane.addEventFilter(MouseEvent.MOUSE_MOVED, e -> {
 			if (!isRunning)
@@ -222,7 +227,7 @@ public class PipelineView extends InternalWindow implements Observer, Repaintabl
 		Label cycleInputLabel = new Label("Go to:");
 		bottomBox.getChildren().addAll(cycleInputLabel, cycleInput);
 		buttonBox.getChildren().addAll(topBox, bottomBox);
-		controlBox.getChildren().addAll(buttonBox, instructionInfoLabel);
+		controlBox.getChildren().addAll(buttonBox, instructionInfoLabel, statisticsLabel);
 
 		BorderPane borderPane = new BorderPane();
 		borderPane.setCenter(canvasPane);
@@ -485,6 +490,12 @@ public class PipelineView extends InternalWindow implements Observer, Repaintabl
 				else {
 					String name = getShortName(parts[a]);
 					drawBorderedRectangle(gc, xLeft, yTracker, rectWidth, rectWidth, name.equals(selectedAddress));
+					if (a == 2 && state.mispredicted) {
+						// mark the branch which went the other way to the prediction
+						gc.setStroke(Color.RED);
+						gc.strokeRect(xLeft - 4, yTracker - 4, rectWidth + 8, rectWidth + 8);
+						gc.setStroke(Color.BLACK);
+					}
 					gc.setFill(ColorUtils.getTextColor(bg));
 					drawText(gc, name, xCenter, yCenter);
 				}
@@ -543,6 +554,8 @@ public class PipelineView extends InternalWindow implements Observer, Repaintabl
 
 			calculateParameters();
 
+			statisticsLabel.setText(getStatisticsInfo());
+
 			if (isRunning) {
 				drawDividers(gc);
 				drawExplainers(gc);
@@ -676,6 +689,11 @@ public class PipelineView extends InternalWindow implements Observer, Repaintabl
 				fortune = fortunes.get(cycle / 100);
 
 			PipelineHazardMessage.Hazard h = hOpt.get();
+			List<PipelineHistoryModel.PipelineState> history = model.getHistory();
+			// the bubbles after a mispredicted branch are in the next two cycles
+			for (int c = Math.max(0, cycle - 2); c < cycle; ++c)
+				if (history.get(c).mispredicted)
+					return String.format("Hazard: %s%n(branch mispredicted)%n%s%n ", h.toString(), fortune);
 			return String.format("Hazard: %s%n %n%s%n ", h.toString(), fortune);
 		} else
 			return String.format("Not a hazard%n %n %n ");
@@ -697,6 +715,46 @@ public class PipelineView extends InternalWindow implements Observer, Repaintabl
 	 *            the address whose information is to be found
 	 * @return information about the given address in the context of the running program.
 	 */
+	/**
+	 * @return a summary of how the hazards have affected the pipelined CPU, so that the effect of
+	 *         reordering instructions can be measured (empty if the CPU isn't pipelined)
+	 */
+	private String getStatisticsInfo() {
+		CPU cpu = getWindowManager().getCPU();
+		if (!(cpu instanceof CPUPipeline))
+			return "";
+
+		PipelineStatistics stats = ((CPUPipeline) cpu).getStatistics();
+		PipelineStatistics.Counts raw = stats.byHazard.get(PipelineHazardMessage.Hazard.RAW);
+		PipelineStatistics.Counts control = stats.byHazard.get(PipelineHazardMessage.Hazard.CONTROL);
+		// @formatter:off
+		return String.format(
+			  "             CPI: %.3f%n"
+			+ "Read After Write: %d stalls, %d forwarded%n"
+			+ "         Control: %d flushes, %d bubbles%n"
+			+ "       Predictor: %s, %.1f%% correct (%d cycles saved)",
+				stats.getCPI(), raw.getStalls(), raw.getForwarded(), control.getFlushes(), control.getBubbles(),
+				stats.predictor, control.getPredictionAccuracy() * 100, stats.getCyclesSaved());
+		// @formatter:on
+	}
+
+	/**
+	 * @param cpu the CPU running the program
+	 * @param lineNum the line of the program
+	 * @return the hazards caused by the line (empty if the CPU isn't pipelined)
+	 */
+	private static String getLineHazardInfo(CPU cpu, int lineNum) {
+		if (!(cpu instanceof CPUPipeline))
+			return "";
+		PipelineStatistics.Counts counts = ((CPUPipeline) cpu).getStatistics().byLine.get(lineNum);
+		if (counts == null)
+			return "";
+		String info = String.format(" (%d stalls, %d flushes, %d forwarded", counts.getStalls(), counts.getFlushes(), counts.getForwarded());
+		if (counts.getPredictions() > 0)
+			info += String.format(", %.1f%% predicted", counts.getPredictionAccuracy() * 100);
+		return info + ")";
+	}
+
 	private String getAddressInfo(Address address) {
 		CPU cpu = getWindowManager().getCPU();
 		Map<Address, Statement> textSegment = cpu.getProgram().textSegment;
@@ -711,8 +769,8 @@ public class PipelineView extends InternalWindow implements Observer, Repaintabl
 				  "       Statement: %s%n"
 				+ "         Address: %s%n"
 				+ "Instruction type: %s%n"
-				+ "     Line number: %d",
-					s.toString(), address.toString(), s.getInstruction(), lineNum);
+				+ "     Line number: %d%s",
+					s.toString(), address.toString(), s.getInstruction(), lineNum, getLineHazardInfo(cpu, lineNum));
 			// @formatter:on
 		} else {
 			// @formatter:off
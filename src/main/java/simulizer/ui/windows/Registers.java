@@ -1,15 +1,16 @@
 package simulizer.ui.windows;
 
 import java.nio.ByteBuffer;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.scene.Cursor;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.RadioMenuItem;
@@ -21,9 +22,10 @@ import simulizer.assembler.representation.Register;
 import simulizer.simulation.cpu.CPUChangedListener;
 import simulizer.simulation.cpu.components.CPU;
 import simulizer.simulation.data.representation.DataConverter;
-import simulizer.simulation.messages.PipelineStateMessage;
-import simulizer.simulation.messages.RegisterChangedMessage;
+import simulizer.simulation.messages.CycleDeltaMessage;
+import simulizer.simulation.messages.MessageType;
 import simulizer.simulation.messages.SimulationListener;
+import simulizer.simulation.messages.SimulationMessage;
 import simulizer.ui.interfaces.InternalWindow;
 import simulizer.utils.ThreadUtils;
 import simulizer.utils.UIUtils;
@@ -42,7 +44,9 @@ public class Registers extends InternalWindow implements CPUChangedListener {
 	private TableColumn<Data, String> valueCol;
 	private Timer refreshTimer;
 
-	private final Set<Integer> changedRegisters = new HashSet<>();
+	// the bits of the changed rows for the special registers, after the registers (bit n is the register with ID n)
+	private static final int PC_BIT = 32, HI_BIT = 33, LO_BIT = 34;
+	private final ChangedRows<Data> changedRows = new ChangedRows<>();
 
 	public Registers() {
 		getEventManager().addPropertyListener(widthProperty(), (o, old, newValue) -> {
@@ -68,6 +72,7 @@ public class Registers extends InternalWindow implements CPUChangedListener {
 			data.add(new Data(9997, "pc"));
 			data.add(new Data(9998, "hi"));
 			data.add(new Data(9999, "lo"));
+			changedRows.setRows(data, d -> d.id);
 			try {
 				ThreadUtils.platformRunAndWait(() -> table.setItems(data));
 			} catch (Throwable e) {
@@ -77,15 +82,8 @@ public class Registers extends InternalWindow implements CPUChangedListener {
 	}
 
 	private void refreshRegisters() {
-		FilteredList<Data> changed;
 		synchronized (table) {
-			synchronized (changedRegisters) {
-				if (changedRegisters.size() == 0)
-					return;
-				changed = table.getItems().filtered(d -> changedRegisters.contains(d.id));
-				changedRegisters.clear();
-			}
-			changed.forEach(Data::refresh);
+			changedRows.refresh(Data::refresh);
 		}
 	}
 
@@ -99,7 +97,7 @@ public class Registers extends InternalWindow implements CPUChangedListener {
 		// Add Listeners
 		getWindowManager().addCPUChangedListener(this);
 		cpu = getWindowManager().getCPU();
-		cpu.registerListener(listener);
+		cpu.registerListener(listener, MessageType.CYCLE_DELTA, MessageType.SIMULATION);
 
 		// Create Name column
 		TableColumn<Data, String> registerName = new TableColumn<>("Name");
@@ -249,29 +247,74 @@ public class Registers extends InternalWindow implements CPUChangedListener {
 	}
 
 	/**
-	 * Listens for Register Changed events
+	 * Listens for the registers changed during each cycle
 	 * 
 	 * @author Michael
 	 *
 	 */
 	private class RegisterListener extends SimulationListener {
 		@Override
-		public void processRegisterChangedMessage(RegisterChangedMessage m) {
-			synchronized (changedRegisters) {
-				if (m.registerChanged == null) {
-					// Updating hi/lo
-					changedRegisters.add(9998);
-					changedRegisters.add(9999);
-				} else
-					changedRegisters.add(m.registerChanged.getID());
-			}
+		public void processCycleDeltaMessage(CycleDeltaMessage m) {
+			long rows = (m.getChangedRegisters() & 0xFFFFFFFFL) | (1L << PC_BIT);
+			if (m.hiChanged())
+				rows |= 1L << HI_BIT;
+			if (m.loChanged())
+				rows |= 1L << LO_BIT;
+			changedRows.mark(rows);
 		}
 
 		@Override
-		public void processPipelineStateMessage(PipelineStateMessage m) {
-			synchronized (changedRegisters) {
-				// Updating pc
-				changedRegisters.add(9997);
+		public void processSimulationMessage(SimulationMessage m) {
+			// all of the registers are reset when a program is loaded
+			if (m.detail == SimulationMessage.Detail.PROGRAM_LOADED)
+				changedRows.mark(-1L);
+		}
+	}
+
+	/**
+	 * The rows of the table which need refreshing, found by the id of the row rather than its position since the
+	 * rows are reordered when the table is sorted
+	 */
+	static class ChangedRows<T> {
+		// bit n is set if the row with bit n has changed (see bit)
+		private final AtomicLong changed = new AtomicLong(0);
+		// the row for each bit
+		private final Object[] rows = new Object[LO_BIT + 1];
+
+		/**
+		 * @param id the id of a row (the register ID, or 9997, 9998 and 9999 for pc, hi and lo)
+		 * @return the bit which is set when the row has changed
+		 */
+		static int bit(int id) {
+			return id < 32 ? id : PC_BIT + (id - 9997);
+		}
+
+		/**
+		 * @param rows the rows of the table
+		 * @param id gets the id of a row
+		 */
+		synchronized void setRows(List<T> rows, ToIntFunction<T> id) {
+			for (T row : rows)
+				this.rows[bit(id.applyAsInt(row))] = row;
+		}
+
+		/**
+		 * @param bits the bits of the rows which have changed
+		 */
+		void mark(long bits) {
+			changed.accumulateAndGet(bits, (a, b) -> a | b);
+		}
+
+		/**
+		 * refresh the rows which have changed since the last refresh
+		 * @param refresh refreshes a row
+		 */
+		@SuppressWarnings("unchecked")
+		synchronized void refresh(Consumer<T> refresh) {
+			long bits = changed.getAndSet(0);
+			for (int bit = 0; bit < rows.length; bit++) {
+				if ((bits & (1L << bit)) != 0 && rows[bit] != null)
+					refresh.accept((T) rows[bit]);
 			}
 		}
 	}
@@ -282,7 +325,7 @@ public class Registers extends InternalWindow implements CPUChangedListener {
 			cpu.unregisterListener(listener);
 		this.cpu = cpu;
 		if (cpu != null)
-			cpu.registerListener(listener);
+			cpu.registerListener(listener, MessageType.CYCLE_DELTA, MessageType.SIMULATION);
 	}
 
 	/**
@@ -0,0 +1,170 @@
+package simulizer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.google.gson.Gson;
+
+import category.UnitTests;
+import simulizer.utils.FileUtils;
+
+/**tests that batch mode reports the right status for each program, and that a CPU can be reused for the next
+ * program after one times out or when the same program is run again (see CPU.reset)
+ */
+@Category({UnitTests.class})
+public class BatchModeTest {
+
+	// reads an int and prints it + 1
+	private static final String increment = ".text\n" +
+			"main:\n" +
+			"    li $v0, 5\n" +
+			"    syscall\n" +
+			"    addiu $a0, $v0, 1\n" +
+			"    li $v0, 1\n" +
+			"    syscall\n" +
+			"    li $v0, 10\n" +
+			"    syscall\n";
+
+	// adds an int which it reads to the static data and prints the total, so prints the input only if the
+	// static data is set back between runs
+	private static final String accumulate = ".data\n" +
+			"total: .word 0\n" +
+			".text\n" +
+			"main:\n" +
+			"    li $v0, 5\n" +
+			"    syscall\n" +
+			"    lw $t0, total\n" +
+			"    addu $a0, $t0, $v0\n" +
+			"    sw $a0, total\n" +
+			"    li $v0, 1\n" +
+			"    syscall\n" +
+			"    li $v0, 10\n" +
+			"    syscall\n";
+
+	private static final String infiniteLoop = ".text\n" +
+			"main:\n" +
+			"    addiu $t0, $t0, 1\n" +
+			"    j main\n";
+
+	/**
+	 * @param dir the directory to write to
+	 * @param name the name of the file
+	 * @param content the content of the file
+	 */
+	private static void write(File dir, String name, String content) {
+		FileUtils.writeToFile(new File(dir, name), content);
+	}
+
+	/**
+	 * run batch mode on one thread (so that every program is run on the same CPU)
+	 * @param report the file to write the report to
+	 * @param pipelined whether to run the programs on the pipelined CPU
+	 * @param paths the programs to run
+	 * @return the report, read back from the file
+	 */
+	private static BatchMode.Report runBatch(File report, boolean pipelined, String... paths) throws IOException {
+		List<String> args = new ArrayList<>(Arrays.asList("batch", "--threads=1", "--timeout=1", "--report=" + report.getAbsolutePath()));
+		if (pipelined)
+			args.add("--pipelined");
+		args.addAll(Arrays.asList(paths));
+		BatchMode.start(CommandLineArguments.parse(args.toArray(new String[0])));
+
+		try (Reader r = FileUtils.getUTF8FileReader(report)) {
+			return new Gson().fromJson(r, BatchMode.Report.class);
+		}
+	}
+
+	@Test(timeout = 20000)
+	public void testStatuses() throws IOException {
+		File dir = Files.createTempDirectory("batch").toFile();
+		write(dir, "a_passed.s", increment);
+		write(dir, "a_passed.in", "41\n");
+		write(dir, "a_passed.out", "42");
+		write(dir, "b_timeout.s", infiniteLoop);
+		write(dir, "c_failed.s", increment);
+		write(dir, "c_failed.in", "1\n");
+		write(dir, "c_failed.out", "3");
+		write(dir, "d_assembly_error.s", ".text\nmain:\n    notAnInstruction $t0\n");
+		write(dir, "e_passed.s", increment); // run on the CPU which timed out
+		write(dir, "e_passed.in", "9\n");
+		write(dir, "e_passed.out", "10");
+		File report = new File(dir, "report.json");
+
+		BatchMode.Report r = runBatch(report, false, dir.getAbsolutePath());
+
+		assertEquals(5, r.programs);
+		assertEquals(2, r.passed);
+		assertEquals(1, r.failed);
+		assertEquals(2, r.errors);
+		Map<String, BatchMode.Result.Status> statuses = new HashMap<>();
+		for (BatchMode.Result result : r.results) {
+			statuses.put(new File(result.program).getName(), result.status);
+		}
+		assertEquals(BatchMode.Result.Status.passed, statuses.get("a_passed.s"));
+		assertEquals(BatchMode.Result.Status.timeout, statuses.get("b_timeout.s"));
+		assertEquals(BatchMode.Result.Status.failed, statuses.get("c_failed.s"));
+		assertEquals(BatchMode.Result.Status.assembly_error, statuses.get("d_assembly_error.s"));
+		assertEquals(BatchMode.Result.Status.passed, statuses.get("e_passed.s"));
+		assertEquals("3", r.results.get(2).expectedOutput);
+		assertFalse(r.results.get(3).problems.isEmpty());
+	}
+
+	/**a program listed more than once in a manifest is run again on the same CPU after it is reset, so
+	 * should start with the static data it was loaded with each time
+	 */
+	@Test(timeout = 20000)
+	public void testManifestReusesCPU() throws IOException {
+		File dir = Files.createTempDirectory("batch").toFile();
+		write(dir, "acc.s", accumulate);
+		StringBuilder manifest = new StringBuilder("# program input expected-output\n");
+		for (int i = 1; i <= 5; i++) {
+			write(dir, i + ".in", i + "\n");
+			write(dir, i + ".out", String.valueOf(i));
+			manifest.append("acc.s ").append(i).append(".in ").append(i).append(".out\n");
+		}
+		write(dir, "manifest.txt", manifest.toString());
+		File report = new File(dir, "report.json");
+
+		BatchMode.Report r = runBatch(report, false, new File(dir, "manifest.txt").getAbsolutePath());
+
+		assertEquals(5, r.programs);
+		assertEquals(5, r.passed);
+		for (int i = 0; i < 5; i++) {
+			assertEquals(String.valueOf(i + 1), r.results.get(i).output);
+		}
+	}
+
+	/**the pipelined CPU takes more cycles than the instructions it runs (filling the pipeline and flushing it after
+	 * jumps), the number of instructions reported should be the same as on the CPU which isn't pipelined
+	 */
+	@Test(timeout = 20000)
+	public void testPipelinedInstructions() throws IOException {
+		File dir = Files.createTempDirectory("batch").toFile();
+		write(dir, "loop.s", ".text\n" +
+				"main:\n" +
+				"    li $t0, 10\n" +
+				"loop:\n" +
+				"    addiu $t0, $t0, -1\n" +
+				"    bne $t0, $zero, loop\n" +
+				"    li $v0, 10\n" +
+				"    syscall\n");
+		File report = new File(dir, "report.json");
+
+		long instructions = runBatch(report, false, dir.getAbsolutePath()).results.get(0).instructions;
+		long pipelined = runBatch(report, true, dir.getAbsolutePath()).results.get(0).instructions;
+		assertEquals(1 + 2 * 10 + 2, instructions);
+		assertEquals(instructions, pipelined);
+	}
+}
@@ -1,9 +1,12 @@
 package simulizer.simulation.components;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.management.ManagementFactory;
 import java.util.Optional;
 
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
@@ -486,4 +489,46 @@ public class ALUTest {
 			assertEquals(0,DataConverter.decodeAsSigned(cpu.getHi().getBytes()));
 		}
 	}
+
+	/**the int operations and branch comparisons shouldn't allocate anything
+	 * runs each operation many times and measures the memory allocated by this thread
+	 * @throws InstructionException when a bad instruction is used
+	 */
+	@Test
+	public void testNoAllocation() throws InstructionException
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+		CPU cpu = new CPU(null);
+		Instruction[] operations = {Instruction.add, Instruction.addu, Instruction.sub, Instruction.and, Instruction.nor,
+				Instruction.sll, Instruction.sra, Instruction.slt, Instruction.sltu, Instruction.mult, Instruction.div,
+				Instruction.divu, Instruction.rol, Instruction.mulo};
+		Instruction[] branches = {Instruction.beq, Instruction.bne, Instruction.bgez, Instruction.bltu, Instruction.b};
+
+		int iterations = 200000;
+		long checksum = 0;
+		long before = 0;
+		for(int run = 0; run < 2; run++) {//the first run is a warm up
+			before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			for(int i = 1; i <= iterations; i++) {
+				for(Instruction instruction : operations) {
+					checksum += ALU.compute(instruction, i, i % 13 - 20, cpu);
+				}
+				for(Instruction instruction : branches) {
+					if(ALU.compare(instruction, i, i & 0xFF)) {
+						checksum++;
+					}
+				}
+			}
+		}
+		long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+		long operationCount = (long) iterations * (operations.length + branches.length);
+		assertEquals("bytes allocated per operation", 0, allocated / operationCount);
+		assertTrue("allocated " + allocated + " bytes", allocated < 4096);
+		assertTrue(checksum != 0);
+	}
 }
@@ -0,0 +1,163 @@
+package simulizer.simulation.components;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import simulizer.assembler.representation.Register;
+import simulizer.utils.runner.SimulizerRunner;
+
+/**tests that the blocks compiled by the headless engine behave exactly like the interpreter
+ */
+@Category({UnitTests.class})
+public class BasicBlockTest {
+
+	/**a loop which is run enough times to be compiled, using most of the instructions which
+	 * have a specialised translation, and calling a function so that jal/jr are compiled too
+	 */
+	private static final String program = ".data\n" +
+			"buf: .space 16\n" +
+			".text\n" +
+			"main:\n" +
+			"    li $s0, 300\n" +
+			"    li $s1, 0\n" +
+			"    li $s2, -7\n" +
+			"    la $s3, buf\n" +
+			"loop:\n" +
+			"    addiu $s1, $s1, 12345\n" +
+			"    addu $t0, $s1, $s2\n" +
+			"    subu $t1, $t0, $s0\n" +
+			"    mult $t0, $t1\n" +
+			"    mflo $t2\n" +
+			"    mfhi $t3\n" +
+			"    mul $t4, $t1, $s2\n" +
+			"    sll $t5, $t4, 3\n" +
+			"    srl $t6, $t4, 35\n" +
+			"    sra $t7, $t4, 2\n" +
+			"    sllv $t8, $t1, $s0\n" +
+			"    srav $t9, $t4, $s0\n" +
+			"    and $a0, $t2, $t3\n" +
+			"    or $a1, $t2, $t3\n" +
+			"    xor $a2, $t2, $t3\n" +
+			"    nor $a3, $t2, $t3\n" +
+			"    andi $v1, $t4, 0xFF\n" +
+			"    ori $v1, $v1, 0x100\n" +
+			"    slt $k0, $t4, $t1\n" +
+			"    sltu $k1, $t4, $t1\n" +
+			"    sltiu $gp, $t4, 5\n" +
+			"    sw $t4, 0($s3)\n" +
+			"    sh $t1, 4($s3)\n" +
+			"    sb $t1, 6($s3)\n" +
+			"    lb $s4, 0($s3)\n" +
+			"    lbu $s5, 1($s3)\n" +
+			"    lh $s6, 4($s3)\n" +
+			"    lhu $s7, 0($s3)\n" +
+			"    lw $fp, 0($s3)\n" +
+			"    move $v0, $t9\n" +
+			"    not $a0, $a0\n" +
+			"    lui $at, 3\n" +
+			"    nop\n" +
+			"    jal func\n" +
+			"    addiu $s0, $s0, -1\n" +
+			"    bgtz $s0, loop\n" +
+			"    li $v0, 10\n" +
+			"    syscall\n" +
+			"func:\n" +
+			"    addu $t0, $t0, $ra\n" +
+			"    blt $t0, $zero, skip\n" +
+			"    subu $t0, $zero, $t0\n" +
+			"skip:\n" +
+			"    jr $ra\n";
+
+	/**the interpreter (used when the clock has a set speed) and the compiled blocks (used by the
+	 * headless engine when running at max speed) should leave the registers and memory in the same state
+	 */
+	@Test(timeout = 20000)
+	public void testSameAsInterpreter() throws Exception {
+		SimulizerRunner interpreted = new SimulizerRunner(false);
+		interpreted.cpu.setCycleFreq(1000000);
+		interpreted.run(program, "");
+		SimulizerRunner compiled = new SimulizerRunner(false);
+		compiled.run(program, "");
+
+		assertTrue(interpreted.problemLogger.getProblems().isEmpty());
+		for (Register r : Register.values()) {
+			assertEquals(r.getName(), interpreted.cpu.getRegisterValue(r), compiled.cpu.getRegisterValue(r));
+		}
+		assertEquals(interpreted.cpu.getHiValue(), compiled.cpu.getHiValue());
+		assertEquals(interpreted.cpu.getLoValue(), compiled.cpu.getLoValue());
+
+		int buf = interpreted.cpu.labels.get("buf").getValue();
+		assertArrayEquals(interpreted.cpu.getMainMemory().readFromMem(buf, 8), compiled.cpu.getMainMemory().readFromMem(buf, 8));
+	}
+
+	/**a loop made of the pairs of instructions which are fused, finishing with a store outside of the
+	 * static data from a fused addiu + sw, to check that a failure leaves the program counter as it should
+	 */
+	private static final String fusionProgram = ".data\n" +
+			"buf: .space 256\n" +
+			".text\n" +
+			"main:\n" +
+			"    li $s0, 200\n" +
+			"    la $s1, buf\n" +
+			"    li $s2, 0\n" +
+			"loop:\n" +
+			"    lui $t0, 0x1234\n" +
+			"    ori $t1, $t0, 0x5678\n" +
+			"    lui $at, 0xFFFF\n" +
+			"    addiu $t2, $at, -3\n" +
+			"    addiu $sp, $sp, -8\n" +
+			"    sw $s0, 4($sp)\n" +
+			"    sll $t3, $s0, 2\n" +
+			"    addu $t3, $t3, $s1\n" +
+			"    addiu $t4, $t3, -560\n" +// buf + 4*(s0 - 140), before the static data once s0 < 140
+			"    sw $s0, 0($t4)\n" +
+			"    slti $t5, $s0, 170\n" +
+			"    beq $t5, $zero, over\n" +
+			"    addiu $s2, $s2, 1\n" +
+			"over:\n" +
+			"    sltu $t6, $s2, $s0\n" +
+			"    bne $t6, $zero, under\n" +
+			"    addiu $s2, $s2, 100\n" +
+			"under:\n" +
+			"    addiu $sp, $sp, 8\n" +
+			"    addiu $s0, $s0, -1\n" +
+			"    slt $t7, $zero, $s0\n" +
+			"    bne $t7, $zero, loop\n" +
+			"    li $v0, 10\n" +
+			"    syscall\n";
+
+	/**fusing instructions shouldn't change the registers, memory, program counter or cycle count,
+	 * even when an instruction in a fused pair fails
+	 */
+	@Test(timeout = 20000)
+	public void testFusion() throws Exception {
+		SimulizerRunner interpreted = new SimulizerRunner(false);
+		interpreted.cpu.setCycleFreq(1000000);
+		interpreted.run(fusionProgram, "");
+		SimulizerRunner unfused = new SimulizerRunner(false);
+		unfused.cpu.setFusion(false);
+		unfused.run(fusionProgram, "");
+		SimulizerRunner fused = new SimulizerRunner(false);
+		fused.run(fusionProgram, "");
+
+		assertTrue(fused.problemLogger.getProblems().isEmpty());
+		for (Register r : Register.values()) {
+			assertEquals(r.getName(), interpreted.cpu.getRegisterValue(r), fused.cpu.getRegisterValue(r));
+		}
+		assertEquals(139, fused.cpu.getRegisterValue(Register.s0));//stopped by the store before the static data
+		assertEquals(interpreted.cpu.getProgramCounterValue(), fused.cpu.getProgramCounterValue());
+		assertEquals(unfused.cpu.getProgramCounterValue(), fused.cpu.getProgramCounterValue());
+		assertEquals(unfused.cpu.getCycles(), fused.cpu.getCycles());
+
+		int buf = interpreted.cpu.labels.get("buf").getValue();
+		assertArrayEquals(interpreted.cpu.getMainMemory().readFromMem(buf, 256), fused.cpu.getMainMemory().readFromMem(buf, 256));
+		int sp = fused.cpu.getRegisterValue(Register.sp);
+		assertArrayEquals(interpreted.cpu.getMainMemory().readFromMem(sp, 8), fused.cpu.getMainMemory().readFromMem(sp, 8));
+
+		assertEquals(0, unfused.cpu.getFusedPairs());
+		assertTrue(fused.cpu.getFusedPairs() > 0);
+	}
+}
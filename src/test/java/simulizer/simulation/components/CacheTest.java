@@ -0,0 +1,175 @@
+package simulizer.simulation.components;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import simulizer.assembler.representation.Register;
+import simulizer.simulation.cpu.components.Cache;
+import simulizer.simulation.cpu.components.CacheStatistics;
+import simulizer.utils.runner.SimulizerRunner;
+
+/**tests the replacement and write policies of the cache model, and that the caches count the accesses
+ * made by a program without changing its results
+ */
+@Category({UnitTests.class})
+public class CacheTest {
+
+	/**
+	 * @param spec the shape of the cache
+	 * @param addresses the addresses to read, in order
+	 * @return the counts after reading every address
+	 */
+	private static CacheStatistics.Counts read(String spec, int... addresses) {
+		Cache cache = new Cache("test", Cache.Config.parse(spec), 0, 0);
+		for (int a : addresses) {
+			cache.access(a, false, 0);
+		}
+		return cache.getStatistics(null).total;
+	}
+
+	/**invalid shapes should be rejected
+	 */
+	@Test
+	public void testConfig() {
+		Cache.Config c = Cache.Config.parse("4096:32:2");
+		assertEquals(64, c.getSets());
+		assertEquals(Cache.Replacement.LRU, c.replacement);
+		assertEquals(Cache.WritePolicy.WRITE_BACK, c.writePolicy);
+		assertEquals(c.toString(), Cache.Config.parse(c.toString()).toString());
+
+		for (String bad : new String[]{"4096:32", "4000:32:1", "4096:2:1", "4096:32:3", "64:32:4", "4096:32:1:mru", "4096:32:1:lru:write-around", "big:32:1"}) {
+			try {
+				Cache.Config.parse(bad);
+				fail(bad + " should be invalid");
+			} catch (IllegalArgumentException ignored) {
+			}
+		}
+	}
+
+	/**LRU keeps the line which keeps being used, FIFO throws it out once it is the oldest
+	 */
+	@Test
+	public void testReplacement() {
+		// 2 sets of 2 lines, 0, 32 and 64 are all in set 0
+		int[] pattern = {0, 32, 0, 64, 0};
+		CacheStatistics.Counts lru = read("64:16:2:lru", pattern);
+		assertEquals(2, lru.getHits());
+		assertEquals(3, lru.getMisses());
+		assertEquals(1, lru.getEvictions());
+
+		CacheStatistics.Counts fifo = read("64:16:2:fifo", pattern);
+		assertEquals(1, fifo.getHits());
+		assertEquals(4, fifo.getMisses());
+		assertEquals(2, fifo.getEvictions());
+
+		// a direct mapped cache thrashes when two lines share a set
+		assertEquals(0, read("64:16:1", 0, 64, 0, 64).getHits());
+		assertEquals(2, read("64:16:2:random", 0, 64, 0, 64).getHits());
+		assertEquals(3, read("64:16:1", 0, 4, 8, 12).getHits());//the same line
+	}
+
+	/**a write back cache brings in the line on a write miss and writes dirty lines back when they are evicted,
+	 * a write through cache doesn't bring the line in
+	 */
+	@Test
+	public void testWritePolicy() {
+		Cache writeBack = new Cache("test", Cache.Config.parse("64:16:1:lru:write-back"), 0, 0);
+		assertFalse(writeBack.access(0, true, 0));
+		assertTrue(writeBack.access(0, false, 0));
+		assertFalse(writeBack.access(64, false, 0));//evicts the dirty line
+		assertFalse(writeBack.access(128, false, 0));//evicts a clean line
+		CacheStatistics stats = writeBack.getStatistics(null);
+		assertEquals(2, stats.total.getEvictions());
+		assertEquals(1, stats.writeBacks);
+
+		Cache writeThrough = new Cache("test", Cache.Config.parse("64:16:1:lru:write-through"), 0, 0);
+		assertFalse(writeThrough.access(0, true, 0));
+		assertFalse(writeThrough.access(0, false, 0));
+		assertTrue(writeThrough.access(0, true, 0));
+		assertEquals(0, writeThrough.getStatistics(null).writeBacks);
+	}
+
+	/**fetching a run of instructions should count the same as fetching each one
+	 */
+	@Test
+	public void testFetch() {
+		Cache run = new Cache("run", Cache.Config.parse("128:16:2"), 0x400000, 64);
+		Cache each = new Cache("each", Cache.Config.parse("128:16:2"), 0x400000, 64);
+		int[][] blocks = {{0x400004, 13}, {0x400000, 3}, {0x400040, 20}, {0x400004, 13}};
+		for (int[] b : blocks) {
+			run.fetch(b[0], b[1]);
+			for (int i = 0; i < b[1]; i++) {
+				each.access(b[0] + 4 * i, false, b[0] + 4 * i);
+			}
+		}
+		CacheStatistics.Counts r = run.getStatistics(null).total, e = each.getStatistics(null).total;
+		assertEquals(e.getHits(), r.getHits());
+		assertEquals(e.getMisses(), r.getMisses());
+		assertEquals(e.getEvictions(), r.getEvictions());
+	}
+
+	/**
+	 * @param pipelined whether to use the pipelined cpu
+	 * @param byRows whether to sum the matrix a row at a time (otherwise a column at a time)
+	 * @return the runner after summing a 16x16 matrix of words
+	 */
+	private static SimulizerRunner sumMatrix(boolean pipelined, boolean byRows) {
+		SimulizerRunner runner = new SimulizerRunner(pipelined);
+		runner.cpu.setCaches(Cache.Config.parse("256:32:1"), Cache.Config.parse("512:32:2"));
+		runner.run(".data\n" +
+				"matrix: .space 1024\n" +
+				".text\n" +
+				"main:\n" +
+				"    li $t0, 0\n" +// i
+				"    li $s0, 0\n" +// sum
+				"    la $s1, matrix\n" +
+				"outer:\n" +
+				"    li $t1, 0\n" +// j
+				"inner:\n" +
+				(byRows ? "    sll $t2, $t0, 6\n    sll $t3, $t1, 2\n" : "    sll $t2, $t1, 6\n    sll $t3, $t0, 2\n") +
+				"    addu $t2, $t2, $t3\n" +
+				"    addu $t2, $t2, $s1\n" +
+				"    lw $t4, 0($t2)\n" +
+				"    addiu $t4, $t4, 1\n" +
+				"    sw $t4, 0($t2)\n" +
+				"    addu $s0, $s0, $t4\n" +
+				"    addiu $t1, $t1, 1\n" +
+				"    slti $t5, $t1, 16\n" +
+				"    bne $t5, $zero, inner\n" +
+				"    addiu $t0, $t0, 1\n" +
+				"    slti $t5, $t0, 16\n" +
+				"    bne $t5, $zero, outer\n" +
+				"    li $v0, 10\n" +
+				"    syscall\n", "");
+		assertTrue(runner.problemLogger.getProblems().isEmpty());
+		assertEquals(256, runner.cpu.getRegisterValue(Register.s0));
+		return runner;
+	}
+
+	/**walking the matrix along the rows should miss far less than walking down the columns, the instructions
+	 * should all hit once the loops are in the instruction cache, and the counts should be the same whichever cpu runs them
+	 */
+	@Test(timeout = 20000)
+	public void testProgram() {
+		for (boolean pipelined : new boolean[]{false, true}) {
+			SimulizerRunner rows = sumMatrix(pipelined, true), columns = sumMatrix(pipelined, false);
+			CacheStatistics rowData = rows.cpu.getCacheStatistics().get(1), columnData = columns.cpu.getCacheStatistics().get(1);
+			assertEquals(Cache.dataCacheName, rowData.name);
+			assertEquals(512, rowData.total.getAccesses());//a load and a store for each element
+			assertEquals(32, rowData.total.getMisses());//one miss for each line of the matrix
+			assertEquals(256, columnData.total.getMisses());//every load misses
+			assertEquals(32, rowData.byLine.get(14).getMisses());//the line of the load (counted from 0)
+			assertEquals(256, rowData.byLine.get(16).getHits());//the stores always hit
+
+			CacheStatistics instructions = rows.cpu.getCacheStatistics().get(0);
+			assertEquals(Cache.instructionCacheName, instructions.name);
+			assertTrue(instructions.total.getMisses() <= 3);//the program is 3 lines of the cache long
+			if (!pipelined) {//the pipeline also fetches instructions which are flushed
+				assertEquals(rows.cpu.getCycles(), instructions.total.getAccesses());
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package simulizer.simulation.components;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import simulizer.simulation.cpu.components.Clock;
+import simulizer.utils.runner.SimulizerRunner;
+
+/**tests for the timing of the clock which drives the simulation
+ */
+@Category({UnitTests.class})
+public class ClockTest {
+
+	/**
+	 * @param iterations the number of times to go round the loop
+	 * @return a program which loops a given number of times then exits
+	 */
+	private static String loopProgram(int iterations) {
+		return ".text\n" +
+				"main:\n" +
+				"    li $t0, " + iterations + "\n" +
+				"loop:\n" +
+				"    addiu $t0, $t0, -1\n" +
+				"    nop\n" +
+				"    bne $t0, $zero, loop\n" +
+				"    nop\n" +
+				"    li $v0, 10\n" +
+				"    syscall\n";
+	}
+
+	/**the clock should never tick faster than the frequency it is set to (it may be slower on a busy machine)
+	 */
+	@Test(timeout = 20000)
+	public void testTickFrequency() {
+		SimulizerRunner runner = new SimulizerRunner(true); // pipelined: one tick per cycle
+		runner.cpu.setCycleFreq(2000);
+		runner.run(loopProgram(250), "");
+
+		Clock.Statistics stats = runner.cpu.getClockStatistics();
+		assertEquals(runner.cpu.getTicks(), stats.ticks);
+		assertTrue(stats.ticks > 1000);
+		assertEquals(2000, stats.targetFrequency, 1);
+		assertTrue(stats.achievedFrequency > 0);
+		assertTrue(stats.achievedFrequency <= 2000 * 1.1);
+	}
+
+	/**no ticks should happen while the clock is paused (apart from the one which may already be
+	 * in progress), and resuming should continue the simulation
+	 */
+	@Test(timeout = 20000)
+	public void testPauseResume() throws InterruptedException {
+		SimulizerRunner runner = new SimulizerRunner(true);
+		runner.cpu.setCycleFreq(1000);
+		Thread t = new Thread(() -> runner.run(loopProgram(200), ""));
+		t.start();
+
+		while (runner.cpu.getTicks() < 50) {
+			Thread.sleep(5);
+		}
+		runner.cpu.pause();
+		long ticks = runner.cpu.getTicks();
+		Thread.sleep(200);
+		assertTrue(runner.cpu.isPaused());
+		assertTrue(runner.cpu.getTicks() <= ticks + 1);
+
+		runner.cpu.resume();
+		t.join();
+		assertTrue(runner.cpu.getTicks() > 600);
+	}
+}
@@ -0,0 +1,113 @@
+package simulizer.simulation.components;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import simulizer.simulation.cpu.user_interaction.IOStream;
+import simulizer.utils.runner.SimulizerRunner;
+
+/**tests that cpus don't share any state, so that many simulations can run at once in the same JVM
+ */
+@Category({UnitTests.class})
+public class ConcurrentCPUTest {
+
+	/**
+	 * @param n the number to count up to
+	 * @return a program which prints the sum of 1..n and n*(n+1)/2 (worked out with a multiply and divide)
+	 */
+	private static String program(int n) {
+		return ".text\n" +
+				"main:\n" +
+				"    li $t0, 0\n" +// i
+				"    li $s0, 0\n" +// sum
+				"loop:\n" +
+				"    addiu $t0, $t0, 1\n" +
+				"    addu $s0, $s0, $t0\n" +
+				"    slti $t1, $t0, " + n + "\n" +
+				"    bne $t1, $zero, loop\n" +
+				"    move $a0, $s0\n" +
+				"    li $v0, 1\n" +
+				"    syscall\n" +
+				"    li $a0, 32\n" +
+				"    li $v0, 11\n" +
+				"    syscall\n" +
+				"    addiu $t2, $t0, 1\n" +
+				"    mul $t2, $t2, $t0\n" +
+				"    li $t3, 2\n" +
+				"    div $a0, $t2, $t3\n" +
+				"    li $v0, 1\n" +
+				"    syscall\n" +
+				"    li $v0, 10\n" +
+				"    syscall\n";
+	}
+
+	/**run dozens of cpus (pipelined and not) at once on different programs, each should print its own result
+	 */
+	@Test(timeout = 60000)
+	public void testConcurrentPrograms() throws Exception {
+		int count = 48;
+		ExecutorService pool = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<String>> outputs = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				final int n = 100 + 37 * i;
+				final boolean pipelined = i % 3 == 0;
+				outputs.add(pool.submit(() -> new SimulizerRunner(pipelined).run(program(n), "")));
+			}
+			for (int i = 0; i < count; i++) {
+				int n = 100 + 37 * i;
+				int sum = n * (n + 1) / 2;
+				assertEquals(sum + " " + sum, outputs.get(i).get());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**a breakpoint set on one cpu shouldn't stop another cpu running the same program
+	 */
+	@Test(timeout = 20000)
+	public void testBreakpointsArePerCPU() throws Exception {
+		testBreakpoints(true);
+	}
+
+	/**the same for the cpu which isn't pipelined, which mustn't run headless (skipping the breakpoints)
+	 * while it has breakpoints
+	 */
+	@Test(timeout = 20000)
+	public void testBreakpointsArePerCPUNotPipelined() throws Exception {
+		testBreakpoints(false);
+	}
+
+	/**
+	 * @param pipelined whether to use the pipelined cpu
+	 */
+	private void testBreakpoints(boolean pipelined) throws Exception {
+		String program = program(50);
+		SimulizerRunner stopped = new SimulizerRunner(pipelined);
+		stopped.cpu.getBreakpoints().addBreakpointLine(5);//the first instruction of the loop (counted from 0)
+		Thread thread = new Thread(() -> stopped.run(program, ""));
+		thread.start();
+		while (!stopped.cpu.isPaused()) {
+			Thread.sleep(1);
+		}
+
+		// runs to the end while the other cpu is waiting at its breakpoint
+		assertEquals("1275 1275", new SimulizerRunner(pipelined).run(program, ""));
+		assertTrue(stopped.cpu.isPaused());
+
+		stopped.cpu.getBreakpoints().clearBreakpoints();
+		stopped.cpu.resume();
+		thread.join();
+		assertEquals("1275 1275", stopped.io.getOutput(IOStream.STANDARD));
+	}
+}
@@ -244,7 +244,7 @@ public class DecodeTest {
 		
 		Field pc = cpu.getClass().getDeclaredField("programCounter");//accessing private PC
 		pc.setAccessible(true);
-		pc.set(cpu, new Address(15));
+		pc.setInt(cpu, 15);
 
 		AddressOperand op1 = new AddressOperand(Optional.of("testName"), Optional.empty(), Optional.empty());
 		List<Operand> opList = new ArrayList<>();
@@ -275,7 +275,7 @@ public class DecodeTest {
 		Field programCounter = cpu.getClass().getDeclaredField("programCounter");
 		decoder.setAccessible(true);
         programCounter.setAccessible(true);
-		programCounter.set(cpu, new Address(100));
+		programCounter.setInt(cpu, 100);
 		InstructionFormat instr = (InstructionFormat)decoder.invoke(cpu,instruction,opList);
 		JTypeInstruction jtype = instr.asJType();
 		assertEquals(AddressMode.JTYPE, jtype.mode);
@@ -23,6 +23,7 @@ import simulizer.simulation.exceptions.HeapException;
 import simulizer.simulation.exceptions.InstructionException;
 import simulizer.simulation.exceptions.MemoryException;
 import simulizer.simulation.exceptions.StackException;
+import simulizer.utils.runner.SimulizerRunner;
 
 /**class will aim to test the execute functionality of the cpu
  * since it is so dependent on large amounts of the cpu
@@ -73,9 +74,9 @@ public class ExecuteTest {
 	{
 		Field reg = cpu.getClass().getDeclaredField("registers");//accesing private stuff for testing
 		reg.setAccessible(true);
-		Word[] registers = (Word[])reg.get(cpu);
+		int[] registers = (int[])reg.get(cpu);
 		
-		return DataConverter.decodeAsSigned(registers[register.getID()].getBytes());
+		return registers[register.getID()];
 	}
 	
 	/**method will access a register and get it's unsigned long value
@@ -88,9 +89,9 @@ public class ExecuteTest {
 	{
 		Field reg = cpu.getClass().getDeclaredField("registers");//accesing private stuff for testing
 		reg.setAccessible(true);
-		Word[] registers = (Word[])reg.get(cpu);
+		int[] registers = (int[])reg.get(cpu);
 		
-		return DataConverter.decodeAsUnsigned(registers[register.getID()].getBytes());
+		return Integer.toUnsignedLong(registers[register.getID()]);
 	}
 	
 	/**method creates a cpu and then runs a program on it
@@ -119,7 +120,7 @@ public class ExecuteTest {
 	{
 		Field pc = cpu.getClass().getDeclaredField("programCounter");//accesing private stuff for testing
 		pc.setAccessible(true);
-		return (Address)pc.get(cpu);
+		return new Address(pc.getInt(cpu));
 	}
 	
 	/**method will get the labels in the program along with their addresses, used for testing
@@ -1238,6 +1239,29 @@ public class ExecuteTest {
 		}
 	}
 	
+	/**method used to test syscall code 8 with a much bigger maximum length ($a1) than the input,
+	 * the space used to read the string should depend on the input rather than on $a1
+	 */
+	@Test
+	public void testSyscallEightHugeLength() throws MemoryException, DecodeException, InstructionException, ExecuteException, HeapException, StackException, NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException
+	{
+		String myInstructions = "li $v0, 8;\n" +
+								"la $a0, mystr;\n" +
+								"li $a1, 0x7fffffff;\n" +
+								"syscall;\n" +
+								"lw $t1, mystr;\n" +
+								"li $v0, 4;\n" +
+								"la $a0, mystr;\n" +
+								"syscall;\n";
+
+		this.io.scanner = "\u00e9!";// the e takes 2 bytes in UTF-8
+		CPU cpu = createCPU(myInstructions);
+
+		assertEquals("\u00e9!",this.io.scanner);
+		assertEquals((0xC3 << 24) | (0xA9 << 16) | ('!' << 8), accessRegisterSigned(cpu,Register.t1));
+		this.io.scanner = "";
+	}
+
 	/**method will test the execution of syscall code 9: sbrk
 	 *
 	 */
@@ -2258,4 +2282,29 @@ public class ExecuteTest {
 		assertEquals(0,DataConverter.decodeAsSigned(cpu.getHi().getBytes()));
 	}
 	
+	/**tests that read string and print string work with multi-byte UTF-8 characters and strings which
+	 * cross a page boundary, and that read string never cuts a character in half
+	 */
+	@Test
+	public void testStringSyscallsUTF8() {
+		String program = ".text\n" +
+						 "main:\n" +
+						 "li $v0, 9;\n" +
+						 "li $a0, 8192;\n" +
+						 "syscall;\n" +
+						 "addiu $s0, $v0, 4093;\n" +//3 bytes before the end of a page
+						 "li $v0, 8;\n" +
+						 "move $a0, $s0;\n" +
+						 "li $a1, 8;\n" +//7 bytes + null
+						 "syscall;\n" +
+						 "li $v0, 4;\n" +
+						 "move $a0, $s0;\n" +
+						 "syscall;\n" +
+						 "li $v0, 10;\n" +
+						 "syscall;\n";
+
+		SimulizerRunner runner = new SimulizerRunner(false);
+		assertEquals("\u00e9\u00e9\u00e9", runner.run(program, "\u00e9\u00e9\u00e9\u00e9\u00e9\n"));//2 bytes each, so only 3 fit
+	}
+	
 }
@@ -11,9 +11,12 @@ import simulizer.assembler.Assembler;
 import simulizer.assembler.representation.Address;
 import simulizer.assembler.representation.Instruction;
 import simulizer.assembler.representation.Program;
+import simulizer.assembler.representation.Register;
 import simulizer.assembler.representation.Statement;
 import simulizer.simulation.cpu.components.CPU;
 import simulizer.simulation.cpu.components.MainMemory;
+import simulizer.simulation.cpu.user_interaction.BufferIO;
+import simulizer.simulation.cpu.user_interaction.IOStream;
 import simulizer.simulation.data.representation.DataConverter;
 import simulizer.simulation.exceptions.DecodeException;
 import simulizer.simulation.exceptions.ExecuteException;
@@ -206,6 +209,172 @@ public class MemoryTest {
 	}
 	
 	
+	/**this method will test the word/half/byte accessors, including values which span two pages
+	 * and a heap of several mebibytes (which only has the pages which are written to allocated)
+	 */
+	@Test
+	public void testLoadStore() throws MemoryException, DecodeException, InstructionException, ExecuteException, HeapException, StackException, NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException
+	{
+		String myInstructions = "li $v0, 9;\n" +
+								"li $a0, 8388608;\n" +
+								"syscall;\n";//allocating 8 MiB of heap
+
+		Program program = createProgram(myInstructions);
+
+		CPU cpu = new CPU(new IOTest());
+		cpu.loadProgram(program);
+		cpu.runProgram();
+
+		Address dataSegStart = program.dataSegmentStart;
+		int heap = program.dynamicSegmentStart.getValue();
+		int topOfStack = (int)DataConverter.decodeAsSigned(program.initialSP.getBytes());
+
+		Field mem = cpu.getClass().getDeclaredField("memory");
+		mem.setAccessible(true);
+		MainMemory memory = (MainMemory)mem.get(cpu);//getting memory
+
+		{//static data is loaded into the pages
+			assertEquals('T', memory.loadByte(dataSegStart.getValue()));
+			assertEquals(-10, memory.loadWord(dataSegStart.getValue() + 23));//mynum (straight after the string)
+		}
+
+		{//word across a page boundary, and sign extension of halves and bytes
+			int address = heap + 4096 - 2;
+			memory.storeWord(address, 0xCAFEF00D);
+			assertEquals(0xCAFEF00D, memory.loadWord(address));
+			assertEquals((short) 0xCAFE, memory.loadHalf(address));
+			assertEquals((byte) 0xF0, memory.loadByte(address + 2));
+			byte[] bytes = memory.readFromMem(address, 4);
+			assertArrayEquals(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xF0, 0x0D}, bytes);
+		}
+
+		{//the top of a large heap, and the stack
+			int pages = memory.getAllocatedPages();
+			memory.storeWord(heap + 8388608 - 4, 42);
+			assertEquals(42, memory.loadWord(heap + 8388608 - 4));
+			assertEquals(0, memory.loadWord(heap + 4 * 1024 * 1024));//never written to
+			memory.storeHalf(topOfStack - 2, 0x1234);
+			assertEquals(0x1234, memory.loadHalf(topOfStack - 2));
+			assertEquals(pages + 2, memory.getAllocatedPages());
+		}
+
+		{//the same exceptions as reading/writing byte arrays
+			try {
+				memory.loadWord(heap + 8388608 - 2);
+				fail();
+			} catch(HeapException e) {
+				assertTrue(e.getMessage().contains("Invalid read on heap. (attempt to read above the break"));
+			}
+			try {
+				memory.storeByte(topOfStack, 1);
+				fail();
+			} catch(MemoryException e) {
+				assertTrue(e.getMessage().equals("Writing to an invalid area of memory"));
+			}
+			try {
+				memory.loadWord(dataSegStart.getValue() - 4);
+				fail();
+			} catch(MemoryException e) {
+				assertTrue(e.getMessage().equals("Reading from invalid area of memory"));
+			}
+		}
+
+		cpu.shutdown();
+	}
+
+	/**the heap and stack should be limited to the sizes set on the cpu
+	 */
+	@Test
+	public void testMemoryLimits() throws MemoryException, HeapException, StackException, NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException
+	{
+		Program program = createProgram("li $v0, 10;\nsyscall;\n");
+
+		CPU cpu = new CPU(new IOTest());
+		cpu.setMemoryLimits(1024 * 1024, 8192);
+		cpu.loadProgram(program);
+
+		int topOfStack = (int)DataConverter.decodeAsSigned(program.initialSP.getBytes());
+
+		Field mem = cpu.getClass().getDeclaredField("memory");
+		mem.setAccessible(true);
+		MainMemory memory = (MainMemory)mem.get(cpu);//getting memory
+
+		memory.getHeap().sbrk(1024 * 1024);
+		try {
+			memory.getHeap().sbrk(4);
+			fail();
+		} catch(HeapException e) {
+			assertTrue(e.getMessage().equals("sbrk requested extends past maximum heap length."));
+		}
+
+		memory.storeWord(topOfStack - 8192, 1);
+		try {
+			memory.storeWord(topOfStack - 8196, 1);
+			fail();
+		} catch(StackException e) {
+			assertTrue(e.getMessage().equals("Stack Overflow. (attempt to write to the stack beyond its maximum length)"));
+		}
+
+		cpu.shutdown();
+	}
+
+	/**resetting the cpu should put back the static data written to and empty the heap and stack,
+	 * so that the program runs again as if it had just been loaded
+	 */
+	@Test
+	public void testReset() throws MemoryException, HeapException, StackException, NoSuchFieldException, SecurityException, IllegalArgumentException, IllegalAccessException
+	{
+		String myInstructions = "li $v0, 5;\n" +
+								"syscall;\n" +//read an int
+								"lw $t0, mynum;\n" +
+								"addu $a0, $v0, $t0;\n" +
+								"sw $a0, mynum;\n" +//overwrite the static data
+								"li $v0, 1;\n" +
+								"syscall;\n" +
+								"li $v0, 9;\n" +
+								"li $a0, 8192;\n" +
+								"syscall;\n" +//allocate some heap
+								"li $t1, 77;\n" +
+								"sw $t1, 4096($v0);\n" +
+								"addiu $sp, $sp, -4;\n" +
+								"sw $t1, 0($sp);\n" +
+								"li $v0, 10;\n" +
+								"syscall;\n";
+		Program program = createProgram(myInstructions);
+
+		BufferIO io = new BufferIO();
+		CPU cpu = new CPU(io);
+		cpu.loadProgram(program);
+
+		Field mem = cpu.getClass().getDeclaredField("memory");
+		mem.setAccessible(true);
+		MainMemory memory = (MainMemory)mem.get(cpu);//getting memory
+		int pages = memory.getAllocatedPages();
+		int mynum = program.dataSegmentStart.getValue() + 23;//after the 22 characters and null of mystr
+		int topOfStack = (int)DataConverter.decodeAsSigned(program.initialSP.getBytes());
+
+		io.feedInput("5\n");
+		cpu.runProgram();
+		assertEquals("-5", io.getOutput(IOStream.STANDARD));
+		assertEquals(-5, memory.loadWord(mynum));
+		assertTrue(memory.getAllocatedPages() > pages);
+
+		cpu.reset();
+		assertSame(memory, mem.get(cpu));//reset in place
+		assertEquals(-10, memory.loadWord(mynum));
+		assertEquals(pages, memory.getAllocatedPages());
+		assertEquals(program.dynamicSegmentStart, memory.getHeap().sbrk(0));
+		assertEquals(0, memory.getStack().getMaxDepth());
+		assertEquals(0, cpu.getRegisterValue(Register.t1));
+
+		io.clearOutput();
+		io.feedInput("20\n");
+		cpu.runProgram();
+		assertEquals("10", io.getOutput(IOStream.STANDARD));
+		assertEquals(77, memory.loadWord(topOfStack - 4));
+		cpu.shutdown();
+	}
+
 	/**this method will test the reading of the text segment
 	 * it will check if it can find valid instructions in the segment
 	 * invalid instructions within the segment
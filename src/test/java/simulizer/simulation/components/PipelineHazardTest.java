@@ -0,0 +1,162 @@
+package simulizer.simulation.components;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import simulizer.assembler.representation.Register;
+import simulizer.simulation.cpu.components.BranchPredictor;
+import simulizer.simulation.cpu.components.CPUPipeline;
+import simulizer.simulation.cpu.components.PipelineStatistics;
+import simulizer.simulation.cpu.components.PipelineStatistics.Counts;
+import simulizer.simulation.messages.PipelineHazardMessage.Hazard;
+import simulizer.utils.runner.SimulizerRunner;
+
+/**tests that the pipeline stalls for exactly the read after write hazards between neighbouring instructions,
+ * that forwarding removes the stalls, that the branch predictors avoid flushes and that the hazards are counted
+ */
+@Category({UnitTests.class})
+public class PipelineHazardTest {
+
+	/**
+	 * @param first the instruction which writes a register
+	 * @param second the instruction straight after it
+	 * @return the number of cycles the pipeline took to run the two instructions (and exit)
+	 */
+	private static long cycles(String first, String second) {
+		return run(first, second, false, false).cycles;
+	}
+
+	/**
+	 * @param first the instruction which writes a register
+	 * @param second the instruction straight after it
+	 * @param exToEx whether arithmetic results are forwarded
+	 * @param memToEx whether loaded values are forwarded
+	 * @return the pipeline statistics for the run
+	 */
+	private static PipelineStatistics run(String first, String second, boolean exToEx, boolean memToEx) {
+		SimulizerRunner runner = new SimulizerRunner(true);
+		((CPUPipeline) runner.cpu).setForwarding(exToEx, memToEx);
+		runner.run(".data\n" +
+				"buf: .word 0\n" +
+				".text\n" +
+				"main:\n" +
+				"    li $t0, 3\n" +
+				"    li $t1, 4\n" +
+				"    nop\n" +
+				"    " + first + "\n" +
+				"    " + second + "\n" +
+				"    nop\n" +
+				"    li $v0, 10\n" +
+				"    syscall\n", "");
+		assertTrue(runner.problemLogger.getProblems().isEmpty());
+		assertEquals(3, runner.cpu.getRegisterValue(Register.t0));
+		PipelineStatistics stats = ((CPUPipeline) runner.cpu).getStatistics();
+		assertEquals(runner.cpu.getCycles(), stats.cycles);
+		return stats;
+	}
+
+	/**an instruction reading a register written by the instruction before it should cost one extra cycle
+	 */
+	@Test(timeout = 20000)
+	public void testReadAfterWrite() {
+		long independent = cycles("addu $t2, $t0, $t1", "addu $t3, $t0, $t1");
+		assertEquals(independent + 1, cycles("addu $t2, $t0, $t1", "addu $t3, $t2, $t1"));//second source
+		assertEquals(independent + 1, cycles("addu $t2, $t0, $t1", "mult $t2, $t1"));//hi/lo instructions
+		assertEquals(independent + 1, cycles("la $t2, buf", "lw $t3, 0($t2)"));//base register
+		assertEquals(independent + 1, cycles("la $t2, buf", "sw $t2, -4($sp)"));//stored register
+		// jal writes $ra (the stalled instruction is flushed by the jump, so the stall is counted but costs nothing)
+		assertEquals(0, run("jal next\nnext:", "move $t3, $t0", false, false).byHazard.get(Hazard.RAW).getStalls());
+		assertEquals(1, run("jal next\nnext:", "move $t3, $ra", false, false).byHazard.get(Hazard.RAW).getStalls());
+		assertEquals(independent, cycles("addu $t2, $t0, $t1", "addu $t2, $t0, $t1"));//write after write
+		assertEquals(independent, cycles("mult $t0, $t1", "addu $t3, $t0, $t1"));//no register written
+	}
+
+	/**forwarding should remove the stall (but still count the hazard), and the counts should be given to the line
+	 * of the instruction which had to wait
+	 */
+	@Test(timeout = 20000)
+	public void testForwarding() {
+		PipelineStatistics stalled = run("addu $t2, $t0, $t1", "addu $t3, $t2, $t1", false, false);
+		Counts raw = stalled.byHazard.get(Hazard.RAW);
+		assertEquals(1, raw.getStalls());
+		assertEquals(1, raw.getBubbles());
+		assertEquals(0, raw.getForwarded());
+		assertEquals(1, stalled.byLine.get(8).getStalls());//the line of the second instruction (counted from 0)
+
+		PipelineStatistics forwarded = run("addu $t2, $t0, $t1", "addu $t3, $t2, $t1", true, false);
+		raw = forwarded.byHazard.get(Hazard.RAW);
+		assertEquals(0, raw.getStalls());
+		assertEquals(1, raw.getForwarded());
+		assertEquals(stalled.cycles - 1, forwarded.cycles);
+		assertEquals(stalled.instructions, forwarded.instructions);
+		assertTrue(forwarded.getCPI() < stalled.getCPI());
+
+		// a loaded value needs the MEM->EX path
+		assertEquals(1, run("lw $t2, buf", "addu $t3, $t2, $t1", true, false).byHazard.get(Hazard.RAW).getStalls());
+		assertEquals(1, run("lw $t2, buf", "addu $t3, $t2, $t1", false, true).byHazard.get(Hazard.RAW).getForwarded());
+		assertEquals(1, run("addu $t2, $t0, $t1", "addu $t3, $t2, $t1", false, true).byHazard.get(Hazard.RAW).getStalls());
+
+		// a jump flushes the two instructions behind it
+		PipelineStatistics jumped = run("j next\nnext:", "nop", false, false);
+		assertEquals(1, jumped.byHazard.get(Hazard.CONTROL).getFlushes());
+		assertEquals(2, jumped.byHazard.get(Hazard.CONTROL).getBubbles());
+	}
+
+	/**
+	 * @param predictor the branch predictor to use
+	 * @return the pipeline statistics for running a loop of 20 iterations
+	 */
+	private static PipelineStatistics loop(BranchPredictor.Kind predictor) {
+		SimulizerRunner runner = new SimulizerRunner(true);
+		((CPUPipeline) runner.cpu).setBranchPredictor(predictor);
+		runner.run(".text\n" +
+				"main:\n" +
+				"    li $t0, 0\n" +
+				"    li $t1, 0\n" +
+				"loop:\n" +
+				"    addiu $t1, $t1, 3\n" +
+				"    addiu $t0, $t0, 1\n" +
+				"    slti $t2, $t0, 20\n" +
+				"    bne $t2, $zero, loop\n" +
+				"    li $v0, 10\n" +
+				"    syscall\n", "");
+		assertTrue(runner.problemLogger.getProblems().isEmpty());
+		assertEquals(60, runner.cpu.getRegisterValue(Register.t1));//every predictor gives the same result
+		assertEquals(20, runner.cpu.getRegisterValue(Register.t0));
+		PipelineStatistics stats = ((CPUPipeline) runner.cpu).getStatistics();
+		assertEquals(predictor, stats.predictor);
+		assertEquals(runner.cpu.getCycles(), stats.cycles);
+		return stats;
+	}
+
+	/**predicting the loop branch as taken should save two cycles for every correct guess
+	 */
+	@Test(timeout = 20000)
+	public void testBranchPrediction() {
+		PipelineStatistics notTaken = loop(BranchPredictor.Kind.NOT_TAKEN);
+		Counts control = notTaken.byHazard.get(Hazard.CONTROL);
+		assertEquals(20, control.getPredictions());
+		assertEquals(19, control.getTaken());
+		assertEquals(19, control.getMispredictions());
+		assertEquals(0, notTaken.getCyclesSaved());
+
+		for (BranchPredictor.Kind kind : BranchPredictor.Kind.values()) {
+			PipelineStatistics stats = loop(kind);
+			assertEquals(notTaken.instructions, stats.instructions);
+			assertEquals(notTaken.cycles - stats.getCyclesSaved(), stats.cycles);
+		}
+
+		// backward taken only misses the exit, 2-bit also misses while it warms up
+		PipelineStatistics backward = loop(BranchPredictor.Kind.BACKWARD_TAKEN);
+		assertEquals(1, backward.byHazard.get(Hazard.CONTROL).getMispredictions());
+		assertEquals(36, backward.getCyclesSaved());
+		PipelineStatistics twoBit = loop(BranchPredictor.Kind.TWO_BIT);
+		assertEquals(2, twoBit.byHazard.get(Hazard.CONTROL).getMispredictions());
+		assertTrue(twoBit.cycles < notTaken.cycles);
+		assertTrue(twoBit.byHazard.get(Hazard.CONTROL).getPredictionAccuracy() > control.getPredictionAccuracy());
+		assertEquals(2, twoBit.byLine.get(8).getMispredictions());//the line of the branch (counted from 0)
+	}
+}
@@ -0,0 +1,79 @@
+package simulizer.simulation.components;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.SlowTests;
+import simulizer.assembler.representation.Register;
+import simulizer.simulation.cpu.components.MainMemory;
+import simulizer.utils.runner.SimulizerRunner;
+
+/**benchmark for deep recursion, which grows the stack by several mebibytes one frame at a time
+ * and checks that the stack only uses the pages it grew into
+ */
+@Category({SlowTests.class})
+public class RecursionDepthTest {
+
+	private static final int frameSize = 8;//$ra and $a0
+
+	/**
+	 * @param depth the number of recursive calls
+	 * @return a program which recursively sums the numbers from depth down to 0, storing the result in $s0
+	 */
+	private static String sumProgram(int depth) {
+		return ".text\n" +
+				"main:\n" +
+				"    li $a0, " + depth + "\n" +
+				"    jal sum\n" +
+				"    move $s0, $v0\n" +
+				"    li $v0, 10\n" +
+				"    syscall\n" +
+				"sum:\n" +
+				"    addiu $sp, $sp, -" + frameSize + "\n" +
+				"    sw $ra, 4($sp)\n" +
+				"    sw $a0, 0($sp)\n" +
+				"    bne $a0, $zero, recurse\n" +
+				"    li $v0, 0\n" +
+				"    b done\n" +
+				"recurse:\n" +
+				"    addiu $a0, $a0, -1\n" +
+				"    jal sum\n" +
+				"    lw $a0, 0($sp)\n" +
+				"    addu $v0, $v0, $a0\n" +
+				"done:\n" +
+				"    lw $ra, 4($sp)\n" +
+				"    addiu $sp, $sp, " + frameSize + "\n" +
+				"    jr $ra\n";
+	}
+
+	/**runs the recursion at increasing depths (up to ~8 MiB of stack), checking the result
+	 * and the memory used, and printing the time taken for each depth
+	 */
+	@Test(timeout = 120000)
+	public void testDeepRecursion() {
+		for (int depth = 1000; depth <= 1000000; depth *= 10) {
+			SimulizerRunner runner = new SimulizerRunner(false);
+			long start = System.nanoTime();
+			runner.run(sumProgram(depth), "");
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			assertTrue(runner.problemLogger.getProblems().isEmpty());
+			int expected = 0;
+			for (int i = 1; i <= depth; i++) {
+				expected += i;
+			}
+			assertEquals(expected, runner.cpu.getRegisterValue(Register.s0));
+
+			MainMemory memory = runner.cpu.getMainMemory();
+			int stackBytes = (depth + 1) * frameSize;
+			assertEquals(stackBytes, memory.getStack().getMaxDepth());
+			int stackPages = stackBytes / 4096 + 2;// +2 for the partial pages at either end
+			assertTrue(memory.getAllocatedPages() <= stackPages + 2);// + the static data
+
+			System.out.println(String.format("recursion depth %d: %.1f KiB of stack in %.3f seconds (%.0f calls/s)",
+					depth, stackBytes / 1024.0, seconds, depth / seconds));
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package simulizer.simulation.components;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import simulizer.assembler.Assembler;
+import simulizer.assembler.extractor.problem.StoreProblemLogger;
+import simulizer.assembler.representation.Program;
+import simulizer.simulation.cpu.components.CPU;
+import simulizer.simulation.cpu.components.CPUPipeline;
+import simulizer.simulation.cpu.components.CPUSnapshot;
+import simulizer.simulation.cpu.user_interaction.BufferIO;
+import simulizer.simulation.cpu.user_interaction.IOStream;
+
+/**tests that cpus forked from a snapshot carry on from where it was taken, without
+ * seeing what the other cpus write to memory afterwards
+ */
+@Category({UnitTests.class})
+public class SnapshotTest {
+
+	/**
+	 * @param stop the statement which stops the program part way through (a break, or a nop if a breakpoint is used)
+	 * @return a program which works out 1+...+100 and stores it in the static data and on the stack, stops,
+	 * then prints 2*5050 + an int which it reads, writing to the static data and stack again on the way
+	 */
+	private static String program(String stop) {
+		return ".data\n" +
+				"total: .word 0\n" +
+				".text\n" +
+				"main:\n" +
+				"    li $t0, 0\n" +
+				"    li $s0, 0\n" +
+				"loop:\n" +
+				"    addiu $t0, $t0, 1\n" +
+				"    addu $s0, $s0, $t0\n" +
+				"    slti $t1, $t0, 100\n" +
+				"    bne $t1, $zero, loop\n" +
+				"    sw $s0, total\n" +
+				"    addiu $sp, $sp, -4\n" +
+				"    sw $s0, 0($sp)\n" +
+				"    " + stop + "\n" +
+				"    li $v0, 5\n" +// line 15 (counted from 0)
+				"    syscall\n" +
+				"    lw $t2, total\n" +
+				"    addu $t2, $t2, $v0\n" +
+				"    sw $t2, total\n" +
+				"    lw $t3, 0($sp)\n" +
+				"    addu $a0, $t2, $t3\n" +
+				"    sw $a0, 0($sp)\n" +
+				"    li $v0, 1\n" +
+				"    syscall\n" +
+				"    li $v0, 10\n" +
+				"    syscall\n";
+	}
+
+	/**forks (pipelined and not) taken at a break instruction, while running headless, should each run the rest
+	 * of the program with their own input at the same time as the original cpu carries on
+	 */
+	@Test(timeout = 20000)
+	public void testForkAtBreak() throws Exception {
+		testFork(program("break 0"), false, false);
+	}
+
+	/**the same, but stopped at a breakpoint while running one cycle at a time, part way through the cycle
+	 */
+	@Test(timeout = 20000)
+	public void testForkAtBreakpoint() throws Exception {
+		testFork(program("nop"), true, false);
+	}
+
+	/**snapshots of a pipelined cpu are taken from the oldest instruction still in the pipeline, the
+	 * instructions behind the break have been fetched but not executed
+	 */
+	@Test(timeout = 20000)
+	public void testForkPipelinedAtBreak() throws Exception {
+		testFork(program("break 0"), false, true);
+	}
+
+	/**the same, but stopped at a breakpoint
+	 */
+	@Test(timeout = 20000)
+	public void testForkPipelinedAtBreakpoint() throws Exception {
+		testFork(program("nop"), true, true);
+	}
+
+	/**
+	 * @param program the program to run
+	 * @param breakpoint whether to stop the program with a breakpoint (rather than the break instruction in the program)
+	 * @param pipelined whether the cpu the snapshot is taken from is pipelined
+	 */
+	private void testFork(String program, boolean breakpoint, boolean pipelined) throws Exception {
+		StoreProblemLogger log = new StoreProblemLogger();
+		Program p = Assembler.assemble(program, log, false);
+		assertTrue(log.getProblems().toString(), log.getProblems().isEmpty());
+		BufferIO io = new BufferIO();
+		io.feedInput("1\n");
+		CPU original = pipelined ? new CPUPipeline(io) : new CPU(io);
+		if (breakpoint) {
+			original.getBreakpoints().addBreakpointLine(15);
+		}
+		original.loadProgram(p);
+		Thread thread = runUntilPaused(original);
+
+		CPUSnapshot snapshot = original.snapshot();
+		assertSame(p, snapshot.getProgram());
+		assertTrue(snapshot.getCycles() > 400);
+
+		List<BufferIO> ios = new ArrayList<>();
+		List<CPU> cpus = new ArrayList<>();
+		List<Thread> forks = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			BufferIO forkIO = new BufferIO();
+			forkIO.feedInput((i + 2) + "\n");
+			CPU fork = CPU.fork(snapshot, forkIO, i % 2 == 1);
+			ios.add(forkIO);
+			cpus.add(fork);
+			forks.add(new Thread(() -> {
+				fork.runProgram();
+				fork.shutdown();
+			}));
+		}
+		forks.forEach(Thread::start);
+		original.resume();
+
+		thread.join();
+		assertEquals("10101", io.getOutput(IOStream.STANDARD));
+		for (int i = 0; i < forks.size(); i++) {
+			forks.get(i).join();
+			assertEquals(String.valueOf(10100 + i + 2), ios.get(i).getOutput(IOStream.STANDARD));
+		}
+		// the cycle count carries on from the snapshot rather than starting again
+		for (CPU cpu : cpus) {
+			assertTrue(cpu.getCycles() > snapshot.getCycles() + 10);
+		}
+
+		// the snapshot is unchanged by the cpus which ran from it
+		BufferIO again = new BufferIO();
+		again.feedInput("10\n");
+		CPU fork = CPU.fork(snapshot, again, false);
+		fork.runProgram();
+		assertEquals("10110", again.getOutput(IOStream.STANDARD));
+
+		fork.reset();//back to the start of the program rather than the snapshot, so stops again
+		if (breakpoint) {
+			fork.getBreakpoints().addBreakpointLine(15);
+		}
+		again.clearOutput();
+		again.feedInput("1\n");
+		thread = runUntilPaused(fork);
+		fork.resume();
+		thread.join();
+		assertEquals("10101", again.getOutput(IOStream.STANDARD));
+		fork.shutdown();
+		original.shutdown();
+	}
+
+	/**
+	 * @param cpu the cpu to run the loaded program on
+	 * @return the thread running the program, once the program has stopped
+	 */
+	private static Thread runUntilPaused(CPU cpu) throws InterruptedException {
+		Thread thread = new Thread(cpu::runProgram);
+		thread.start();
+		while (!cpu.isPaused()) {
+			Thread.sleep(1);
+		}
+		return thread;
+	}
+}
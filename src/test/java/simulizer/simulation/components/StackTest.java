@@ -9,8 +9,6 @@ import category.UnitTests;
 import simulizer.simulation.cpu.components.StackSegment;
 import simulizer.simulation.exceptions.StackException;
 
-import java.lang.reflect.Field;
-
 /**this class is aimed at carrying out unit tests
  * on the stack segment in the CPU
  * @author Charlie Street
@@ -19,18 +17,6 @@ import java.lang.reflect.Field;
 @Category({UnitTests.class})
 public class StackTest {
 
-	private void setStack(StackSegment seg, byte[] newStack) {
-		try {
-			Field stackField = StackSegment.class.getDeclaredField("stack");
-
-            stackField.setAccessible(true);
-            stackField.set(seg, newStack);
-
-		} catch (IllegalAccessException | NoSuchFieldException e) {
-		    fail();
-		}
-	}
-
 	/**this method will test the getBytes method of the stack
 	 * @throws StackException 
 	 * 
@@ -120,10 +106,9 @@ public class StackTest {
 			}
 		}
 
-		{//valid read (half below currently allocated stack)
+		{//valid read (half below the part of the stack written to)
 			StackSegment stack = new StackSegment(10); // can grow to 10 bytes
-            setStack(stack, new byte[5]);
-            // stack length 5
+            // only the top 5 bytes have been written
 			stack.setBytes(-5, new byte[]{0x11,0x20,0x30,0x40,0x50});
 			byte[] read = stack.getBytes(-7,4);
 			assertEquals(4, read.length);
@@ -134,10 +119,9 @@ public class StackTest {
 
 		}
 
-		{//valid read (all below currently allocated stack)
+		{//valid read (all below the part of the stack written to)
 			StackSegment stack = new StackSegment(10); // can grow to 10 bytes
-			setStack(stack, new byte[5]);
-			// stack length 5
+			// only the top 5 bytes have been written
 			stack.setBytes(-5, new byte[]{0x11,0x20,0x30,0x40,0x50});
 			byte[] read = stack.getBytes(-10,5);
 			assertEquals(5, read.length);
@@ -230,7 +214,6 @@ public class StackTest {
 
 		{//valid write (growth of stack)
 			StackSegment stack = new StackSegment(10);
-            setStack(stack, new byte[5]);
 			stack.setBytes(-10,new byte[]{0x00,0x11,0x10,0x01});
 			byte[] read = stack.getBytes(-10, 4);
 			assertEquals(0x00,read[0]);
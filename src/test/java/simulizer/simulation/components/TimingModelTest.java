@@ -0,0 +1,151 @@
+package simulizer.simulation.components;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import simulizer.assembler.representation.Instruction;
+import simulizer.assembler.representation.Register;
+import simulizer.simulation.cpu.components.CPUPipeline;
+import simulizer.simulation.cpu.components.Cache;
+import simulizer.simulation.cpu.components.CacheStatistics;
+import simulizer.simulation.cpu.components.PipelineStatistics;
+import simulizer.simulation.cpu.components.TimingModel;
+import simulizer.simulation.cpu.components.TimingModel.InstructionClass;
+import simulizer.simulation.cpu.components.TimingStatistics;
+import simulizer.simulation.messages.PipelineHazardMessage.Hazard;
+import simulizer.utils.runner.SimulizerRunner;
+
+/**tests that the timing model charges each instruction its latency, that the pipeline stalls
+ * while a multi-cycle instruction is executing and that cache misses add to the time
+ */
+@Category({UnitTests.class})
+public class TimingModelTest {
+
+	// a loop which multiplies and divides 100 times (long enough for the headless engine to compile the loop)
+	private static final String program = ".text\n" +
+			"main:\n" +
+			"    li $t0, 0\n" +
+			"    li $t1, 7\n" +
+			"    li $t2, 3\n" +
+			"loop:\n" +
+			"    mult $t1, $t2\n" +
+			"    mflo $t3\n" +
+			"    div $t4, $t3, $t2\n" +
+			"    addiu $t0, $t0, 1\n" +
+			"    slti $t5, $t0, 100\n" +
+			"    bne $t5, $zero, loop\n" +
+			"    li $v0, 10\n" +
+			"    syscall\n";
+
+	/**
+	 * @param pipelined whether to use the pipelined cpu
+	 * @param timing the timing model to use (null for none)
+	 * @return the runner after running the loop
+	 */
+	private static SimulizerRunner run(boolean pipelined, TimingModel timing) {
+		SimulizerRunner runner = new SimulizerRunner(pipelined);
+		runner.cpu.setTimingModel(timing);
+		runner.run(program, "");
+		assertTrue(runner.problemLogger.getProblems().isEmpty());
+		assertEquals(7, runner.cpu.getRegisterValue(Register.t4));//the model mustn't change the results
+		assertEquals(100, runner.cpu.getRegisterValue(Register.t0));
+		return runner;
+	}
+
+	/**the latencies of classes should be overridden by the latencies of single instructions,
+	 * and invalid specifications rejected
+	 */
+	@Test
+	public void testParse() {
+		TimingModel defaults = TimingModel.parse("");
+		assertEquals(12, defaults.getLatency(Instruction.mult));
+		assertEquals(35, defaults.getLatency(Instruction.div));
+		assertEquals(1, defaults.getLatency(Instruction.addu));
+
+		TimingModel t = TimingModel.parse("mult=2, multiply=4,cache-miss=0");
+		assertEquals(2, t.getLatency(Instruction.mult));
+		assertEquals(4, t.getLatency(Instruction.mul));
+		assertEquals(0, t.getMissPenalty());
+		assertEquals(InstructionClass.BRANCH, InstructionClass.of(Instruction.bne));
+		assertEquals(InstructionClass.JUMP, InstructionClass.of(Instruction.jal));
+
+		for (String bad : new String[]{"multiply", "multiply=0", "foo=3", "lw=x", "cache-miss=-1", "lw=2=3"}) {
+			try {
+				TimingModel.parse(bad);
+				fail(bad + " should be invalid");
+			} catch (IllegalArgumentException ignored) {
+			}
+		}
+	}
+
+	/**without a pipeline, the cycles should be the sum of the latencies of the instructions run
+	 */
+	@Test(timeout = 20000)
+	public void testLatency() {
+		SimulizerRunner plain = run(false, null);
+		SimulizerRunner timed = run(false, new TimingModel());
+		assertNull(plain.cpu.getTimingStatistics());
+
+		TimingStatistics stats = timed.cpu.getTimingStatistics();
+		assertEquals(100, stats.byClass.get(InstructionClass.MULTIPLY).getInstructions());
+		assertEquals(1200, stats.byClass.get(InstructionClass.MULTIPLY).getCycles());
+		assertEquals(3500, stats.byClass.get(InstructionClass.DIVIDE).getCycles());
+		assertEquals(plain.cpu.getCycles(), stats.getInstructions());
+		assertEquals(timed.cpu.getCycles(), stats.getCycles());
+		// every multiply and divide costs its latency instead of 1 cycle
+		assertEquals(plain.cpu.getCycles() + 100 * (11 + 34), timed.cpu.getCycles());
+	}
+
+	/**the pipeline should stall for every extra cycle of a multiply or divide
+	 */
+	@Test(timeout = 20000)
+	public void testPipelineStalls() {
+		SimulizerRunner plain = run(true, null);
+		SimulizerRunner timed = run(true, TimingModel.parse("multiply=4,divide=10"));
+
+		PipelineStatistics stats = ((CPUPipeline) timed.cpu).getStatistics();
+		long stalls = 100 * (3 + 9);
+		assertEquals(stalls, stats.byHazard.get(Hazard.STRUCTURAL).getStalls());
+		assertEquals(0, ((CPUPipeline) plain.cpu).getStatistics().byHazard.get(Hazard.STRUCTURAL).getStalls());
+		assertEquals(plain.cpu.getCycles() + stalls, timed.cpu.getCycles());
+		assertEquals(100 * 3 + 1, stats.byLine.get(6).getStalls());//the multiply (counted from 0), which also waits once for $t2
+	}
+
+	/**each cache miss should cost the miss penalty
+	 */
+	@Test(timeout = 20000)
+	public void testCacheMisses() {
+		for (boolean pipelined : new boolean[]{false, true}) {
+			SimulizerRunner runner = new SimulizerRunner(pipelined);
+			runner.cpu.setCaches(Cache.Config.parse("64:16:1"), Cache.Config.parse("64:16:1"));
+			runner.cpu.setTimingModel(TimingModel.parse("cache-miss=7"));
+			runner.run(".data\n" +
+					"array: .space 256\n" +
+					".text\n" +
+					"main:\n" +
+					"    la $s1, array\n" +
+					"    li $t0, 0\n" +
+					"loop:\n" +
+					"    lw $t1, 0($s1)\n" +
+					"    addiu $s1, $s1, 4\n" +
+					"    addiu $t0, $t0, 1\n" +
+					"    slti $t5, $t0, 64\n" +
+					"    bne $t5, $zero, loop\n" +
+					"    li $v0, 10\n" +
+					"    syscall\n", "");
+			assertTrue(runner.problemLogger.getProblems().isEmpty());
+
+			long misses = 0;
+			for (CacheStatistics cache : runner.cpu.getCacheStatistics()) {
+				misses += cache.total.getMisses();
+			}
+			TimingStatistics stats = runner.cpu.getTimingStatistics();
+			assertEquals(64, stats.byClass.get(InstructionClass.LOAD).getInstructions());
+			assertTrue(misses >= 16);//a miss for every line of the array
+			assertEquals(7 * misses, stats.memoryStallCycles);
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package simulizer.simulation.messages;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import simulizer.assembler.representation.Register;
+import simulizer.simulation.cpu.user_interaction.BufferIO;
+import simulizer.utils.runner.SimulizerRunner;
+
+/**tests for delivering messages to the listeners
+ */
+@Category({UnitTests.class})
+public class MessageManagerTest {
+
+	/**records the registers of the register changed messages it receives
+	 */
+	private static class RecordingListener extends SimulationListener {
+		final List<Register> received = new ArrayList<>();
+		int other = 0;
+
+		@Override
+		public void processRegisterChangedMessage(RegisterChangedMessage m) {
+			received.add(m.registerChanged);
+		}
+
+		@Override
+		public void processSimulationMessage(SimulationMessage m) {
+			other++;
+		}
+	}
+
+	/**every listener should receive every message in the order it was sent, and all of them
+	 * should have been processed once waitForAll returns. Sends more messages than there are slots
+	 * in the ring so that the slots get reused
+	 */
+	@Test
+	public void testOrderedDelivery() {
+		MessageManager mm = new MessageManager(new BufferIO());
+		RecordingListener[] listeners = new RecordingListener[3];
+		for (int i = 0; i < listeners.length; i++) {
+			listeners[i] = new RecordingListener();
+			mm.registerListener(listeners[i]);
+		}
+
+		Register[] regs = Register.values();
+		int n = 20000;
+		for (int i = 0; i < n; i++) {
+			mm.sendMessage(new RegisterChangedMessage(regs[i % regs.length]));
+			if (i % 7 == 0) {
+				mm.waitForAll();
+			}
+		}
+		mm.waitForAll();
+
+		for (RecordingListener l : listeners) {
+			assertEquals(n, l.received.size());
+			for (int i = 0; i < n; i++) {
+				assertEquals(regs[i % regs.length], l.received.get(i));
+			}
+		}
+		mm.shutdown();
+	}
+
+	/**listeners should only receive the types of message they subscribed to
+	 */
+	@Test
+	public void testSubscriptions() {
+		MessageManager mm = new MessageManager(new BufferIO());
+		RecordingListener registers = new RecordingListener();
+		RecordingListener simulation = new RecordingListener();
+		mm.registerListener(registers, MessageType.REGISTER_CHANGED);
+		mm.registerListener(simulation, MessageType.SIMULATION);
+
+		assertTrue(mm.isListening(MessageType.REGISTER_CHANGED));
+		assertTrue(mm.isListening(MessageType.SIMULATION));
+		assertFalse(mm.isListening(MessageType.STAGE_ENTER));
+
+		mm.sendMessage(new RegisterChangedMessage(Register.t0));
+		mm.sendMessage(new SimulationMessage(SimulationMessage.Detail.SIMULATION_STARTED));
+		mm.waitForAll();
+
+		assertEquals(1, registers.received.size());
+		assertEquals(0, registers.other);
+		assertEquals(0, simulation.received.size());
+		assertEquals(1, simulation.other);
+
+		mm.unregisterListener(registers);
+		assertFalse(mm.isListening(MessageType.REGISTER_CHANGED));
+		mm.sendMessage(new RegisterChangedMessage(Register.t1));
+		mm.waitForAll();
+		assertEquals(1, registers.received.size());
+		mm.shutdown();
+	}
+
+	/**a listener unregistering itself while handling a message shouldn't hold up waitForAll
+	 */
+	@Test(timeout = 5000)
+	public void testUnregisterFromListener() {
+		MessageManager mm = new MessageManager(new BufferIO());
+		SimulationListener l = new SimulationListener() {
+			@Override
+			public void processSimulationMessage(SimulationMessage m) {
+				mm.unregisterListener(this);
+			}
+		};
+		mm.registerListener(l);
+		mm.sendMessage(new SimulationMessage(SimulationMessage.Detail.PROGRAM_LOADED));
+		mm.waitForAll();
+		mm.sendMessage(new SimulationMessage(SimulationMessage.Detail.SIMULATION_STARTED));
+		mm.waitForAll();
+		assertFalse(mm.isListening(MessageType.SIMULATION));
+		mm.shutdown();
+	}
+
+	/**the listeners of many message managers should share a small number of threads, and
+	 * each listener should still get its own messages in order
+	 */
+	@Test(timeout = 20000)
+	public void testSharedThreads() {
+		int count = 200;
+		MessageManager[] managers = new MessageManager[count];
+		RecordingListener[] listeners = new RecordingListener[count];
+		for (int i = 0; i < count; i++) {
+			managers[i] = new MessageManager(new BufferIO());
+			listeners[i] = new RecordingListener();
+			managers[i].registerListener(listeners[i]);
+		}
+
+		Register[] regs = Register.values();
+		int n = 500;
+		for (int i = 0; i < n; i++) {
+			for (int m = 0; m < count; m++) {
+				managers[m].sendMessage(new RegisterChangedMessage(regs[(i + m) % regs.length]));
+			}
+		}
+
+		int threads = 0;
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.getName().startsWith("Message-Manager")) {
+				threads++;
+			}
+		}
+		assertTrue(threads <= Math.max(2, Runtime.getRuntime().availableProcessors()) * 2);
+
+		for (int m = 0; m < count; m++) {
+			managers[m].waitForAll();
+			assertEquals(n, listeners[m].received.size());
+			for (int i = 0; i < n; i++) {
+				assertEquals(regs[(i + m) % regs.length], listeners[m].received.get(i));
+			}
+			managers[m].shutdown();
+		}
+	}
+
+	/**a cycle delta should be sent for every tick, recording the registers and memory written to
+	 */
+	@Test
+	public void testCycleDelta() {
+		for (boolean pipelined : new boolean[]{false, true}) {
+			SimulizerRunner runner = new SimulizerRunner(pipelined);
+			List<CycleDeltaMessage> deltas = new ArrayList<>();
+			runner.cpu.registerListener(new SimulationListener() {
+				@Override
+				public void processCycleDeltaMessage(CycleDeltaMessage m) {
+					deltas.add(m);
+				}
+			}, MessageType.CYCLE_DELTA);
+			runner.cpu.setCycleFreq(0);
+
+			String program = ".text\n" +
+					"main:\n" +
+					"    li $t0, 5\n" +
+					"    addiu $sp, $sp, -4\n" +
+					"    sw $t0, 0($sp)\n" +
+					"    mult $t0, $t0\n" +
+					"    li $v0, 10\n" +
+					"    syscall\n";
+			runner.run(program, "");
+
+			assertFalse(deltas.isEmpty());
+			int registers = 0;
+			boolean hi = false, lo = false;
+			int writes = 0;
+			for (CycleDeltaMessage m : deltas) {
+				registers |= m.getChangedRegisters();
+				hi |= m.hiChanged();
+				lo |= m.loChanged();
+				if (m.memoryChanged()) {
+					writes++;
+					assertEquals(4, m.getMemoryWriteEnd() - m.getMemoryWriteStart());
+				}
+			}
+			int expected = (1 << Register.t0.getID()) | (1 << Register.sp.getID()) | (1 << Register.v0.getID());
+			assertEquals(expected, registers);
+			assertTrue(hi && lo);
+			assertEquals(1, writes);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package simulizer.simulation.messages;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.SlowTests;
+import simulizer.assembler.representation.Register;
+import simulizer.simulation.cpu.user_interaction.BufferIO;
+
+/**benchmark for sending messages through the message manager to several listeners, printing the messages
+ * delivered per second. Only the constructor, registerListener, sendMessage, waitForAll and shutdown are used
+ * so that the same benchmark can be run against older versions of the message manager to compare them.
+ * The order the messages arrive in is checked by MessageManagerTest, here the messages which arrive out of
+ * order are only counted
+ */
+@Category({SlowTests.class})
+public class MessageThroughputTest {
+
+	/**counts the register changed messages it receives, and how many arrived out of order
+	 */
+	private static class CountingListener extends SimulationListener {
+		private static final Register[] regs = Register.values();
+		volatile int received = 0;
+		volatile int outOfOrder = 0;
+		private int next = 0;
+
+		@Override
+		public void processRegisterChangedMessage(RegisterChangedMessage m) {
+			synchronized (this) {
+				if (m.registerChanged != regs[next]) {
+					outOfOrder++;
+				}
+				next = (m.registerChanged.ordinal() + 1) % regs.length;
+				received++;
+			}
+		}
+	}
+
+	/**
+	 * @param messages the number of messages to send
+	 * @param listeners the number of listeners to send each message to
+	 * @param waitEvery wait for the listeners after sending this many messages (0 to only wait at the end)
+	 * @return the best number of messages sent per second out of 3 runs
+	 */
+	private static double throughput(int messages, int listeners, int waitEvery) {
+		Register[] regs = Register.values();
+		double best = 0;
+		int outOfOrder = 0;
+		for (int run = 0; run < 3; run++) {
+			MessageManager mm = new MessageManager(new BufferIO());
+			CountingListener[] ls = new CountingListener[listeners];
+			for (int i = 0; i < listeners; i++) {
+				ls[i] = new CountingListener();
+				mm.registerListener(ls[i]);
+			}
+
+			long start = System.nanoTime();
+			for (int i = 0; i < messages; i++) {
+				mm.sendMessage(new RegisterChangedMessage(regs[i % regs.length]));
+				if (waitEvery != 0 && i % waitEvery == 0) {
+					mm.waitForAll();
+				}
+			}
+			mm.waitForAll();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			mm.shutdown();
+
+			for (CountingListener l : ls) {
+				assertEquals(messages, l.received);
+				outOfOrder += l.outOfOrder;
+			}
+			best = Math.max(best, messages / seconds);
+		}
+		System.out.println(String.format("%d messages, %d listeners, %s: %.0f messages/s (%d out of order)", messages,
+				listeners, waitEvery == 0 ? "waiting at the end" : "waiting every " + waitEvery, best, outOfOrder));
+		return best;
+	}
+
+	/**sends register changed messages, as the cpu does while it runs, through 1 and 4 listeners
+	 */
+	@Test(timeout = 120000)
+	public void testThroughput() {
+		throughput(200000, 4, 0);
+		throughput(200000, 1, 0);
+		throughput(20000, 4, 5);
+	}
+}
@@ -0,0 +1,68 @@
+package simulizer.ui.windows;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import category.UnitTests;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import simulizer.assembler.representation.Register;
+
+/**tests that the registers window refreshes the rows of the registers which changed, however the table is sorted
+ */
+@Category({UnitTests.class})
+public class RegistersTest {
+
+	/**
+	 * A row of the table, with the same ids as Registers.Data
+	 */
+	private static class Row {
+		final int id;
+		final String name;
+
+		Row(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	@Test
+	public void testRefreshAfterSorting() {
+		ObservableList<Row> rows = FXCollections.observableArrayList();
+		for (Register r : Register.values())
+			rows.add(new Row(r.getID(), "$" + r.getName()));
+		rows.add(new Row(9997, "pc"));
+		rows.add(new Row(9998, "hi"));
+		rows.add(new Row(9999, "lo"));
+
+		Registers.ChangedRows<Row> changed = new Registers.ChangedRows<>();
+		changed.setRows(rows, r -> r.id);
+
+		// sorting the table reorders its items in place
+		FXCollections.sort(rows, Comparator.comparing((Row r) -> r.name).reversed());
+		assertNotEquals(0, rows.get(0).id);
+
+		List<String> refreshed = new ArrayList<>();
+		changed.mark((1L << Register.t0.getID()) | (1L << Registers.ChangedRows.bit(9998)));
+		changed.refresh(r -> refreshed.add(r.name));
+		assertEquals(2, refreshed.size());
+		assertTrue(refreshed.contains("$t0"));
+		assertTrue(refreshed.contains("hi"));
+
+		// only refreshed once
+		refreshed.clear();
+		changed.refresh(r -> refreshed.add(r.name));
+		assertTrue(refreshed.isEmpty());
+
+		// everything changes when a program is loaded
+		changed.mark(-1L);
+		changed.refresh(r -> refreshed.add(r.name));
+		assertEquals(rows.size(), refreshed.size());
+	}
+}